@@ -16,12 +16,15 @@ import net.cellingo.sequence_tools.sequences.Sequence;
  */
 public abstract class Aligner {
 	private ArrayList<Alignment> alignmentList;
+	private ArrayList<AlignmentScore> alignmentScoreList;
+	private AlignmentResultSet alignmentResultSet;
 	private List<Sequence> sequenceList;
 	private AlignmentStrategy strategy;
 	private AlignmentAlgorithm algorithm;
 	private AlignmentOptions options;
 	private AlignmentScoringMatrix scoringMatrix;
 	private AlignmentCharacterMatrix alignmentCharacterMatrix;
+	private AlignmentListener alignmentListener;
 
 	/**
 	 * construct with a strategy type
@@ -32,6 +35,7 @@ public abstract class Aligner {
 		this.algorithm = algorithm;
 		this.options = options;
 		this.alignmentList = new ArrayList<Alignment>();
+		this.alignmentScoreList = new ArrayList<AlignmentScore>();
 		this.scoringMatrix = options.getAlignmentScoringMatrix();
 		this.alignmentCharacterMatrix = options.getAlignmentCharacterMatrix();
 	}
@@ -44,6 +48,25 @@ public abstract class Aligner {
 		return alignmentList;
 	}
 	
+	/**
+	 * get the scores found with score only alignment; only the intermolecular aligners fill this list
+	 * @return alignment scores
+	 */
+	public ArrayList<AlignmentScore> getAlignmentScoreList(){
+		return alignmentScoreList;
+	}
+
+	/**
+	 * get the alignments found with columnar results; only the intermolecular aligners fill it
+	 * @return alignment result set
+	 */
+	public AlignmentResultSet getAlignmentResultSet(){
+		if( alignmentResultSet == null ){
+			alignmentResultSet = new AlignmentResultSet( sequenceList, alignmentCharacterMatrix );
+		}
+		return alignmentResultSet;
+	}
+
 	/**
 	 * get an iterator of the found alignments
 	 * @return alignment iterator
@@ -152,4 +175,20 @@ public abstract class Aligner {
 		this.alignmentCharacterMatrix = alignmentCharacterMatrix;
 	}
 
+	/**
+	 * @return the alignmentListener, or null
+	 */
+	public AlignmentListener getAlignmentListener() {
+		return alignmentListener;
+	}
+
+	/**
+	 * set a listener that is notified of each alignment as soon as it is found; only the
+	 * intermolecular aligners report to it
+	 * @param alignmentListener the alignmentListener to set
+	 */
+	public void setAlignmentListener(AlignmentListener alignmentListener) {
+		this.alignmentListener = alignmentListener;
+	}
+
 }
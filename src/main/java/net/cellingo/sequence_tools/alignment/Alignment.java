@@ -4,6 +4,7 @@
 package net.cellingo.sequence_tools.alignment;
 
 import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.cellingo.sequence_tools.annotation.SequenceElement;
 import net.cellingo.sequence_tools.sequences.SequenceType;
@@ -19,7 +20,7 @@ public class Alignment {
 	private static final int AFTER = 1;
 	private static final int EQUAL = 0;
 
-	private static int alignmentNumber = 0;
+	private static final AtomicInteger alignmentNumber = new AtomicInteger();
 	private int alignmentID;
 	private int aligmentType;
 	private SequenceType sequenceType;
@@ -36,7 +37,7 @@ public class Alignment {
 	 * 
 	 */
 	public Alignment() {
-		alignmentID = alignmentNumber++;
+		alignmentID = alignmentNumber.getAndIncrement();
 		initialize();
 	}
 
@@ -7,6 +7,7 @@ package net.cellingo.sequence_tools.alignment;
 public enum AlignmentAlgorithm {
 
 	LOCAL("local alignment"),
+	LOCAL_STRIPED("striped local alignment"),
 	SEMIGLOBAL("semiglobal alignment"),
 	GLOBAL("global alignment"),
 	STRUCTURE("structure analysis");
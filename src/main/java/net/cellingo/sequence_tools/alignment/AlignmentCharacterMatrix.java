@@ -4,16 +4,21 @@
 package net.cellingo.sequence_tools.alignment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 
 import net.cellingo.sequence_tools.alphabets.DnaSequenceAlphabet;
 import net.cellingo.sequence_tools.alphabets.ProteinSequenceAlphabet;
 import net.cellingo.sequence_tools.alphabets.RnaSequenceAlphabet;
+import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
 import net.cellingo.sequence_tools.alphabets.StructureSequenceAlphabet;
 import net.cellingo.sequence_tools.sequences.SequenceType;
 
 /**
- * class that represents alignment characters and their retrieving process
+ * class that represents alignment characters and their retrieving process. The characters are defined per
+ * character pair and compiled into a flat matrix indexed by residue index; pairs that are not defined get the
+ * mismatch alignment character.
  * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
  * @version 1.0
  */
@@ -22,6 +27,9 @@ public class AlignmentCharacterMatrix {
 //	private boolean alignmentAsStructure;
 	private boolean matchingCharacterAsAlignmentCharacter;
 	private HashMap<String, Character> alignmentCharactersMatrix;
+	private ResidueIndex residueIndex;
+	private int indexSize;
+	private char[] alignmentCharacters;
 	private char matchAlignmentCharacter;
 	private char gcAlignmentCharacter;
 	private char auAlignmentCharacter;
@@ -227,15 +235,34 @@ public class AlignmentCharacterMatrix {
 				}
 			}
 		}//end sequenceType == STRUCTURE
+		
+		compile();
 	}//end initialise()
+
+	/**
+	 * compiles the pair characters into the flat matrix
+	 */
+	private void compile(){
+		HashSet<Character> symbols = new HashSet<Character>();
+		for(String pair : alignmentCharactersMatrix.keySet()){
+			symbols.add(pair.charAt(0));
+			symbols.add(pair.charAt(1));
+		}
+		residueIndex = new ResidueIndex(SequenceAlphabet.getSequenceAlphabet(sequenceType), symbols);
+		indexSize = residueIndex.size();
+		alignmentCharacters = new char[indexSize * indexSize];
+		Arrays.fill(alignmentCharacters, mismatchAlignmentCharacter);
+		for(String pair : alignmentCharactersMatrix.keySet()){
+			alignmentCharacters[residueIndex.indexOf(pair.charAt(0)) * indexSize + residueIndex.indexOf(pair.charAt(1))]
+					= alignmentCharactersMatrix.get(pair);
+		}
+	}
 	
 	/**
 	 * get the alignment character that belongs to the given pair of characters
 	 */
 	public char getAlignmentCharacter(char character1, char character2){
-		char[] searchArray = {character1, character2};
-		String searchString = new String(searchArray); 
-		return alignmentCharactersMatrix.get(searchString);
+		return alignmentCharacters[residueIndex.indexOf(character1) * indexSize + residueIndex.indexOf(character2)];
 	}
 	/**
 	 * set the G/C basepair alignment character
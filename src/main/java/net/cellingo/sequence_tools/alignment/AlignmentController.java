@@ -41,6 +41,10 @@ public class AlignmentController {
 				//System.out.println("creating StructureAligner");
 				this.aligner = new StructureAligner( strategy, algorithm, options );
 			}
+			else if( algorithm == AlignmentAlgorithm.LOCAL_STRIPED ){
+				//the striped kernel is for intermolecular alignments only
+				this.aligner = new IntramolecularAligner( strategy, AlignmentAlgorithm.LOCAL, options );
+			}
 			else{
 				//System.out.println("creating IntramolecularAligner");
 				this.aligner = new IntramolecularAligner( strategy, algorithm, options );
@@ -48,7 +52,17 @@ public class AlignmentController {
 		}
 		else if( strategy == AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL || strategy == AlignmentStrategy.INTERMOLECULAR_FIRST_TO_ALL ){
 			//System.out.println("creating IntermolecularAligner");
-			this.aligner = new IntermolecularAligner( strategy, algorithm, options );
+			AlignmentAlgorithm intermolecularAlgorithm = algorithm;
+			if( algorithm == AlignmentAlgorithm.LOCAL_STRIPED && options.isBandedAlignment() ){
+				//the striped kernel always scores the whole matrix
+				intermolecularAlgorithm = AlignmentAlgorithm.LOCAL;
+			}
+			if( options.isParallelAlignment() ){
+				this.aligner = new ParallelIntermolecularAligner( strategy, intermolecularAlgorithm, options );
+			}
+			else{
+				this.aligner = new IntermolecularAligner( strategy, intermolecularAlgorithm, options );
+			}
 		}
 		
 		aligner.setSequences(sequenceList);
@@ -62,6 +76,31 @@ public class AlignmentController {
 		return aligner.getAlignmentList();
 	}
 
+	/**
+	 * get the scores found with score only alignment, in the order the pairs were aligned
+	 * @return alignment score list
+	 */
+	public ArrayList<AlignmentScore> getAlignmentScoreList(){
+		return aligner.getAlignmentScoreList();
+	}
+
+	/**
+	 * get the alignments found with columnar results
+	 * @return alignment result set
+	 */
+	public AlignmentResultSet getAlignmentResultSet(){
+		return aligner.getAlignmentResultSet();
+	}
+
+	/**
+	 * set a listener that is notified of each alignment as soon as it is found. With parallel
+	 * alignment it is called from the worker threads
+	 * @param alignmentListener
+	 */
+	public void setAlignmentListener( AlignmentListener alignmentListener ){
+		aligner.setAlignmentListener( alignmentListener );
+	}
+
 	/**
 	 * call to start the analysis
 	 */
@@ -0,0 +1,19 @@
+/**
+ * 
+ */
+package net.cellingo.sequence_tools.alignment;
+
+/**
+ * receives the alignments of an aligner as soon as they are found. Parallel aligners call it from their
+ * worker threads, so implementations used there have to be thread safe
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+public interface AlignmentListener {
+
+	/**
+	 * called for each alignment that is found
+	 * @param alignment
+	 */
+	public void alignmentFound( Alignment alignment );
+}
@@ -7,17 +7,33 @@ public enum AlignmentMatrixType {
 	SIMPLE_MATCH_ALIGNMENT("simple match/mismatch alignment"),
 	RNA_STRUCTURE_ALIGNMENT("RNA structure alignment"),
 	DNA_STRUCTURE_ALIGNMENT("DNA structure alignment"),
-	PROTEIN_PAM100("PAM-100"),
-	PROTEIN_PAM250("PAM-250"),
-	PROTEIN_BLOSUM45("BLOSUM-45"),
-	PROTEIN_BLOSUM62("BLOSUM-62"),
+	NUCLEOTIDE_NUC44("NUC.4.4", "NUC.4.4"),
+	PROTEIN_PAM100("PAM-100", "PAM100"),
+	PROTEIN_PAM250("PAM-250", "PAM250"),
+	PROTEIN_BLOSUM45("BLOSUM-45", "BLOSUM45"),
+	PROTEIN_BLOSUM62("BLOSUM-62", "BLOSUM62"),
 	STRUCTURE_WEIGHTED_ALIGNMENT("alignment with conserved character scoring");
 
 	private String type;
+	private String resourceName;
 
 	private AlignmentMatrixType(String type){
 		this.type = type;
 	}
+
+	private AlignmentMatrixType(String type, String resourceName){
+		this.type = type;
+		this.resourceName = resourceName;
+	}
+
+	/**
+	 * get the name of the substitution matrix file this type is read from, or null
+	 * for the types that are generated from match and mismatch scores
+	 * @return resourceName
+	 */
+	public String getResourceName(){
+		return resourceName;
+	}
 	
 	public String toString(){
 		return type;
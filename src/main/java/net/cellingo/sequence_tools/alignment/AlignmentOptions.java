@@ -29,6 +29,15 @@ public class AlignmentOptions {
 //	private boolean returnTextualResults;
 	private int gapOpenPenalty;
 	private int gapExtensionPenalty;
+	private boolean linearMemoryAlignment;
+	private boolean parallelAlignment;
+	private int bandWidth;
+	private int xDrop;
+	private boolean scoreOnlyAlignment;
+	private int topHits;
+	private boolean columnarResults;
+	private int seedLength;
+	private int minimumSeedHits = 2;
 	private AlignmentMatrixType matrixType;
 
 	/**
@@ -191,6 +200,13 @@ public class AlignmentOptions {
 	public AlignmentScoringMatrix getAlignmentScoringMatrix() {
 		return alignmentScoringMatrix;
 	}
+	/**
+	 * set the alignment scoring matrix, e.g. one read with AlignmentScoringMatrix.loadMatrix()
+	 * @param alignmentScoringMatrix
+	 */
+	public void setAlignmentScoringMatrix(AlignmentScoringMatrix alignmentScoringMatrix) {
+		this.alignmentScoringMatrix = alignmentScoringMatrix;
+	}
 	/**
 	 * check whether the complement strand should be analysed as well
 	 * @return alsoComplementStrand
@@ -205,6 +221,170 @@ public class AlignmentOptions {
 	public void setAlsoComplement(boolean alsoComplement){
 		this.alsoComplementStrand = alsoComplement;
 	}
+	/**
+	 * check whether alignments are scored keeping only two rows of the matrix in memory,
+	 * with a divide and conquer traceback. This is slower but makes long sequences feasible;
+	 * the alignments found are the same
+	 * @return linearMemoryAlignment
+	 */
+	public boolean isLinearMemoryAlignment() {
+		return linearMemoryAlignment;
+	}
+	/**
+	 * set whether alignments are scored in linear memory
+	 * @param linearMemoryAlignment
+	 */
+	public void setLinearMemoryAlignment(boolean linearMemoryAlignment) {
+		this.linearMemoryAlignment = linearMemoryAlignment;
+	}
+	/**
+	 * check whether intermolecular alignments are distributed over the threads of the common ForkJoinPool;
+	 * sliding window analyses of long sequences are then scanned in parallel segments as well
+	 * @return parallelAlignment
+	 */
+	public boolean isParallelAlignment() {
+		return parallelAlignment;
+	}
+	/**
+	 * set whether intermolecular alignments are distributed over the threads of the common ForkJoinPool
+	 * @param parallelAlignment
+	 */
+	public void setParallelAlignment(boolean parallelAlignment) {
+		this.parallelAlignment = parallelAlignment;
+	}
+	/**
+	 * get the number of diagonals at both sides of the main diagonal that are scored in intermolecular
+	 * alignments; 0 means the whole matrix is scored
+	 * @return bandWidth
+	 */
+	public int getBandWidth() {
+		return bandWidth;
+	}
+	/**
+	 * restrict intermolecular alignments to a band around the main diagonal. This is meant for closely
+	 * related sequences, whose alignment never strays far from the diagonal; 0 scores the whole matrix
+	 * @param bandWidth
+	 */
+	public void setBandWidth(int bandWidth) {
+		if( bandWidth < 0 ){
+			throw new IllegalArgumentException("band width should not be negative: " + bandWidth);
+		}
+		this.bandWidth = bandWidth;
+	}
+	/**
+	 * get the X-drop of intermolecular alignments: cells scoring this much below the best score so far
+	 * are not extended. 0 means no X-drop
+	 * @return xDrop
+	 */
+	public int getXDrop() {
+		return xDrop;
+	}
+	/**
+	 * set the X-drop of intermolecular alignments: cells scoring this much below the best score so far
+	 * are not extended. 0 means no X-drop
+	 * @param xDrop
+	 */
+	public void setXDrop(int xDrop) {
+		if( xDrop < 0 ){
+			throw new IllegalArgumentException("X-drop should not be negative: " + xDrop);
+		}
+		this.xDrop = xDrop;
+	}
+	/**
+	 * check whether intermolecular alignments are banded or use X-drop
+	 * @return bandedAlignment
+	 */
+	public boolean isBandedAlignment() {
+		return bandWidth > 0 || xDrop > 0;
+	}
+	/**
+	 * check whether intermolecular alignments are only scored: a single row of scores is kept and no paths are
+	 * stored, and each pair scoring at least the minimum SW_SCORE gives an AlignmentScore instead of an Alignment.
+	 * When top hits are set, only the best scoring pairs are traced back into alignments
+	 * @return scoreOnlyAlignment
+	 */
+	public boolean isScoreOnlyAlignment() {
+		return scoreOnlyAlignment;
+	}
+	/**
+	 * set whether intermolecular alignments are only scored
+	 * @param scoreOnlyAlignment
+	 */
+	public void setScoreOnlyAlignment(boolean scoreOnlyAlignment) {
+		this.scoreOnlyAlignment = scoreOnlyAlignment;
+	}
+	/**
+	 * get the number of best scoring pairs that are traced back into alignments after score only alignment;
+	 * 0 means none are
+	 * @return topHits
+	 */
+	public int getTopHits() {
+		return topHits;
+	}
+	/**
+	 * set the number of best scoring pairs that are traced back into alignments after score only alignment.
+	 * The relative score and length minimums need the traceback, so they are only applied to these
+	 * @param topHits
+	 */
+	public void setTopHits(int topHits) {
+		if( topHits < 0 ){
+			throw new IllegalArgumentException("number of top hits should not be negative: " + topHits);
+		}
+		this.topHits = topHits;
+	}
+	/**
+	 * check whether intermolecular alignments are stored in the AlignmentResultSet of the aligner instead of
+	 * the alignment list. Only primitives are kept per alignment; Alignment objects are created on demand
+	 * @return columnarResults
+	 */
+	public boolean isColumnarResults() {
+		return columnarResults;
+	}
+	/**
+	 * set whether intermolecular alignments are stored in an AlignmentResultSet
+	 * @param columnarResults
+	 */
+	public void setColumnarResults(boolean columnarResults) {
+		this.columnarResults = columnarResults;
+	}
+	/**
+	 * get the length of the k-mers that intermolecular alignments of nucleic acids are seeded with;
+	 * 0 means all pairs are aligned in full
+	 * @return seedLength
+	 */
+	public int getSeedLength() {
+		return seedLength;
+	}
+	/**
+	 * seed intermolecular alignments of nucleic acids with k-mers of this length: a pair is only aligned when
+	 * the sequences share at least the minimum number of seeds on neighbouring diagonals, and only in the
+	 * region around these seeds. Seeds are exact matches, so this suits matrices that reward identical bases,
+	 * not the structure matrices. 0 switches seeding off
+	 * @param seedLength 0, or 1 to 31
+	 */
+	public void setSeedLength(int seedLength) {
+		if( seedLength < 0 || seedLength > KmerSeedIndex.MAXIMUM_SEED_LENGTH ){
+			throw new IllegalArgumentException("seed length should be 0 to " + KmerSeedIndex.MAXIMUM_SEED_LENGTH + ": " + seedLength);
+		}
+		this.seedLength = seedLength;
+	}
+	/**
+	 * get the number of shared seeds a pair needs to be aligned
+	 * @return minimumSeedHits
+	 */
+	public int getMinimumSeedHits() {
+		return minimumSeedHits;
+	}
+	/**
+	 * set the number of shared seeds a pair needs to be aligned; overlapping k-mers count separately
+	 * @param minimumSeedHits
+	 */
+	public void setMinimumSeedHits(int minimumSeedHits) {
+		if( minimumSeedHits < 1 ){
+			throw new IllegalArgumentException("minimum seed hits should be positive: " + minimumSeedHits);
+		}
+		this.minimumSeedHits = minimumSeedHits;
+	}
 	/**
 	 * @return the matrixType
 	 */
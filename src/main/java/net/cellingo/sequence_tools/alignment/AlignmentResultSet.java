@@ -0,0 +1,429 @@
+package net.cellingo.sequence_tools.alignment;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.cellingo.sequence_tools.alphabets.NucleicAcidSequenceAlphabet;
+import net.cellingo.sequence_tools.annotation.SequenceCoordinates;
+import net.cellingo.sequence_tools.annotation.SequenceElement;
+import net.cellingo.sequence_tools.sequences.NucleicAcidSequence;
+import net.cellingo.sequence_tools.sequences.Sequence;
+
+/**
+ * columnar store of intermolecular alignments. Per alignment only primitives are kept: the indices of the aligned
+ * sequences in the sequence list, the strand, the score, the coordinates as an Alignment would have them and the
+ * alignment operations, CIGAR encoded with sequence one as the reference (M: aligned residues, I: gap in sequence
+ * one, D: gap in sequence two). The aligned strands follow from the sequences, so Alignment objects can be
+ * materialised on demand with getAlignment.
+ * <p>
+ * The alignments can be sorted on the properties that do not depend on the residues (SW_SCORE, RELATIVE_SCORE,
+ * ALIGNMENT_LENGTH and GAP_NUMBER) without creating objects; sorting only changes the order in which they are
+ * indexed. Instances are not thread safe.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+public class AlignmentResultSet {
+	/*operation codes, as in BAM files*/
+	public static final int CIGAR_MATCH = 0;
+	public static final int CIGAR_INSERTION = 1;
+	public static final int CIGAR_DELETION = 2;
+	private static final char[] CIGAR_CHARACTERS = {'M', 'I', 'D'};
+	private static final int CIGAR_SHIFT = 4;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final List<Sequence> sequenceList;
+	private final AlignmentCharacterMatrix alignmentCharacterMatrix;
+	private int size;
+	private int[] sequenceOne = new int[INITIAL_CAPACITY];
+	private int[] sequenceTwo = new int[INITIAL_CAPACITY];
+	private boolean[] complementStrand = new boolean[INITIAL_CAPACITY];
+	private int[] score = new int[INITIAL_CAPACITY];
+	private int[] startOne = new int[INITIAL_CAPACITY];
+	private int[] endOne = new int[INITIAL_CAPACITY];
+	private int[] startTwo = new int[INITIAL_CAPACITY];
+	private int[] endTwo = new int[INITIAL_CAPACITY];
+	private int[] alignmentLength = new int[INITIAL_CAPACITY];
+	private int[] cigarStart = new int[INITIAL_CAPACITY + 1];
+	private int[] cigar = new int[INITIAL_CAPACITY * 4];
+	/*the order after sorting, or null for the order of adding*/
+	private int[] order;
+
+	/**
+	 * construct for the alignments of the given sequences
+	 * @param sequenceList the sequences the indices refer to
+	 * @param alignmentCharacterMatrix used for the middle line of materialised alignments
+	 */
+	public AlignmentResultSet(List<Sequence> sequenceList, AlignmentCharacterMatrix alignmentCharacterMatrix) {
+		this.sequenceList = sequenceList;
+		this.alignmentCharacterMatrix = alignmentCharacterMatrix;
+	}
+
+	/**
+	 * add an alignment
+	 * @param sequenceOneIndex index of the first sequence in the sequence list
+	 * @param sequenceTwoIndex index of the second sequence in the sequence list
+	 * @param complement whether the reverse complement of the first sequence was aligned
+	 * @param alignmentScore the alignment score
+	 * @param coordinates start and end on sequence one, start and end on sequence two
+	 * @param topStrand the aligned part of sequence one, with gaps
+	 * @param bottomStrand the aligned part of sequence two, with gaps
+	 * @param gapCharacter the gap character used in the strands
+	 */
+	public void add(int sequenceOneIndex, int sequenceTwoIndex, boolean complement, int alignmentScore,
+			int[] coordinates, CharSequence topStrand, CharSequence bottomStrand, char gapCharacter){
+		ensureCapacity(size + 1);
+		sequenceOne[size] = sequenceOneIndex;
+		sequenceTwo[size] = sequenceTwoIndex;
+		complementStrand[size] = complement;
+		score[size] = alignmentScore;
+		startOne[size] = coordinates[0];
+		endOne[size] = coordinates[1];
+		startTwo[size] = coordinates[2];
+		endTwo[size] = coordinates[3];
+		alignmentLength[size] = topStrand.length();
+		int cigarEnd = cigarStart[size];
+		int operation = -1;
+		int runLength = 0;
+		for(int i=0; i<topStrand.length(); i++){
+			int current;
+			if( topStrand.charAt(i) == gapCharacter ){
+				current = CIGAR_INSERTION;
+			}
+			else if( bottomStrand.charAt(i) == gapCharacter ){
+				current = CIGAR_DELETION;
+			}
+			else{
+				current = CIGAR_MATCH;
+			}
+			if( current != operation && runLength > 0 ){
+				cigarEnd = addOperation(cigarEnd, operation, runLength);
+				runLength = 0;
+			}
+			operation = current;
+			runLength++;
+		}
+		if( runLength > 0 ){
+			cigarEnd = addOperation(cigarEnd, operation, runLength);
+		}
+		size++;
+		cigarStart[size] = cigarEnd;
+		order = null;
+	}
+
+	/**
+	 * add all alignments of another result set over the same sequences, in their current order
+	 * @param other
+	 */
+	public void addAll(AlignmentResultSet other){
+		ensureCapacity(size + other.size);
+		for(int i=0; i<other.size; i++){
+			int row = other.row(i);
+			sequenceOne[size] = other.sequenceOne[row];
+			sequenceTwo[size] = other.sequenceTwo[row];
+			complementStrand[size] = other.complementStrand[row];
+			score[size] = other.score[row];
+			startOne[size] = other.startOne[row];
+			endOne[size] = other.endOne[row];
+			startTwo[size] = other.startTwo[row];
+			endTwo[size] = other.endTwo[row];
+			alignmentLength[size] = other.alignmentLength[row];
+			int cigarEnd = cigarStart[size];
+			for(int c=other.cigarStart[row]; c<other.cigarStart[row + 1]; c++){
+				if( cigarEnd == cigar.length ){
+					cigar = Arrays.copyOf(cigar, 2 * cigar.length);
+				}
+				cigar[cigarEnd++] = other.cigar[c];
+			}
+			size++;
+			cigarStart[size] = cigarEnd;
+		}
+		order = null;
+	}
+
+	private int addOperation(int cigarEnd, int operation, int runLength){
+		if( cigarEnd == cigar.length ){
+			cigar = Arrays.copyOf(cigar, 2 * cigar.length);
+		}
+		cigar[cigarEnd] = (runLength << CIGAR_SHIFT) | operation;
+		return cigarEnd + 1;
+	}
+
+	private void ensureCapacity(int capacity){
+		if( capacity <= score.length ){
+			return;
+		}
+		int newCapacity = Math.max(capacity, 2 * score.length);
+		sequenceOne = Arrays.copyOf(sequenceOne, newCapacity);
+		sequenceTwo = Arrays.copyOf(sequenceTwo, newCapacity);
+		complementStrand = Arrays.copyOf(complementStrand, newCapacity);
+		score = Arrays.copyOf(score, newCapacity);
+		startOne = Arrays.copyOf(startOne, newCapacity);
+		endOne = Arrays.copyOf(endOne, newCapacity);
+		startTwo = Arrays.copyOf(startTwo, newCapacity);
+		endTwo = Arrays.copyOf(endTwo, newCapacity);
+		alignmentLength = Arrays.copyOf(alignmentLength, newCapacity);
+		cigarStart = Arrays.copyOf(cigarStart, newCapacity + 1);
+	}
+
+	private int row(int index){
+		if( index < 0 || index >= size ){
+			throw new IndexOutOfBoundsException("index " + index + " of " + size + " alignments");
+		}
+		return order == null ? index : order[index];
+	}
+
+	/**
+	 * @return the number of alignments
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @param index
+	 * @return the index of the first sequence in the sequence list
+	 */
+	public int getSequenceOneIndex(int index){
+		return sequenceOne[row(index)];
+	}
+
+	/**
+	 * @param index
+	 * @return the index of the second sequence in the sequence list
+	 */
+	public int getSequenceTwoIndex(int index){
+		return sequenceTwo[row(index)];
+	}
+
+	/**
+	 * @param index
+	 * @return whether the reverse complement of the first sequence was aligned
+	 */
+	public boolean isComplementStrand(int index){
+		return complementStrand[row(index)];
+	}
+
+	/**
+	 * @param index
+	 * @return the alignment score
+	 */
+	public int getScore(int index){
+		return score[row(index)];
+	}
+
+	/**
+	 * @param index
+	 * @return the start on the first sequence, a forward strand position also for the complement strand
+	 */
+	public int getStartOne(int index){
+		return startOne[row(index)];
+	}
+
+	/**
+	 * @param index
+	 * @return the end on the first sequence, a forward strand position also for the complement strand
+	 */
+	public int getEndOne(int index){
+		return endOne[row(index)];
+	}
+
+	/**
+	 * @param index
+	 * @return the start on the second sequence
+	 */
+	public int getStartTwo(int index){
+		return startTwo[row(index)];
+	}
+
+	/**
+	 * @param index
+	 * @return the end on the second sequence
+	 */
+	public int getEndTwo(int index){
+		return endTwo[row(index)];
+	}
+
+	/**
+	 * @param index
+	 * @return the alignment length, including gaps
+	 */
+	public int getAlignmentLength(int index){
+		return alignmentLength[row(index)];
+	}
+
+	/**
+	 * @param index
+	 * @return the number of gaps in the first sequence, as the GAP_NUMBER of an Alignment
+	 */
+	public int getGapNumber(int index){
+		int row = row(index);
+		int gapNumber = 0;
+		for(int c=cigarStart[row]; c<cigarStart[row + 1]; c++){
+			if( (cigar[c] & ((1 << CIGAR_SHIFT) - 1)) == CIGAR_INSERTION ){
+				gapNumber += cigar[c] >>> CIGAR_SHIFT;
+			}
+		}
+		return gapNumber;
+	}
+
+	/**
+	 * @param index
+	 * @return the alignment score divided by the alignment length
+	 */
+	public double getRelativeScore(int index){
+		int row = row(index);
+		return (double)score[row] / alignmentLength[row];
+	}
+
+	/**
+	 * get the alignment operations, as (length << 4 | operation code) like in BAM files
+	 * @param index
+	 * @return the CIGAR operations
+	 */
+	public int[] getCigarOperations(int index){
+		int row = row(index);
+		return Arrays.copyOfRange(cigar, cigarStart[row], cigarStart[row + 1]);
+	}
+
+	/**
+	 * @param index
+	 * @return the CIGAR string of the alignment, e.g. 12M1I20M
+	 */
+	public String getCigar(int index){
+		int row = row(index);
+		StringBuilder cigarString = new StringBuilder();
+		for(int c=cigarStart[row]; c<cigarStart[row + 1]; c++){
+			cigarString.append(cigar[c] >>> CIGAR_SHIFT);
+			cigarString.append(CIGAR_CHARACTERS[cigar[c] & ((1 << CIGAR_SHIFT) - 1)]);
+		}
+		return cigarString.toString();
+	}
+
+	/**
+	 * get the value of one of the properties that can be sorted on
+	 * @param index
+	 * @param property SW_SCORE, RELATIVE_SCORE, ALIGNMENT_LENGTH or GAP_NUMBER
+	 * @return property value
+	 */
+	public double getPropertyValue(int index, AlignmentProperty property){
+		switch( property ){
+		case SW_SCORE:
+			return getScore(index);
+		case RELATIVE_SCORE:
+			return getRelativeScore(index);
+		case ALIGNMENT_LENGTH:
+			return getAlignmentLength(index);
+		case GAP_NUMBER:
+			return getGapNumber(index);
+		default:
+			throw new IllegalArgumentException("property can not be determined without the strands: " + property);
+		}
+	}
+
+	/**
+	 * sort the alignments on a property, ascending like the comparators of Alignment, or descending.
+	 * Alignments with equal values keep their order
+	 * @param property SW_SCORE, RELATIVE_SCORE, ALIGNMENT_LENGTH or GAP_NUMBER
+	 * @param descending
+	 */
+	public void sort(AlignmentProperty property, boolean descending){
+		double[] keys = new double[size];
+		for(int i=0; i<size; i++){
+			keys[i] = descending ? -getPropertyValue(i, property) : getPropertyValue(i, property);
+		}
+		int[] sorted = new int[size];
+		for(int i=0; i<size; i++){
+			sorted[i] = i;
+		}
+		mergeSort(sorted, new int[size], keys, 0, size);
+		int[] newOrder = new int[size];
+		for(int i=0; i<size; i++){
+			newOrder[i] = row(sorted[i]);
+		}
+		order = newOrder;
+	}
+
+	/*stable merge sort of indices on their keys*/
+	private static void mergeSort(int[] indices, int[] buffer, double[] keys, int from, int to){
+		if( to - from < 2 ){
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		mergeSort(indices, buffer, keys, from, middle);
+		mergeSort(indices, buffer, keys, middle, to);
+		if( keys[indices[middle - 1]] <= keys[indices[middle]] ){
+			return;
+		}
+		System.arraycopy(indices, from, buffer, from, to - from);
+		int left = from;
+		int right = middle;
+		for(int i=from; i<to; i++){
+			if( right >= to || (left < middle && keys[buffer[left]] <= keys[buffer[right]]) ){
+				indices[i] = buffer[left++];
+			}
+			else{
+				indices[i] = buffer[right++];
+			}
+		}
+	}
+
+	/**
+	 * materialise an alignment, as the IntermolecularAligner would have created it
+	 * @param index
+	 * @return alignment
+	 */
+	public Alignment getAlignment(int index){
+		int row = row(index);
+		Sequence sequenceOneObject = sequenceList.get(sequenceOne[row]);
+		Sequence sequenceTwoObject = sequenceList.get(sequenceTwo[row]);
+		char[] charArrayOne = sequenceOneObject.getSequenceString().toCharArray();
+		if( complementStrand[row] ){
+			NucleicAcidSequence.reverseComplementInPlace( charArrayOne, (NucleicAcidSequenceAlphabet)sequenceOneObject.getAlphabet() );
+		}
+		String sequenceTwoString = sequenceTwoObject.getSequenceString();
+		StringBuilder topStrand = new StringBuilder( alignmentLength[row] );
+		StringBuilder bottomStrand = new StringBuilder( alignmentLength[row] );
+		StringBuilder midLine = new StringBuilder( alignmentLength[row] );
+		/*the coordinates are one-based and on the forward strand; the complement strand runs from the end*/
+		int x = complementStrand[row] ? charArrayOne.length - endOne[row] : startOne[row] - 1;
+		int y = startTwo[row] - 1;
+		for(int c=cigarStart[row]; c<cigarStart[row + 1]; c++){
+			int operation = cigar[c] & ((1 << CIGAR_SHIFT) - 1);
+			for(int k=cigar[c] >>> CIGAR_SHIFT; k>0; k--){
+				if( operation == CIGAR_MATCH ){
+					char forwardBase = charArrayOne[x++];
+					char reverseBase = sequenceTwoString.charAt(y++);
+					topStrand.append(forwardBase);
+					bottomStrand.append(reverseBase);
+					midLine.append( alignmentCharacterMatrix.getAlignmentCharacter(forwardBase, reverseBase) );
+				}
+				else if( operation == CIGAR_INSERTION ){
+					topStrand.append('-');
+					bottomStrand.append( sequenceTwoString.charAt(y++) );
+					midLine.append(' ');
+				}
+				else{
+					topStrand.append( charArrayOne[x++] );
+					bottomStrand.append('-');
+					midLine.append(' ');
+				}
+			}
+		}
+
+		Alignment alignment = new Alignment();
+		alignment.setAligmentType( Alignment.ALIGNMENT_TYPE_INTERMOLECULAR );
+		SequenceElement topParent = new SequenceElement(SequenceElement.getNextAutogeneratedId());
+		topParent.setParentSequence( sequenceOneObject );
+		topParent.addCoordinates( new SequenceCoordinates(startOne[row], endOne[row], complementStrand[row], true) );
+		alignment.setTopParent( topParent );
+		SequenceElement bottomParent = new SequenceElement(SequenceElement.getNextAutogeneratedId());
+		bottomParent.setParentSequence( sequenceTwoObject );
+		bottomParent.addCoordinates( new SequenceCoordinates(startTwo[row], endTwo[row], complementStrand[row], true) );
+		alignment.setBottomParent( bottomParent );
+		alignment.setTopStrand( topStrand );
+		alignment.setBottomStrand( bottomStrand );
+		alignment.setMiddleLine( midLine );
+		alignment.setAlignmentScore( score[row] );
+		return alignment;
+	}
+}
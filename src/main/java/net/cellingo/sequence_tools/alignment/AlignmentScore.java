@@ -0,0 +1,83 @@
+package net.cellingo.sequence_tools.alignment;
+
+/**
+ * the result of scoring a pair of sequences without traceback: the best score and where the best local alignment
+ * ends. The sequences are identified by their index in the aligned sequence list.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+public final class AlignmentScore {
+	private final int sequenceOneIndex;
+	private final int sequenceTwoIndex;
+	private final boolean complementStrand;
+	private final int score;
+	private final int endOne;
+	private final int endTwo;
+
+	/**
+	 * construct with all fields
+	 * @param sequenceOneIndex
+	 * @param sequenceTwoIndex
+	 * @param complementStrand
+	 * @param score
+	 * @param endOne
+	 * @param endTwo
+	 */
+	public AlignmentScore(int sequenceOneIndex, int sequenceTwoIndex, boolean complementStrand, int score, int endOne, int endTwo) {
+		this.sequenceOneIndex = sequenceOneIndex;
+		this.sequenceTwoIndex = sequenceTwoIndex;
+		this.complementStrand = complementStrand;
+		this.score = score;
+		this.endOne = endOne;
+		this.endTwo = endTwo;
+	}
+
+	/**
+	 * @return the index of the first sequence in the sequence list
+	 */
+	public int getSequenceOneIndex() {
+		return sequenceOneIndex;
+	}
+
+	/**
+	 * @return the index of the second sequence in the sequence list
+	 */
+	public int getSequenceTwoIndex() {
+		return sequenceTwoIndex;
+	}
+
+	/**
+	 * @return whether the reverse complement of the first sequence was aligned
+	 */
+	public boolean isComplementStrand() {
+		return complementStrand;
+	}
+
+	/**
+	 * @return the alignment score
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * @return the end of the alignment on the first sequence, as a forward strand position; on the complement
+	 * strand the alignment runs towards the start of the sequence, so this is its lowest position
+	 */
+	public int getEndOne() {
+		return endOne;
+	}
+
+	/**
+	 * @return the end of the alignment on the second sequence
+	 */
+	public int getEndTwo() {
+		return endTwo;
+	}
+
+	@Override
+	public String toString() {
+		return "AlignmentScore[" + sequenceOneIndex + (complementStrand ? "c" : "") + "/" + sequenceTwoIndex
+				+ " score=" + score + " end=" + endOne + "," + endTwo + "]";
+	}
+}
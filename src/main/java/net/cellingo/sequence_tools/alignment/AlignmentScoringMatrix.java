@@ -1,7 +1,15 @@
 package net.cellingo.sequence_tools.alignment;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 
 import net.cellingo.sequence_tools.alphabets.DnaSequenceAlphabet;
 import net.cellingo.sequence_tools.alphabets.RnaSequenceAlphabet;
@@ -9,15 +17,26 @@ import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
 import net.cellingo.sequence_tools.sequences.SequenceType;
 
 /**
- * class that encapsulates the scoring of tow aligned characters
+ * class that encapsulates the scoring of tow aligned characters. The scores are defined per character pair and
+ * then compiled into a flat matrix indexed by residue index (the core ordinal for core characters of the alphabet),
+ * so that scoring a pair is two table lookups. Pairs that are not defined score the mismatch penalty, or the lowest
+ * score of a matrix read from file.
+ * <p>
+ * Substitution matrices in the NCBI text format (BLOSUM, PAM, NUC.4.4) are read from the classpath, from the
+ * matrices folder next to this class. BLOSUM62 and NUC.4.4 are included.
  * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
  * @version 1.0
  */
 public class AlignmentScoringMatrix {
+	private static final String MATRIX_RESOURCE_PATH = "matrices/";
 	private AlignmentMatrixType matrixType;
 	private SequenceAlphabet sequenceAlphabet;
 	private HashMap<String, Integer> scoringMatrix;
 	// = new HashMap<String, Integer>();
+	private ResidueIndex residueIndex;
+	private int indexSize;
+	private int[] scores;
+	private int unknownResidueScore;
 	private int simpleMatch;
 	private int mismatchPenalty;
 	private int gcBasepairScore;
@@ -37,16 +56,120 @@ public class AlignmentScoringMatrix {
 		mismatchPenalty = -3;
 		createScoringMatrix();
 	}
-	
+
+	/**
+	 * constructor for a matrix read from file
+	 */
+	private AlignmentScoringMatrix(SequenceType sequenceType, HashMap<String, Integer> scoringMatrix){
+		this.sequenceAlphabet = SequenceAlphabet.getSequenceAlphabet(sequenceType);
+		this.scoringMatrix = scoringMatrix;
+		compile(lowestScore(scoringMatrix));
+	}
+
+	/**
+	 * loads a substitution matrix in NCBI text format from the classpath. Names without a leading slash are
+	 * looked up in the matrices folder next to this class, e.g. "BLOSUM62"
+	 * @param sequenceType the type of the sequences to align
+	 * @param resourceName the matrix resource
+	 * @return scoringMatrix
+	 * @throws IOException when the resource is missing or not a valid matrix
+	 */
+	public static AlignmentScoringMatrix loadMatrix(SequenceType sequenceType, String resourceName) throws IOException{
+		return new AlignmentScoringMatrix(sequenceType, readResource(resourceName));
+	}
+
+	/**
+	 * reads a substitution matrix in NCBI text format: comment lines start with #, the first other line lists
+	 * the column characters and each following line a row character and its scores
+	 * @param sequenceType the type of the sequences to align
+	 * @param reader the matrix text
+	 * @return scoringMatrix
+	 * @throws IOException when the matrix can not be read or is not valid
+	 */
+	public static AlignmentScoringMatrix readMatrix(SequenceType sequenceType, Reader reader) throws IOException{
+		return new AlignmentScoringMatrix(sequenceType, parseMatrix(reader));
+	}
+
+	private static HashMap<String, Integer> readResource(String resourceName) throws IOException{
+		String path = resourceName.startsWith("/") ? resourceName : MATRIX_RESOURCE_PATH + resourceName;
+		InputStream stream = AlignmentScoringMatrix.class.getResourceAsStream(path);
+		if(stream == null){
+			throw new IOException("substitution matrix not found on the classpath: " + resourceName);
+		}
+		try(Reader reader = new InputStreamReader(stream, StandardCharsets.US_ASCII)){
+			return parseMatrix(reader);
+		}
+	}
+
+	private static HashMap<String, Integer> parseMatrix(Reader matrixReader) throws IOException{
+		BufferedReader reader = new BufferedReader(matrixReader);
+		HashMap<String, Integer> pairScores = new HashMap<String, Integer>();
+		String[] columns = null;
+		String line;
+		while((line = reader.readLine()) != null){
+			line = line.trim();
+			if(line.isEmpty() || line.startsWith("#")){
+				continue;
+			}
+			String[] fields = line.split("\\s+");
+			if(columns == null){
+				columns = fields;
+				continue;
+			}
+			if(fields.length != columns.length + 1){
+				throw new IOException("matrix row does not match the " + columns.length + " columns: " + line);
+			}
+			try{
+				for(int column = 0; column < columns.length; column++){
+					pairScores.put(fields[0] + columns[column], Integer.parseInt(fields[column + 1]));
+				}
+			}
+			catch(NumberFormatException e){
+				throw new IOException("illegal score in matrix row: " + line, e);
+			}
+		}
+		if(pairScores.isEmpty()){
+			throw new IOException("no scores in matrix");
+		}
+		for(String pair : pairScores.keySet()){
+			if(pair.length() != 2){
+				throw new IOException("matrix characters should be single characters: " + pair);
+			}
+		}
+		return pairScores;
+	}
+
+	private static int lowestScore(HashMap<String, Integer> pairScores){
+		int lowest = Integer.MAX_VALUE;
+		for(int score : pairScores.values()){
+			lowest = Math.min(lowest, score);
+		}
+		return lowest;
+	}
+
 	/**
 	 * methods for creating the scoringsmatrix depending on matrix and sequence type
 	 */
 	public void createScoringMatrix(){
+		if(matrixType == null){//read from file; nothing to generate
+			return;
+		}
 		
 		scoringMatrix = new HashMap<String, Integer>();
 		
+		/*substitution matrix files*/
+		if(matrixType.getResourceName() != null){
+			try {
+				scoringMatrix = readResource(matrixType.getResourceName());
+			} catch (IOException e) {
+				throw new IllegalStateException("substitution matrix " + matrixType + " can not be loaded", e);
+			}
+			compile(lowestScore(scoringMatrix));
+			return;
+		}
+		
 		/*simple alignment*/
-		if(matrixType == AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT){
+		else if(matrixType == AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT){
 			ArrayList<Character> characterList= sequenceAlphabet.getCoreAlphabet();
 			/*loop twice through the set of alphabet core chacaters*/
 			for(char nucleotide1: characterList){
@@ -156,23 +279,51 @@ public class AlignmentScoringMatrix {
 		}//end if(matrixType == AlignmentMatrixType.STRUCTURE_ALIGNMENT)
 
 		
-/*		else if(matrixType == AlignmentMatrixType.PROTEIN_BLOSUM62){
-			
-		}//end if matrixType == AlignmentMatrixType.PROTEIN_BLOSUM62
-*/		
-		//TODO protein alignment matrices not implemented yet
-		
+		compile(mismatchPenalty);
 	}//end createScoringMatrix
-	
+
+	/**
+	 * compiles the pair scores into the flat matrix. RNA uracil is scored as thymine when the matrix only
+	 * defines T (as NUC.4.4 does)
+	 */
+	private void compile(int unknownScore){
+		HashSet<Character> symbols = new HashSet<Character>();
+		for(String pair : scoringMatrix.keySet()){
+			symbols.add(pair.charAt(0));
+			symbols.add(pair.charAt(1));
+		}
+		boolean uracilAsThymine = sequenceAlphabet != null && sequenceAlphabet.getCoreOrdinal('U') >= 0
+				&& symbols.contains('T') && !symbols.contains('U');
+		if(uracilAsThymine){
+			symbols.add('U');
+		}
+		ResidueIndex index = new ResidueIndex(sequenceAlphabet, symbols);
+		int size = index.size();
+		int[] compiled = new int[size * size];
+		Arrays.fill(compiled, unknownScore);
+		for(String pair : scoringMatrix.keySet()){
+			int score = scoringMatrix.get(pair);
+			char first = pair.charAt(0);
+			char second = pair.charAt(1);
+			compiled[index.indexOf(first) * size + index.indexOf(second)] = score;
+			if(uracilAsThymine && (first == 'T' || second == 'T')){
+				first = first == 'T' ? 'U' : first;
+				second = second == 'T' ? 'U' : second;
+				compiled[index.indexOf(first) * size + index.indexOf(second)] = score;
+			}
+		}
+		this.residueIndex = index;
+		this.indexSize = size;
+		this.scores = compiled;
+		this.unknownResidueScore = unknownScore;
+	}
 	
 	/**
 	 * returns the slignment score for two aligning characters
 	 * @return score
 	 */
 	public int getAlignmentScore(char character1, char character2){
-		char[] characterArray = {character1,character2};
-		String alignment = new String(characterArray);
-		return scoringMatrix.get(alignment);
+		return scores[residueIndex.indexOf(character1) * indexSize + residueIndex.indexOf(character2)];
 	}
 	/**
 	 * get the alignment score between two sequence characters provided as String
@@ -180,7 +331,39 @@ public class AlignmentScoringMatrix {
 	 * @return score
 	 */
 	public int getAlignmentScore(String twoCharacterString){
-		return scoringMatrix.get(twoCharacterString);
+		return getAlignmentScore(twoCharacterString.charAt(0), twoCharacterString.charAt(1));
+	}
+	/**
+	 * get the matrix row (and column) of a residue: its core ordinal for core characters of the alphabet,
+	 * a higher index for other characters of the matrix and getIndexSize() - 1 for unknown characters
+	 * @param residue
+	 * @return index
+	 */
+	public int getResidueIndex(char residue){
+		return residueIndex.indexOf(residue);
+	}
+	/**
+	 * get the number of rows (and columns) of the compiled matrix, including the one for unknown residues
+	 * @return indexSize
+	 */
+	public int getIndexSize(){
+		return indexSize;
+	}
+	/**
+	 * get the score for two residue indices (see getResidueIndex)
+	 * @param index1
+	 * @param index2
+	 * @return score
+	 */
+	public int getIndexedScore(int index1, int index2){
+		return scores[index1 * indexSize + index2];
+	}
+	/**
+	 * get the score of pairs with characters that are not in the matrix
+	 * @return unknownResidueScore
+	 */
+	public int getUnknownResidueScore(){
+		return unknownResidueScore;
 	}
 	/**
 	 * get the matrix type
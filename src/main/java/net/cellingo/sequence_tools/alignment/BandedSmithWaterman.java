@@ -0,0 +1,267 @@
+package net.cellingo.sequence_tools.alignment;
+
+import java.util.Arrays;
+
+/**
+ * Smith/Waterman scoring restricted to a diagonal band, with optional X-drop pruning. Only the cells of row x with
+ * x - bandWidth <= y <= x + bandWidth are scored; the band is widened by the length difference of the sequences
+ * so their ends are always in it. With X-drop, cells scoring more than xDrop below the best score so far are
+ * dropped, and each row is only scored from the first to just past the last cell that survived in the row above.
+ * Cells outside the band and dropped cells can not be part of an alignment.
+ * <p>
+ * The recurrence and its tie-breaking are those of the SmithWatermanMatrix based aligners, so an alignment that
+ * stays inside the band and above the X-drop limit is found exactly as the full matrix would find it. Scores are
+ * kept for two rows only; paths are kept for the scored cells, which makes memory use O(n * band) instead of O(nm).
+ * Instances are not thread safe.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+final class BandedSmithWaterman {
+	/*path codes, as used in SmithWatermanMatrix: 0=border; 1=from previous x; 2=from previous y; 3=diagonal*/
+	private static final byte PATH_BORDER = 0;
+	private static final byte PATH_X = 1;
+	private static final byte PATH_Y = 2;
+	private static final byte PATH_DIAGONAL = 3;
+	/*flag on a stored path: the score of the cell is zero or less, which ends a traceback*/
+	private static final byte NOT_POSITIVE = 4;
+	private static final int NEGATIVE_INFINITY = Integer.MIN_VALUE / 2;
+
+	private final AlignmentScoringMatrix scoringMatrix;
+	private final int gapOpen;
+	private final int gapExtension;
+	private final boolean local;
+	private final int bandWidth;
+	private final int xDrop;
+	private char[] sequenceOne;
+	private char[] sequenceTwo;
+	/*per row: the first and last scored column, and where its paths start*/
+	private int[] rowFirst = new int[0];
+	private int[] rowLast = new int[0];
+	private int[] rowOffset = new int[0];
+	private byte[] paths = new byte[0];
+	private int rowCount;
+
+	/**
+	 * construct with the scoring scheme and the pruning parameters
+	 * @param scoringMatrix the scores for aligned characters
+	 * @param gapOpen penalty for the first gap position
+	 * @param gapExtension penalty for following gap positions
+	 * @param local whether negative scores are reset to zero
+	 * @param bandWidth the number of diagonals scored at both sides of the main diagonal, or 0 for all
+	 * @param xDrop the score drop below the best score at which cells are dropped, or 0 for no X-drop
+	 */
+	BandedSmithWaterman(AlignmentScoringMatrix scoringMatrix, int gapOpen, int gapExtension, boolean local,
+			int bandWidth, int xDrop){
+		this.scoringMatrix = scoringMatrix;
+		this.gapOpen = gapOpen;
+		this.gapExtension = gapExtension;
+		this.local = local;
+		this.bandWidth = bandWidth;
+		this.xDrop = xDrop;
+	}
+
+	/**
+	 * scores rows 1 to xEnd (exclusive) against columns 1 to yEnd (exclusive), within the band.
+	 * The sequences and the paths are kept for a following traceback.
+	 * @param sequenceOne the sequence along x
+	 * @param xEnd end of the scored rows
+	 * @param sequenceTwo the sequence along y
+	 * @param yEnd end of the scored columns
+	 * @return best score, x and y of the best cell
+	 */
+	int[] calculateScores(char[] sequenceOne, int xEnd, char[] sequenceTwo, int yEnd){
+		this.sequenceOne = sequenceOne;
+		this.sequenceTwo = sequenceTwo;
+		int[] best = new int[3];
+		rowCount = 0;
+		final int rows = xEnd - 1;
+		final int columns = yEnd - 1;
+		if(rows < 1 || columns < 1){
+			return best;
+		}
+		if(rowFirst.length < rows + 1){
+			rowFirst = new int[rows + 1];
+			rowLast = new int[rows + 1];
+			rowOffset = new int[rows + 1];
+		}
+		/*row 0 is the border*/
+		int[] previousScores = new int[columns + 1];
+		byte[] previousPaths = new byte[columns + 1];
+		int[] scores = new int[columns + 1];
+		byte[] currentPaths = new byte[columns + 1];
+		int previousFirst = 1;
+		int previousLast = columns;
+		int stored = 0;
+		for(int x = 1; x <= rows; x++){
+			int first = 1;
+			int last = columns;
+			if(bandWidth > 0){
+				first = Math.max(first, x - bandWidth - Math.max(0, rows - columns));
+				last = Math.min(last, x + bandWidth + Math.max(0, columns - rows));
+			}
+			/*X-drop: cells left of the first surviving cell above can not be reached*/
+			first = Math.max(first, previousFirst);
+			if(first > last){
+				break;
+			}
+			int liveFirst = -1;
+			int liveLast = -1;
+			int y = first;
+			for(; y <= last; y++){
+				if(y > previousLast + 1 && liveLast < y - 1){
+					//only a horizontal move could reach this cell, and the one to its left was dropped
+					break;
+				}
+				int horScore;
+				byte horPath;
+				if(y - 1 == 0){
+					horScore = 0;
+					horPath = PATH_BORDER;
+				}
+				else if(y - 1 < first){
+					horScore = NEGATIVE_INFINITY;
+					horPath = PATH_DIAGONAL;
+				}
+				else{
+					horScore = scores[y - 1];
+					horPath = currentPaths[y - 1];
+				}
+				int horMoveScore = horScore + ((horPath == PATH_BORDER || horPath == PATH_X) ? gapExtension : gapOpen);
+				byte vertPath = previousPath(previousPaths, x, y, previousFirst, previousLast);
+				int vertMoveScore = previousScore(previousScores, x, y, previousFirst, previousLast)
+						+ ((vertPath == PATH_BORDER || vertPath == PATH_Y) ? gapExtension : gapOpen);
+				int diagMoveScore = previousScore(previousScores, x, y - 1, previousFirst, previousLast)
+						+ scoringMatrix.getAlignmentScore(sequenceOne[x - 1], sequenceTwo[y - 1]);
+				int currentBestScore;
+				byte currentBestMove;
+				if(diagMoveScore >= horMoveScore && diagMoveScore >= vertMoveScore){
+					currentBestScore = diagMoveScore;
+					currentBestMove = PATH_DIAGONAL;
+				}
+				else if(horMoveScore >= vertMoveScore){
+					currentBestScore = horMoveScore;
+					currentBestMove = PATH_Y;
+				}
+				else{
+					currentBestScore = vertMoveScore;
+					currentBestMove = PATH_X;
+				}
+				if(currentBestScore < 0 && local){
+					currentBestScore = 0;
+				}
+				if(currentBestScore < NEGATIVE_INFINITY / 2 || (xDrop > 0 && currentBestScore < best[0] - xDrop)){
+					currentBestScore = NEGATIVE_INFINITY;
+				}
+				else{
+					if(liveFirst < 0){
+						liveFirst = y;
+					}
+					liveLast = y;
+					if(currentBestScore > best[0]){
+						best[0] = currentBestScore;
+						best[1] = x;
+						best[2] = y;
+					}
+				}
+				scores[y] = currentBestScore;
+				currentPaths[y] = currentBestMove;
+			}
+			last = y - 1;
+			/*keep the paths of the row*/
+			int width = last - first + 1;
+			if(stored + width > paths.length){
+				paths = Arrays.copyOf(paths, Math.max(stored + width, 2 * paths.length));
+			}
+			for(int j = first; j <= last; j++){
+				paths[stored + j - first] = scores[j] > 0 ? currentPaths[j] : (byte)(currentPaths[j] | NOT_POSITIVE);
+			}
+			rowFirst[x] = first;
+			rowLast[x] = last;
+			rowOffset[x] = stored;
+			stored += width;
+			rowCount = x;
+			if(liveFirst < 0){
+				break;
+			}
+			previousFirst = xDrop > 0 ? liveFirst : first;
+			previousLast = xDrop > 0 ? liveLast : last;
+			int[] swapScores = previousScores;
+			previousScores = scores;
+			scores = swapScores;
+			byte[] swapPaths = previousPaths;
+			previousPaths = currentPaths;
+			currentPaths = swapPaths;
+		}
+		return best;
+	}
+
+	/*score of cell (x-1, y); outside the scored part of the row it can not be reached*/
+	private int previousScore(int[] previousScores, int x, int y, int previousFirst, int previousLast){
+		if(x == 1 || y == 0){
+			return 0;
+		}
+		if(y < previousFirst || y > previousLast){
+			return NEGATIVE_INFINITY;
+		}
+		return previousScores[y];
+	}
+
+	private byte previousPath(byte[] previousPaths, int x, int y, int previousFirst, int previousLast){
+		if(x == 1 || y == 0){
+			return PATH_BORDER;
+		}
+		if(y < previousFirst || y > previousLast){
+			return PATH_DIAGONAL;
+		}
+		return previousPaths[y];
+	}
+
+	/**
+	 * traces the alignment back from the given cell, appending the aligned characters in reverse order,
+	 * in the same way the full matrix traceback of the IntermolecularAligner does
+	 * @param bestX
+	 * @param bestY
+	 * @param alignmentCharacterMatrix
+	 * @param topStrand
+	 * @param bottomStrand
+	 * @param midLine
+	 * @return x and y of the cell where the traceback stops
+	 */
+	int[] traceback(int bestX, int bestY, AlignmentCharacterMatrix alignmentCharacterMatrix,
+			StringBuilder topStrand, StringBuilder bottomStrand, StringBuilder midLine){
+		int x = bestX;
+		int y = bestY;
+		while(x > 0 && y > 0 && x <= rowCount && y >= rowFirst[x] && y <= rowLast[x]){
+			byte path = paths[rowOffset[x] + y - rowFirst[x]];
+			if((path & NOT_POSITIVE) != 0){
+				break;
+			}
+			char forwardBase;
+			char reverseBase;
+			char midLineCharacter;
+			if(path == PATH_DIAGONAL){
+				forwardBase = sequenceOne[x - 1];
+				reverseBase = sequenceTwo[y - 1];
+				midLineCharacter = alignmentCharacterMatrix.getAlignmentCharacter(forwardBase, reverseBase);
+				x--;
+				y--;
+			}
+			else if(path == PATH_Y){
+				forwardBase = '-';
+				reverseBase = sequenceTwo[y - 1];
+				midLineCharacter = ' ';
+				y--;
+			}
+			else{
+				forwardBase = sequenceOne[x - 1];
+				reverseBase = '-';
+				midLineCharacter = ' ';
+				x--;
+			}
+			topStrand.append(forwardBase);
+			bottomStrand.append(reverseBase);
+			midLine.append(midLineCharacter);
+		}
+		return new int[]{x, y};
+	}
+}
@@ -0,0 +1,397 @@
+/**
+ *
+ */
+package net.cellingo.sequence_tools.alignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * finds the best hairpin of each sliding window of a strand without recomputing the overlapping parts of the
+ * windows. A hairpin pairs residue i with residue j further down the strand; it fits in a window when its
+ * outermost pair spans less than the window length. All these pairs lie in a diagonal band of the
+ * strand-against-itself matrix, so the band is scored once, row by row, with the same recurrence the
+ * IntramolecularAligner uses for a single window. Only the last rows of the band are kept for the traceback.
+ * <p>
+ * The best hairpin of a window is the best band cell with both i and j inside the window; its stem may extend
+ * outside the window, as long as it fits in a window length. Windows that share their best cell share the
+ * hairpin, which is traced once. A window that starts inside the stem of a hairpin may end the stem further
+ * into its loop; such hairpins share their outermost pair and are merged by {@link #removeDuplicates(List)}.
+ * <p>
+ * Instances are not thread safe; use one per thread.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+final class HairpinScanner {
+	private final AlignmentScoringMatrix scoringMatrix;
+	private final AlignmentCharacterMatrix characterMatrix;
+	private final int gapOpen;
+	private final int gapExtension;
+	private final boolean local;
+	private final int windowLength;
+	private final int windowStep;
+	private final int minimumScore;
+	private final int minimumAlignmentLength;
+	private final double minimumRelativeScore;
+	/*band rows kept for the traceback, indexed [row % rows][j - row]*/
+	private final int rows;
+	private final int[][] scores;
+	private final byte[][] paths;
+	/*per row: best score and its j for the cells up to offset*/
+	private final int[] bestUpTo;
+	private final int[] bestUpToJ;
+	/*per open window, indexed (window / windowStep) % openWindows*/
+	private final int openWindows;
+	private final int[] windowBest;
+	private final int[] windowBestI;
+	private final int[] windowBestJ;
+	private char[] residues;
+	private int[] residueIndices;
+	private int regionStart;
+	private int regionEnd;
+	private int firstRow;
+
+	HairpinScanner(AlignmentOptions options, AlignmentAlgorithm algorithm){
+		this.scoringMatrix = options.getAlignmentScoringMatrix();
+		this.characterMatrix = options.getAlignmentCharacterMatrix();
+		this.gapOpen = options.getGapOpenPenalty();
+		this.gapExtension = options.getGapExtensionPenalty();
+		this.local = algorithm == AlignmentAlgorithm.LOCAL;
+		this.windowLength = options.getWindowLength();
+		this.windowStep = options.getWindowStep();
+		if( windowLength < 3 || windowStep < 1 ){
+			throw new IllegalArgumentException("illegal window: length " + windowLength + ", step " + windowStep);
+		}
+		AlignmentProperties minimumValues = options.getAlignmentPropertiesMinimumValues();
+		this.minimumScore = (int)minimumValues.getPropertyValue(AlignmentProperty.SW_SCORE);
+		this.minimumAlignmentLength = (int)minimumValues.getPropertyValue(AlignmentProperty.ALIGNMENT_LENGTH);
+		this.minimumRelativeScore = minimumValues.getPropertyValue(AlignmentProperty.RELATIVE_SCORE);
+		/*a window is closed at most a window length after its best row, whose traceback reaches back another one*/
+		this.rows = 2 * windowLength;
+		this.scores = new int[rows][windowLength];
+		this.paths = new byte[rows][windowLength];
+		this.bestUpTo = new int[windowLength];
+		this.bestUpToJ = new int[windowLength];
+		this.openWindows = windowLength / windowStep + 2;
+		this.windowBest = new int[openWindows];
+		this.windowBestI = new int[openWindows];
+		this.windowBestJ = new int[openWindows];
+	}
+
+	/**
+	 * the first position of the strand region needed to score the windows starting at firstWindow
+	 * @param firstWindow
+	 * @return regionStart
+	 */
+	int getRegionStart(int firstWindow){
+		return Math.max(0, firstWindow - windowLength);
+	}
+
+	/**
+	 * the end of the strand region needed to score the windows starting before lastWindow
+	 * @param lastWindow
+	 * @param strandLength
+	 * @return regionEnd
+	 */
+	int getRegionEnd(int lastWindow, int strandLength){
+		return (int)Math.min(strandLength, (long)lastWindow + 2L * windowLength);
+	}
+
+	/**
+	 * scan the windows starting at firstWindow, firstWindow + windowStep, ... up to lastWindow (exclusive)
+	 * @param residues the residues of the strand from getRegionStart(firstWindow) to getRegionEnd(lastWindow)
+	 * @param regionStart the position of the first residue on the strand
+	 * @param strandLength
+	 * @param firstWindow the first window start, a multiple of the window step
+	 * @param lastWindow
+	 * @return the hairpins, in window order
+	 */
+	List<Hairpin> scan(char[] residues, int regionStart, int strandLength, int firstWindow, int lastWindow){
+		this.residues = residues;
+		this.residueIndices = new int[residues.length];
+		for(int k=0; k<residues.length; k++){
+			residueIndices[k] = scoringMatrix.getResidueIndex(residues[k]);
+		}
+		this.regionStart = regionStart;
+		this.regionEnd = regionStart + residues.length;
+		this.firstRow = regionStart;
+		List<Hairpin> hairpins = new ArrayList<Hairpin>();
+		Set<Long> reportedEnds = new HashSet<Long>();
+		if( firstWindow >= lastWindow ){
+			return hairpins;
+		}
+		Arrays.fill(windowBest, 0);
+		int closingWindow = firstWindow;
+		int lastRow = getLastRow(lastWindow - 1 - (lastWindow - 1 - firstWindow) % windowStep, strandLength);
+		for(int i=firstRow; i<=lastRow; i++){
+			int bandEnd = scoreRow(i);
+			/*offer the row to the windows it lies in*/
+			int window = Math.max( firstWindow, roundUp(i - windowLength + 3 - firstWindow) + firstWindow );
+			for(; window<=i && window<lastWindow; window+=windowStep){
+				int limit = Math.min( bandEnd, Math.min(window + windowLength, strandLength) - 1 );
+				int offset = limit - i;
+				if( offset < 2 ){
+					continue;
+				}
+				int slot = (window / windowStep) % openWindows;
+				if( bestUpTo[offset] > windowBest[slot] ){
+					windowBest[slot] = bestUpTo[offset];
+					windowBestI[slot] = i;
+					windowBestJ[slot] = bestUpToJ[offset];
+				}
+			}
+			/*close the windows that have seen all their rows*/
+			while( closingWindow < lastWindow && getLastRow(closingWindow, strandLength) <= i ){
+				closeWindow(closingWindow, reportedEnds, hairpins);
+				closingWindow += windowStep;
+			}
+		}
+		while( closingWindow < lastWindow ){
+			closeWindow(closingWindow, reportedEnds, hairpins);
+			closingWindow += windowStep;
+		}
+		this.residues = null;
+		this.residueIndices = null;
+		return hairpins;
+	}
+
+	private int roundUp(int distance){
+		return distance <= 0 ? 0 : ((distance + windowStep - 1) / windowStep) * windowStep;
+	}
+
+	/*the last row that has cells in the given window*/
+	private int getLastRow(int window, int strandLength){
+		return Math.min(window + windowLength, strandLength) - 3;
+	}
+
+	/**
+	 * score the band cells (i, j) with i+2 <= j < i+windowLength, from the largest j down, and fill the
+	 * running best of the row
+	 * @return the last j of the band in this row
+	 */
+	private int scoreRow(int i){
+		int[] rowScores = scores[i % rows];
+		byte[] rowPaths = paths[i % rows];
+		/*the row of the previous residue of the forward strand, or null at the border*/
+		int[] previousScores = i > firstRow ? scores[(i-1) % rows] : null;
+		byte[] previousPaths = i > firstRow ? paths[(i-1) % rows] : null;
+		int bandEnd = Math.min(i + windowLength - 1, regionEnd - 1);
+		int indexX = residueIndices[i - regionStart];
+		int horScore = 0;	//score and path of the cell with the next residue of the reverse strand
+		int horPath = 0;
+		for(int j=bandEnd; j>=i+2; j--){
+			int offset = j - i;
+			int vertScore = 0;	//cell (i-1, j)
+			int vertPath = 0;
+			int diagScore = 0;	//cell (i-1, j+1)
+			if( previousScores != null ){
+				if( offset+1 < windowLength ){
+					vertScore = previousScores[offset+1];
+					vertPath = previousPaths[offset+1];
+				}
+				if( offset+2 < windowLength && j+1 < regionEnd ){
+					diagScore = previousScores[offset+2];
+				}
+			}
+			int horMoveScore = horScore + ((horPath==0 || horPath==1) ? gapExtension : gapOpen);
+			int vertMoveScore = vertScore + ((vertPath==0 || vertPath==2) ? gapExtension : gapOpen);
+			int diagMoveScore = diagScore + scoringMatrix.getIndexedScore(indexX, residueIndices[j - regionStart]);
+			int currentBestScore;
+			int currentBestMove;
+			if(diagMoveScore>=horMoveScore && diagMoveScore>=vertMoveScore){
+				currentBestScore = diagMoveScore;
+				currentBestMove = 3;
+			}
+			else if(horMoveScore>=vertMoveScore){
+				currentBestScore = horMoveScore;
+				currentBestMove = 2;
+			}
+			else{
+				currentBestScore = vertMoveScore;
+				currentBestMove = 1;
+			}
+			if(currentBestScore<0 && local){
+				currentBestScore = 0;
+			}
+			rowScores[offset] = currentBestScore;
+			rowPaths[offset] = (byte)currentBestMove;
+			horScore = currentBestScore;
+			horPath = currentBestMove;
+		}
+		/*running best over j, preferring the larger j on ties, as the window scan did*/
+		int best = 0;
+		int bestJ = -1;
+		bestUpTo[0] = bestUpTo[1] = 0;
+		for(int offset=2; offset<=bandEnd-i; offset++){
+			if( rowScores[offset] >= best && rowScores[offset] > 0 ){
+				best = rowScores[offset];
+				bestJ = i + offset;
+			}
+			bestUpTo[offset] = best;
+			bestUpToJ[offset] = bestJ;
+		}
+		return bandEnd;
+	}
+
+	/*score of a band cell; cells outside the band or the scored region are the zero border*/
+	private int getScore(int i, int j){
+		if( i < firstRow || j - i >= windowLength || j >= regionEnd ){
+			return 0;
+		}
+		return scores[i % rows][j - i];
+	}
+
+	private int getPath(int i, int j){
+		if( i < firstRow || j - i >= windowLength || j >= regionEnd ){
+			return 0;
+		}
+		return paths[i % rows][j - i];
+	}
+
+	private void closeWindow(int window, Set<Long> reportedEnds, List<Hairpin> hairpins){
+		int slot = (window / windowStep) % openWindows;
+		int bestScore = windowBest[slot];
+		windowBest[slot] = 0;
+		if( bestScore <= 0 || bestScore < minimumScore ){
+			return;
+		}
+		int i = windowBestI[slot];
+		int j = windowBestJ[slot];
+		if( reportedEnds.add( ((long)i << 32) | j ) ){
+			Hairpin hairpin = traceback(i, j, bestScore);
+			if( hairpin != null ){
+				hairpins.add(hairpin);
+			}
+		}
+	}
+
+	/**
+	 * trace back from the innermost pair (i, j) towards the outermost one
+	 * @return the hairpin, or null if it is too short or its relative score too low
+	 */
+	private Hairpin traceback(int innerI, int innerJ, int score){
+		StringBuilder forwardStrand = new StringBuilder();
+		StringBuilder reverseStrand = new StringBuilder();
+		StringBuilder midLine = new StringBuilder();
+		int i = innerI;
+		int j = innerJ;
+		while( getScore(i, j) > 0 ){
+			int localPath = getPath(i, j);
+			char forwardBase;
+			char reverseBase;
+			char midLineCharacter;
+			if(localPath==3){
+				forwardBase = residues[i - regionStart];
+				reverseBase = residues[j - regionStart];
+				midLineCharacter = characterMatrix.getAlignmentCharacter(forwardBase, reverseBase);
+				i--;
+				j++;
+			}
+			else if(localPath == 2){
+				reverseBase = residues[j - regionStart];
+				forwardBase = '-';
+				midLineCharacter = ' ';
+				j++;
+			}
+			else{
+				reverseBase = '-';
+				forwardBase = residues[i - regionStart];
+				midLineCharacter = ' ';
+				i--;
+			}
+			forwardStrand.append(forwardBase);
+			reverseStrand.append(reverseBase);
+			midLine.append(midLineCharacter);
+		}
+		int alignmentLength = forwardStrand.length();
+		double relativeScore = (double) score/alignmentLength;
+		if( relativeScore < minimumRelativeScore || alignmentLength < minimumAlignmentLength ){
+			return null;
+		}
+		return new Hairpin(i + 1, innerI, j - 1, innerJ, score,
+				forwardStrand.reverse(), reverseStrand.reverse(), midLine.reverse());
+	}
+
+	/**
+	 * merge the hairpins of consecutive scans. Hairpins that share their outermost or their innermost pair are
+	 * the same stem; only the best scoring one is kept, at the place the stem was first reported
+	 * @param scans the hairpins of each scan, in strand order
+	 * @return hairpins
+	 */
+	static List<Hairpin> removeDuplicates(List<List<Hairpin>> scans){
+		List<Hairpin> hairpins = new ArrayList<Hairpin>();
+		Map<Long, Integer> byStart = new HashMap<Long, Integer>();
+		Map<Long, Integer> byEnd = new HashMap<Long, Integer>();
+		for( List<Hairpin> scan : scans ){
+			for( Hairpin hairpin : scan ){
+				Integer index = byStart.get( hairpin.getStartKey() );
+				if( index == null ){
+					index = byEnd.get( hairpin.getEndKey() );
+				}
+				if( index == null ){
+					index = hairpins.size();
+					hairpins.add(hairpin);
+				}
+				else if( hairpin.score > hairpins.get(index).score ){
+					Hairpin replaced = hairpins.set(index, hairpin);
+					byStart.remove( replaced.getStartKey() );
+					byEnd.remove( replaced.getEndKey() );
+				}
+				else{
+					continue;
+				}
+				byStart.put( hairpin.getStartKey(), index );
+				byEnd.put( hairpin.getEndKey(), index );
+			}
+		}
+		return hairpins;
+	}
+
+	/**
+	 * a hairpin found on the strand: the top arm runs from outerI to innerI, the bottom arm from outerJ
+	 * down to innerJ and the loop lies in between
+	 */
+	static final class Hairpin {
+		final int outerI;
+		final int innerI;
+		final int outerJ;
+		final int innerJ;
+		final int score;
+		final StringBuilder topStrand;
+		final StringBuilder bottomStrand;
+		final StringBuilder middleLine;
+
+		private Hairpin(int outerI, int innerI, int outerJ, int innerJ, int score,
+				StringBuilder topStrand, StringBuilder bottomStrand, StringBuilder middleLine){
+			this.outerI = outerI;
+			this.innerI = innerI;
+			this.outerJ = outerJ;
+			this.innerJ = innerJ;
+			this.score = score;
+			this.topStrand = topStrand;
+			this.bottomStrand = bottomStrand;
+			this.middleLine = middleLine;
+		}
+
+		/**
+		 * a key identifying the outermost pair of the hairpin
+		 * @return startKey
+		 */
+		long getStartKey(){
+			return ((long)outerI << 32) | outerJ;
+		}
+
+		/**
+		 * a key identifying the innermost pair of the hairpin
+		 * @return endKey
+		 */
+		long getEndKey(){
+			return ((long)innerI << 32) | innerJ;
+		}
+	}
+}
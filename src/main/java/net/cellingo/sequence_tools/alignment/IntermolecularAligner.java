@@ -3,12 +3,17 @@
  */
 package net.cellingo.sequence_tools.alignment;
 
+import net.cellingo.sequence_tools.alphabets.NucleicAcidSequenceAlphabet;
 import net.cellingo.sequence_tools.annotation.SequenceCoordinates;
 import net.cellingo.sequence_tools.annotation.SequenceElement;
 import net.cellingo.sequence_tools.sequences.NucleicAcidSequence;
 import net.cellingo.sequence_tools.sequences.Sequence;
 import net.cellingo.sequence_tools.sequences.SequenceType;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -17,26 +22,43 @@ import java.util.List;
  * @version 1.0
  */
 public class IntermolecularAligner extends Aligner {
+	/*above this number of matrix cells the linear memory scoring is used*/
+	public static final long MAXIMUM_MATRIX_CELLS = 1L << 22;
 	private SmithWatermanMatrix swMatrix;
+	private LinearSpaceSmithWaterman linearScorer;
+	private StripedSmithWaterman stripedScorer;
+	private BandedSmithWaterman bandedScorer;
+	private ScoreOnlySmithWaterman scoreOnlyScorer;
+	private KmerSeedIndex seedIndex;
 	private AlignmentScoringMatrix scoringMatrix;
 	private AlignmentCharacterMatrix alignmentCharacterMatrix;
-	private List<Alignment> alignmentList;
+	private List<Alignment> currentResults;
+	private AlignmentResultSet currentResultSet;
+	private List<AlignmentScore> currentScores;
+	private int currentRow;
+	private int currentColumn;
 	private Sequence currentSequenceOne;
 	private Sequence currentSequenceTwo;
 	//private int currentSequenceOneLength;
 	//private int currentSequenceTwoLength;
+	private char[] strandOne;
+	/*the part of the pair that is aligned when seeding: start and end on strand one, start and end on sequence two*/
+	private int[] currentRegion;
 	private char[] charArrayOne;
 	private char[] charArrayTwo;
 	private int arrayOneLength;
 	private int arrayTwoLength;
 	private boolean currentStrandIsForward = true;
+	/*reused for the traceback when the alignments go into a result set*/
+	private final StringBuilder traceTopStrand = new StringBuilder();
+	private final StringBuilder traceBottomStrand = new StringBuilder();
+	private final StringBuilder traceMidLine = new StringBuilder();
 	boolean sequenceTwoReversed = false;
 
 	public IntermolecularAligner( AlignmentStrategy strategy, AlignmentAlgorithm algorithm, AlignmentOptions options ){
 		super(strategy, algorithm, options );
 		this.scoringMatrix = options.getAlignmentScoringMatrix();
 		this.alignmentCharacterMatrix = options.getAlignmentCharacterMatrix();
-		alignmentList = getAlignmentList();
 	}
 	
 	/**
@@ -44,87 +66,199 @@ public class IntermolecularAligner extends Aligner {
 	 */
 	public void doAlignment(){
 		/*first determine maxuimum size in sequence list*/
-		int maximumLength = findMaximumLength();
-		/*create the matrix to store scores and paths in*/
-		
-		swMatrix = new SmithWatermanMatrix(maximumLength);
+		prepare( findMaximumLength() );
+		seedIndex = createSeedIndex();
 		int listSize = getSequenceList().size();
-		if( this.getStrategy() == AlignmentStrategy.INTERMOLECULAR_FIRST_TO_ALL){
-			currentSequenceOne = getSequenceList().get(0);
-			
-			/*now loop the rest of the sequence collection and align*/
-			for(int count=1; count<listSize; count++){
-				currentSequenceTwo = getSequenceList().get(count);
-				doSingleAlignment();
+		AlignmentResultSet resultSet = getOptions().isColumnarResults() ? getAlignmentResultSet() : null;
+		List<AlignmentScore> scores = getOptions().isScoreOnlyAlignment() ? getAlignmentScoreList() : null;
+		for(int i=0; i<getRowCount(); i++){
+			/*align with the rest of the sequence collection, then do the same for the complement strand*/
+			alignRow(i, i+1, listSize, false, getAlignmentList(), resultSet, scores);
+			if( hasComplementStrand( getSequenceList().get(i) ) ){
+				alignRow(i, i+1, listSize, true, getAlignmentList(), resultSet, scores);
 			}
-			
-			if( getOptions().alsoComplementStrand() ){
-				SequenceType sequenceType = currentSequenceOne.getSequenceType();
-				if(sequenceType == SequenceType.DNA || sequenceType == SequenceType.RNA){
-					//cast to DNA to be able to reverse complement
-					NucleicAcidSequence sequenceOneDna = (NucleicAcidSequence) currentSequenceOne;
-					sequenceOneDna = sequenceOneDna.reverseComplement();
-					currentStrandIsForward = false;
-
-					/*now loop the rest of the sequence collection again and align*/
-					for(int count=1; count<listSize; count++){
-						currentSequenceTwo = getSequenceList().get(count);
-						doSingleAlignment();
-					}
-
-					//reset everything to original status
-//					sequenceOneDna.reverseComplement();
-					currentStrandIsForward = true;
-				}
+		}
+		if( scores != null ){
+			traceTopHits(scores, getAlignmentList(), resultSet);
+		}
+		release();
+	}
+
+	/**
+	 * rent the matrix to store scores and paths in, or create the scorer that keeps only two rows when it would be too large.
+	 * Score only alignment stores no paths: the top hits are traced back in linear space
+	 * @param maximumLength the length of the longest sequence that will be aligned
+	 */
+	void prepare(int maximumLength){
+		release();
+		linearScorer = null;
+		stripedScorer = null;
+		bandedScorer = null;
+		scoreOnlyScorer = null;
+		if( getOptions().isScoreOnlyAlignment() && !getOptions().isBandedAlignment() && getAlgorithm() != AlignmentAlgorithm.LOCAL_STRIPED ){
+			/*the scorer of the filter stage; the top hits are traced back with the linear space scorer below*/
+			scoreOnlyScorer = new ScoreOnlySmithWaterman( scoringMatrix, getOptions().getGapOpenPenalty(),
+					getOptions().getGapExtensionPenalty(), getAlgorithm() == AlignmentAlgorithm.LOCAL );
+		}
+		if( getOptions().isBandedAlignment() ){
+			bandedScorer = new BandedSmithWaterman( scoringMatrix, getOptions().getGapOpenPenalty(),
+					getOptions().getGapExtensionPenalty(),
+					getAlgorithm() == AlignmentAlgorithm.LOCAL || getAlgorithm() == AlignmentAlgorithm.LOCAL_STRIPED,
+					getOptions().getBandWidth(), getOptions().getXDrop() );
+		}
+		else if( getAlgorithm() == AlignmentAlgorithm.LOCAL_STRIPED ){
+			stripedScorer = new StripedSmithWaterman( scoringMatrix, getOptions().getGapOpenPenalty(),
+					getOptions().getGapExtensionPenalty() );
+		}
+		else if( scoreOnlyScorer != null || getOptions().isLinearMemoryAlignment() || (long)maximumLength * maximumLength > MAXIMUM_MATRIX_CELLS ){
+			linearScorer = new LinearSpaceSmithWaterman( scoringMatrix, getOptions().getGapOpenPenalty(),
+					getOptions().getGapExtensionPenalty(), getAlgorithm() == AlignmentAlgorithm.LOCAL );
+		}
+		else{
+			swMatrix = SmithWatermanMatrix.rent(maximumLength, maximumLength);
+		}
+	}
+
+	/**
+	 * hand the matrix back for reuse by the current thread; prepare rents it again
+	 */
+	void release(){
+		SmithWatermanMatrix.release(swMatrix);
+		swMatrix = null;
+	}
+
+	/**
+	 * index the k-mers of the sequences that are aligned with others, if seeding is switched on and all sequences
+	 * are nucleic acids
+	 * @return the seed index, or null
+	 */
+	KmerSeedIndex createSeedIndex(){
+		if( getOptions().getSeedLength() == 0 ){
+			return null;
+		}
+		for( Sequence sequence : getSequenceList() ){
+			if( sequence.getSequenceType() != SequenceType.DNA && sequence.getSequenceType() != SequenceType.RNA ){
+				return null;
 			}
+		}
+		/*the first sequence is never aligned with the ones before it*/
+		return new KmerSeedIndex( getSequenceList(), 1, getOptions().getSeedLength() );
+	}
 
+	/**
+	 * use an index built by another aligner over the same sequences
+	 * @param seedIndex
+	 */
+	void setSeedIndex(KmerSeedIndex seedIndex){
+		this.seedIndex = seedIndex;
+	}
 
+	/**
+	 * the number of sequences that are aligned with the ones following them in the list
+	 * @return rowCount
+	 */
+	int getRowCount(){
+		int listSize = getSequenceList().size();
+		if( getStrategy() == AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL ){
+			return listSize;
 		}
-		else if( this.getStrategy() == AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL ){
-			/*now loop the sequence collection and align*/
-			for(int i=0; i<listSize; i++){
-				currentSequenceOne = getSequenceList().get(i);
-				/*now loop the rest of the sequence collection and align*/
-				for(int j=i+1; j<listSize; j++){
-					currentSequenceTwo = getSequenceList().get(j);
-					doSingleAlignment();
-				}//countSecond
-				
-				
-				if( getOptions().alsoComplementStrand() ){
-					SequenceType sequenceType = currentSequenceOne.getSequenceType();
-					if(sequenceType == SequenceType.DNA || sequenceType == SequenceType.RNA){
-						//cast to DNA to be able to reverse complement
-						NucleicAcidSequence sequenceOneDna = (NucleicAcidSequence) currentSequenceOne;
-						sequenceOneDna = sequenceOneDna.reverseComplement();
-						currentStrandIsForward = false;
-
-						/*now loop the rest of the sequence collection again and align*/
-						for(int j=i+1; j<listSize; j++){
-							currentSequenceTwo = getSequenceList().get(j);
-							doSingleAlignment();
-						}//countSecond
-
-						//reset everything to original status
-//						sequenceOneDna.reverseComplement();
-						currentStrandIsForward = true;
-					}
-				}
-			}//countFirst
+		else if( getStrategy() == AlignmentStrategy.INTERMOLECULAR_FIRST_TO_ALL ){
+			return Math.min(1, listSize);
+		}
+		return 0;
+	}
+
+	/**
+	 * whether the complement strand of the given sequence is aligned as well
+	 * @param sequence
+	 * @return hasComplementStrand
+	 */
+	boolean hasComplementStrand(Sequence sequence){
+		SequenceType sequenceType = sequence.getSequenceType();
+		return getOptions().alsoComplementStrand() && (sequenceType == SequenceType.DNA || sequenceType == SequenceType.RNA);
+	}
+
+	/**
+	 * align one sequence of the list with a range of others. The alignments found are added to the given list
+	 * and passed to the alignment listener, if there is one. When a result set is given the alignments are added
+	 * to it instead of the list, and only materialised for the listener. When a score list is given the pairs are
+	 * only scored, and the scores reaching the minimum SW_SCORE are added to it instead. With a seed index, only
+	 * the pairs with enough seeds are aligned, in the region around them
+	 * @param row index of the first sequence
+	 * @param from index of the first sequence to align with (inclusive)
+	 * @param to index of the last sequence to align with (exclusive)
+	 * @param complementStrand whether to align the reverse complement of the first sequence
+	 * @param results the list to add the alignments to
+	 * @param resultSet the result set to add the alignments to, or null
+	 * @param scores the list to add the scores to for score only alignment, or null
+	 */
+	void alignRow(int row, int from, int to, boolean complementStrand, List<Alignment> results,
+			AlignmentResultSet resultSet, List<AlignmentScore> scores){
+		currentSequenceOne = getSequenceList().get(row);
+		currentStrandIsForward = !complementStrand;
+		currentResults = results;
+		currentResultSet = resultSet;
+		currentScores = scores;
+		currentRow = row;
+		strandOne = currentSequenceOne.getSequenceString().toCharArray();
+		if( complementStrand ){
+			NucleicAcidSequence.reverseComplementInPlace( strandOne, (NucleicAcidSequenceAlphabet)currentSequenceOne.getAlphabet() );
+		}
+		int[][] regions = null;
+		if( seedIndex != null ){
+			int minimumAlignmentLength = (int)getOptions().getAlignmentPropertiesMinimumValues().getPropertyValue(AlignmentProperty.ALIGNMENT_LENGTH);
+			regions = seedIndex.findRegions( strandOne, from, to, getOptions().getMinimumSeedHits(), minimumAlignmentLength, getSequenceList() );
+		}
+		for(int count=from; count<to; count++){
+			currentRegion = regions == null ? null : regions[count - from];
+			if( regions != null && currentRegion == null ){
+				continue;
+			}
+			currentSequenceTwo = getSequenceList().get(count);
+			currentColumn = count;
+			doSingleAlignment();
+		}
+		currentRegion = null;
+		currentResults = null;
+		currentResultSet = null;
+		currentScores = null;
+	}
+
+	/**
+	 * trace back the best scoring pairs of a score only alignment, as many as the top hits option asks for.
+	 * The pairs are aligned again in full, best first; pairs with equal scores keep their order
+	 * @param scores the scores found
+	 * @param results the list to add the alignments to
+	 * @param resultSet the result set to add the alignments to instead, or null
+	 */
+	void traceTopHits(List<AlignmentScore> scores, List<Alignment> results, AlignmentResultSet resultSet){
+		int topHits = Math.min( getOptions().getTopHits(), scores.size() );
+		if( topHits == 0 ){
+			return;
+		}
+		List<AlignmentScore> ranked = new ArrayList<AlignmentScore>(scores);
+		Collections.sort(ranked, new Comparator<AlignmentScore>(){
+			public int compare(AlignmentScore one, AlignmentScore two){
+				return Integer.compare(two.getScore(), one.getScore());
+			}
+		});
+		for(AlignmentScore hit : ranked.subList(0, topHits)){
+			alignRow(hit.getSequenceOneIndex(), hit.getSequenceTwoIndex(), hit.getSequenceTwoIndex()+1,
+					hit.isComplementStrand(), results, resultSet, null);
 		}
-			
-			
 	}
 
 	private void doSingleAlignment(){//int sequenceOneLength, int sequenceTwoLength
 		int minimumScore = (int)getOptions().getAlignmentPropertiesMinimumValues().getPropertyValue(AlignmentProperty.SW_SCORE);
 		
-		//currentSequenceOneLength = currentSequenceOne.getSequenceLength();
-		charArrayOne = currentSequenceOne.getSequenceString().toCharArray();
-		arrayOneLength = charArrayOne.length;
-		
 		//currentSequenceTwoLength = currentSequenceTwo.getSequenceLength();
+		charArrayOne = strandOne;
 		charArrayTwo = currentSequenceTwo.getSequenceString().toCharArray();
+		if( currentRegion != null ){
+			charArrayOne = Arrays.copyOfRange( strandOne, currentRegion[0], currentRegion[1] );
+			charArrayTwo = Arrays.copyOfRange( charArrayTwo, currentRegion[2], currentRegion[3] );
+		}
+		arrayOneLength = charArrayOne.length;
 		arrayTwoLength = charArrayTwo.length;
 		
 		if( (scoringMatrix.getMatrixType() == AlignmentMatrixType.RNA_STRUCTURE_ALIGNMENT) || (scoringMatrix.getMatrixType() == AlignmentMatrixType.STRUCTURE_WEIGHTED_ALIGNMENT)){
@@ -140,13 +274,39 @@ public class IntermolecularAligner extends Aligner {
 
 
 		//now calculate the scores and store in swMatrix
-		int[] returnData = calculateScores( );
+		int[] returnData;
+		if( currentScores != null && scoreOnlyScorer != null ){
+			int minimumAlignmentLength = (int)getOptions().getAlignmentPropertiesMinimumValues().getPropertyValue(AlignmentProperty.ALIGNMENT_LENGTH);
+			returnData = scoreOnlyScorer.calculateScores( charArrayOne, arrayOneLength-minimumAlignmentLength, charArrayTwo, arrayTwoLength );
+		}
+		else if( stripedScorer != null ){
+			returnData = stripedScorer.calculateScores( charArrayOne, charArrayTwo );
+		}
+		else if( bandedScorer != null ){
+			int minimumAlignmentLength = (int)getOptions().getAlignmentPropertiesMinimumValues().getPropertyValue(AlignmentProperty.ALIGNMENT_LENGTH);
+			returnData = bandedScorer.calculateScores( charArrayOne, arrayOneLength-minimumAlignmentLength, charArrayTwo, arrayTwoLength );
+		}
+		else if( linearScorer != null ){
+			int minimumAlignmentLength = (int)getOptions().getAlignmentPropertiesMinimumValues().getPropertyValue(AlignmentProperty.ALIGNMENT_LENGTH);
+			returnData = linearScorer.calculateScores( charArrayOne, arrayOneLength-minimumAlignmentLength, charArrayTwo, arrayTwoLength );
+		}
+		else{
+			returnData = calculateScores( );
+		}
 		int bestScore = returnData[0];
 		int bestX = returnData[1];
 		int bestY = returnData[2];
 //			System.out.println("wbs: " + windowBestScore + " x: " + bestX + " y: " + bestY);
-		if(bestScore >= minimumScore){	//only process with minimum score
-			doAlignmentTraceback(bestX,bestY,0);
+		if(bestScore >= minimumScore && currentScores != null){
+			int endOne = bestX + getRegionOffset(0);
+			if( !currentStrandIsForward ){
+				endOne = strandOne.length - endOne + 1;
+			}
+			currentScores.add( new AlignmentScore(currentRow, currentColumn, !currentStrandIsForward, bestScore,
+					endOne, bestY + getRegionOffset(2)) );
+		}
+		else if(bestScore >= minimumScore){	//only process with minimum score
+			doAlignmentTraceback(bestScore,bestX,bestY);
 		}
 		
 		if( sequenceTwoReversed ){//reverse back to normal
@@ -245,7 +405,7 @@ public class IntermolecularAligner extends Aligner {
 	 * This method takes care of creating the alignment 
 	 * of two pairing stretches of nucleic acid
 	 * */
-	private void doAlignmentTraceback(int bestX, int bestY, int position) {
+	private void doAlignmentTraceback(int bestScore, int bestX, int bestY) {
 		double minimumRelativeScore = getOptions().getAlignmentPropertiesMinimumValues().getPropertyValue(AlignmentProperty.RELATIVE_SCORE);
 		int minimumAlignmentLength = (int)getOptions().getAlignmentPropertiesMinimumValues().getPropertyValue(AlignmentProperty.ALIGNMENT_LENGTH);
 		int x = bestX;
@@ -262,33 +422,61 @@ public class IntermolecularAligner extends Aligner {
 		int localPath;
 		int alignmentLength;
 
-		StringBuilder forwardStrand = new StringBuilder();
-		StringBuilder reverseStrand = new StringBuilder();
-		StringBuilder midLine = new StringBuilder();
+		StringBuilder forwardStrand;
+		StringBuilder reverseStrand;
+		StringBuilder midLine;
+		if( currentResultSet != null ){
+			forwardStrand = traceTopStrand;
+			reverseStrand = traceBottomStrand;
+			midLine = traceMidLine;
+			forwardStrand.setLength(0);
+			reverseStrand.setLength(0);
+			midLine.setLength(0);
+		}
+		else{
+			forwardStrand = new StringBuilder();
+			reverseStrand = new StringBuilder();
+			midLine = new StringBuilder();
+		}
 		
-		alignmentScore = swMatrix.getScore(x,y);	
+		alignmentScore = bestScore;
 
-		while(swMatrix.getScore(x,y)>0){	//do traceback while score is above zero
+		if( stripedScorer != null ){
+			int[] start = stripedScorer.traceback(x, y, alignmentCharacterMatrix, forwardStrand, reverseStrand, midLine);
+			x = start[0];
+			y = start[1];
+		}
+		else if( bandedScorer != null ){
+			int[] start = bandedScorer.traceback(x, y, alignmentCharacterMatrix, forwardStrand, reverseStrand, midLine);
+			x = start[0];
+			y = start[1];
+		}
+		else if( linearScorer != null ){
+			int[] start = linearScorer.traceback(x, y, alignmentCharacterMatrix, forwardStrand, reverseStrand, midLine);
+			x = start[0];
+			y = start[1];
+		}
+		while(swMatrix != null && swMatrix.getScore(x,y)>0){	//do traceback while score is above zero
 			//get new localScore
 			localPath = swMatrix.getPath(x,y);
 			
-			if(localPath==3){	//diagonal path
-				forwardBase = charArrayOne[x];
-				reverseBase = charArrayTwo[y];
+			if(localPath==3){	//diagonal path; cell (x,y) scores residues x-1 and y-1
+				forwardBase = charArrayOne[x-1];
+				reverseBase = charArrayTwo[y-1];
 				//get midLine character
 				midLineCharacter = alignmentCharacterMatrix.getAlignmentCharacter(forwardBase, reverseBase);
 				x = x-1;
 				y = y-1;
 			}
 			else if(localPath == 2){	//vertical path
-				reverseBase = charArrayTwo[y];
+				reverseBase = charArrayTwo[y-1];
 				forwardBase = '-';
 				midLineCharacter = ' ';
 				y = y - 1;
 			}
 			else{	//(localPath == 1 || localPath == 0) horizontal path
 				reverseBase = '-';
-				forwardBase = charArrayOne[x];
+				forwardBase = charArrayOne[x-1];
 				midLineCharacter = ' ';
 				x = x - 1;
 			}
@@ -313,14 +501,16 @@ public class IntermolecularAligner extends Aligner {
 			/*get positions right*/
 			startPositionForwardStrand+=1;
 			startPositionReverseStrand+=1;
+			/*positions in the region are relative to its start*/
+			startPositionForwardStrand += getRegionOffset(0);
+			endPositionForwardStrand += getRegionOffset(0);
+			startPositionReverseStrand += getRegionOffset(2);
+			endPositionReverseStrand += getRegionOffset(2);
 			
-			if( (getStrategy() == AlignmentStrategy.INTRAMOLECULAR_SLIDING_WINDOW) || (getStrategy() == AlignmentStrategy.INTRAMOLECULAR) ){
-				if(! currentStrandIsForward){//reverse strand analysis with sliding window
-					startPositionForwardStrand = arrayOneLength - startPositionForwardStrand;
-					endPositionForwardStrand = arrayOneLength - endPositionForwardStrand;
-					startPositionReverseStrand = arrayOneLength - startPositionReverseStrand;
-					endPositionReverseStrand = arrayOneLength - endPositionReverseStrand;
-				}
+			if(! currentStrandIsForward){//the reverse complement was aligned; coordinates are on the forward strand
+				int complementStart = startPositionForwardStrand;
+				startPositionForwardStrand = strandOne.length - endPositionForwardStrand + 1;
+				endPositionForwardStrand = strandOne.length - complementStart + 1;
 			}
 			if(sequenceTwoReversed){
 				startPositionReverseStrand = arrayTwoLength - startPositionReverseStrand;
@@ -328,6 +518,16 @@ public class IntermolecularAligner extends Aligner {
 			}
 			
 
+			if( currentResultSet != null ){
+				currentResultSet.add( currentRow, currentColumn, !currentStrandIsForward, alignmentScore,
+						new int[]{startPositionForwardStrand, endPositionForwardStrand, startPositionReverseStrand, endPositionReverseStrand},
+						forwardStrand.reverse(), reverseStrand.reverse(), '-' );
+				if( getAlignmentListener() != null ){
+					getAlignmentListener().alignmentFound( currentResultSet.getAlignment( currentResultSet.size()-1 ) );
+				}
+				return;
+			}
+
 			/*create Alignment object*/
 			Alignment alignment = new Alignment();
 			
@@ -355,16 +555,23 @@ public class IntermolecularAligner extends Aligner {
 			alignment.setAlignmentScore( alignmentScore );
 			
 			/*add to alignment list*/
-			alignmentList.add( alignment );
+			currentResults.add( alignment );
+			if( getAlignmentListener() != null ){
+				getAlignmentListener().alignmentFound( alignment );
+			}
 
 		}//end if >=minimumRelativeScore and if >=minimum length
 	}//end alignment traceback
 
+	private int getRegionOffset(int index){
+		return currentRegion == null ? 0 : currentRegion[index];
+	}
+
 	/**
 	 * find the maximum length in the sequence collection
 	 * @return
 	 */
-	private int findMaximumLength(){
+	int findMaximumLength(){
 		int maximumLength = 0;
 		int length = 0;
 		for(Sequence sequence: getSequenceList() ){
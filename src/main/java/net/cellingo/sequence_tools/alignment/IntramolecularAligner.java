@@ -5,12 +5,14 @@ package net.cellingo.sequence_tools.alignment;
 
 import net.cellingo.sequence_tools.annotation.SequenceCoordinates;
 import net.cellingo.sequence_tools.annotation.SequenceElement;
-import net.cellingo.sequence_tools.sequences.IllegalSequenceOperation;
 import net.cellingo.sequence_tools.sequences.NucleicAcidSequence;
 import net.cellingo.sequence_tools.sequences.Sequence;
 import net.cellingo.sequence_tools.sequences.SequenceType;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * instances of this class do intramolecular alignments
@@ -18,11 +20,16 @@ import java.util.List;
  * @version 1.0
  */
 public class IntramolecularAligner extends Aligner {
+	/*with parallel alignment, strands longer than this are scanned in segments of this length*/
+	static final int DEFAULT_SEGMENT_LENGTH = 1 << 18;
+	private int segmentLength = DEFAULT_SEGMENT_LENGTH;
 	private SmithWatermanMatrix swMatrix;
 	private AlignmentScoringMatrix scoringMatrix;
 	private AlignmentCharacterMatrix alignmentCharacterMatrix;
 	private List<Alignment> alignmentList;
 	private Sequence currentSequence;
+	/*the strand the sliding window runs over: the current sequence or a reverse complement view on it*/
+	private Sequence currentStrand;
 	private int currentSequenceLength;
 	private char[] charArray;
 	private int arrayLength;
@@ -37,6 +44,17 @@ public class IntramolecularAligner extends Aligner {
 	}
 
 	
+	/**
+	 * the length of the segments long strands are scanned in with parallel alignment
+	 * @param segmentLength the length in residues
+	 */
+	void setSegmentLength(int segmentLength){
+		if( segmentLength < 1 ){
+			throw new IllegalArgumentException("invalid segment length: " + segmentLength);
+		}
+		this.segmentLength = segmentLength;
+	}
+
 	/**
 	 * overrides the void method of the Aligner base type
 	 */
@@ -45,27 +63,23 @@ public class IntramolecularAligner extends Aligner {
 		/*sliding window alignment*/
 		for( Sequence sequence : getSequenceList() ){
 			this.currentSequence = sequence;
+			this.currentStrand = sequence;
 			this.currentSequenceLength = currentSequence.getSequenceLength();
 			if( this.getStrategy() == AlignmentStrategy.INTRAMOLECULAR_SLIDING_WINDOW){
-				try {
-					doSlidingWindow();
-					
-					if( getOptions().alsoComplementStrand() ){
-						SequenceType sequenceType = currentSequence.getSequenceType();
-						if(sequenceType == SequenceType.DNA || sequenceType == SequenceType.RNA){
-							/*cast to DNA to be able to reverse complement*/
-							NucleicAcidSequence sequenceDna = (NucleicAcidSequence) currentSequence;
-							sequenceDna = sequenceDna.reverseComplement();
-							currentStrandIsForward = false;
-							doSlidingWindow();
-							/*reset everything to original status*/
-//							sequenceDna.reverseComplement();
-							currentStrandIsForward = true;
-						}
+				doSlidingWindow();
+				
+				if( getOptions().alsoComplementStrand() ){
+					SequenceType sequenceType = currentSequence.getSequenceType();
+					if(sequenceType == SequenceType.DNA || sequenceType == SequenceType.RNA){
+						/*cast to DNA to be able to reverse complement*/
+						NucleicAcidSequence sequenceDna = (NucleicAcidSequence) currentSequence;
+						currentStrand = sequenceDna.reverseComplementView();
+						currentStrandIsForward = false;
+						doSlidingWindow();
+						/*reset everything to original status*/
+						currentStrand = currentSequence;
+						currentStrandIsForward = true;
 					}
-					
-				} catch (IllegalSequenceOperation e) {
-					e.printStackTrace();
 				}
 			}
 			else if( this.getStrategy() == AlignmentStrategy.INTRAMOLECULAR ){
@@ -91,7 +105,7 @@ public class IntramolecularAligner extends Aligner {
 		arrayLength = charArray.length;
 
 		try{
-			swMatrix = new SmithWatermanMatrix(arrayLength);
+			swMatrix = SmithWatermanMatrix.rent(arrayLength, arrayLength);
 		}
 		catch (Exception e) {
 			throw new AlignmentException( "sequence too long for complete alignment: " + arrayLength );
@@ -106,58 +120,77 @@ public class IntramolecularAligner extends Aligner {
 			//check for duplicates in subsequent windows
 			doAlignmentTraceback(bestX,bestY,0);
 		}//end if >=minimum score
+		SmithWatermanMatrix.release(swMatrix);
+		swMatrix = null;
 	}
 	
 	/**
-	 * sliding window analysis
-	 * @throws IllegalSequenceOperation
+	 * sliding window analysis. The windows are not aligned one by one: a HairpinScanner scores the band of
+	 * pairs that fit in a window once and reports the best hairpin of each window. With parallel alignment
+	 * long strands are cut into segments that are scanned on the common ForkJoinPool
 	 */
-	private void doSlidingWindow() throws IllegalSequenceOperation{
-		
-		int minimumScore = (int)getOptions().getAlignmentPropertiesMinimumValues().getPropertyValue(AlignmentProperty.SW_SCORE);
-		//System.out.println(" minimum score:" + minimumScore);
-		int windowLength = getOptions().getWindowLength();
+	private void doSlidingWindow(){
 		int windowStep = getOptions().getWindowStep();
-		
-		swMatrix = new SmithWatermanMatrix(windowLength);
-
-		//int subsequenceLength;				//length of the sliding window subsequence
-		int position;						//start position of subSequence
-		int previousBestX = 0;				//used to filter for duplicates in subsequent windows
-		int previousWindowBestScore = 0;	//used to filter for duplicates in subsequent windows
-		
-		/*do the "sliding window" */
-		for(position=0; position<(currentSequenceLength-windowStep); position+=windowStep){
-			if((position+windowLength)<=currentSequenceLength){
-				charArray = currentSequence.getSubSequence(position, (position+windowLength)).getSequenceString().toCharArray();
-				arrayLength = charArray.length;
-			}
-			else{
-				charArray = currentSequence.getSubSequence(position, currentSequenceLength-1).getSequenceString().toCharArray();
-				arrayLength = charArray.length;
+		final int lastWindow = Math.max(0, currentSequenceLength - windowStep);
+		final List<List<HairpinScanner.Hairpin>> segments = new ArrayList<List<HairpinScanner.Hairpin>>();
+		if( getOptions().isParallelAlignment() && lastWindow > segmentLength ){
+			/*segments start at a window*/
+			final int windowsLength = ((segmentLength + windowStep - 1) / windowStep) * windowStep;
+			List<RecursiveAction> scans = new ArrayList<RecursiveAction>();
+			for(int first=0; first<lastWindow; first+=windowsLength){
+				final int firstWindow = first;
+				final int segment = segments.size();
+				segments.add(null);
+				scans.add( new RecursiveAction(){
+					@Override
+					protected void compute(){
+						HairpinScanner scanner = new HairpinScanner( getOptions(), getAlgorithm() );
+						segments.set(segment, scanSegment(scanner, firstWindow, (int)Math.min(lastWindow, (long)firstWindow + windowsLength)));
+					}
+				});
 			}
-			//System.out.println("arrayLength: " + arrayLength);
-			
-			//now calculate the scores and store in swMatrix
-			int[] returnData = calculateScores( );
-			int windowBestScore = returnData[0];
-			int bestX = returnData[1];
-			int bestY = returnData[2];
-			if(windowBestScore>=minimumScore){	//only process with minimum score
-				//check for duplicates in subsequent windows
-				if(windowBestScore!=previousWindowBestScore && bestX!=(previousBestX-windowStep)){	
-					//no duplicate; this new hairpin will be processed
-					//do trace-back through swMatrix to obtain the alignment
-					doAlignmentTraceback(bestX,bestY,position);
-				}
-				//reassign the "previous" values
-				previousWindowBestScore = windowBestScore;
-				previousBestX = bestX;
-			}//end if >=minimum score
-		}//end sliding this sequence
+			ForkJoinTask.invokeAll(scans);
+		}
+		else{
+			segments.add( scanSegment(new HairpinScanner( getOptions(), getAlgorithm() ), 0, lastWindow) );
+		}
+		/*overlapping windows and neighbouring segments may report the same stem*/
+		for( HairpinScanner.Hairpin hairpin : HairpinScanner.removeDuplicates(segments) ){
+			addHairpinAlignment( hairpin );
+		}
+	}
+
+	private List<HairpinScanner.Hairpin> scanSegment(HairpinScanner scanner, int firstWindow, int lastWindow){
+		int regionStart = scanner.getRegionStart(firstWindow);
+		int regionEnd = scanner.getRegionEnd(lastWindow, currentSequenceLength);
+		char[] residues = new char[regionEnd - regionStart];
+		currentStrand.getChars(regionStart, regionEnd, residues, 0);
+		return scanner.scan(residues, regionStart, currentSequenceLength, firstWindow, lastWindow);
+	}
+
+	/**
+	 * create the HairpinAlignment of a hairpin found on the current strand
+	 * @param hairpin
+	 */
+	private void addHairpinAlignment(HairpinScanner.Hairpin hairpin){
+		int startPositionForwardStrand = hairpin.outerI;
+		int endPositionForwardStrand = hairpin.innerI;
+		int startPositionReverseStrand = hairpin.outerJ;
+		int endPositionReverseStrand = hairpin.innerJ;
+		int loopStart = hairpin.innerI + 1;
+		int loopEnd = hairpin.innerJ - 1;
+		if(! currentStrandIsForward){//reverse strand analysis with sliding window
+			startPositionForwardStrand = currentSequenceLength - startPositionForwardStrand;
+			endPositionForwardStrand = currentSequenceLength - endPositionForwardStrand;
+			startPositionReverseStrand = currentSequenceLength - startPositionReverseStrand;
+			endPositionReverseStrand = currentSequenceLength - endPositionReverseStrand;
+			loopStart = currentSequenceLength - loopStart;
+			loopEnd = currentSequenceLength - loopEnd;
+		}
+		addHairpinAlignment(startPositionForwardStrand, endPositionForwardStrand, startPositionReverseStrand, endPositionReverseStrand,
+				loopStart, loopEnd, hairpin.score, hairpin.topStrand, hairpin.bottomStrand, hairpin.middleLine);
 	}
 
-	
 	/**
 	 * calculate the scores of the alignment. If seqTwoLengt == 0, a single-sequence intramolecular 
 	 * alignment is assumed
@@ -333,46 +366,49 @@ public class IntramolecularAligner extends Aligner {
 				endPositionReverseStrand = currentSequenceLength - endPositionReverseStrand;
 			}
 			
-			/*create Alignment object*/
-			HairpinAlignment alignment = new HairpinAlignment();
-			alignment.setOnComplement(!currentStrandIsForward);
-			alignment.setAligmentType( Alignment.ALIGNMENT_TYPE_INTRAMOLECULAR );
-			SequenceElement topParent = new SequenceElement(SequenceElement.getNextAutogeneratedId());
-			topParent.setParentSequence(currentSequence);
-			SequenceCoordinates top = new SequenceCoordinates(startPositionForwardStrand, endPositionForwardStrand, (!currentStrandIsForward), true );
-			topParent.addCoordinates(top);
-/*			topParent.setParentStart(startPositionForwardStrand);
-			topParent.setParentStop(endPositionForwardStrand);
-*/			alignment.setTopParent( topParent );
-
-			SequenceElement bottomParent = new SequenceElement(SequenceElement.getNextAutogeneratedId());
-			bottomParent.setParentSequence(currentSequence);
-			SequenceCoordinates bott = new SequenceCoordinates(startPositionReverseStrand, endPositionReverseStrand, (!currentStrandIsForward), true );
-			bottomParent.addCoordinates(bott);
-/*			bottomParent.setParentStart(startPositionReverseStrand);
-			bottomParent.setParentStop(endPositionReverseStrand);
-*/			alignment.setBottomParent( bottomParent );
-
-			alignment.setTopStrand( forwardStrand.reverse() );
-			alignment.setBottomStrand( reverseStrand.reverse() );
-			alignment.setMiddleLine( midLine.reverse() );
-
-			alignment.setAlignmentScore( alignmentScore );
-			
-			SequenceElement loop = new SequenceElement(SequenceElement.getNextAutogeneratedId());
-			loop.setParentSequence(currentSequence);
-			SequenceCoordinates lc = new SequenceCoordinates(loopSequenceStart+1, loopSequenceEnd, (!currentStrandIsForward), true );
-			loop.addCoordinates(lc);
-/*			loop.setParentStart(loopSequenceStart+1);
-			loop.setParentStop(loopSequenceEnd);
-*/			alignment.setHairpinLoop(loop);
-			
-			/*add to alignment list*/
-			alignmentList.add( alignment );
+			addHairpinAlignment(startPositionForwardStrand, endPositionForwardStrand, startPositionReverseStrand, endPositionReverseStrand,
+					loopSequenceStart+1, loopSequenceEnd, alignmentScore, forwardStrand.reverse(), reverseStrand.reverse(), midLine.reverse());
 			
 		}//end if >=minimumRelativeScore and if >=minimum length
 	}//end alignment traceback
 
-	
-	
+	/**
+	 * create a HairpinAlignment and add it to the alignment list
+	 * (positions are 0-based; the reverse strand starts at its outermost position)
+	 */
+	private void addHairpinAlignment(int startPositionForwardStrand, int endPositionForwardStrand, int startPositionReverseStrand,
+			int endPositionReverseStrand, int loopStart, int loopEnd, int alignmentScore,
+			StringBuilder topStrand, StringBuilder bottomStrand, StringBuilder middleLine){
+		/*create Alignment object*/
+		HairpinAlignment alignment = new HairpinAlignment();
+		alignment.setOnComplement(!currentStrandIsForward);
+		alignment.setAligmentType( Alignment.ALIGNMENT_TYPE_INTRAMOLECULAR );
+		SequenceElement topParent = new SequenceElement(SequenceElement.getNextAutogeneratedId());
+		topParent.setParentSequence(currentSequence);
+		SequenceCoordinates top = new SequenceCoordinates(startPositionForwardStrand, endPositionForwardStrand, (!currentStrandIsForward), true );
+		topParent.addCoordinates(top);
+		alignment.setTopParent( topParent );
+
+		SequenceElement bottomParent = new SequenceElement(SequenceElement.getNextAutogeneratedId());
+		bottomParent.setParentSequence(currentSequence);
+		SequenceCoordinates bott = new SequenceCoordinates(startPositionReverseStrand, endPositionReverseStrand, (!currentStrandIsForward), true );
+		bottomParent.addCoordinates(bott);
+		alignment.setBottomParent( bottomParent );
+
+		alignment.setTopStrand( topStrand );
+		alignment.setBottomStrand( bottomStrand );
+		alignment.setMiddleLine( middleLine );
+
+		alignment.setAlignmentScore( alignmentScore );
+		
+		SequenceElement loop = new SequenceElement(SequenceElement.getNextAutogeneratedId());
+		loop.setParentSequence(currentSequence);
+		SequenceCoordinates lc = new SequenceCoordinates(loopStart, loopEnd, (!currentStrandIsForward), true );
+		loop.addCoordinates(lc);
+		alignment.setHairpinLoop(loop);
+		
+		/*add to alignment list*/
+		alignmentList.add( alignment );
+	}
+
 }
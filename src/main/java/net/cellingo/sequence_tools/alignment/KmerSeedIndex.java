@@ -0,0 +1,274 @@
+package net.cellingo.sequence_tools.alignment;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.cellingo.sequence_tools.sequences.Sequence;
+
+/**
+ * index of the k-mers of a list of nucleic acid sequences, used to select the pairs worth aligning.
+ * The k-mers are packed two bits per base into a long and kept in an open addressing hash table; the
+ * occurrences of each k-mer are stored contiguously in primitive arrays. K-mers with other residues than
+ * A, C, G and T/U are skipped, as are k-mers occurring more often than MAXIMUM_OCCURRENCES times, which
+ * are mostly low complexity repeats.
+ * <p>
+ * For a query, findRegions counts the seeds (k-mers shared with the query) per target sequence, groups them
+ * by diagonal and returns the region around the best group. Seeds are exact matches, so the index is only
+ * useful with scoring matrices that reward identical residues. Instances are read only once built and can
+ * be shared between threads.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+final class KmerSeedIndex {
+	/*the longest seed that fits in a long*/
+	static final int MAXIMUM_SEED_LENGTH = 31;
+	/*k-mers occurring more often than this are not used as seeds*/
+	static final int MAXIMUM_OCCURRENCES = 1000;
+	/*seeds are grouped in bins of this many diagonals*/
+	static final int DIAGONAL_BIN = 32;
+	/*residues added around the seeds of a region*/
+	static final int REGION_MARGIN = 64;
+	private static final long EMPTY = -1L;
+
+	private final int seedLength;
+	private final long mask;
+	private final long[] keys;
+	private final int[] starts;
+	private final int[] entrySequence;
+	private final int[] entryPosition;
+
+	/**
+	 * index the k-mers of the sequences from firstSequence to the end of the list
+	 * @param sequences
+	 * @param firstSequence
+	 * @param seedLength
+	 */
+	KmerSeedIndex(List<Sequence> sequences, int firstSequence, int seedLength){
+		if( seedLength < 1 || seedLength > MAXIMUM_SEED_LENGTH ){
+			throw new IllegalArgumentException("seed length should be 1 to " + MAXIMUM_SEED_LENGTH + ": " + seedLength);
+		}
+		this.seedLength = seedLength;
+		this.mask = (1L << (2 * seedLength)) - 1;
+		long total = 0;
+		for(int s=firstSequence; s<sequences.size(); s++){
+			total += Math.max(0, sequences.get(s).getSequenceLength() - seedLength + 1);
+		}
+		if( total > (1 << 29) ){
+			throw new IllegalArgumentException("too many k-mers to index: " + total);
+		}
+		int capacity = Integer.highestOneBit( (int)Math.max(16, 2 * total) - 1 ) << 1;
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		int[] counts = new int[capacity + 1];
+		char[][] residues = new char[sequences.size()][];
+		/*count the occurrences per k-mer*/
+		for(int s=firstSequence; s<sequences.size(); s++){
+			residues[s] = sequences.get(s).getSequenceString().toCharArray();
+			long kmer = 0;
+			int valid = 0;
+			for(int p=0; p<residues[s].length; p++){
+				int code = encode(residues[s][p]);
+				if( code < 0 ){
+					valid = 0;
+					continue;
+				}
+				kmer = ((kmer << 2) | code) & mask;
+				if( ++valid >= seedLength ){
+					counts[insert(kmer)]++;
+				}
+			}
+		}
+		/*store the occurrences of each k-mer contiguously*/
+		starts = new int[capacity + 1];
+		int entries = 0;
+		for(int slot=0; slot<capacity; slot++){
+			starts[slot] = entries;
+			entries += counts[slot] <= MAXIMUM_OCCURRENCES ? counts[slot] : 0;
+		}
+		starts[capacity] = entries;
+		entrySequence = new int[entries];
+		entryPosition = new int[entries];
+		int[] cursor = Arrays.copyOf(starts, capacity);
+		for(int s=firstSequence; s<sequences.size(); s++){
+			long kmer = 0;
+			int valid = 0;
+			for(int p=0; p<residues[s].length; p++){
+				int code = encode(residues[s][p]);
+				if( code < 0 ){
+					valid = 0;
+					continue;
+				}
+				kmer = ((kmer << 2) | code) & mask;
+				if( ++valid >= seedLength ){
+					int slot = find(kmer);
+					if( cursor[slot] < starts[slot + 1] ){
+						entrySequence[cursor[slot]] = s;
+						entryPosition[cursor[slot]] = p - seedLength + 1;
+						cursor[slot]++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * the 2-bit code of a base, or -1 for other residues
+	 */
+	static int encode(char residue){
+		switch( residue ){
+		case 'A': case 'a':
+			return 0;
+		case 'C': case 'c':
+			return 1;
+		case 'G': case 'g':
+			return 2;
+		case 'T': case 't': case 'U': case 'u':
+			return 3;
+		default:
+			return -1;
+		}
+	}
+
+	private int slotOf(long kmer){
+		return (int)((kmer * 0x9E3779B97F4A7C15L) >>> 33) & (keys.length - 1);
+	}
+
+	private int insert(long kmer){
+		int slot = slotOf(kmer);
+		while( keys[slot] != EMPTY && keys[slot] != kmer ){
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		keys[slot] = kmer;
+		return slot;
+	}
+
+	private int find(long kmer){
+		int slot = slotOf(kmer);
+		while( keys[slot] != EMPTY ){
+			if( keys[slot] == kmer ){
+				return slot;
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * find the region worth aligning in each of the target sequences from to to. The seeds of the query
+	 * are grouped in bins of DIAGONAL_BIN diagonals; the best three neighbouring bins decide the region, which
+	 * spans their seeds plus REGION_MARGIN residues (and the extension at the end of the query)
+	 * @param query the residues of the query
+	 * @param from the first target (inclusive)
+	 * @param to the last target (exclusive)
+	 * @param minimumSeeds the number of seeds a region needs
+	 * @param queryExtension residues added to the end of the region on the query
+	 * @param sequences the sequence list the index was built for
+	 * @return per target {query start, query end, target start, target end}, or null if there are too few seeds;
+	 * targets that were not indexed have none
+	 */
+	int[][] findRegions(char[] query, int from, int to, int minimumSeeds, int queryExtension, List<Sequence> sequences){
+		int[][] regions = new int[Math.max(0, to - from)][];
+		if( from >= to ){
+			return regions;
+		}
+		/*collect the seeds*/
+		int[] hitTarget = new int[64];
+		int[] hitQuery = new int[64];
+		int[] hitPosition = new int[64];
+		int hits = 0;
+		int[] hitsPerTarget = new int[to - from + 1];
+		long kmer = 0;
+		int valid = 0;
+		for(int p=0; p<query.length; p++){
+			int code = encode(query[p]);
+			if( code < 0 ){
+				valid = 0;
+				continue;
+			}
+			kmer = ((kmer << 2) | code) & mask;
+			if( ++valid < seedLength ){
+				continue;
+			}
+			int slot = find(kmer);
+			if( slot < 0 ){
+				continue;
+			}
+			for(int e=starts[slot]; e<starts[slot + 1]; e++){
+				int target = entrySequence[e];
+				if( target < from || target >= to ){
+					continue;
+				}
+				if( hits == hitTarget.length ){
+					hitTarget = Arrays.copyOf(hitTarget, 2 * hits);
+					hitQuery = Arrays.copyOf(hitQuery, 2 * hits);
+					hitPosition = Arrays.copyOf(hitPosition, 2 * hits);
+				}
+				hitTarget[hits] = target - from;
+				hitQuery[hits] = p - seedLength + 1;
+				hitPosition[hits] = entryPosition[e];
+				hitsPerTarget[target - from + 1]++;
+				hits++;
+			}
+		}
+		/*group them per target*/
+		for(int t=0; t<to - from; t++){
+			hitsPerTarget[t + 1] += hitsPerTarget[t];
+		}
+		int[] byTarget = new int[hits];
+		int[] cursor = Arrays.copyOf(hitsPerTarget, to - from);
+		for(int h=0; h<hits; h++){
+			byTarget[cursor[hitTarget[h]]++] = h;
+		}
+		for(int t=0; t<to - from; t++){
+			int first = hitsPerTarget[t];
+			int count = hitsPerTarget[t + 1] - first;
+			if( count < minimumSeeds || count == 0 ){
+				continue;
+			}
+			/*sort the seeds of the target on diagonal bin; the bin is shifted to be positive*/
+			long[] binned = new long[count];
+			for(int i=0; i<count; i++){
+				int h = byTarget[first + i];
+				long bin = Math.floorDiv(hitPosition[h] - hitQuery[h], DIAGONAL_BIN) + (query.length / DIAGONAL_BIN + 2);
+				binned[i] = (bin << 32) | h;
+			}
+			Arrays.sort(binned);
+			/*the three neighbouring bins with the most seeds*/
+			int bestCount = 0;
+			int bestStart = 0;
+			int bestEnd = 0;
+			int windowStart = 0;
+			for(int i=0; i<count; i++){
+				while( (binned[i] >>> 32) - (binned[windowStart] >>> 32) > 2 ){
+					windowStart++;
+				}
+				if( i - windowStart + 1 > bestCount ){
+					bestCount = i - windowStart + 1;
+					bestStart = windowStart;
+					bestEnd = i;
+				}
+			}
+			if( bestCount < minimumSeeds ){
+				continue;
+			}
+			int queryStart = Integer.MAX_VALUE;
+			int queryEnd = 0;
+			int targetStart = Integer.MAX_VALUE;
+			int targetEnd = 0;
+			for(int i=bestStart; i<=bestEnd; i++){
+				int h = (int)binned[i];
+				queryStart = Math.min(queryStart, hitQuery[h]);
+				queryEnd = Math.max(queryEnd, hitQuery[h] + seedLength);
+				targetStart = Math.min(targetStart, hitPosition[h]);
+				targetEnd = Math.max(targetEnd, hitPosition[h] + seedLength);
+			}
+			int targetLength = sequences.get(from + t).getSequenceLength();
+			regions[t] = new int[]{
+					Math.max(0, queryStart - REGION_MARGIN),
+					(int)Math.min(query.length, (long)queryEnd + REGION_MARGIN + queryExtension),
+					Math.max(0, targetStart - REGION_MARGIN),
+					Math.min(targetLength, targetEnd + REGION_MARGIN)};
+		}
+		return regions;
+	}
+}
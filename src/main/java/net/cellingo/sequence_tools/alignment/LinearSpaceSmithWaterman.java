@@ -0,0 +1,367 @@
+package net.cellingo.sequence_tools.alignment;
+
+/**
+ * Smith/Waterman scoring in linear memory. The forward pass keeps only two rows of scores and paths; the traceback
+ * is a Hirschberg-style divide and conquer: a region is scored once more while every cell below its middle row
+ * carries the cell where its own traceback leaves the lower half. This splits the region into a lower part, which
+ * ends at that cell, and an upper part, which starts there; both are solved recursively until they are small enough
+ * to be traced in a full matrix. Because the recurrence and its tie-breaking are the same as those of the
+ * SmithWatermanMatrix based aligners, the alignment found is exactly the one the full matrix traceback would find.
+ * <p>
+ * Memory use is linear in the sequence lengths for the forward pass; the traceback keeps one saved row and one
+ * boundary column per recursion level. Instances are not thread safe.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+final class LinearSpaceSmithWaterman {
+	/*regions up to this number of cells are traced in a full matrix*/
+	private static final int FULL_MATRIX_CELLS = 1 << 16;
+	/*path codes, as used in SmithWatermanMatrix: 0=border; 1=from previous x; 2=from previous y; 3=diagonal*/
+	private static final byte PATH_BORDER = 0;
+	private static final byte PATH_X = 1;
+	private static final byte PATH_Y = 2;
+	private static final byte PATH_DIAGONAL = 3;
+
+	private final AlignmentScoringMatrix scoringMatrix;
+	private final int gapOpen;
+	private final int gapExtension;
+	private final boolean local;
+	private char[] sequenceOne;
+	private char[] sequenceTwo;
+	private AlignmentCharacterMatrix alignmentCharacterMatrix;
+	private StringBuilder topStrand;
+	private StringBuilder bottomStrand;
+	private StringBuilder midLine;
+
+	/**
+	 * construct with the scoring scheme
+	 * @param scoringMatrix the scores for aligned characters
+	 * @param gapOpen penalty for the first gap position
+	 * @param gapExtension penalty for following gap positions
+	 * @param local whether negative scores are reset to zero
+	 */
+	LinearSpaceSmithWaterman(AlignmentScoringMatrix scoringMatrix, int gapOpen, int gapExtension, boolean local){
+		this.scoringMatrix = scoringMatrix;
+		this.gapOpen = gapOpen;
+		this.gapExtension = gapExtension;
+		this.local = local;
+	}
+
+	/**
+	 * scores rows 1 to xEnd (exclusive) against columns 1 to yEnd (exclusive), keeping two rows in memory.
+	 * The sequences are kept for a following traceback.
+	 * @param sequenceOne the sequence along x
+	 * @param xEnd end of the scored rows
+	 * @param sequenceTwo the sequence along y
+	 * @param yEnd end of the scored columns
+	 * @return best score, x and y of the best cell
+	 */
+	int[] calculateScores(char[] sequenceOne, int xEnd, char[] sequenceTwo, int yEnd){
+		this.sequenceOne = sequenceOne;
+		this.sequenceTwo = sequenceTwo;
+		int[] best = new int[3];
+		if(yEnd < 2){
+			return best;
+		}
+		final int columns = yEnd - 1;
+		int[] previousScores = new int[columns + 1];
+		byte[] previousPaths = new byte[columns + 1];
+		int[] scores = new int[columns + 1];
+		byte[] paths = new byte[columns + 1];
+		for(int x = 1; x < xEnd; x++){
+			scoreRow(x, 1, columns, previousScores, previousPaths, scores, paths);
+			for(int j = 1; j <= columns; j++){
+				if(scores[j] > best[0]){
+					best[0] = scores[j];
+					best[1] = x;
+					best[2] = j;
+				}
+			}
+			int[] swapScores = previousScores;
+			previousScores = scores;
+			scores = swapScores;
+			byte[] swapPaths = previousPaths;
+			previousPaths = paths;
+			paths = swapPaths;
+		}
+		return best;
+	}
+
+	/**
+	 * does the traceback from the given cell of the last scored pair of sequences, appending the aligned characters
+	 * in traceback order (from the end to the start of the alignment)
+	 * @param bestX x of the end cell
+	 * @param bestY y of the end cell
+	 * @param alignmentCharacterMatrix the midline characters
+	 * @param topStrand receives the characters of sequence one
+	 * @param bottomStrand receives the characters of sequence two
+	 * @param midLine receives the midline characters
+	 * @return x and y of the cell where the traceback stopped
+	 */
+	int[] traceback(int bestX, int bestY, AlignmentCharacterMatrix alignmentCharacterMatrix,
+			StringBuilder topStrand, StringBuilder bottomStrand, StringBuilder midLine){
+		this.alignmentCharacterMatrix = alignmentCharacterMatrix;
+		this.topStrand = topStrand;
+		this.bottomStrand = bottomStrand;
+		this.midLine = midLine;
+		if(bestX < 1 || bestY < 1){
+			return new int[]{bestX, bestY};
+		}
+		/*the border row and column of the matrix hold zero scores and border paths*/
+		Region region = new Region(1, bestX, 1, bestY,
+				new int[bestY + 1], new byte[bestY + 1], 0, new int[bestX], new byte[bestX], 0);
+		long stop = trace(region);
+		return new int[]{decodeX(stop), decodeY(stop)};
+	}
+
+	/**
+	 * traces from the last cell of the region until a cell with score zero is reached or the region is left
+	 * @return the cell where tracing stopped
+	 */
+	private long trace(Region region){
+		final int rows = region.x1 - region.x0 + 1;
+		final int columns = region.y1 - region.y0 + 1;
+		if(rows == 1 || (long)rows * columns <= FULL_MATRIX_CELLS){
+			return traceInMatrix(region);
+		}
+		final int middle = (region.x0 + region.x1) >>> 1;
+		int[] previousScores = new int[columns + 1];
+		byte[] previousPaths = new byte[columns + 1];
+		int[] scores = new int[columns + 1];
+		byte[] paths = new byte[columns + 1];
+		long[] previousOrigins = new long[columns + 1];
+		long[] origins = new long[columns + 1];
+		int[] middleScores = null;
+		byte[] middlePaths = null;
+		System.arraycopy(region.topScores, region.topOffset, previousScores, 0, columns + 1);
+		System.arraycopy(region.topPaths, region.topOffset, previousPaths, 0, columns + 1);
+		for(int x = region.x0; x <= region.x1; x++){
+			scores[0] = region.leftScores[region.leftOffset + x - region.x0];
+			paths[0] = region.leftPaths[region.leftOffset + x - region.x0];
+			scoreRow(x, region.y0, columns, previousScores, previousPaths, scores, paths);
+			if(x == middle){
+				middleScores = scores.clone();
+				middlePaths = paths.clone();
+				for(int j = 0; j <= columns; j++){
+					origins[j] = encode(x, region.y0 - 1 + j);
+				}
+			}
+			else if(x > middle){
+				/*the cell where the traceback from here leaves the lower half, or stops in it*/
+				origins[0] = encode(x, region.y0 - 1);
+				for(int j = 1; j <= columns; j++){
+					if(scores[j] <= 0){
+						origins[j] = encode(x, region.y0 - 1 + j);
+					}
+					else if(paths[j] == PATH_DIAGONAL){
+						origins[j] = previousOrigins[j - 1];
+					}
+					else if(paths[j] == PATH_Y){
+						origins[j] = origins[j - 1];
+					}
+					else{
+						origins[j] = previousOrigins[j];
+					}
+				}
+			}
+			int[] swapScores = previousScores;
+			previousScores = scores;
+			scores = swapScores;
+			byte[] swapPaths = previousPaths;
+			previousPaths = paths;
+			paths = swapPaths;
+			long[] swapOrigins = previousOrigins;
+			previousOrigins = origins;
+			origins = swapOrigins;
+		}
+		final long origin = previousOrigins[columns];
+		final int originX = decodeX(origin);
+		final int originY = decodeY(origin);
+
+		/*the lower half only uses columns from where its traceback ends*/
+		final int lowerY0 = Math.max(region.y0, originY);
+		final int lowerRows = region.x1 - middle;
+		int[] leftScores;
+		byte[] leftPaths;
+		int leftOffset;
+		if(lowerY0 == region.y0){
+			leftScores = region.leftScores;
+			leftPaths = region.leftPaths;
+			leftOffset = region.leftOffset + middle + 1 - region.x0;
+		}
+		else{
+			leftScores = new int[lowerRows];
+			leftPaths = new byte[lowerRows];
+			leftOffset = 0;
+			scoreColumn(region, middle, middleScores, middlePaths, lowerY0 - 1, leftScores, leftPaths);
+		}
+		final int middleOffset = lowerY0 - region.y0;
+		Region lower = new Region(middle + 1, region.x1, lowerY0, region.y1,
+				middleScores, middlePaths, middleOffset, leftScores, leftPaths, leftOffset);
+		long stop = trace(lower);
+		if(originX != middle || originY < region.y0){
+			return stop;
+		}
+		Region upper = new Region(region.x0, middle, region.y0, originY,
+				region.topScores, region.topPaths, region.topOffset,
+				region.leftScores, region.leftPaths, region.leftOffset);
+		return trace(upper);
+	}
+
+	/**
+	 * scores the rows below the middle row of the region up to the given column and returns that column
+	 */
+	private void scoreColumn(Region region, int middle, int[] middleScores, byte[] middlePaths, int lastY,
+			int[] columnScores, byte[] columnPaths){
+		final int columns = lastY - region.y0 + 1;
+		int[] previousScores = new int[columns + 1];
+		byte[] previousPaths = new byte[columns + 1];
+		int[] scores = new int[columns + 1];
+		byte[] paths = new byte[columns + 1];
+		System.arraycopy(middleScores, 0, previousScores, 0, columns + 1);
+		System.arraycopy(middlePaths, 0, previousPaths, 0, columns + 1);
+		for(int x = middle + 1; x <= region.x1; x++){
+			scores[0] = region.leftScores[region.leftOffset + x - region.x0];
+			paths[0] = region.leftPaths[region.leftOffset + x - region.x0];
+			scoreRow(x, region.y0, columns, previousScores, previousPaths, scores, paths);
+			columnScores[x - middle - 1] = scores[columns];
+			columnPaths[x - middle - 1] = paths[columns];
+			int[] swapScores = previousScores;
+			previousScores = scores;
+			scores = swapScores;
+			byte[] swapPaths = previousPaths;
+			previousPaths = paths;
+			paths = swapPaths;
+		}
+	}
+
+	/**
+	 * scores and traces a small region in a full matrix
+	 */
+	private long traceInMatrix(Region region){
+		final int rows = region.x1 - region.x0 + 1;
+		final int columns = region.y1 - region.y0 + 1;
+		int[][] scores = new int[rows + 1][];
+		byte[][] paths = new byte[rows + 1][];
+		scores[0] = new int[columns + 1];
+		paths[0] = new byte[columns + 1];
+		System.arraycopy(region.topScores, region.topOffset, scores[0], 0, columns + 1);
+		System.arraycopy(region.topPaths, region.topOffset, paths[0], 0, columns + 1);
+		for(int i = 1; i <= rows; i++){
+			scores[i] = new int[columns + 1];
+			paths[i] = new byte[columns + 1];
+			scores[i][0] = region.leftScores[region.leftOffset + i - 1];
+			paths[i][0] = region.leftPaths[region.leftOffset + i - 1];
+			scoreRow(region.x0 + i - 1, region.y0, columns, scores[i - 1], paths[i - 1], scores[i], paths[i]);
+		}
+		int i = rows;
+		int j = columns;
+		while(i > 0 && j > 0 && scores[i][j] > 0){
+			int x = region.x0 + i - 1;
+			int y = region.y0 + j - 1;
+			byte path = paths[i][j];
+			if(path == PATH_DIAGONAL){
+				char forwardBase = sequenceOne[x - 1];
+				char reverseBase = sequenceTwo[y - 1];
+				append(forwardBase, reverseBase, alignmentCharacterMatrix.getAlignmentCharacter(forwardBase, reverseBase));
+				i--;
+				j--;
+			}
+			else if(path == PATH_Y){
+				append('-', sequenceTwo[y - 1], ' ');
+				j--;
+			}
+			else{
+				append(sequenceOne[x - 1], '-', ' ');
+				i--;
+			}
+		}
+		return encode(region.x0 + i - 1, region.y0 + j - 1);
+	}
+
+	private void append(char forwardBase, char reverseBase, char midLineCharacter){
+		topStrand.append(forwardBase);
+		bottomStrand.append(reverseBase);
+		midLine.append(midLineCharacter);
+	}
+
+	/**
+	 * scores one row; index 0 of the row arrays is the column left of firstY and must already be filled
+	 */
+	private void scoreRow(int x, int firstY, int columns, int[] previousScores, byte[] previousPaths,
+			int[] scores, byte[] paths){
+		final char baseX = sequenceOne[x - 1];
+		for(int j = 1; j <= columns; j++){
+			byte previousHorMove = paths[j - 1];
+			byte previousVertMove = previousPaths[j];
+			int horMoveScore = scores[j - 1]
+					+ ((previousHorMove == PATH_BORDER || previousHorMove == PATH_X) ? gapExtension : gapOpen);
+			int vertMoveScore = previousScores[j]
+					+ ((previousVertMove == PATH_BORDER || previousVertMove == PATH_Y) ? gapExtension : gapOpen);
+			int diagMoveScore = previousScores[j - 1]
+					+ scoringMatrix.getAlignmentScore(baseX, sequenceTwo[firstY + j - 2]);
+			int currentBestScore;
+			byte currentBestMove;
+			if(diagMoveScore >= horMoveScore && diagMoveScore >= vertMoveScore){
+				currentBestScore = diagMoveScore;
+				currentBestMove = PATH_DIAGONAL;
+			}
+			else if(horMoveScore >= vertMoveScore){
+				currentBestScore = horMoveScore;
+				currentBestMove = PATH_Y;
+			}
+			else{
+				currentBestScore = vertMoveScore;
+				currentBestMove = PATH_X;
+			}
+			if(currentBestScore < 0 && local){
+				currentBestScore = 0;
+			}
+			scores[j] = currentBestScore;
+			paths[j] = currentBestMove;
+		}
+	}
+
+	private static long encode(int x, int y){
+		return ((long)x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	private static int decodeX(long cell){
+		return (int)(cell >> 32);
+	}
+
+	private static int decodeY(long cell){
+		return (int)cell;
+	}
+
+	/**
+	 * a rectangle of the matrix, rows x0 to x1 and columns y0 to y1, together with the scores and paths of the row
+	 * above it (columns y0-1 to y1) and of the column left of it (rows x0 to x1)
+	 */
+	private static final class Region {
+		final int x0;
+		final int x1;
+		final int y0;
+		final int y1;
+		final int[] topScores;
+		final byte[] topPaths;
+		final int topOffset;
+		final int[] leftScores;
+		final byte[] leftPaths;
+		final int leftOffset;
+
+		Region(int x0, int x1, int y0, int y1, int[] topScores, byte[] topPaths, int topOffset,
+				int[] leftScores, byte[] leftPaths, int leftOffset){
+			this.x0 = x0;
+			this.x1 = x1;
+			this.y0 = y0;
+			this.y1 = y1;
+			this.topScores = topScores;
+			this.topPaths = topPaths;
+			this.topOffset = topOffset;
+			this.leftScores = leftScores;
+			this.leftPaths = leftPaths;
+			this.leftOffset = leftOffset;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ *
+ */
+package net.cellingo.sequence_tools.alignment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.cellingo.sequence_tools.sequences.Sequence;
+
+/**
+ * intermolecular aligner that distributes the pairs to align over a ForkJoinPool. It finds the same alignments
+ * as the {@link IntermolecularAligner}, in the same order; only the alignment IDs differ.
+ * <p>
+ * The pairs are cut into tiles: a tile aligns one sequence (or its complement strand) with a run of the sequences
+ * following it in the list, up to about the given number of matrix cells. The tiles are handed out largest
+ * first to one task per thread of the pool, so long sequences do not end up at the end of the run on a single
+ * thread. Each task aligns with its own IntermolecularAligner, so the scoring buffers are allocated once per
+ * thread and never shared; the matrices are rented from the worker threads.
+ * <p>
+ * Alignments are passed to the alignment listener as soon as they are found, from the worker threads; the
+ * alignment list is filled when all tiles are done. With score only alignment the tiles are only scored, and the
+ * top hits are traced back on the calling thread afterwards.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+public class ParallelIntermolecularAligner extends IntermolecularAligner {
+	/*the default number of matrix cells a single tile covers*/
+	public static final long DEFAULT_TILE_CELLS = 1L << 24;
+	private final ForkJoinPool pool;
+	private final long tileCells;
+
+	/**
+	 * construct using the common ForkJoinPool and the default tile size
+	 * @param strategy
+	 * @param algorithm
+	 * @param options
+	 */
+	public ParallelIntermolecularAligner( AlignmentStrategy strategy, AlignmentAlgorithm algorithm, AlignmentOptions options ){
+		this( strategy, algorithm, options, ForkJoinPool.commonPool(), DEFAULT_TILE_CELLS );
+	}
+
+	/**
+	 * construct with the pool to run on and the number of matrix cells a single tile covers
+	 * @param strategy
+	 * @param algorithm
+	 * @param options
+	 * @param pool
+	 * @param tileCells
+	 */
+	public ParallelIntermolecularAligner( AlignmentStrategy strategy, AlignmentAlgorithm algorithm, AlignmentOptions options,
+			ForkJoinPool pool, long tileCells ){
+		super(strategy, algorithm, options);
+		if( tileCells < 1 ){
+			throw new IllegalArgumentException("tile size should be positive: " + tileCells);
+		}
+		this.pool = pool;
+		this.tileCells = tileCells;
+	}
+
+	/**
+	 * overrides the doAlignment method of the IntermolecularAligner
+	 */
+	public void doAlignment(){
+		final int maximumLength = findMaximumLength();
+		final KmerSeedIndex seedIndex = createSeedIndex();
+		setSeedIndex( seedIndex );
+		/*tiles in output order*/
+		List<Tile> tiles = new ArrayList<Tile>();
+		for(int i=0; i<getRowCount(); i++){
+			addTiles(tiles, i, false);
+			if( hasComplementStrand( getSequenceList().get(i) ) ){
+				addTiles(tiles, i, true);
+			}
+		}
+		final List<Tile> schedule = new ArrayList<Tile>(tiles);
+		Collections.sort(schedule, new Comparator<Tile>(){
+			public int compare(Tile one, Tile two){
+				return Long.compare(two.cells, one.cells);
+			}
+		});
+		final AtomicInteger nextTile = new AtomicInteger();
+		final List<RecursiveAction> workers = new ArrayList<RecursiveAction>();
+		int workerCount = Math.min( pool.getParallelism(), schedule.size() );
+		for(int w=0; w<workerCount; w++){
+			workers.add( new RecursiveAction(){
+				@Override
+				protected void compute(){
+					IntermolecularAligner aligner = createWorker( maximumLength );
+					aligner.setSeedIndex( seedIndex );
+					int next;
+					while( (next = nextTile.getAndIncrement()) < schedule.size() ){
+						schedule.get(next).align( aligner );
+					}
+					aligner.release();
+				}
+			});
+		}
+		pool.invoke(new RecursiveAction(){
+			@Override
+			protected void compute(){
+				invokeAll(workers);
+			}
+		});
+		for(Tile tile : tiles){
+			getAlignmentList().addAll( tile.results );
+			if( tile.resultSet != null ){
+				getAlignmentResultSet().addAll( tile.resultSet );
+			}
+			getAlignmentScoreList().addAll( tile.scores );
+		}
+		if( getOptions().isScoreOnlyAlignment() ){
+			prepare( maximumLength );
+			traceTopHits( getAlignmentScoreList(), getAlignmentList(),
+					getOptions().isColumnarResults() ? getAlignmentResultSet() : null );
+			release();
+		}
+	}
+
+	/**
+	 * cut the pairs of the given row into tiles of about tileCells matrix cells
+	 */
+	private void addTiles(List<Tile> tiles, int row, boolean complementStrand){
+		List<Sequence> sequences = getSequenceList();
+		long rowLength = Math.max(1, sequences.get(row).getSequenceLength());
+		int from = row + 1;
+		long cells = 0;
+		for(int j=row+1; j<sequences.size(); j++){
+			cells += rowLength * sequences.get(j).getSequenceLength();
+			if( cells >= tileCells ){
+				tiles.add( new Tile(row, from, j+1, complementStrand, cells, createResultSet()) );
+				from = j + 1;
+				cells = 0;
+			}
+		}
+		if( from < sequences.size() ){
+			tiles.add( new Tile(row, from, sequences.size(), complementStrand, cells, createResultSet()) );
+		}
+	}
+
+	/**
+	 * the result set of a tile when the results are columnar
+	 */
+	private AlignmentResultSet createResultSet(){
+		if( getOptions().isColumnarResults() ){
+			return new AlignmentResultSet( getSequenceList(), getAlignmentCharacterMatrix() );
+		}
+		return null;
+	}
+
+	/**
+	 * create the aligner a single thread works with
+	 */
+	private IntermolecularAligner createWorker(int maximumLength){
+		IntermolecularAligner aligner = new IntermolecularAligner( getStrategy(), getAlgorithm(), getOptions() );
+		aligner.setSequences( getSequenceList() );
+		aligner.setAlignmentListener( getAlignmentListener() );
+		aligner.prepare( maximumLength );
+		return aligner;
+	}
+
+	/**
+	 * one sequence aligned with a run of the sequences following it
+	 */
+	private static final class Tile {
+		private final int row;
+		private final int from;
+		private final int to;
+		private final boolean complementStrand;
+		private final long cells;
+		private final List<Alignment> results = new ArrayList<Alignment>();
+		private final List<AlignmentScore> scores = new ArrayList<AlignmentScore>();
+		private final AlignmentResultSet resultSet;
+
+		private Tile(int row, int from, int to, boolean complementStrand, long cells, AlignmentResultSet resultSet){
+			this.row = row;
+			this.from = from;
+			this.to = to;
+			this.complementStrand = complementStrand;
+			this.cells = cells;
+			this.resultSet = resultSet;
+		}
+
+		private void align(IntermolecularAligner aligner){
+			aligner.alignRow(row, from, to, complementStrand, results, resultSet,
+					aligner.getOptions().isScoreOnlyAlignment() ? scores : null);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package net.cellingo.sequence_tools.alignment;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeSet;
+
+import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
+
+/**
+ * Maps residue characters to the rows and columns of a flat alignment matrix. The core characters of the alphabet
+ * get their core ordinal; other characters used by the matrix (ambiguity codes, stop symbols) follow in character
+ * order. All remaining characters share one last index, which holds the scores for unknown residues.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+final class ResidueIndex {
+	static final int TABLE_SIZE = 128;
+
+	private final byte[] indices = new byte[TABLE_SIZE];
+	private final int size;
+
+	/**
+	 * @param alphabet the alphabet giving the core ordinals; may be null
+	 * @param symbols all characters used by the matrix
+	 */
+	ResidueIndex(SequenceAlphabet alphabet, Collection<Character> symbols){
+		int coreSize = alphabet == null ? 0 : alphabet.getCoreAlphabetSize();
+		TreeSet<Character> others = new TreeSet<Character>();
+		for(char symbol : symbols){
+			if(symbol >= TABLE_SIZE){
+				throw new IllegalArgumentException("matrix symbol is not an ASCII character: " + symbol);
+			}
+			if(alphabet == null || alphabet.getCoreOrdinal(symbol) < 0){
+				others.add(symbol);
+			}
+		}
+		if(coreSize + others.size() >= Byte.MAX_VALUE){
+			throw new IllegalArgumentException("too many matrix symbols: " + (coreSize + others.size()));
+		}
+		this.size = coreSize + others.size() + 1;
+		Arrays.fill(indices, (byte)(size - 1));
+		for(int ordinal = 0; ordinal < coreSize; ordinal++){
+			char core = alphabet.getCoreCharacter(ordinal);
+			if(core < TABLE_SIZE){
+				indices[core] = (byte)ordinal;
+			}
+		}
+		int index = coreSize;
+		for(char other : others){
+			indices[other] = (byte)index++;
+		}
+	}
+
+	/**
+	 * the index of a residue; unknown residues get getUnknownIndex()
+	 */
+	int indexOf(char residue){
+		return residue < TABLE_SIZE ? indices[residue] : size - 1;
+	}
+
+	/**
+	 * the number of indices, including the one for unknown residues
+	 */
+	int size(){
+		return size;
+	}
+
+	int getUnknownIndex(){
+		return size - 1;
+	}
+}
@@ -0,0 +1,115 @@
+package net.cellingo.sequence_tools.alignment;
+
+/**
+ * Smith/Waterman scoring without traceback: only the best score and the cell where it is reached are determined.
+ * A single row is kept, which is overwritten from left to right while the cell above-left is carried in a local.
+ * Next to the score, the row holds the move of each cell, because the recurrence charges a gap opening or
+ * extension depending on the move into the neighbouring cell; no paths are stored beyond that.
+ * <p>
+ * The recurrence and its tie-breaking are those of the SmithWatermanMatrix based aligners, so the best score and
+ * its cell are the ones the full matrix would give. Instances are not thread safe.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+final class ScoreOnlySmithWaterman {
+	/*move codes, as used in SmithWatermanMatrix: 0=border; 1=from previous x; 2=from previous y; 3=diagonal*/
+	private static final byte MOVE_BORDER = 0;
+	private static final byte MOVE_X = 1;
+	private static final byte MOVE_Y = 2;
+	private static final byte MOVE_DIAGONAL = 3;
+
+	private final AlignmentScoringMatrix scoringMatrix;
+	private final int gapOpen;
+	private final int gapExtension;
+	private final boolean local;
+	private int[] scores = new int[0];
+	private byte[] moves = new byte[0];
+	private int[] columnIndices = new int[0];
+
+	/**
+	 * construct with the scoring scheme
+	 * @param scoringMatrix the scores for aligned characters
+	 * @param gapOpen penalty for the first gap position
+	 * @param gapExtension penalty for following gap positions
+	 * @param local whether negative scores are reset to zero
+	 */
+	ScoreOnlySmithWaterman(AlignmentScoringMatrix scoringMatrix, int gapOpen, int gapExtension, boolean local){
+		this.scoringMatrix = scoringMatrix;
+		this.gapOpen = gapOpen;
+		this.gapExtension = gapExtension;
+		this.local = local;
+	}
+
+	/**
+	 * scores rows 1 to xEnd (exclusive) against columns 1 to yEnd (exclusive)
+	 * @param sequenceOne the sequence along x
+	 * @param xEnd end of the scored rows
+	 * @param sequenceTwo the sequence along y
+	 * @param yEnd end of the scored columns
+	 * @return best score, x and y of the best cell
+	 */
+	int[] calculateScores(char[] sequenceOne, int xEnd, char[] sequenceTwo, int yEnd){
+		int[] best = new int[3];
+		final int columns = yEnd - 1;
+		if(xEnd < 2 || columns < 1){
+			return best;
+		}
+		if(scores.length < columns + 1){
+			scores = new int[columns + 1];
+			moves = new byte[columns + 1];
+			columnIndices = new int[columns + 1];
+		}
+		/*row 0 is the border*/
+		for(int y = 0; y <= columns; y++){
+			scores[y] = 0;
+			moves[y] = MOVE_BORDER;
+		}
+		for(int y = 1; y <= columns; y++){
+			columnIndices[y] = scoringMatrix.getResidueIndex(sequenceTwo[y - 1]);
+		}
+		int bestScore = 0;
+		for(int x = 1; x < xEnd; x++){
+			final int rowIndex = scoringMatrix.getResidueIndex(sequenceOne[x - 1]);
+			/*the border cell left of the row, and the cell above it*/
+			int left = 0;
+			byte leftMove = MOVE_BORDER;
+			int diagonal = 0;
+			for(int y = 1; y <= columns; y++){
+				int up = scores[y];
+				byte upMove = moves[y];
+				int horMoveScore = left + ((leftMove == MOVE_BORDER || leftMove == MOVE_X) ? gapExtension : gapOpen);
+				int vertMoveScore = up + ((upMove == MOVE_BORDER || upMove == MOVE_Y) ? gapExtension : gapOpen);
+				int diagMoveScore = diagonal + scoringMatrix.getIndexedScore(rowIndex, columnIndices[y]);
+				int currentBestScore;
+				byte currentBestMove;
+				if(diagMoveScore >= horMoveScore && diagMoveScore >= vertMoveScore){
+					currentBestScore = diagMoveScore;
+					currentBestMove = MOVE_DIAGONAL;
+				}
+				else if(horMoveScore >= vertMoveScore){
+					currentBestScore = horMoveScore;
+					currentBestMove = MOVE_Y;
+				}
+				else{
+					currentBestScore = vertMoveScore;
+					currentBestMove = MOVE_X;
+				}
+				if(currentBestScore < 0 && local){
+					currentBestScore = 0;
+				}
+				if(currentBestScore > bestScore){
+					bestScore = currentBestScore;
+					best[1] = x;
+					best[2] = y;
+				}
+				diagonal = up;
+				scores[y] = currentBestScore;
+				moves[y] = currentBestMove;
+				left = currentBestScore;
+				leftMove = currentBestMove;
+			}
+		}
+		best[0] = bestScore;
+		return best;
+	}
+}
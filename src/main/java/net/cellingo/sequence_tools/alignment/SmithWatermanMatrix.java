@@ -1,26 +1,31 @@
 package net.cellingo.sequence_tools.alignment;
 /**
- * This class constructs a three-dimensional matrix to be used in 
- * Smith/Waterman sequence alignment procedures.
+ * This class constructs a matrix to be used in Smith/Waterman sequence alignment procedures.
+ * Scores and paths are stored row by row in two flat arrays, which can be resized without
+ * reallocation as long as they are large enough, and grow geometrically otherwise.
+ * <p>
+ * Each thread keeps one matrix for reuse: aligners rent it, and release it when they are done.
+ * The aligners write every cell before reading it, except for row 0 and column 0, so
+ * resizing only clears those.
  * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
  * @version 1.0
  */
 public class SmithWatermanMatrix {
+	/*matrices larger than this are not kept for reuse*/
+	public static final long MAXIMUM_CACHED_CELLS = 1L << 22;
+	private static final ThreadLocal<SmithWatermanMatrix> CACHE = new ThreadLocal<SmithWatermanMatrix>();
 	private int xSize;
 	private int ySize;
-	private int[][][] alignMatrix;
-	
+	private int[] scores;
+	private byte[] paths;
+
 	//no-arg constructor; default matrix size is 250 * 250
 	public SmithWatermanMatrix(){
-		xSize = 250;
-		ySize = 250;
-		createMatrix();
+		this(250, 250);
 	}
 	//single-arg constructor; matrix size is size*size
 	public SmithWatermanMatrix(int size){
-		xSize = size;
-		ySize = size;
-		createMatrix();
+		this(size, size);
 	}
 	//two-arg constructor; matrix size is x*y
 	public SmithWatermanMatrix(int x, int y){
@@ -28,34 +33,97 @@ public class SmithWatermanMatrix {
 		ySize = y;
 		createMatrix();
 	}
+
+	/**
+	 * get a matrix of at least x*y cells: the one kept by the current thread if it is not in use,
+	 * or else a new one. Border cells are zero, other cells are undefined
+	 * @param x
+	 * @param y
+	 * @return matrix
+	 */
+	public static SmithWatermanMatrix rent(int x, int y){
+		SmithWatermanMatrix matrix = CACHE.get();
+		if( matrix == null ){
+			return new SmithWatermanMatrix(x, y);
+		}
+		CACHE.remove();
+		matrix.resize(x, y);
+		return matrix;
+	}
+
+	/**
+	 * hand a rented matrix back to the current thread for reuse
+	 * @param matrix
+	 */
+	public static void release(SmithWatermanMatrix matrix){
+		if( matrix != null && matrix.scores.length <= MAXIMUM_CACHED_CELLS ){
+			CACHE.set(matrix);
+		}
+	}
+
+	/**
+	 * change the dimensions to x*y and clear the border cells. The storage is only reallocated when
+	 * it is too small, at twice its size or more
+	 * @param x
+	 * @param y
+	 */
+	public void resize(int x, int y){
+		long cells = (long)x * y;
+		if( cells > Integer.MAX_VALUE ){
+			throw new IllegalArgumentException("matrix too large: " + x + " * " + y);
+		}
+		xSize = x;
+		ySize = y;
+		if( cells > scores.length ){
+			int capacity = (int)Math.min(Integer.MAX_VALUE - 8, Math.max(cells, 2L * scores.length));
+			scores = new int[capacity];
+			paths = new byte[capacity];
+		}
+		else{
+			reset();
+		}
+	}
+
+	/**
+	 * clear the border cells, row 0 and column 0
+	 */
+	public void reset(){
+		int rowZero = Math.min(ySize, scores.length);
+		for(int y=0; y<rowZero; y++){
+			scores[y] = 0;
+			paths[y] = 0;
+		}
+		for(int x=1; x<xSize; x++){
+			scores[x * ySize] = 0;
+			paths[x * ySize] = 0;
+		}
+	}
+
 	//method for getting score of certain position in matrix
 	public int getScore(int x, int y){
-		return alignMatrix[x][y][0];
+		return scores[x * ySize + y];
 	}
 	//method for setting score of certain position in matrix
 	public void setScore(int x, int y, int score){
-		alignMatrix[x][y][0] = score;
+		scores[x * ySize + y] = score;
 	}
-	//method for getting path-value at certain position in matrix 
+	//method for getting path-value at certain position in matrix
 	public int getPath(int x, int y){
-		return alignMatrix[x][y][1];
+		return paths[x * ySize + y];
 	}
 	//method for setting score of certain position in matrix
 	public void setPath(int x, int y, int path){
-		alignMatrix[x][y][1] = path;
+		paths[x * ySize + y] = (byte)path;
 	}
-	
+
 	private void createMatrix() {
-		alignMatrix = new int[xSize][ySize][2];
-		
-		for(int x=0; x<xSize; x++){ //first dimension of alignment matrix
-			for(int y=0; y<ySize; y++){	//second dimension of alignment matrix
-				//third dimension of alignment matrix:
-				//index [0] = score; index [1] = path
-				alignMatrix[x][y][0] = 0;
-				alignMatrix[x][y][1] = 0;
-			}
-		}
-	}
-	
+		long cells = (long)xSize * ySize;
+		if( cells > Integer.MAX_VALUE ){
+			throw new IllegalArgumentException("matrix too large: " + xSize + " * " + ySize);
+		}
+		//index [x * ySize + y]; new arrays are all zero
+		scores = new int[(int)cells];
+		paths = new byte[(int)cells];
+	}
+
 }
@@ -0,0 +1,475 @@
+package net.cellingo.sequence_tools.alignment;
+
+import java.util.Arrays;
+
+/**
+ * Striped Smith/Waterman local alignment with affine gaps (Farrar, 2007). The query (sequence one) is cut into
+ * segments that are laid out over a fixed number of lanes, so that query positions k*segmentLength + i of all
+ * lanes k are processed together; a query profile holds the scores of every query position against a target
+ * residue in the same layout. The vertical gap dependencies between lanes are resolved afterwards in the "lazy F"
+ * loop, which is rarely taken more than once.
+ * <p>
+ * The lanes are emulated with plain arrays. Scores are first kept in 16-bit lanes; when a column maximum comes
+ * close to saturation the target is scored again with 32-bit lanes. The query profile is reused for all targets
+ * that are aligned against the same query.
+ * <p>
+ * Gaps cost the gap open penalty for the first and the gap extension penalty for every following position
+ * (standard Gotoh scoring). Instances are not thread safe.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+final class StripedSmithWaterman {
+	private static final int LANES = 8;
+	/*low enough to never win a maximum, high enough to never overflow a sum*/
+	private static final int NEGATIVE_INFINITY = Short.MIN_VALUE / 2;
+	/*trace bits of the region traceback*/
+	private static final byte FROM_MATCH = 0;
+	private static final byte FROM_E = 1;
+	private static final byte FROM_F = 2;
+	private static final byte SOURCE_MASK = 3;
+	private static final byte E_EXTENDED = 4;
+	private static final byte F_EXTENDED = 8;
+
+	private final AlignmentScoringMatrix scoringMatrix;
+	private final int gapOpen;
+	private final int gapExtension;
+	private char[] query;
+	private int[] queryIndices;
+	private int segmentLength;
+	private short[][] shortProfiles;
+	private int[][] intProfiles;
+	private int maximumProfileScore;
+	private char[] target;
+
+	/**
+	 * construct with the scoring scheme
+	 * @param scoringMatrix the scores for aligned characters
+	 * @param gapOpen penalty for the first gap position
+	 * @param gapExtension penalty for following gap positions
+	 */
+	StripedSmithWaterman(AlignmentScoringMatrix scoringMatrix, int gapOpen, int gapExtension){
+		this.scoringMatrix = scoringMatrix;
+		this.gapOpen = gapOpen;
+		this.gapExtension = gapExtension;
+	}
+
+	/**
+	 * scores the query against the target. The query profile is kept as long as the query stays the same.
+	 * @param query the residues of sequence one
+	 * @param target the residues of sequence two
+	 * @return best score, and the (one-based) end positions in query and target of the best alignment
+	 */
+	int[] calculateScores(char[] query, char[] target){
+		setQuery(query);
+		this.target = target;
+		if(query.length == 0 || target.length == 0){
+			return new int[3];
+		}
+		int[] best = scoreShort();
+		if(best == null){
+			best = scoreInt();
+		}
+		return best;
+	}
+
+	private void setQuery(char[] query){
+		if(this.query != null && Arrays.equals(this.query, query)){
+			return;
+		}
+		this.query = query.clone();
+		this.queryIndices = new int[query.length];
+		for(int position = 0; position < query.length; position++){
+			queryIndices[position] = scoringMatrix.getResidueIndex(query[position]);
+		}
+		this.segmentLength = (query.length + LANES - 1) / LANES;
+		this.shortProfiles = new short[scoringMatrix.getIndexSize()][];
+		this.intProfiles = new int[scoringMatrix.getIndexSize()][];
+		this.maximumProfileScore = 0;
+	}
+
+	/**
+	 * the scores of all query positions against the residue, in striped order
+	 */
+	private int[] intProfile(char residue){
+		final int residueIndex = scoringMatrix.getResidueIndex(residue);
+		int[] profile = intProfiles[residueIndex];
+		if(profile == null){
+			profile = new int[segmentLength * LANES];
+			for(int i = 0; i < segmentLength; i++){
+				for(int k = 0; k < LANES; k++){
+					int position = k * segmentLength + i;
+					int score = NEGATIVE_INFINITY;
+					if(position < query.length){
+						score = scoringMatrix.getIndexedScore(queryIndices[position], residueIndex);
+						maximumProfileScore = Math.max(maximumProfileScore, score);
+					}
+					profile[i * LANES + k] = score;
+				}
+			}
+			intProfiles[residueIndex] = profile;
+		}
+		return profile;
+	}
+
+	/**
+	 * the score of a query position against the residue, looked up in the profile
+	 */
+	private int profileScore(int position, char residue){
+		return intProfile(residue)[(position % segmentLength) * LANES + position / segmentLength];
+	}
+
+	private short[] shortProfile(char residue){
+		final int residueIndex = scoringMatrix.getResidueIndex(residue);
+		short[] profile = shortProfiles[residueIndex];
+		if(profile == null){
+			int[] scores = intProfile(residue);
+			profile = new short[scores.length];
+			for(int i = 0; i < scores.length; i++){
+				profile[i] = (short)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scores[i]));
+			}
+			shortProfiles[residueIndex] = profile;
+		}
+		return profile;
+	}
+
+	/**
+	 * the striped kernel on 16-bit lanes
+	 * @return best score and end positions, or null when the scores saturate
+	 */
+	private int[] scoreShort(){
+		final int cells = segmentLength * LANES;
+		short[] scores = new short[cells];
+		short[] previousScores = new short[cells];
+		short[] horizontalGaps = new short[cells];
+		Arrays.fill(horizontalGaps, (short)NEGATIVE_INFINITY);
+		int[] diagonal = new int[LANES];
+		int[] verticalGaps = new int[LANES];
+		int[] best = new int[3];
+		for(int column = 0; column < target.length; column++){
+			final short[] profile = shortProfile(target[column]);
+			final int saturation = Short.MAX_VALUE - maximumProfileScore;
+			short[] swap = previousScores;
+			previousScores = scores;
+			scores = swap;
+			/*the diagonal of the first segment is the last segment of the previous column, shifted one lane*/
+			diagonal[0] = 0;
+			for(int k = 1; k < LANES; k++){
+				diagonal[k] = previousScores[(segmentLength - 1) * LANES + k - 1];
+			}
+			Arrays.fill(verticalGaps, NEGATIVE_INFINITY);
+			int columnMaximum = 0;
+			for(int i = 0; i < segmentLength; i++){
+				final int base = i * LANES;
+				for(int k = 0; k < LANES; k++){
+					int score = diagonal[k] + profile[base + k];
+					int horizontalGap = horizontalGaps[base + k];
+					if(horizontalGap > score){
+						score = horizontalGap;
+					}
+					if(verticalGaps[k] > score){
+						score = verticalGaps[k];
+					}
+					if(score < 0){
+						score = 0;
+					}
+					if(score > columnMaximum){
+						columnMaximum = score;
+					}
+					scores[base + k] = (short)score;
+					int opened = score + gapOpen;
+					horizontalGaps[base + k] = (short)Math.max(horizontalGap + gapExtension, opened);
+					verticalGaps[k] = Math.max(verticalGaps[k] + gapExtension, opened);
+					diagonal[k] = previousScores[base + k];
+				}
+			}
+			if(columnMaximum > saturation){
+				return null;
+			}
+			/*lazy F: carry the vertical gaps over the lane boundaries until they no longer improve a score*/
+			shiftLanes(verticalGaps);
+			int i = 0;
+			boolean improving = true;
+			while(improving){
+				final int base = i * LANES;
+				improving = false;
+				for(int k = 0; k < LANES; k++){
+					int score = scores[base + k];
+					if(verticalGaps[k] > score){
+						score = verticalGaps[k];
+						scores[base + k] = (short)score;
+						if(score + gapOpen > horizontalGaps[base + k]){
+							horizontalGaps[base + k] = (short)(score + gapOpen);
+						}
+						improving = true;
+					}
+					verticalGaps[k] += gapExtension;
+					if(verticalGaps[k] > score + gapOpen){
+						improving = true;
+					}
+				}
+				if(++i == segmentLength){
+					i = 0;
+					shiftLanes(verticalGaps);
+				}
+			}
+			if(columnMaximum > best[0]){
+				best[0] = columnMaximum;
+				best[1] = firstQueryPosition(scores, columnMaximum);
+				best[2] = column + 1;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * the striped kernel on 32-bit lanes
+	 * @return best score and end positions
+	 */
+	private int[] scoreInt(){
+		final int cells = segmentLength * LANES;
+		int[] scores = new int[cells];
+		int[] previousScores = new int[cells];
+		int[] horizontalGaps = new int[cells];
+		Arrays.fill(horizontalGaps, NEGATIVE_INFINITY);
+		int[] diagonal = new int[LANES];
+		int[] verticalGaps = new int[LANES];
+		int[] best = new int[3];
+		for(int column = 0; column < target.length; column++){
+			final int[] profile = intProfile(target[column]);
+			int[] swap = previousScores;
+			previousScores = scores;
+			scores = swap;
+			diagonal[0] = 0;
+			for(int k = 1; k < LANES; k++){
+				diagonal[k] = previousScores[(segmentLength - 1) * LANES + k - 1];
+			}
+			Arrays.fill(verticalGaps, NEGATIVE_INFINITY);
+			int columnMaximum = 0;
+			for(int i = 0; i < segmentLength; i++){
+				final int base = i * LANES;
+				for(int k = 0; k < LANES; k++){
+					int score = diagonal[k] + profile[base + k];
+					int horizontalGap = horizontalGaps[base + k];
+					if(horizontalGap > score){
+						score = horizontalGap;
+					}
+					if(verticalGaps[k] > score){
+						score = verticalGaps[k];
+					}
+					if(score < 0){
+						score = 0;
+					}
+					if(score > columnMaximum){
+						columnMaximum = score;
+					}
+					scores[base + k] = score;
+					int opened = score + gapOpen;
+					horizontalGaps[base + k] = Math.max(horizontalGap + gapExtension, opened);
+					verticalGaps[k] = Math.max(verticalGaps[k] + gapExtension, opened);
+					diagonal[k] = previousScores[base + k];
+				}
+			}
+			shiftLanes(verticalGaps);
+			int i = 0;
+			boolean improving = true;
+			while(improving){
+				final int base = i * LANES;
+				improving = false;
+				for(int k = 0; k < LANES; k++){
+					int score = scores[base + k];
+					if(verticalGaps[k] > score){
+						score = verticalGaps[k];
+						scores[base + k] = score;
+						if(score + gapOpen > horizontalGaps[base + k]){
+							horizontalGaps[base + k] = score + gapOpen;
+						}
+						improving = true;
+					}
+					verticalGaps[k] += gapExtension;
+					if(verticalGaps[k] > score + gapOpen){
+						improving = true;
+					}
+				}
+				if(++i == segmentLength){
+					i = 0;
+					shiftLanes(verticalGaps);
+				}
+			}
+			if(columnMaximum > best[0]){
+				best[0] = columnMaximum;
+				best[1] = firstQueryPosition(scores, columnMaximum);
+				best[2] = column + 1;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * moves every lane value one lane up; the first lane gets minus infinity
+	 */
+	private static void shiftLanes(int[] lanes){
+		for(int k = LANES - 1; k > 0; k--){
+			lanes[k] = lanes[k - 1];
+		}
+		lanes[0] = NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * the (one-based) first query position having the given score
+	 */
+	private int firstQueryPosition(short[] scores, int score){
+		int position = query.length;
+		for(int cell = 0; cell < scores.length; cell++){
+			if(scores[cell] == score){
+				position = Math.min(position, (cell % LANES) * segmentLength + cell / LANES);
+			}
+		}
+		return position + 1;
+	}
+
+	private int firstQueryPosition(int[] scores, int score){
+		int position = query.length;
+		for(int cell = 0; cell < scores.length; cell++){
+			if(scores[cell] == score){
+				position = Math.min(position, (cell % LANES) * segmentLength + cell / LANES);
+			}
+		}
+		return position + 1;
+	}
+
+	/**
+	 * does the traceback of the best alignment of the last scored target, appending the aligned characters in
+	 * traceback order (from the end to the start of the alignment). The start is found with an anchored pass
+	 * backwards from the end cell; the alignment itself is traced in a full matrix covering only its own span.
+	 * @param queryEnd one-based end in the query
+	 * @param targetEnd one-based end in the target
+	 * @param alignmentCharacterMatrix the midline characters
+	 * @param topStrand receives the characters of sequence one
+	 * @param bottomStrand receives the characters of sequence two
+	 * @param midLine receives the midline characters
+	 * @return query and target position just before the start of the alignment
+	 */
+	int[] traceback(int queryEnd, int targetEnd, AlignmentCharacterMatrix alignmentCharacterMatrix,
+			StringBuilder topStrand, StringBuilder bottomStrand, StringBuilder midLine){
+		int[] start = findStart(queryEnd, targetEnd);
+		final int rows = queryEnd - start[0];
+		final int columns = targetEnd - start[1];
+		final int queryOffset = start[0];
+		final int targetOffset = start[1];
+		byte[][] trace = new byte[rows + 1][columns + 1];
+		int[] scores = new int[columns + 1];
+		int[] verticalGaps = new int[columns + 1];
+		for(int j = 1; j <= columns; j++){
+			scores[j] = gapOpen + (j - 1) * gapExtension;
+			verticalGaps[j] = NEGATIVE_INFINITY;
+			trace[0][j] = (byte)(FROM_E | (j > 1 ? E_EXTENDED : 0));
+		}
+		for(int i = 1; i <= rows; i++){
+			int diagonal = scores[0];
+			scores[0] = gapOpen + (i - 1) * gapExtension;
+			trace[i][0] = (byte)(FROM_F | (i > 1 ? F_EXTENDED : 0));
+			int horizontalGap = NEGATIVE_INFINITY;
+			for(int j = 1; j <= columns; j++){
+				byte bits = 0;
+				int opened = scores[j - 1] + gapOpen;
+				if(horizontalGap + gapExtension > opened){
+					horizontalGap += gapExtension;
+					bits |= E_EXTENDED;
+				}
+				else{
+					horizontalGap = opened;
+				}
+				opened = scores[j] + gapOpen;
+				if(verticalGaps[j] + gapExtension > opened){
+					verticalGaps[j] += gapExtension;
+					bits |= F_EXTENDED;
+				}
+				else{
+					verticalGaps[j] = opened;
+				}
+				int match = diagonal + profileScore(queryOffset + i - 1, target[targetOffset + j - 1]);
+				diagonal = scores[j];
+				if(match >= horizontalGap && match >= verticalGaps[j]){
+					scores[j] = match;
+					bits |= FROM_MATCH;
+				}
+				else if(horizontalGap >= verticalGaps[j]){
+					scores[j] = horizontalGap;
+					bits |= FROM_E;
+				}
+				else{
+					scores[j] = verticalGaps[j];
+					bits |= FROM_F;
+				}
+				trace[i][j] = bits;
+			}
+		}
+		int i = rows;
+		int j = columns;
+		byte state = FROM_MATCH;
+		while(i > 0 || j > 0){
+			byte bits = trace[i][j];
+			if(state == FROM_MATCH){
+				state = (byte)(bits & SOURCE_MASK);
+				if(state == FROM_MATCH){
+					char forwardBase = query[queryOffset + i - 1];
+					char reverseBase = target[targetOffset + j - 1];
+					topStrand.append(forwardBase);
+					bottomStrand.append(reverseBase);
+					midLine.append(alignmentCharacterMatrix.getAlignmentCharacter(forwardBase, reverseBase));
+					i--;
+					j--;
+				}
+			}
+			else if(state == FROM_E){
+				topStrand.append('-');
+				bottomStrand.append(target[targetOffset + j - 1]);
+				midLine.append(' ');
+				state = (bits & E_EXTENDED) != 0 ? FROM_E : FROM_MATCH;
+				j--;
+			}
+			else{
+				topStrand.append(query[queryOffset + i - 1]);
+				bottomStrand.append('-');
+				midLine.append(' ');
+				state = (bits & F_EXTENDED) != 0 ? FROM_F : FROM_MATCH;
+				i--;
+			}
+		}
+		return start;
+	}
+
+	/**
+	 * scores backwards from the end cell, without resetting to zero, and returns the (zero-based) position before
+	 * the first cell where an aligned pair reaches the best score
+	 */
+	private int[] findStart(int queryEnd, int targetEnd){
+		int[] scores = new int[targetEnd + 1];
+		int[] verticalGaps = new int[targetEnd + 1];
+		scores[0] = 0;
+		for(int j = 1; j <= targetEnd; j++){
+			scores[j] = gapOpen + (j - 1) * gapExtension;
+			verticalGaps[j] = NEGATIVE_INFINITY;
+		}
+		int bestScore = Integer.MIN_VALUE;
+		int[] start = {queryEnd - 1, targetEnd - 1};
+		for(int i = 1; i <= queryEnd; i++){
+			int diagonal = scores[0];
+			scores[0] = gapOpen + (i - 1) * gapExtension;
+			int horizontalGap = NEGATIVE_INFINITY;
+			for(int j = 1; j <= targetEnd; j++){
+				horizontalGap = Math.max(horizontalGap + gapExtension, scores[j - 1] + gapOpen);
+				verticalGaps[j] = Math.max(verticalGaps[j] + gapExtension, scores[j] + gapOpen);
+				int match = diagonal + profileScore(queryEnd - i, target[targetEnd - j]);
+				diagonal = scores[j];
+				scores[j] = Math.max(match, Math.max(horizontalGap, verticalGaps[j]));
+				if(match > bestScore){
+					bestScore = match;
+					start[0] = queryEnd - i;
+					start[1] = targetEnd - j;
+				}
+			}
+		}
+		return start;
+	}
+}
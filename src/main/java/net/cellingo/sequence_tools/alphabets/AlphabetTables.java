@@ -0,0 +1,62 @@
+/**
+ *
+ */
+package net.cellingo.sequence_tools.alphabets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Immutable lookup tables compiled from the HashMap based definition of a SequenceAlphabet, indexed by ASCII
+ * character. Core characters get an ordinal (in alphabetical order) and a single-bit ambiguity mask; ambiguity codes
+ * get the OR of the bits of the core characters they match. For nucleic acids these are the familiar 4-bit IUPAC
+ * masks A=1, C=2, G=4, T/U=8 (N=15).
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+final class AlphabetTables {
+	static final int TABLE_SIZE = 128;
+
+	final boolean[] core = new boolean[TABLE_SIZE];
+	final boolean[] valid = new boolean[TABLE_SIZE];
+	final byte[] ordinals = new byte[TABLE_SIZE];
+	final int[] ambiguityMasks = new int[TABLE_SIZE];
+	final char[] coreCharacters;
+
+	AlphabetTables(Map<Character, AlphabetCharacter> coreAlphabet, Map<Character, HashSet<Character>> ambiguityCodes){
+		ArrayList<Character> sorted = new ArrayList<Character>(coreAlphabet.keySet());
+		Collections.sort(sorted);
+		if(sorted.size() > 31){
+			throw new IllegalStateException("alphabet too large for ambiguity masks: " + sorted.size());
+		}
+		coreCharacters = new char[sorted.size()];
+		Arrays.fill(ordinals, (byte)-1);
+		for(int ordinal = 0; ordinal < sorted.size(); ordinal++){
+			char character = sorted.get(ordinal);
+			coreCharacters[ordinal] = character;
+			if(character < TABLE_SIZE){
+				core[character] = true;
+				valid[character] = true;
+				ordinals[character] = (byte)ordinal;
+				ambiguityMasks[character] = 1 << ordinal;
+			}
+		}
+		for(Map.Entry<Character, HashSet<Character>> entry : ambiguityCodes.entrySet()){
+			char code = entry.getKey();
+			if(code >= TABLE_SIZE){
+				continue;
+			}
+			valid[code] = true;
+			int mask = 0;
+			for(char match : entry.getValue()){
+				if(match < TABLE_SIZE && core[match]){
+					mask |= 1 << ordinals[match];
+				}
+			}
+			ambiguityMasks[code] |= mask;
+		}
+	}
+}
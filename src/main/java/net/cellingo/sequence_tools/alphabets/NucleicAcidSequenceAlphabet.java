@@ -4,21 +4,52 @@
 package net.cellingo.sequence_tools.alphabets;
 
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
  * @version 1.0
  */
 public abstract class NucleicAcidSequenceAlphabet extends SequenceAlphabet {
-//	private HashMap<Character, Character> complementCodes;
+	private static final int COMPLEMENT_TABLE_SIZE = 128;
+	private volatile char[] complements;
 
 	/**
-	 * get the complement of a nucleotide
+	 * get the complement of a nucleotide; characters without complement are returned unchanged
 	 * @param nucleotide
 	 * @return complementNucleotide
 	 */
 	public char getNucleotideComplement(char nucleotide){
-		return getComplementCodes().get(nucleotide);
+		return nucleotide < COMPLEMENT_TABLE_SIZE ? getComplements()[nucleotide] : nucleotide;
+	}
+
+	/**
+	 * get a copy of the complement lookup table, indexed by (ASCII) character. Characters without complement,
+	 * such as the gap character, are their own complement.
+	 * @return complementTable
+	 */
+	public char[] getComplementTable(){
+		return getComplements().clone();
+	}
+
+	/**
+	 * the complement codes compiled into a table on first use
+	 */
+	private char[] getComplements(){
+		char[] table = complements;
+		if(table == null){
+			table = new char[COMPLEMENT_TABLE_SIZE];
+			for(char c = 0; c < COMPLEMENT_TABLE_SIZE; c++){
+				table[c] = c;
+			}
+			for(Map.Entry<Character, Character> entry : getComplementCodes().entrySet()){
+				if(entry.getKey() < COMPLEMENT_TABLE_SIZE){
+					table[entry.getKey()] = entry.getValue();
+				}
+			}
+			complements = table;
+		}
+		return table;
 	}
 	/**
 	 * get the hashmap of complement codes
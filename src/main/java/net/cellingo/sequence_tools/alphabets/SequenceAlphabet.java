@@ -17,11 +17,34 @@ public class SequenceAlphabet{
 	public static final SequenceAlphabet ALPHABET_PROTEIN = new ProteinSequenceAlphabet();
 	public static final SequenceAlphabet ALPHABET_STRUCTURE = new StructureSequenceAlphabet();
 
+	/*bits of the alphabet masks, one per standard alphabet*/
+	public static final int DNA_MASK = 1;
+	public static final int RNA_MASK = 2;
+	public static final int PROTEIN_MASK = 4;
+	public static final int STRUCTURE_MASK = 8;
+	public static final int ALL_ALPHABETS_MASK = DNA_MASK | RNA_MASK | PROTEIN_MASK | STRUCTURE_MASK;
+	/*for every ASCII character (either case), the standard alphabets it is valid for*/
+	private static final byte[] ALPHABET_MASKS = new byte[128];
+
+	static{
+		for(char c = 0; c < 128; c++){
+			char upper = Character.toUpperCase(c);
+			int mask = 0;
+			if(ALPHABET_DNA.isValidAlphabetCharacter(upper)) mask |= DNA_MASK;
+			if(ALPHABET_RNA.isValidAlphabetCharacter(upper)) mask |= RNA_MASK;
+			if(ALPHABET_PROTEIN.isValidAlphabetCharacter(upper)) mask |= PROTEIN_MASK;
+			if(ALPHABET_STRUCTURE.isValidAlphabetCharacter(upper)) mask |= STRUCTURE_MASK;
+			ALPHABET_MASKS[c] = (byte)mask;
+		}
+	}
+
 	private SequenceType sequenceType;
 	private char gapCharacter;
 	private char wildCardCharacter;
 	private HashMap<Character, AlphabetCharacter> alphabetCharacterObjects;
 	private HashMap<Character, HashSet<Character>> ambiguousCodes;
+	/*compiled from the maps above on first use*/
+	private volatile AlphabetTables tables;
 	
 	public SequenceAlphabet(){
 		this.alphabetCharacterObjects = new HashMap<Character, AlphabetCharacter>();
@@ -77,14 +100,79 @@ public class SequenceAlphabet{
 	 * @throws IllegalCharacterException 
 	 */
 	public boolean checkAmbiguousCodeMatch(char nucleotide, char ambiguityCode) throws IllegalCharacterException{
-		if(ambiguousCodes.containsKey(nucleotide)){
-			//System.out.println("character is present");
-			return ambiguousCodes.get(ambiguityCode).contains(nucleotide);
+		if(nucleotide < AlphabetTables.TABLE_SIZE && ambiguousCodes.containsKey(nucleotide)){
+			return isAmbiguousMatch(nucleotide, ambiguityCode);
 		}
 		else{
 			throw new IllegalCharacterException("ERROR: character not present in this alphabet");
 		}
 	}
+
+	/**
+	 * check whether the given core character is one of the characters represented by the given ambiguity code
+	 * (or is that character itself). Returns false for characters that are not part of this alphabet.
+	 * @param character
+	 * @param ambiguityCode
+	 * @return matches
+	 */
+	public boolean isAmbiguousMatch(char character, char ambiguityCode){
+		if(character >= AlphabetTables.TABLE_SIZE || ambiguityCode >= AlphabetTables.TABLE_SIZE){
+			return false;
+		}
+		AlphabetTables t = getTables();
+		return t.core[character] && (t.ambiguityMasks[character] & t.ambiguityMasks[ambiguityCode]) != 0;
+	}
+
+	/**
+	 * get the ambiguity mask of a character: a bit set for every core character it represents, where core
+	 * character with ordinal i (see getCoreOrdinal) has bit 1 &lt;&lt; i. For nucleic acids these are 4-bit masks
+	 * (A=1, C=2, G=4, T/U=8). Returns 0 for characters that are not part of this alphabet.
+	 * @param character
+	 * @return ambiguityMask
+	 */
+	public int getAmbiguityMask(char character){
+		return character < AlphabetTables.TABLE_SIZE ? getTables().ambiguityMasks[character] : 0;
+	}
+
+	/**
+	 * get the position of a core character in the (alphabetically ordered) core alphabet, or -1 for any other
+	 * character
+	 * @param character
+	 * @return ordinal
+	 */
+	public int getCoreOrdinal(char character){
+		return character < AlphabetTables.TABLE_SIZE ? getTables().ordinals[character] : -1;
+	}
+
+	/**
+	 * get the core character with the given ordinal
+	 * @param ordinal
+	 * @return character
+	 */
+	public char getCoreCharacter(int ordinal){
+		return getTables().coreCharacters[ordinal];
+	}
+
+	/**
+	 * get the number of characters in the core alphabet
+	 * @return size
+	 */
+	public int getCoreAlphabetSize(){
+		return getTables().coreCharacters.length;
+	}
+
+	/**
+	 * get the lookup tables, compiling them on first use. The alphabet maps should not be modified after that.
+	 * @return tables
+	 */
+	private AlphabetTables getTables(){
+		AlphabetTables t = tables;
+		if(t == null){
+			t = new AlphabetTables(alphabetCharacterObjects, ambiguousCodes);
+			tables = t;
+		}
+		return t;
+	}
 	
 	/**
 	 * get the gap character for gapped sequences
@@ -127,10 +215,7 @@ public class SequenceAlphabet{
 	 * @return existence
 	 */
 	public boolean isValidAlphabetCharacter(char character){
-		if(alphabetCharacterObjects.containsKey(character) || ambiguousCodes.containsKey(character)){
-			return true;
-		}
-		return false;
+		return character < AlphabetTables.TABLE_SIZE && getTables().valid[character];
 	}
 	
 	/**
@@ -139,10 +224,7 @@ public class SequenceAlphabet{
 	 * @return existence
 	 */
 	public boolean isCoreCharacter(char character){
-		if(alphabetCharacterObjects.containsKey(character)){
-			return true;
-		}
-		return false;
+		return character < AlphabetTables.TABLE_SIZE && getTables().core[character];
 	}
 	/**
 	 * get the set of matching sequence characters for this ambiguous
@@ -153,6 +235,56 @@ public class SequenceAlphabet{
 	public HashSet<Character> getAmbiguousMatches(char ambiguousCharacter){
 		return ambiguousCodes.get(ambiguousCharacter);
 	}
+	/**
+	 * get the standard alphabets (as mask of DNA_MASK, RNA_MASK, PROTEIN_MASK and STRUCTURE_MASK) this
+	 * character is valid for, regardless of case
+	 * @param character
+	 * @return alphabetMask
+	 */
+	public static int getAlphabetMask(char character){
+		return character < 128 ? ALPHABET_MASKS[character] : 0;
+	}
+
+	/**
+	 * get the standard alphabets (as mask of DNA_MASK, RNA_MASK, PROTEIN_MASK and STRUCTURE_MASK) all
+	 * characters of the given residues are valid for, regardless of case. This is a single pass over the residues
+	 * that stops as soon as no alphabet is left.
+	 * @param residues
+	 * @return alphabetMask
+	 */
+	public static int getAlphabetMask(CharSequence residues){
+		final byte[] masks = ALPHABET_MASKS;
+		final int length = residues.length();
+		int mask = ALL_ALPHABETS_MASK;
+		for(int i = 0; i < length && mask != 0; i++){
+			char character = residues.charAt(i);
+			mask &= character < 128 ? masks[character] : 0;
+		}
+		return mask;
+	}
+
+	/**
+	 * get the sequence type for an alphabet mask; when the residues are valid for more than one alphabet, the order
+	 * of preference is DNA, protein, RNA, structure. Returns null for an empty mask.
+	 * @param alphabetMask
+	 * @return sequenceType
+	 */
+	public static SequenceType getSequenceType(int alphabetMask){
+		if((alphabetMask & (DNA_MASK | PROTEIN_MASK)) == (DNA_MASK | PROTEIN_MASK)){
+			return SequenceType.DNA;
+		}
+		else if((alphabetMask & PROTEIN_MASK) != 0){
+			return SequenceType.PROTEIN;
+		}
+		else if((alphabetMask & RNA_MASK) != 0){
+			return SequenceType.RNA;
+		}
+		else if((alphabetMask & STRUCTURE_MASK) != 0){
+			return SequenceType.STRUCTURE;
+		}
+		return null;
+	}
+
 	/**
 	 * static method to get the correct sequence alphabet for the given type of sequence
 	 * @param sequenceType
@@ -6,6 +6,7 @@ package net.cellingo.sequence_tools.annotation;
 import net.cellingo.sequence_tools.sequences.Sequence;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An annotated sequence object
@@ -22,6 +23,9 @@ public class AnnotatedSequence implements SequenceObject {
 	 * and the secondary key is the sequenceElementID
 	 */
     protected HashMap<SequenceElementType, HashMap<String, SequenceElement>> sequenceElements;
+    /*interval trees over the elements of each type, built when first needed (also by concurrent readers) and dropped
+    when the type changes*/
+    private ConcurrentHashMap<SequenceElementType, ElementIntervalTree> intervalTrees;
 
     /**
      * default, no-arg constructor
@@ -37,6 +41,7 @@ public class AnnotatedSequence implements SequenceObject {
         this.sequenceObjectType = objectType;
         this.moleculeType = MoleculeType.UNKNOWN;
         this.sequenceElements = new HashMap<>();
+        this.intervalTrees = new ConcurrentHashMap<>();
     }
 
     /**
@@ -48,6 +53,7 @@ public class AnnotatedSequence implements SequenceObject {
         if (sequenceElements.containsKey(sequenceElementType)) {
             sequenceElements.get(sequenceElementType).clear();
         }
+        intervalTrees.remove(sequenceElementType);
     }
 
     /**
@@ -64,6 +70,23 @@ public class AnnotatedSequence implements SequenceObject {
             elements.put(element.getId(), element);
             sequenceElements.put(element.getSequenceElementType(), elements);
         }
+        intervalTrees.remove(type);
+    }
+
+    /**
+     * get the interval tree over the elements of a particular type, for region queries. It is built on first use and
+     * rebuilt after elements of the type have been added or removed; elements should not be moved once added.
+     * Concurrent queries are safe as long as no elements are added or removed meanwhile.
+     * Returns null if the type does not exist.
+     *
+     * @param sequenceElementType
+     * @return interval tree
+     */
+    public ElementIntervalTree getIntervalTree(SequenceElementType sequenceElementType) {
+        return intervalTrees.computeIfAbsent(sequenceElementType, type -> {
+            HashMap<String, SequenceElement> elements = sequenceElements.get(type);
+            return elements == null ? null : new ElementIntervalTree(elements.values());
+        });
     }
 
     /**
@@ -74,14 +97,11 @@ public class AnnotatedSequence implements SequenceObject {
      * @return iterator of elements of one type
      */
     public Iterator<SequenceElement> getElements(SequenceElementType sequenceElementType) {
-        ArrayList<SequenceElement> list = new ArrayList<>();
-        if (sequenceElements.containsKey(sequenceElementType)) {
-            for (SequenceElement element : sequenceElements.get(sequenceElementType).values()) {
-                list.add(element);
-            }
-            Collections.sort(list);
+        ElementIntervalTree tree = getIntervalTree(sequenceElementType);
+        if (tree == null) {
+            return Collections.<SequenceElement>emptyList().iterator();
         }
-        return list.iterator();
+        return tree.getElements().iterator();
     }
 
     /**
@@ -92,16 +112,11 @@ public class AnnotatedSequence implements SequenceObject {
      * @return iterator of elements of one type
      */
     public List<SequenceElement> getElementList(SequenceElementType sequenceElementType) {
-        if (sequenceElements.containsKey(sequenceElementType)) {
-            ArrayList<SequenceElement> list = new ArrayList<SequenceElement>();
-            for (SequenceElement element : sequenceElements.get(sequenceElementType).values()) {
-                list.add(element);
-            }
-            Collections.sort(list);
-            return list;
-        } else {
+        ElementIntervalTree tree = getIntervalTree(sequenceElementType);
+        if (tree == null) {
             return new ArrayList<SequenceElement>();
         }
+        return new ArrayList<SequenceElement>(tree.getElements());
     }
 
     /**
@@ -113,16 +128,40 @@ public class AnnotatedSequence implements SequenceObject {
      * @return iterator of elements of one type
      */
     public List<SequenceElement> getElementList(SequenceElementType sequenceElementType, SequenceCoordinates coordinates) {
-        ArrayList<SequenceElement> list = new ArrayList<>();
-        if (sequenceElements.containsKey(sequenceElementType)) {
-            for (SequenceElement element : sequenceElements.get(sequenceElementType).values()) {
-                if (element.getSequenceCoordinates().overlaps(coordinates)) list.add(element);
-            }
-            Collections.sort(list);
+        ElementIntervalTree tree = getIntervalTree(sequenceElementType);
+        if (tree == null) {
+            return new ArrayList<>();
         }
-        return list;
+        return tree.findOverlapping(coordinates);
     }
 
+    /**
+     * get a list of -sorted- elements of a particular type that lie completely within the given coordinates.
+     * If the type does not exist, an empty list will be returned
+     *
+     * @param sequenceElementType
+     * @param coordinates         the region
+     * @return contained elements
+     */
+    public List<SequenceElement> getContainedElementList(SequenceElementType sequenceElementType, SequenceCoordinates coordinates) {
+        ElementIntervalTree tree = getIntervalTree(sequenceElementType);
+        if (tree == null) {
+            return new ArrayList<>();
+        }
+        return tree.findContained(coordinates);
+    }
+
+    /**
+     * get the element of a particular type nearest to the given coordinates; an overlapping element if there is one.
+     *
+     * @param sequenceElementType
+     * @param coordinates         the region
+     * @return nearest element, or null if the type does not exist
+     */
+    public SequenceElement getNearestElement(SequenceElementType sequenceElementType, SequenceCoordinates coordinates) {
+        ElementIntervalTree tree = getIntervalTree(sequenceElementType);
+        return tree == null ? null : tree.findNearest(coordinates);
+    }
 
     /**
      * get an iterator for all sequence element types that are represented in this object
@@ -0,0 +1,194 @@
+package net.cellingo.sequence_tools.annotation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A static interval tree over sequence elements, for region queries. The elements are sorted on start position and
+ * the sorted array is used as a balanced binary tree: the middle of each range is the node of that range, and every
+ * node keeps the largest stop position of its subtree, so subtrees that end before a query region are skipped.
+ * Overlap queries take O(log n + k) for k hits, nearest neighbour queries O(log n).
+ * <p>
+ * The tree is a snapshot: elements added to, or moved on, the sequence afterwards are not seen. Coordinates are
+ * inclusive, as in SequenceCoordinates.overlaps(); complex elements span from their first start to their last stop.
+ *
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+public final class ElementIntervalTree {
+    private final List<SequenceElement> elements;
+    private final int[] starts;
+    private final int[] stops;
+    /*the largest stop in the subtree of which the index is the node*/
+    private final int[] maximumStops;
+    /*the index of the element with the largest stop among the elements up to the index*/
+    private final int[] prefixMaximumStops;
+
+    /**
+     * build the tree over the given elements. Elements with equal starts keep their order in the collection.
+     *
+     * @param elements the elements
+     */
+    public ElementIntervalTree(Collection<? extends SequenceElement> elements) {
+        List<SequenceElement> sorted = new ArrayList<>(elements);
+        Collections.sort(sorted);
+        this.elements = Collections.unmodifiableList(sorted);
+        int n = sorted.size();
+        starts = new int[n];
+        stops = new int[n];
+        maximumStops = new int[n];
+        prefixMaximumStops = new int[n];
+        for (int i = 0; i < n; i++) {
+            SequenceCoordinates coordinates = sorted.get(i).getSequenceCoordinates();
+            starts[i] = coordinates.getStart();
+            stops[i] = coordinates.getStop();
+            prefixMaximumStops[i] = (i > 0 && stops[prefixMaximumStops[i - 1]] >= stops[i]) ? prefixMaximumStops[i - 1] : i;
+        }
+        buildMaximumStops(0, n);
+    }
+
+    private int buildMaximumStops(int from, int to) {
+        if (from >= to) {
+            return Integer.MIN_VALUE;
+        }
+        int node = (from + to) >>> 1;
+        int maximum = Math.max(stops[node], Math.max(buildMaximumStops(from, node), buildMaximumStops(node + 1, to)));
+        maximumStops[node] = maximum;
+        return maximum;
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * @return all elements, sorted on start position (unmodifiable)
+     */
+    public List<SequenceElement> getElements() {
+        return elements;
+    }
+
+    /**
+     * the elements overlapping the region, sorted on start position.
+     *
+     * @param start the start of the region
+     * @param stop  the stop of the region (inclusive)
+     * @return overlapping elements
+     */
+    public List<SequenceElement> findOverlapping(int start, int stop) {
+        List<SequenceElement> hits = new ArrayList<>();
+        findOverlapping(0, starts.length, start, stop, hits);
+        return hits;
+    }
+
+    /**
+     * the elements overlapping the coordinates, sorted on start position.
+     *
+     * @param coordinates the region
+     * @return overlapping elements
+     */
+    public List<SequenceElement> findOverlapping(SequenceCoordinates coordinates) {
+        return findOverlapping(coordinates.getStart(), coordinates.getStop());
+    }
+
+    private void findOverlapping(int from, int to, int start, int stop, List<SequenceElement> hits) {
+        while (from < to) {
+            int node = (from + to) >>> 1;
+            if (maximumStops[node] < start) {
+                return;
+            }
+            findOverlapping(from, node, start, stop, hits);
+            if (starts[node] > stop) {
+                return;
+            }
+            if (stops[node] >= start) {
+                hits.add(elements.get(node));
+            }
+            from = node + 1;
+        }
+    }
+
+    /**
+     * the elements lying completely within the region, sorted on start position. This takes O(log n + k) where k is
+     * the number of elements that overlap the region.
+     *
+     * @param coordinates the region
+     * @return contained elements
+     */
+    public List<SequenceElement> findContained(SequenceCoordinates coordinates) {
+        List<SequenceElement> hits = new ArrayList<>();
+        for (SequenceElement element : findOverlapping(coordinates)) {
+            if (element.getSequenceCoordinates().isIncludedWithin(coordinates)) {
+                hits.add(element);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * the elements that contain the region completely, sorted on start position. This takes O(log n + k) where k is
+     * the number of elements that overlap the region.
+     *
+     * @param coordinates the region
+     * @return enclosing elements
+     */
+    public List<SequenceElement> findEnclosing(SequenceCoordinates coordinates) {
+        List<SequenceElement> hits = new ArrayList<>();
+        for (SequenceElement element : findOverlapping(coordinates)) {
+            if (coordinates.isIncludedWithin(element.getSequenceCoordinates())) {
+                hits.add(element);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * the element nearest to the region: the first overlapping element if there is one, or else the closest of the
+     * element ending last before the region and the element starting first after it. On equal distance the element
+     * before the region is returned.
+     *
+     * @param coordinates the region
+     * @return the nearest element, or null if there are none
+     */
+    public SequenceElement findNearest(SequenceCoordinates coordinates) {
+        int start = coordinates.getStart();
+        int stop = coordinates.getStop();
+        /*the first element starting after the region*/
+        int after = firstStartAfter(stop);
+        /*among the elements starting before or in the region, the one ending last*/
+        int before = after > 0 ? prefixMaximumStops[after - 1] : -1;
+        if (before >= 0 && stops[before] >= start) {
+            List<SequenceElement> overlapping = findOverlapping(start, stop);
+            return overlapping.get(0);
+        }
+        if (before < 0 && after == starts.length) {
+            return null;
+        }
+        if (before < 0) {
+            return elements.get(after);
+        }
+        if (after == starts.length || start - stops[before] <= starts[after] - stop) {
+            return elements.get(before);
+        }
+        return elements.get(after);
+    }
+
+    private int firstStartAfter(int position) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
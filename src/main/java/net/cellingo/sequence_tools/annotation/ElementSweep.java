@@ -0,0 +1,535 @@
+package net.cellingo.sequence_tools.annotation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Set operations between two collections of sequence elements in the spirit of bedtools: intersect, subtract,
+ * closest and merge. Each is a single sweep over two streams sorted on start position, as returned by
+ * AnnotatedSequence.getElementList(). The second stream is read up to the stop of the current element of the first,
+ * and only its elements that overlap that element are held, on both strands, so the streams are not read into memory;
+ * the cost is O(n + m) plus the elements held at each step. Only closest() reads further, up to the next element
+ * after the current one on its strand.
+ * <p>
+ * The stream methods work on the elements of a single sequence. The methods taking maps work on whole annotation sets,
+ * keyed by sequence id: the sequences are processed in parallel, on copies sorted in memory, and the results are
+ * returned in the key order of the first map.
+ * <p>
+ * Coordinates are inclusive, as in SequenceCoordinates.overlaps(); complex elements span from their first start to
+ * their last stop. The strand mode decides which elements of the second stream are considered for an element of the
+ * first.
+ *
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+public final class ElementSweep {
+
+    /**
+     * the elements of the second stream that are considered for an element of the first.
+     */
+    public enum StrandMode {
+        /**
+         * elements on either strand
+         */
+        IGNORE,
+        /**
+         * elements on the same strand
+         */
+        SAME,
+        /**
+         * elements on the opposite strand
+         */
+        OPPOSITE
+    }
+
+    /**
+     * an element of the first collection with an element of the second: an overlapping or closest one.
+     */
+    public static final class ElementPair {
+        private final SequenceElement first;
+        private final SequenceElement second;
+
+        private ElementPair(SequenceElement first, SequenceElement second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        /**
+         * @return the element of the first collection
+         */
+        public SequenceElement getFirst() {
+            return first;
+        }
+
+        /**
+         * @return the element of the second collection, or null if there is none
+         */
+        public SequenceElement getSecond() {
+            return second;
+        }
+
+        /**
+         * @return the distance between the elements: 0 if they overlap, the difference between their nearest ends
+         * otherwise, and -1 if there is no second element
+         */
+        public int getDistance() {
+            return second == null ? -1 : distance(first.getSequenceCoordinates(), second.getSequenceCoordinates());
+        }
+
+        @Override
+        public String toString() {
+            return "ElementPair[" + first.getId() + "," + (second == null ? null : second.getId()) + "]";
+        }
+    }
+
+    private ElementSweep() {
+    }
+
+    /**
+     * report every overlapping pair of elements. For each element of the first stream, the overlapping elements of the
+     * second are reported in the order of the stream.
+     *
+     * @param first      the first stream, sorted on start
+     * @param second     the second stream, sorted on start
+     * @param strandMode which elements of the second stream are considered
+     * @param consumer   receives the pairs
+     * @throws IllegalArgumentException when a stream is not sorted
+     */
+    public static void intersect(Iterator<? extends SequenceElement> first, Iterator<? extends SequenceElement> second,
+                                 StrandMode strandMode, BiConsumer<SequenceElement, SequenceElement> consumer) {
+        Sweep sweep = new Sweep(second, strandMode);
+        int previousStart = Integer.MIN_VALUE;
+        while (first.hasNext()) {
+            SequenceElement element = first.next();
+            SequenceCoordinates coordinates = element.getSequenceCoordinates();
+            previousStart = checkOrder(previousStart, coordinates);
+            Lane lane = sweep.advance(coordinates);
+            for (SequenceElement other : lane.active) {
+                if (other.getSequenceCoordinates().getStart() <= coordinates.getStop()) {
+                    consumer.accept(element, other);
+                }
+            }
+        }
+    }
+
+    /**
+     * report the parts of the elements of the first stream that are not covered by any element of the second. An
+     * element that is not covered at all is reported with its own coordinates.
+     *
+     * @param first      the first stream, sorted on start
+     * @param second     the second stream, sorted on start
+     * @param strandMode which elements of the second stream are considered
+     * @param consumer   receives the elements with each of their uncovered parts
+     * @throws IllegalArgumentException when a stream is not sorted
+     */
+    public static void subtract(Iterator<? extends SequenceElement> first, Iterator<? extends SequenceElement> second,
+                                StrandMode strandMode, BiConsumer<SequenceElement, SequenceCoordinates> consumer) {
+        Sweep sweep = new Sweep(second, strandMode);
+        int previousStart = Integer.MIN_VALUE;
+        while (first.hasNext()) {
+            SequenceElement element = first.next();
+            SequenceCoordinates coordinates = element.getSequenceCoordinates();
+            previousStart = checkOrder(previousStart, coordinates);
+            Lane lane = sweep.advance(coordinates);
+            /*the first position not covered so far*/
+            long uncovered = coordinates.getStart();
+            boolean covered = false;
+            for (SequenceElement other : lane.active) {
+                SequenceCoordinates otherCoordinates = other.getSequenceCoordinates();
+                if (otherCoordinates.getStart() > coordinates.getStop()) {
+                    continue;
+                }
+                covered = true;
+                if (otherCoordinates.getStart() > uncovered) {
+                    consumer.accept(element, new SequenceCoordinates(
+                            (int) uncovered, otherCoordinates.getStart() - 1, coordinates.isComplement()));
+                }
+                uncovered = Math.max(uncovered, (long) otherCoordinates.getStop() + 1);
+            }
+            if (!covered) {
+                consumer.accept(element, coordinates);
+            } else if (uncovered <= coordinates.getStop()) {
+                consumer.accept(element, new SequenceCoordinates(
+                        (int) uncovered, coordinates.getStop(), coordinates.isComplement()));
+            }
+        }
+    }
+
+    /**
+     * report for each element of the first stream the closest element of the second: the first overlapping one if
+     * there is one, or else the closest of the elements before and after it. On equal distance the element before it
+     * is reported. Elements without any candidate are reported with null.
+     *
+     * @param first      the first stream, sorted on start
+     * @param second     the second stream, sorted on start
+     * @param strandMode which elements of the second stream are considered
+     * @param consumer   receives the element with its closest element
+     * @throws IllegalArgumentException when a stream is not sorted
+     */
+    public static void closest(Iterator<? extends SequenceElement> first, Iterator<? extends SequenceElement> second,
+                               StrandMode strandMode, BiConsumer<SequenceElement, SequenceElement> consumer) {
+        Sweep sweep = new Sweep(second, strandMode);
+        int previousStart = Integer.MIN_VALUE;
+        while (first.hasNext()) {
+            SequenceElement element = first.next();
+            SequenceCoordinates coordinates = element.getSequenceCoordinates();
+            previousStart = checkOrder(previousStart, coordinates);
+            Lane lane = sweep.advance(coordinates);
+            /*the active elements are in start order: the first one either overlaps, or starts first after it*/
+            SequenceElement after = lane.active.isEmpty() ? sweep.peek(lane) : lane.active.get(0);
+            if (after != null && after.getSequenceCoordinates().getStart() <= coordinates.getStop()) {
+                consumer.accept(element, after);
+                continue;
+            }
+            SequenceElement before = lane.before;
+            if (before == null || (after != null && distance(coordinates, after.getSequenceCoordinates())
+                    < distance(coordinates, before.getSequenceCoordinates()))) {
+                consumer.accept(element, after);
+            } else {
+                consumer.accept(element, before);
+            }
+        }
+    }
+
+    /**
+     * merge overlapping and nearby elements into regions. With StrandMode.SAME only elements on the same strand are
+     * merged; with StrandMode.IGNORE the regions are on the forward strand.
+     *
+     * @param elements     the stream, sorted on start
+     * @param strandMode   IGNORE or SAME
+     * @param maximumGap   the largest number of positions between elements that are merged; 0 merges overlapping
+     *                     and adjacent elements
+     * @param consumer     receives the regions, each when it is complete
+     * @throws IllegalArgumentException when the stream is not sorted, or the strand mode is OPPOSITE
+     */
+    public static void merge(Iterator<? extends SequenceElement> elements, StrandMode strandMode, int maximumGap,
+                             Consumer<SequenceCoordinates> consumer) {
+        if (strandMode == StrandMode.OPPOSITE) {
+            throw new IllegalArgumentException("elements on opposite strands can not be merged");
+        }
+        if (maximumGap < 0) {
+            throw new IllegalArgumentException("the maximum gap should not be negative: " + maximumGap);
+        }
+        /*the open region per strand: start and stop, or null*/
+        long[][] regions = new long[2][];
+        int previousStart = Integer.MIN_VALUE;
+        while (elements.hasNext()) {
+            SequenceCoordinates coordinates = elements.next().getSequenceCoordinates();
+            previousStart = checkOrder(previousStart, coordinates);
+            int strand = strandMode == StrandMode.SAME && coordinates.isComplement() ? 1 : 0;
+            long[] region = regions[strand];
+            if (region != null && coordinates.getStart() <= region[1] + 1 + maximumGap) {
+                region[1] = Math.max(region[1], coordinates.getStop());
+                continue;
+            }
+            if (region != null) {
+                consumer.accept(new SequenceCoordinates((int) region[0], (int) region[1], strand == 1));
+            }
+            regions[strand] = new long[]{coordinates.getStart(), coordinates.getStop()};
+        }
+        for (int strand = 0; strand < 2; strand++) {
+            if (regions[strand] != null) {
+                consumer.accept(new SequenceCoordinates((int) regions[strand][0], (int) regions[strand][1], strand == 1));
+            }
+        }
+    }
+
+    /**
+     * intersect two annotation sets, one sequence per thread.
+     *
+     * @param first      the first elements by sequence id
+     * @param second     the second elements by sequence id
+     * @param strandMode which elements of the second set are considered
+     * @param threads    the number of threads
+     * @return the overlapping pairs by sequence id, ordered on the start of the first element
+     */
+    public static Map<String, List<ElementPair>> intersect(Map<String, ? extends Collection<? extends SequenceElement>> first,
+                                                           Map<String, ? extends Collection<? extends SequenceElement>> second,
+                                                           final StrandMode strandMode, int threads) {
+        return perSequence(first, second, threads, new SequenceOperation<List<ElementPair>>() {
+            @Override
+            public List<ElementPair> apply(List<SequenceElement> firstElements, List<SequenceElement> secondElements) {
+                final List<ElementPair> pairs = new ArrayList<>();
+                intersect(firstElements.iterator(), secondElements.iterator(), strandMode,
+                        new BiConsumer<SequenceElement, SequenceElement>() {
+                            @Override
+                            public void accept(SequenceElement a, SequenceElement b) {
+                                pairs.add(new ElementPair(a, b));
+                            }
+                        });
+                return pairs;
+            }
+        });
+    }
+
+    /**
+     * subtract an annotation set from another, one sequence per thread. The uncovered parts are returned as new
+     * elements with the id, type and attributes of the element they are part of.
+     *
+     * @param first      the first elements by sequence id
+     * @param second     the second elements by sequence id
+     * @param strandMode which elements of the second set are considered
+     * @param threads    the number of threads
+     * @return the uncovered parts by sequence id, ordered on start
+     */
+    public static Map<String, List<SequenceElement>> subtract(Map<String, ? extends Collection<? extends SequenceElement>> first,
+                                                              Map<String, ? extends Collection<? extends SequenceElement>> second,
+                                                              final StrandMode strandMode, int threads) {
+        return perSequence(first, second, threads, new SequenceOperation<List<SequenceElement>>() {
+            @Override
+            public List<SequenceElement> apply(List<SequenceElement> firstElements, List<SequenceElement> secondElements) {
+                final List<SequenceElement> parts = new ArrayList<>();
+                subtract(firstElements.iterator(), secondElements.iterator(), strandMode,
+                        new BiConsumer<SequenceElement, SequenceCoordinates>() {
+                            @Override
+                            public void accept(SequenceElement element, SequenceCoordinates coordinates) {
+                                SequenceElement part = new SequenceElement(element.getId());
+                                part.setSequenceElementType(element.getSequenceElementType());
+                                part.setAttributes(element.getAttributes());
+                                part.setParentSequence(element.getParentSequence());
+                                if (element.getParentSequenceElementIds() != null) {
+                                    for (String parentId : element.getParentSequenceElementIds()) {
+                                        part.addParentSequenceElementId(parentId);
+                                    }
+                                }
+                                part.addCoordinates(coordinates);
+                                parts.add(part);
+                            }
+                        });
+                return parts;
+            }
+        });
+    }
+
+    /**
+     * find the closest element of the second set for every element of the first, one sequence per thread.
+     *
+     * @param first      the first elements by sequence id
+     * @param second     the second elements by sequence id
+     * @param strandMode which elements of the second set are considered
+     * @param threads    the number of threads
+     * @return a pair for every element of the first set by sequence id, ordered on start
+     */
+    public static Map<String, List<ElementPair>> closest(Map<String, ? extends Collection<? extends SequenceElement>> first,
+                                                         Map<String, ? extends Collection<? extends SequenceElement>> second,
+                                                         final StrandMode strandMode, int threads) {
+        return perSequence(first, second, threads, new SequenceOperation<List<ElementPair>>() {
+            @Override
+            public List<ElementPair> apply(List<SequenceElement> firstElements, List<SequenceElement> secondElements) {
+                final List<ElementPair> pairs = new ArrayList<>();
+                closest(firstElements.iterator(), secondElements.iterator(), strandMode,
+                        new BiConsumer<SequenceElement, SequenceElement>() {
+                            @Override
+                            public void accept(SequenceElement a, SequenceElement b) {
+                                pairs.add(new ElementPair(a, b));
+                            }
+                        });
+                return pairs;
+            }
+        });
+    }
+
+    /**
+     * merge the elements of an annotation set, one sequence per thread.
+     *
+     * @param elements   the elements by sequence id
+     * @param strandMode IGNORE or SAME
+     * @param maximumGap the largest number of positions between elements that are merged
+     * @param threads    the number of threads
+     * @return the merged regions by sequence id
+     */
+    public static Map<String, List<SequenceCoordinates>> merge(Map<String, ? extends Collection<? extends SequenceElement>> elements,
+                                                               final StrandMode strandMode, final int maximumGap, int threads) {
+        return perSequence(elements, Collections.<String, List<SequenceElement>>emptyMap(), threads,
+                new SequenceOperation<List<SequenceCoordinates>>() {
+                    @Override
+                    public List<SequenceCoordinates> apply(List<SequenceElement> firstElements, List<SequenceElement> secondElements) {
+                        final List<SequenceCoordinates> regions = new ArrayList<>();
+                        merge(firstElements.iterator(), strandMode, maximumGap, new Consumer<SequenceCoordinates>() {
+                            @Override
+                            public void accept(SequenceCoordinates coordinates) {
+                                regions.add(coordinates);
+                            }
+                        });
+                        return regions;
+                    }
+                });
+    }
+
+    /**
+     * the distance between two regions: 0 if they overlap, the difference between their nearest ends otherwise.
+     *
+     * @param one
+     * @param other
+     * @return distance
+     */
+    public static int distance(SequenceCoordinates one, SequenceCoordinates other) {
+        if (other.getStart() > one.getStop()) {
+            return other.getStart() - one.getStop();
+        }
+        if (one.getStart() > other.getStop()) {
+            return one.getStart() - other.getStop();
+        }
+        return 0;
+    }
+
+    private static int checkOrder(int previousStart, SequenceCoordinates coordinates) {
+        if (coordinates.getStart() < previousStart) {
+            throw new IllegalArgumentException("elements are not sorted on start: " + coordinates);
+        }
+        return coordinates.getStart();
+    }
+
+    /**
+     * an operation on the sorted elements of one sequence.
+     */
+    private interface SequenceOperation<T> {
+        T apply(List<SequenceElement> firstElements, List<SequenceElement> secondElements);
+    }
+
+    private static <T> Map<String, T> perSequence(Map<String, ? extends Collection<? extends SequenceElement>> first,
+                                                  final Map<String, ? extends Collection<? extends SequenceElement>> second,
+                                                  int threads, final SequenceOperation<T> operation) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("the number of threads should be at least 1: " + threads);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, first.size())));
+        try {
+            Map<String, Future<T>> futures = new LinkedHashMap<>();
+            for (final Map.Entry<String, ? extends Collection<? extends SequenceElement>> entry : first.entrySet()) {
+                futures.put(entry.getKey(), executor.submit(new Callable<T>() {
+                    @Override
+                    public T call() {
+                        return operation.apply(sorted(entry.getValue()), sorted(second.get(entry.getKey())));
+                    }
+                }));
+            }
+            Map<String, T> results = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+                results.put(future.getKey(), future.getValue().get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<SequenceElement> sorted(Collection<? extends SequenceElement> elements) {
+        if (elements == null) {
+            return Collections.emptyList();
+        }
+        List<SequenceElement> list = new ArrayList<>(elements);
+        Collections.sort(list);
+        return list;
+    }
+
+    /**
+     * the elements of the second stream on one strand (or both), for the current element of the first stream.
+     */
+    private static final class Lane {
+        /*read, but starting after all elements of the first stream so far*/
+        private final ArrayDeque<SequenceElement> pending = new ArrayDeque<>();
+        /*started before the stop of an element of the first stream, and not ended before the current one; in order*/
+        private final List<SequenceElement> active = new ArrayList<>();
+        /*of the elements that ended before the current element, the one ending last*/
+        private SequenceElement before;
+
+        /**
+         * activate the elements starting up to the stop of the element and retire those ending before its start.
+         */
+        private void advance(SequenceCoordinates coordinates) {
+            while (!pending.isEmpty() && pending.peekFirst().getSequenceCoordinates().getStart() <= coordinates.getStop()) {
+                active.add(pending.pollFirst());
+            }
+            int kept = 0;
+            for (int i = 0; i < active.size(); i++) {
+                SequenceElement element = active.get(i);
+                int stop = element.getSequenceCoordinates().getStop();
+                if (stop >= coordinates.getStart()) {
+                    active.set(kept++, element);
+                } else if (before == null || stop > before.getSequenceCoordinates().getStop()) {
+                    before = element;
+                }
+            }
+            active.subList(kept, active.size()).clear();
+        }
+    }
+
+    /**
+     * the sweep over the second stream, split in lanes per strand if the strand matters.
+     */
+    private static final class Sweep {
+        private final Iterator<? extends SequenceElement> source;
+        private final StrandMode strandMode;
+        private final Lane[] lanes;
+        private int previousStart = Integer.MIN_VALUE;
+
+        private Sweep(Iterator<? extends SequenceElement> source, StrandMode strandMode) {
+            this.source = source;
+            this.strandMode = strandMode;
+            this.lanes = strandMode == StrandMode.IGNORE ? new Lane[]{new Lane()} : new Lane[]{new Lane(), new Lane()};
+        }
+
+        /**
+         * read the next element of the stream into the lane of its strand.
+         */
+        private void read() {
+            SequenceElement element = source.next();
+            SequenceCoordinates coordinates = element.getSequenceCoordinates();
+            previousStart = checkOrder(previousStart, coordinates);
+            lanes[lanes.length == 1 || !coordinates.isComplement() ? 0 : 1].pending.add(element);
+        }
+
+        /**
+         * the next pending element of the lane, reading the stream as far as needed; null if there is none.
+         */
+        private SequenceElement peek(Lane lane) {
+            while (lane.pending.isEmpty() && source.hasNext()) {
+                read();
+            }
+            return lane.pending.peekFirst();
+        }
+
+        /**
+         * read the stream up to the first element starting after the stop of the element, and bring all lanes up to
+         * date with it: the first stream only moves forward, so elements on the other strand that end before it are
+         * retired as well instead of being held until that strand is asked for.
+         *
+         * @return the lane for the element
+         */
+        private Lane advance(SequenceCoordinates coordinates) {
+            while (previousStart <= coordinates.getStop() && source.hasNext()) {
+                read();
+            }
+            for (Lane lane : lanes) {
+                lane.advance(coordinates);
+            }
+            if (strandMode == StrandMode.IGNORE) {
+                return lanes[0];
+            }
+            boolean complement = coordinates.isComplement() == (strandMode == StrandMode.SAME);
+            return lanes[complement ? 1 : 0];
+        }
+    }
+}
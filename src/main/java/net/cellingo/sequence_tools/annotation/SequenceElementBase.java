@@ -7,6 +7,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The base type for all sequence lements, also for bean types accessing only string properties
@@ -15,7 +16,7 @@ import java.util.List;
  * @version 1.0
  */
 public class SequenceElementBase implements Serializable, Comparable<SequenceElement> {
-    private static int maximumID = 0;
+    private static final AtomicInteger maximumID = new AtomicInteger();
     private int autoGeneratedElementId;
     private String id;
     private SequenceElementType sequenceElementType;
@@ -23,12 +24,17 @@ public class SequenceElementBase implements Serializable, Comparable<SequenceEle
     private double score;
     private String name;
 
+    /**
+     * a new ID for an element that has none; every call reserves its own value, so IDs are unique across threads
+     *
+     * @return the ID
+     */
     public static String getNextAutogeneratedId() {
-        return "AutoGeneratedID=" + maximumID + 1;
+        return "AutoGeneratedID=" + maximumID.getAndIncrement();
     }
 
     public SequenceElementBase(String id) {
-        this.autoGeneratedElementId = maximumID++;
+        this.autoGeneratedElementId = maximumID.getAndIncrement();
         this.id = id;
         this.coordinates = new ArrayList<>();
         this.sequenceElementType = SequenceElementType.UNDEFINED;
@@ -131,9 +137,18 @@ public class SequenceElementBase implements Serializable, Comparable<SequenceEle
         return id;
     }
 
-//    public void setId(String id) {
-//        this.id = id;
-//    }
+    /**
+     * sets the ID of an element that has none yet; elements are keyed by ID once added to a sequence
+     *
+     * @param id the ID
+     * @throws IllegalStateException when the element has an ID already
+     */
+    public void setId(String id) {
+        if (this.id != null) {
+            throw new IllegalStateException("element has an ID already: " + this.id);
+        }
+        this.id = id;
+    }
 
     public String toString() {
         StringBuilder s = new StringBuilder();
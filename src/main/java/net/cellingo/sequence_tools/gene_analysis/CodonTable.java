@@ -1,8 +1,12 @@
 package net.cellingo.sequence_tools.gene_analysis;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
- * Class to hold the codon translation table
+ * Class to hold the codon translation table.
+ * For fast translation, tables with three-letter codons are also compiled into a 64-entry lookup table indexed by
+ * codon index: the three nucleotides encoded as A=0, C=1, G=2, T/U=3 and combined into 6 bits (first nucleotide in
+ * the high bits). The initiation codons are compiled into a bit mask over the same indices.
  * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
  * @version 1.0
  */
@@ -23,6 +27,27 @@ public class CodonTable {
 	private HashMap<String, String> codons = new HashMap<String, String>();
 	private HashMap<String, String> startCodons = new HashMap<String, String>();
 	private int codonSize;
+	/*compiled on first use; reset when the table is changed through setCodonTranslation*/
+	private volatile byte[] translations;
+	private volatile long initiationCodonMask;
+
+	/*value of getCodonIndex for codons with other characters than A, C, G, T or U*/
+	public static final int NO_CODON_INDEX = -1;
+	/*the index of ATG*/
+	public static final int ATG_CODON_INDEX = 14;
+	private static final int CODON_INDICES = 64;
+	private static final char[] NUCLEOTIDES = {'A','C','G','T'};
+	private static final byte[] NUCLEOTIDE_CODES = new byte[128];
+
+	static{
+		Arrays.fill(NUCLEOTIDE_CODES, (byte)-1);
+		NUCLEOTIDE_CODES['A'] = 0;
+		NUCLEOTIDE_CODES['C'] = 1;
+		NUCLEOTIDE_CODES['G'] = 2;
+		NUCLEOTIDE_CODES['T'] = 3;
+		NUCLEOTIDE_CODES['U'] = 3;
+	}
+
 	/**
 	 *	no-arg constructor: codon-table == 1
 	 */
@@ -62,6 +87,83 @@ public class CodonTable {
 		}
 		return "X";
 	}
+	/**
+	 * returns the translation of the codon with the given index (see getCodonIndex), or 'X' for NO_CODON_INDEX
+	 * and codons without translation
+	 */
+	public char getCodonTranslation(int codonIndex){
+		if(codonIndex < 0){
+			return 'X';
+		}
+		return (char)getTranslations()[codonIndex];
+	}
+
+	/**
+	 * returns whether the codon with the given index (see getCodonIndex) can be used as initiation codon
+	 */
+	public boolean isInitiationCodon(int codonIndex){
+		if(codonIndex < 0){
+			return false;
+		}
+		getTranslations();
+		return (initiationCodonMask & (1L << codonIndex)) != 0;
+	}
+
+	/**
+	 * returns the 2-bit code of a nucleotide: A=0, C=1, G=2, T/U=3, or -1 for any other character
+	 */
+	public static int getNucleotideCode(char nucleotide){
+		return nucleotide < NUCLEOTIDE_CODES.length ? NUCLEOTIDE_CODES[nucleotide] : -1;
+	}
+
+	/**
+	 * returns the 6-bit index of a codon, or NO_CODON_INDEX if any of its characters is not A, C, G, T or U.
+	 * When scanning a sequence, the index can also be maintained as rolling value:
+	 * index = ((index &lt;&lt; 2) | getNucleotideCode(next)) &amp; 63
+	 */
+	public static int getCodonIndex(char first, char second, char third){
+		int codeOne = getNucleotideCode(first);
+		int codeTwo = getNucleotideCode(second);
+		int codeThree = getNucleotideCode(third);
+		if((codeOne | codeTwo | codeThree) < 0){
+			return NO_CODON_INDEX;
+		}
+		return (codeOne << 4) | (codeTwo << 2) | codeThree;
+	}
+
+	/**
+	 * returns a copy of the compiled 64-entry translation table, indexed by codon index
+	 */
+	public byte[] getTranslationTable(){
+		return getTranslations().clone();
+	}
+
+	/**
+	 * the table (and the initiation codon mask) compiled from the codon HashMaps on first use
+	 */
+	private byte[] getTranslations(){
+		byte[] table = translations;
+		if(table == null){
+			table = new byte[CODON_INDICES];
+			long startMask = 0;
+			char[] codon = new char[3];
+			for(int index = 0; index < CODON_INDICES; index++){
+				codon[0] = NUCLEOTIDES[index >>> 4];
+				codon[1] = NUCLEOTIDES[(index >>> 2) & 3];
+				codon[2] = NUCLEOTIDES[index & 3];
+				String key = new String(codon);
+				String translation = codons.get(key);
+				table[index] = (byte)((translation == null || translation.length() != 1) ? 'X' : translation.charAt(0));
+				if(startCodons.containsKey(key)){
+					startMask |= 1L << index;
+				}
+			}
+			initiationCodonMask = startMask;
+			translations = table;
+		}
+		return table;
+	}
+
 	/**
 	 * This method checks whether the supplied codon can be used as alternative initiation codon
 	 */
@@ -90,11 +192,15 @@ public class CodonTable {
 	public String[] getCodonTableList(){
 		return codonTableStringArray;
 	}
+	/**
+	 * returns the codon HashMap; use setCodonTranslation() for changes, so the compiled table is updated as well
+	 */
 	public HashMap<String, String> getCodonTable(){
 		return codons;
 	}
 	public void setCodonTranslation(String codon, String translation){
 		codons.put(codon, translation);
+		translations = null;
 	}
 	public int getCodonSize(){
 		return codonSize;
@@ -59,11 +59,11 @@ public class OrfFinder {
         if (strandSelection == SequenceStrand.BOTH) {
             translate(this.sequence, SequenceStrand.FORWARD);
             resetFields();
-            translate(sequence.reverseComplement(), SequenceStrand.COMPLEMENT);
+            translate(sequence.reverseComplementView(), SequenceStrand.COMPLEMENT);
         } else if (strandSelection == SequenceStrand.FORWARD) {
             translate(sequence, SequenceStrand.FORWARD);
         } else { //else if (strandSelection == SequenceStrand.COMPLEMENT)
-            translate(sequence.reverseComplement(), SequenceStrand.COMPLEMENT);
+            translate(sequence.reverseComplementView(), SequenceStrand.COMPLEMENT);
         }
     }
 
@@ -110,30 +110,26 @@ public class OrfFinder {
             complement = true;
         }
 
+        byte[] codonIndices = getCodonIndices(sequence, startPosition, stopPosition);
         for (int currentFrame = 0; currentFrame <= 2; currentFrame++) {
             StringBuilder currentProteinSequence = new StringBuilder();
             lastStartPosition = 0;
             //get the subsequent codons
             for (currentPosition = (startPosition + currentFrame); currentPosition < (stopPosition - 2); currentPosition += 3) {
-                String codon = "";
-                try {
-                    codon = sequence.getSubString(currentPosition, currentPosition + 3);
-                } catch (IllegalSequenceOperation e) {
-                    e.printStackTrace();
-                }
-                String aminoAcid = codonTable.getCodonTranslation(codon);
+                int codonIndex = codonIndices[currentPosition - startPosition];
+                char aminoAcid = codonTable.getCodonTranslation(codonIndex);
 
-                if (aminoAcid.equals("*")) {
+                if (aminoAcid == '*') {
                     //a stop codon has been found: end of ORF
                     if (currentProteinSequence.length() >= minimumOrfSize) {
                         processORF(currentFrame, currentProteinSequence, frameOffset, complement);
                     }
-                    currentProteinSequence = new StringBuilder();
+                    currentProteinSequence.setLength(0);
                 } else {
                     if (currentProteinSequence.length() > 0) {
                         //we are already building an ORF
                         currentProteinSequence.append(aminoAcid);
-                    } else if (isCorrectStart(codon)) {
+                    } else if (isCorrectStart(codonIndex)) {
                         //a new ORF has started
                         currentProteinSequence.append(aminoAcid);
                         lastStartPosition = currentPosition;
@@ -147,12 +143,46 @@ public class OrfFinder {
         }
     }
 
-    private boolean isCorrectStart(String codon) {
-        if ("ATG".equals(codon) && options.getOrfDefinition() == OrfDefinition.ATG_TO_STOP) {
+    /**
+     * computes the index of the codon starting at each position of the given region, as a rolling 6-bit value over
+     * the residues. Codons that contain other characters than A, C, G and T/U, or that run past the end of the region,
+     * get CodonTable.NO_CODON_INDEX.
+     *
+     * @param sequence the strand
+     * @param from     start of the region
+     * @param to       end of the region (exclusive)
+     * @return codon index per position of the region
+     */
+    private static byte[] getCodonIndices(NucleicAcidSequence sequence, int from, int to) {
+        int length = Math.max(0, to - from);
+        char[] residues = new char[length];
+        sequence.getChars(from, from + length, residues, 0);
+        byte[] codonIndices = new byte[length];
+        int codonIndex = 0;
+        int lastInvalidPosition = -1;
+        for (int i = 0; i < length; i++) {
+            int code = CodonTable.getNucleotideCode(residues[i]);
+            if (code < 0) {
+                lastInvalidPosition = i;
+                code = 0;
+            }
+            codonIndex = ((codonIndex << 2) | code) & 63;
+            if (i >= 2) {
+                codonIndices[i - 2] = (byte) (lastInvalidPosition >= i - 2 ? CodonTable.NO_CODON_INDEX : codonIndex);
+            }
+        }
+        for (int i = Math.max(0, length - 2); i < length; i++) {
+            codonIndices[i] = CodonTable.NO_CODON_INDEX;
+        }
+        return codonIndices;
+    }
+
+    private boolean isCorrectStart(int codonIndex) {
+        if (codonIndex == CodonTable.ATG_CODON_INDEX && options.getOrfDefinition() == OrfDefinition.ATG_TO_STOP) {
             return true;
         } else if (options.getOrfDefinition() == OrfDefinition.STOP_TO_STOP) {
             return true;
-        } else if (options.getOrfDefinition() == OrfDefinition.START_TO_STOP && codonTable.checkInitiationCodon(codon)) {
+        } else if (options.getOrfDefinition() == OrfDefinition.START_TO_STOP && codonTable.isInitiationCodon(codonIndex)) {
             return true;
         }
         return false;
@@ -258,11 +288,9 @@ public class OrfFinder {
         if (stop > seqLength) stop = seqLength;
         CodonTable codons = new CodonTable();
 
-        String codon = "";
-        String aminoAcid = "";
+        char[] codon = new char[3];
         //String spacerString = aminoAcidSeparator;
         String firstSpacerString = "";
-        String aminoAcidString = "";
 
         //get the subsequent codons
         switch (frame) {
@@ -279,18 +307,9 @@ public class OrfFinder {
         StringBuilder currentProteinSequence = new StringBuilder(); //string to hold current protein sequence
         currentProteinSequence.append(firstSpacerString);
         for (int position = (start + frame); position <= (stop - 3); position += 3) {
-            try {
-                codon = seq.getSubString(position, position + 3);
-            } catch (IllegalSequenceOperation e) {
-                e.printStackTrace();
-            }
-            aminoAcid = codons.getCodonTranslation(codon);
-            if (aminoAcid != null) {    //a complete and existing codon is present
-                aminoAcidString = aminoAcid + aminoAcidSeparator;
-                currentProteinSequence.append(aminoAcidString);
-            } else {
-                currentProteinSequence.append(aminoAcidSeparator);
-            }
+            seq.getChars(position, position + 3, codon, 0);
+            char aminoAcid = codons.getCodonTranslation(CodonTable.getCodonIndex(codon[0], codon[1], codon[2]));
+            currentProteinSequence.append(aminoAcid).append(aminoAcidSeparator);
 
         }//end looping the codons
         switch (frame) {
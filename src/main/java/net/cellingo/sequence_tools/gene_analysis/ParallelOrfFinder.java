@@ -0,0 +1,397 @@
+package net.cellingo.sequence_tools.gene_analysis;
+
+import net.cellingo.sequence_tools.annotation.OpenReadingFrame;
+import net.cellingo.sequence_tools.annotation.SequenceCoordinates;
+import net.cellingo.sequence_tools.sequences.NucleicAcidSequence;
+import net.cellingo.sequence_tools.sequences.ProteinSequence;
+import net.cellingo.sequence_tools.sequences.SequenceFrame;
+import net.cellingo.sequence_tools.sequences.SequenceStrand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Thread-safe ORF finder that scans many sequences, both strands and all frames in parallel on a ForkJoinPool. It
+ * finds exactly the ORFs {@link OrfFinder} finds, in the same order: per sequence the forward frames 1, 2 and 3 and
+ * then the complement frames 4, 5 and 6, each ordered by position.
+ * <p>
+ * Each strand is cut into chunks that are scanned independently, in a single pass over the residues that serves all
+ * three frames at once. Chunks overlap by two residues so codons spanning a boundary are seen. A chunk can not know
+ * whether an ORF is running when it starts, so per frame it reports the first start and first stop codon it sees, the
+ * ORFs that lie completely after that first stop, and the ORF that is still open at its end. These partial results
+ * are stitched together in chunk order.
+ * <p>
+ * The options are copied on construction, so one instance can be shared between threads; changing the options
+ * afterwards has no effect. The OpenReadingFrame objects are created on the calling thread, in output order.
+ *
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+public class ParallelOrfFinder {
+    /**
+     * the default number of residues scanned by a single task.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final OrfDefinition orfDefinition;
+    private final int minimumOrfSize;
+    private final SequenceStrand strandSelection;
+    private final int startAnalysisPosition;
+    private final int stopAnalysisPosition;
+    private final byte[] translations;
+    private final boolean[] startCodons = new boolean[64];
+
+    /**
+     * construct with the options, using the common ForkJoinPool and the default chunk size.
+     *
+     * @param options the options
+     */
+    public ParallelOrfFinder(GeneAnalysisOptions options) {
+        this(options, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * construct with the options, the pool to run on and the number of residues scanned by a single task.
+     *
+     * @param options   the options
+     * @param pool      the pool
+     * @param chunkSize residues per task
+     */
+    public ParallelOrfFinder(GeneAnalysisOptions options, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size should be positive: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.orfDefinition = options.getOrfDefinition();
+        this.minimumOrfSize = options.getMinimumOrfSize();
+        this.strandSelection = options.getStrandSelection();
+        this.startAnalysisPosition = options.getStartAnalysisPosition();
+        this.stopAnalysisPosition = options.getStopAnalysisPosition();
+        CodonTable codonTable = options.getCodonTable();
+        this.translations = codonTable.getTranslationTable();
+        for (int codonIndex = 0; codonIndex < startCodons.length; codonIndex++) {
+            startCodons[codonIndex] = isCorrectStart(codonTable, codonIndex);
+        }
+    }
+
+    private boolean isCorrectStart(CodonTable codonTable, int codonIndex) {
+        switch (orfDefinition) {
+            case ATG_TO_STOP:
+                return codonIndex == CodonTable.ATG_CODON_INDEX;
+            case STOP_TO_STOP:
+                return true;
+            case START_TO_STOP:
+                return codonTable.isInitiationCodon(codonIndex);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * find the ORFs of a single sequence.
+     *
+     * @param sequence the sequence
+     * @return orfList
+     */
+    public List<OpenReadingFrame> findOrfs(NucleicAcidSequence sequence) {
+        return findOrfs(Collections.singletonList(sequence)).get(0);
+    }
+
+    /**
+     * find the ORFs of all given sequences.
+     *
+     * @param sequences the sequences
+     * @return the ORF list of each sequence, in the order of the input
+     */
+    public List<List<OpenReadingFrame>> findOrfs(List<? extends NucleicAcidSequence> sequences) {
+        final List<StrandScan> scans = new ArrayList<StrandScan>();
+        for (NucleicAcidSequence sequence : sequences) {
+            if (strandSelection == SequenceStrand.BOTH || strandSelection == SequenceStrand.FORWARD) {
+                scans.add(new StrandScan(sequence, SequenceStrand.FORWARD));
+            }
+            if (strandSelection != SequenceStrand.FORWARD) {
+                scans.add(new StrandScan(sequence.reverseComplementView(), SequenceStrand.COMPLEMENT));
+            }
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(scans);
+            }
+        });
+        List<List<OpenReadingFrame>> orfLists = new ArrayList<List<OpenReadingFrame>>();
+        int scan = 0;
+        for (int i = 0; i < sequences.size(); i++) {
+            List<OpenReadingFrame> orfList = new ArrayList<OpenReadingFrame>();
+            int strands = strandSelection == SequenceStrand.BOTH ? 2 : 1;
+            for (int strand = 0; strand < strands; strand++) {
+                scans.get(scan++).createOrfs(orfList);
+            }
+            orfLists.add(orfList);
+        }
+        return orfLists;
+    }
+
+    /**
+     * growable list of ORF positions: the first codon and the codon after the last one (the stop codon, or the
+     * position where the scan ended), as pairs.
+     */
+    private static final class PositionList {
+        private int[] positions = new int[16];
+        private int size;
+
+        void add(int start, int end) {
+            if (size + 2 > positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            positions[size++] = start;
+            positions[size++] = end;
+        }
+
+        void addAll(PositionList other) {
+            for (int i = 0; i < other.size; i += 2) {
+                add(other.positions[i], other.positions[i + 1]);
+            }
+        }
+
+        int orfCount() {
+            return size / 2;
+        }
+
+        int start(int orf) {
+            return positions[2 * orf];
+        }
+
+        int end(int orf) {
+            return positions[2 * orf + 1];
+        }
+    }
+
+    /**
+     * what a chunk found in one frame.
+     */
+    private static final class FrameSegment {
+        /*codon positions; -1 for none*/
+        private int firstStart = -1;
+        private int firstStop = -1;
+        private int openStart = -1;
+        private final PositionList orfs = new PositionList();
+    }
+
+    /**
+     * scans a single strand: the chunks in parallel, followed by stitching and, in parallel per frame, translation.
+     */
+    private final class StrandScan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final NucleicAcidSequence strand;
+        private final SequenceStrand strandType;
+        private final int sequenceLength;
+        private int startPosition;
+        private int stopPosition;
+        private final PositionList[] frameOrfs = new PositionList[3];
+        private final String[][] frameProteins = new String[3][];
+
+        StrandScan(NucleicAcidSequence strand, SequenceStrand strandType) {
+            this.strand = strand;
+            this.strandType = strandType;
+            this.sequenceLength = strand.getSequenceLength();
+        }
+
+        @Override
+        protected void compute() {
+            //the same region corrections as OrfFinder
+            startPosition = startAnalysisPosition;
+            stopPosition = stopAnalysisPosition;
+            if (stopPosition == 0 || stopPosition > sequenceLength) {
+                stopPosition = sequenceLength;
+            }
+            if (strandType == SequenceStrand.COMPLEMENT) {
+                startPosition = sequenceLength - stopPosition;
+                stopPosition = sequenceLength - startPosition;
+            }
+            //codons start in [startPosition, lastCodonEnd)
+            int lastCodonEnd = stopPosition - 2;
+            List<ChunkScan> chunks = new ArrayList<ChunkScan>();
+            for (int chunkStart = startPosition; chunkStart < lastCodonEnd; chunkStart += chunkSize) {
+                chunks.add(new ChunkScan(this, chunkStart, Math.min(lastCodonEnd, chunkStart + chunkSize)));
+            }
+            invokeAll(chunks);
+            List<FrameTranslation> frameTranslations = new ArrayList<FrameTranslation>();
+            for (int frame = 0; frame < 3; frame++) {
+                frameOrfs[frame] = stitch(chunks, frame);
+                frameTranslations.add(new FrameTranslation(this, frame));
+            }
+            invokeAll(frameTranslations);
+        }
+
+        /**
+         * combines the segments of one frame, in chunk order, into the ORFs of that frame.
+         */
+        private PositionList stitch(List<ChunkScan> chunks, int frame) {
+            PositionList orfs = new PositionList();
+            int runningStart = -1;
+            for (ChunkScan chunk : chunks) {
+                FrameSegment segment = chunk.segments[frame];
+                if (segment.firstStop < 0) {
+                    if (runningStart < 0) {
+                        runningStart = segment.firstStart;
+                    }
+                    continue;
+                }
+                int start = runningStart >= 0 ? runningStart : segment.firstStart;
+                if (start >= 0 && (segment.firstStop - start) / 3 >= minimumOrfSize) {
+                    orfs.add(start, segment.firstStop);
+                }
+                orfs.addAll(segment.orfs);
+                runningStart = segment.openStart;
+            }
+            if (runningStart >= 0) {
+                //an ORF not terminated by a stop codon ends at the first position of the frame past the last codon
+                int frameStart = startPosition + frame;
+                int end = frameStart + ((stopPosition - frameStart) / 3) * 3;
+                if ((end - runningStart) / 3 >= minimumOrfSize) {
+                    orfs.add(runningStart, end);
+                }
+            }
+            return orfs;
+        }
+
+        /**
+         * creates the ORF objects, in the same way OrfFinder does.
+         */
+        void createOrfs(List<OpenReadingFrame> orfList) {
+            boolean complement = strandType == SequenceStrand.COMPLEMENT;
+            int frameOffset = complement ? 4 : 1;
+            for (int frame = 0; frame < 3; frame++) {
+                PositionList orfs = frameOrfs[frame];
+                for (int orf = 0; orf < orfs.orfCount(); orf++) {
+                    int orfStart;
+                    int orfStop;
+                    if (complement) {
+                        orfStop = sequenceLength - orfs.start(orf);
+                        orfStart = sequenceLength - (orfs.end(orf) + 2);
+                    } else {
+                        orfStart = orfs.start(orf);
+                        orfStop = orfs.end(orf) + 2;
+                    }
+                    OpenReadingFrame openReadingFrame = new OpenReadingFrame();
+                    openReadingFrame.setProteinSequence(new ProteinSequence(frameProteins[frame][orf]));
+                    openReadingFrame.setOrfDefinition(orfDefinition);
+                    openReadingFrame.setParentSequence(strand);
+                    openReadingFrame.addCoordinates(new SequenceCoordinates(orfStart, orfStop, complement, true));
+                    openReadingFrame.setReadFrame(SequenceFrame.getSequenceFrame(frame + frameOffset));
+                    orfList.add(openReadingFrame);
+                }
+            }
+        }
+    }
+
+    /**
+     * scans one chunk of a strand for all three frames in a single pass, with a rolling codon index.
+     */
+    private final class ChunkScan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final StrandScan strandScan;
+        private final int chunkStart;
+        private final int chunkEnd;
+        private final FrameSegment[] segments = {new FrameSegment(), new FrameSegment(), new FrameSegment()};
+
+        ChunkScan(StrandScan strandScan, int chunkStart, int chunkEnd) {
+            this.strandScan = strandScan;
+            this.chunkStart = chunkStart;
+            this.chunkEnd = chunkEnd;
+        }
+
+        @Override
+        protected void compute() {
+            //two residues of overlap with the next chunk, for the codons starting at the last positions
+            int length = chunkEnd + 2 - chunkStart;
+            char[] residues = new char[length];
+            strandScan.strand.getChars(chunkStart, chunkEnd + 2, residues, 0);
+            int frame = (chunkStart - strandScan.startPosition) % 3;
+            //codons with ambiguous residues only start an ORF when any codon does
+            boolean anyCodonStarts = orfDefinition == OrfDefinition.STOP_TO_STOP;
+            int codonIndex = 0;
+            int lastInvalidPosition = -1;
+            for (int i = 0; i < length; i++) {
+                int code = CodonTable.getNucleotideCode(residues[i]);
+                if (code < 0) {
+                    lastInvalidPosition = i;
+                    code = 0;
+                }
+                codonIndex = ((codonIndex << 2) | code) & 63;
+                if (i < 2) {
+                    continue;
+                }
+                boolean valid = lastInvalidPosition < i - 2;
+                FrameSegment segment = segments[frame];
+                if (valid && translations[codonIndex] == '*') {
+                    int position = chunkStart + i - 2;
+                    if (segment.firstStop < 0) {
+                        segment.firstStop = position;
+                        segment.firstStart = segment.openStart;
+                    } else if (segment.openStart >= 0 && (position - segment.openStart) / 3 >= minimumOrfSize) {
+                        segment.orfs.add(segment.openStart, position);
+                    }
+                    segment.openStart = -1;
+                } else if (segment.openStart < 0 && (valid ? startCodons[codonIndex] : anyCodonStarts)) {
+                    segment.openStart = chunkStart + i - 2;
+                }
+                frame = frame == 2 ? 0 : frame + 1;
+            }
+            for (FrameSegment segment : segments) {
+                if (segment.firstStop < 0) {
+                    segment.firstStart = segment.openStart;
+                    segment.openStart = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * translates the ORFs of one frame.
+     */
+    private final class FrameTranslation extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final StrandScan strandScan;
+        private final int frame;
+
+        FrameTranslation(StrandScan strandScan, int frame) {
+            this.strandScan = strandScan;
+            this.frame = frame;
+        }
+
+        @Override
+        protected void compute() {
+            PositionList orfs = strandScan.frameOrfs[frame];
+            String[] proteins = new String[orfs.orfCount()];
+            char[] residues = new char[0];
+            for (int orf = 0; orf < proteins.length; orf++) {
+                int start = orfs.start(orf);
+                int end = orfs.end(orf);
+                if (residues.length < end - start) {
+                    residues = new char[Math.max(end - start, residues.length * 2)];
+                }
+                strandScan.strand.getChars(start, end, residues, 0);
+                char[] protein = new char[(end - start) / 3];
+                for (int codon = 0; codon < protein.length; codon++) {
+                    int codonIndex = CodonTable.getCodonIndex(
+                            residues[3 * codon], residues[3 * codon + 1], residues[3 * codon + 2]);
+                    protein[codon] = codonIndex < 0 ? 'X' : (char) translations[codonIndex];
+                }
+                proteins[orf] = new String(protein);
+            }
+            strandScan.frameProteins[frame] = proteins;
+        }
+    }
+}
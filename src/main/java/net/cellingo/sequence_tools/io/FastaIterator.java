@@ -0,0 +1,200 @@
+package net.cellingo.sequence_tools.io;
+
+import net.cellingo.sequence_tools.annotation.Attributes;
+import net.cellingo.sequence_tools.sequences.Sequence;
+import net.cellingo.sequence_tools.sequences.SequenceCreationException;
+import net.cellingo.sequence_tools.sequences.SequenceFactory;
+import net.cellingo.sequence_tools.sequences.SequenceType;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Pull-based reader of (multi)fasta content. Only a single record is held in memory at any time: the next record is
+ * parsed when it is requested through {@link #next()}, so a slow consumer simply stops the reading (backpressure).
+ * The underlying file is closed when the last record has been delivered, or when {@link #close()} is called.
+ * <p>
+ * Since the Iterator contract does not allow checked exceptions, IO errors are reported as
+ * {@link UncheckedIOException} and sequence creation errors as IllegalStateException wrapping the
+ * {@link SequenceCreationException}.
+ *
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+public class FastaIterator implements Iterator<Sequence>, Closeable {
+    private final BufferedReader reader;
+    private final boolean parseFastaHeader;
+    private SequenceType sequenceTypeHint;
+    private String pendingHeader;
+    private Sequence nextSequence;
+    private boolean finished;
+
+    /**
+     * construct with a fasta file; reading starts at the first line.
+     *
+     * @param inputFile        the file
+     * @param parseFastaHeader whether the description line should be parsed into an Attributes object
+     * @throws IOException when the file can not be opened
+     */
+    public FastaIterator(File inputFile, boolean parseFastaHeader) throws IOException {
+        this(inputFile, 0, parseFastaHeader);
+    }
+
+    /**
+     * construct with a file of which the fasta content starts at the given line (e.g. the ##FASTA section of GFF3).
+     *
+     * @param inputFile          the file
+     * @param startReadingAtLine number of lines to skip
+     * @param parseFastaHeader   whether the description line should be parsed into an Attributes object
+     * @throws IOException when the file can not be opened or read
+     */
+    public FastaIterator(File inputFile, int startReadingAtLine, boolean parseFastaHeader) throws IOException {
+        this(new BufferedReader(new FileReader(inputFile)), parseFastaHeader);
+        for (int i = 0; i < startReadingAtLine; i++) {
+            if (reader.readLine() == null) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * construct with an already opened reader, positioned somewhere before the first fasta header.
+     * The reader is closed by this iterator.
+     *
+     * @param reader           the reader
+     * @param parseFastaHeader whether the description line should be parsed into an Attributes object
+     */
+    public FastaIterator(BufferedReader reader, boolean parseFastaHeader) {
+        this.reader = reader;
+        this.parseFastaHeader = parseFastaHeader;
+    }
+
+    /**
+     * sets the type of all sequences in the input, so the type does not have to be determined for every record.
+     *
+     * @param sequenceTypeHint the type; null for automatic detection
+     */
+    public void setSequenceTypeHint(SequenceType sequenceTypeHint) {
+        this.sequenceTypeHint = sequenceTypeHint;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextSequence == null && !finished) {
+            try {
+                nextSequence = readNextSequence();
+            } catch (IOException e) {
+                closeQuietly();
+                throw new UncheckedIOException("ERROR! sequence file could not be read", e);
+            } catch (SequenceCreationException e) {
+                closeQuietly();
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+        return nextSequence != null;
+    }
+
+    @Override
+    public Sequence next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Sequence sequence = nextSequence;
+        nextSequence = null;
+        return sequence;
+    }
+
+    /**
+     * reads lines up to the next header (or end of file) and creates the sequence of the current record.
+     * Records without any residues are skipped.
+     *
+     * @return the next sequence or null if the input is exhausted
+     * @throws IOException               ex
+     * @throws SequenceCreationException ex
+     */
+    private Sequence readNextSequence() throws IOException, SequenceCreationException {
+        StringBuilder sequence = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(">")) {
+                String description = pendingHeader;
+                pendingHeader = line;
+                if (description != null && sequence.length() > 0) {
+                    return createSequence(sequence, description);
+                }
+                sequence.setLength(0);
+            } else if (pendingHeader != null) {
+                sequence.append(line);
+            }
+        }
+        //end of input: process last record
+        String description = pendingHeader;
+        pendingHeader = null;
+        close();
+        if (description != null && sequence.length() > 0) {
+            return createSequence(sequence, description);
+        }
+        return null;
+    }
+
+    private Sequence createSequence(StringBuilder sequence, String description) throws SequenceCreationException {
+        Sequence seq = (sequenceTypeHint == null)
+                ? SequenceFactory.createSequence(sequence)
+                : SequenceFactory.createSequence(sequence, sequenceTypeHint);
+        applyDescription(seq, description, parseFastaHeader);
+        return seq;
+    }
+
+    /**
+     * sets name and, optionally, the parsed attributes of a sequence from its fasta description line.
+     *
+     * @param seq              the sequence
+     * @param description      the description line, including the leading '&gt;'
+     * @param parseFastaHeader whether the description line should be parsed into an Attributes object
+     */
+    static void applyDescription(Sequence seq, String description, boolean parseFastaHeader) {
+        if (parseFastaHeader) {
+            Attributes a = Attributes.fromFastaDescriptionLine(description);
+            seq.setSequenceName(a.getFirstAttributeOfType("Name"));
+            seq.setAttributes(a);
+            seq.setAccessionNumber(a.getFirstAttributeOfType("ID"));
+        } else {
+            seq.setSequenceName(description.substring(1));
+        }
+    }
+
+    /**
+     * returns a lazy, sequential Stream view on this iterator. Closing the stream closes the underlying file.
+     *
+     * @return stream of sequences
+     */
+    public Stream<Sequence> stream() {
+        Spliterator<Sequence> spliterator = Spliterators.spliteratorUnknownSize(
+                this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::closeQuietly);
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        reader.close();
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            //nothing sensible left to do
+        }
+    }
+}
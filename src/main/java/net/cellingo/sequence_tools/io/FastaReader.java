@@ -1,14 +1,11 @@
 package net.cellingo.sequence_tools.io;
 
-import net.cellingo.sequence_tools.annotation.Attributes;
-import net.cellingo.sequence_tools.sequences.Sequence;
 import net.cellingo.sequence_tools.sequences.SequenceCreationException;
-import net.cellingo.sequence_tools.sequences.SequenceFactory;
+import net.cellingo.sequence_tools.sequences.SequenceType;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * Creation date: Jul 11, 2017
@@ -22,6 +19,7 @@ class FastaReader implements SequenceReaderDelegate {
     private final int startReadingAtLine;
     private SequenceReaderListener listener;
     private boolean parseFastaHeader;
+    private SequenceType sequenceTypeHint;
 
     public FastaReader(File inputFile) {
         this.inputFile = inputFile;
@@ -48,65 +46,43 @@ class FastaReader implements SequenceReaderDelegate {
     }
 
     /**
-     * Read a file of known multifasta content and return a list of plain Sequence objects.
-     * If there are listeners added to this reader, the list of sequences returned will be empty!
+     * Read a file of known multifasta content and report plain Sequence objects to the listener, one at a time.
      *
-     * @return sequenceList
      * @throws net.cellingo.sequence_tools.io.UnknownSequenceFormatException   ex
      * @throws net.cellingo.sequence_tools.sequences.SequenceCreationException ex
      */
     private void readMultiFasta() throws UnknownSequenceFormatException, SequenceCreationException {
-        int lineNumber = 0;
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-
-            /*Fasta type sequences*/
-            StringBuilder sequence = new StringBuilder();
-            String line = null;
-            String description = "";
-
-            OUTER:
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-
-                INNER:
-                while ((lineNumber - 1) < this.startReadingAtLine) {
-                    String subs = line.length() > 10 ? line.substring(0, 10) : line;
-                    continue OUTER;
-                }
-                if (line.startsWith(">")) {
-                    //new FASTA sequence starts
-                    //process the sequence of lastFasta
-                    if (lineNumber > 1 && sequence.length() > 0) {
-                        processNewSequence(sequence, description);
-                    }
-                    description = line;
-                    sequence = new StringBuilder();
-                } else {
-                    sequence.append(line.toUpperCase());
-                }
+        try (FastaIterator iterator = iterator()) {
+            while (iterator.hasNext()) {
+                this.listener.sequenceRead(iterator.next());
             }
-            //process last sequence in file
-            processNewSequence(sequence, description);
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             throw new SequenceCreationException("ERROR! sequence file could not be read", e);
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof SequenceCreationException) {
+                throw (SequenceCreationException) e.getCause();
+            }
+            throw e;
         }
     }
 
-    private void processNewSequence(StringBuilder sequence, String description) throws SequenceCreationException {
-        Sequence seq = SequenceFactory.createSequence(sequence);
-        if (this.parseFastaHeader) {
-            Attributes a = Attributes.fromFastaDescriptionLine(description);
-            seq.setSequenceName(a.getFirstAttributeOfType("Name"));
-            seq.setAttributes(a);
-            seq.setAccessionNumber(a.getFirstAttributeOfType("ID"));
-        } else {
-            seq.setSequenceName(description.substring(1));
-        }
-        this.listener.sequenceRead(seq);
+    /**
+     * returns a pull-based iterator over the sequences of this file.
+     *
+     * @return iterator
+     * @throws IOException when the file can not be opened
+     */
+    FastaIterator iterator() throws IOException {
+        FastaIterator iterator = new FastaIterator(inputFile, startReadingAtLine, parseFastaHeader);
+        iterator.setSequenceTypeHint(sequenceTypeHint);
+        return iterator;
     }
 
     public void setParseFastaHeader(boolean parseFastaHeader) {
         this.parseFastaHeader = parseFastaHeader;
     }
+
+    public void setSequenceTypeHint(SequenceType sequenceTypeHint) {
+        this.sequenceTypeHint = sequenceTypeHint;
+    }
 }
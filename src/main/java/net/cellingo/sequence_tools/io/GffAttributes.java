@@ -0,0 +1,117 @@
+package net.cellingo.sequence_tools.io;
+
+import net.cellingo.sequence_tools.annotation.Attributes;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Attributes of a GFF3 feature that keep the attributes column as it was read and only split it into key/value
+ * pairs when they are first asked for. Most features of a large annotation file are never inspected, so this saves
+ * the bulk of the parsing and of the small objects. Keys are interned, since every feature repeats the same ones.
+ * The ID attribute is not included, as it is the id of the element.
+ *
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+final class GffAttributes extends Attributes {
+    private String featureSource;
+    private String attributes;
+    private String comment;
+    private boolean parsed;
+
+    /**
+     * construct with the columns of the feature line.
+     *
+     * @param featureSource the source column
+     * @param attributes    the attributes column, or null if there are none
+     * @param comment       the (non-GFF3) tenth column, or null
+     */
+    GffAttributes(String featureSource, String attributes, String comment) {
+        this.featureSource = featureSource;
+        this.attributes = attributes;
+        this.comment = comment;
+    }
+
+    private synchronized void parse() {
+        if (parsed) {
+            return;
+        }
+        parsed = true;
+        super.addAttribute("featureSource", featureSource);
+        if (attributes != null) {
+            int start = 0;
+            while (start < attributes.length()) {
+                int end = attributes.indexOf(';', start);
+                if (end < 0) {
+                    end = attributes.length();
+                }
+                int separator = attributes.indexOf('=', start);
+                if (separator > start && separator < end) {
+                    String key = attributes.substring(start, separator).intern();
+                    if (!key.equals("ID")) {
+                        addValues(key, separator + 1, end);
+                    }
+                }
+                start = end + 1;
+            }
+        }
+        if (comment != null) {
+            super.addAttribute("comment", comment);
+        }
+        featureSource = null;
+        attributes = null;
+        comment = null;
+    }
+
+    /**
+     * multiple values are comma-separated.
+     */
+    private void addValues(String key, int start, int end) {
+        while (true) {
+            int comma = attributes.indexOf(',', start);
+            if (comma < 0 || comma > end) {
+                super.addAttribute(key, attributes.substring(start, end));
+                return;
+            }
+            super.addAttribute(key, attributes.substring(start, comma));
+            start = comma + 1;
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, String content) {
+        parse();
+        super.addAttribute(name, content);
+    }
+
+    @Override
+    public List<String> getAttributesOfType(String type) {
+        parse();
+        return super.getAttributesOfType(type);
+    }
+
+    @Override
+    public String getFirstAttributeOfType(String type) {
+        parse();
+        return super.getFirstAttributeOfType(type);
+    }
+
+    @Override
+    public boolean containsAttribute(String type) {
+        parse();
+        return super.containsAttribute(type);
+    }
+
+    @Override
+    public Set<String> getAvailableAttributes() {
+        parse();
+        return super.getAvailableAttributes();
+    }
+
+    @Override
+    public String toString() {
+        parse();
+        return super.toString();
+    }
+}
@@ -7,14 +7,24 @@ import net.cellingo.sequence_tools.sequences.SequenceCreationException;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Simple implementation for reading and parsing GFF version 3 sequence annotation format
@@ -35,14 +45,22 @@ class GffReader implements SequenceReaderDelegate {
     public static final int FRAME = 7;
     public static final int ATTRIBUTES = 8;
     public static final int COMMENTS = 9;
+    /*the file is mapped and tokenized in chunks of about this many bytes*/
+    static final long DEFAULT_CHUNK_SIZE = 1L << 26;
 
 
     private final File[] inputFiles;
     private SequenceReaderListener listener;
-    private String currentLine;
+    /*entries that have not been delivered yet, by seqid*/
     private Map<String, AnnotatedSequence> gffSequenceEntries;
+    /*residues by seqid, from the separate fasta file or the ##FASTA section*/
+    private Map<String, Sequence> fastaSequences;
+    /*seqids of delivered entries, in streaming mode*/
+    private Set<String> deliveredSequenceIds;
     private int currentLineNumber;
-    private boolean fastaSequencesPresent;
+    private boolean streaming;
+    private int parallelism = 1;
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
 
     /**
      * multiple inputfiles accepted. If more than one, the first is assumed to be the GFF and
@@ -59,34 +77,77 @@ class GffReader implements SequenceReaderDelegate {
         this.listener = listener;
     }
 
+    /**
+     * In streaming mode each sequence is delivered as soon as its features are complete: at a ### directive or
+     * when the seqid changes, so only the features of one sequence are held in memory. Features should then be
+     * grouped by seqid. Residues from a separate fasta file are attached as usual, but those of a ##FASTA section
+     * at the end of the file come after the features have been delivered; they are delivered as entries of their
+     * own, with the same ID annotation.
+     *
+     * @param streaming
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Sets the number of threads that tokenize the features. With more than one, the file is split in chunks at line
+     * boundaries which are tokenized in parallel; their features are added to the sequences in file order, so the
+     * result does not depend on the number of threads. Ignored in streaming mode.
+     *
+     * @param parallelism the number of threads; 1 (the default) to read on the calling thread
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism should be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * the size of the chunks the file is tokenized in.
+     *
+     * @param chunkSize the size in bytes
+     */
+    void setChunkSize(long chunkSize) {
+        if (chunkSize < 1 || chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid chunk size: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
     @Override
     public void readSequences() throws SequenceCreationException {
-        gffSequenceEntries = new HashMap<>();
+        gffSequenceEntries = new LinkedHashMap<>();
+        fastaSequences = new LinkedHashMap<>();
+        deliveredSequenceIds = new HashSet<>();
         try {
             if (this.inputFiles.length == 1) {
                 readSingleGff(inputFiles[0]);
             } else if (this.inputFiles.length == 2) {
-                fastaSequencesPresent = true;
-                readFastaSequences(inputFiles[1], 0);
+                readFastaSequences(new FastaIterator(inputFiles[1], false));
                 readSingleGff(inputFiles[0]);
             } else {
                 throw new UnsupportedOperationException("not implemented yet");
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new SequenceCreationException("Error parsing GFF file at line " + currentLineNumber + ": " + currentLine);
+        } catch (IOException | UncheckedIOException e) {
+            throw new SequenceCreationException("Error reading GFF file after line " + currentLineNumber, e);
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof SequenceCreationException) {
+                throw (SequenceCreationException) e.getCause();
+            }
+            throw e;
         }
     }
 
     /**
-     * parses a given gff formatted file and returns a HasMap of sequence
-     * elements
+     * parses a given gff formatted file in a single pass: the features, and the fasta section at the end, if present.
+     * The features are tokenized in chunks of the memory mapped file, in parallel if requested.
      *
-     * @return sequenceElements
-     * @throws NumberFormatException
      * @throws IOException
+     * @throws SequenceCreationException when a feature line is invalid
      */
-    private void readSingleGff(File gffFile) throws NumberFormatException, IOException {
+    private void readSingleGff(File gffFile) throws IOException, SequenceCreationException {
         /**
          * <seqid> <source; "." if absent> <feature/type; required> <start (one-based)> <end (one-based)> <score; "." if absent> <strand: +/-/.>  <phase (frame); 0/1/2/.> [attributes]
          * Possible attributes, KEY=VALUE;KEY=VALUE, where multiple values are comma-separated
@@ -100,230 +161,272 @@ class GffReader implements SequenceReaderDelegate {
          * cttctgggcgtacccgattctcggagaacttgccgcaccattccgccttg
          *
          */
-        if (!fastaSequencesPresent) {
-            findAndProcessFastaSequences(gffFile);
+        long fastaOffset;
+        RandomAccessFile raf = new RandomAccessFile(gffFile, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long[] chunkStarts = findChunkStarts(channel);
+            if (parallelism > 1 && !streaming && chunkStarts.length > 2) {
+                fastaOffset = tokenizeParallel(channel, chunkStarts);
+            } else {
+                fastaOffset = tokenizeSequential(channel, chunkStarts);
+            }
+        } finally {
+            raf.close();
+        }
+        if (streaming) {
+            deliverEntries();
+        }
+        if (fastaOffset >= 0) {
+            FileInputStream in = new FileInputStream(gffFile);
+            in.getChannel().position(fastaOffset);
+            readFastaSequences(new FastaIterator(new BufferedReader(new InputStreamReader(in)), false));
         }
 
-        BufferedReader br = new BufferedReader(new FileReader(gffFile));
-        while ((currentLine = br.readLine()) != null) {
-            currentLineNumber++;
-            if (currentLine.startsWith("##FASTA") || currentLine.startsWith("##Fasta") || currentLine.startsWith("##fasta")) {
-                //end of features section
-                break;
-            }
-            /*ignore all comment lines for now*/
-            if (currentLine.startsWith("##") || currentLine.startsWith("#!")) {
-                continue;
+        //sequences without features
+        for (Map.Entry<String, Sequence> fasta : fastaSequences.entrySet()) {
+            if (!gffSequenceEntries.containsKey(fasta.getKey()) && !deliveredSequenceIds.contains(fasta.getKey())) {
+                gffSequenceEntries.put(fasta.getKey(), createEntry(fasta.getKey(), fasta.getValue()));
             }
+        }
+        deliverEntries();
+        listener.sequenceReadingFinished();
+    }
 
-            String[] elmnts = currentLine.split("\t");
-
-            String sourceSequenceID = elmnts[SEQID];
-
-            //A new sequence is present, without an actual fasta sequence to represent it
-            if (!gffSequenceEntries.containsKey(sourceSequenceID) && !this.fastaSequencesPresent) {
-                AnnotatedSequence gffSequenceEntry = new AnnotatedSequence(SequenceObjectType.GFF3_SEQUENCE);
-                Sequence dummy = new DnaSequence("");
-                gffSequenceEntry.setSequence(dummy);
-                gffSequenceEntry.addAnnotation("ID", sourceSequenceID);
-                this.gffSequenceEntries.put(sourceSequenceID, gffSequenceEntry);
-            }
-            processFeature(elmnts);
+    /**
+     * the entry of a seqid; a new entry gets the residues read so far, or an empty placeholder sequence.
+     */
+    private AnnotatedSequence getEntry(String sequenceID) {
+        AnnotatedSequence gffSequenceEntry = gffSequenceEntries.get(sequenceID);
+        if (gffSequenceEntry == null) {
+            Sequence sequence = fastaSequences.get(sequenceID);
+            gffSequenceEntry = createEntry(sequenceID, sequence != null ? sequence : new DnaSequence(""));
+            gffSequenceEntries.put(sequenceID, gffSequenceEntry);
         }
+        return gffSequenceEntry;
+    }
 
-        notifyObservers();
+    private AnnotatedSequence createEntry(String sequenceID, Sequence sequence) {
+        AnnotatedSequence gffSequenceEntry = new AnnotatedSequence(SequenceObjectType.GFF3_SEQUENCE);
+        gffSequenceEntry.setSequence(sequence);
+        gffSequenceEntry.addAnnotation("ID", sequenceID);
+        return gffSequenceEntry;
     }
 
-    private void notifyObservers() {
-        for (AnnotatedSequence seq : this.gffSequenceEntries.values()) {
-            listener.sequenceRead(seq);
+    /**
+     * add a feature to its entry; features without ID are numbered here, on the calling thread and in file order.
+     */
+    private void addFeature(String sequenceId, NucleicAcidSequenceElement element) {
+        if (element.getId() == null) {
+            element.setId(SequenceElement.getNextAutogeneratedId());
         }
-        listener.sequenceReadingFinished();
+        getEntry(sequenceId).addElement(element);
     }
 
-    private void findAndProcessFastaSequences(File gffFile) throws IOException {
-        String line;
-        int lineNumber = 0;
-        BufferedReader br = new BufferedReader(new FileReader(gffFile));
-        while ((line = br.readLine()) != null) {
-            lineNumber++;
-            if (line.startsWith("##FASTA") || line.startsWith("##Fasta") || line.startsWith("##fasta")) {
-                this.fastaSequencesPresent = true;
-                readFastaSequences(gffFile, lineNumber);
+    private void deliverEntries() {
+        for (Map.Entry<String, AnnotatedSequence> entry : this.gffSequenceEntries.entrySet()) {
+            if (streaming) {
+                deliveredSequenceIds.add(entry.getKey());
             }
+            listener.sequenceRead(entry.getValue());
         }
-        this.fastaSequencesPresent = false;
+        gffSequenceEntries.clear();
     }
 
-    private void readFastaSequences(File gffFile, int startReadingAtLine) {
-        FastaReader fReader = new FastaReader(gffFile, startReadingAtLine);
-        fReader.setListener(new SequenceReaderListener() {
-            @Override
-            public void sequenceRead(SequenceObject sequenceObject) {
-                addFastaSequence(sequenceObject);
-            }
-
-            @Override
-            public void sequenceReadingFinished() {
-                //pass
-            }
-        });
+    private void readFastaSequences(FastaIterator iterator) throws IOException {
         try {
-            fReader.readSequences();
-        } catch (SequenceCreationException e) {
-            java.util.logging.Logger.getLogger("GffReader").log(
-                    Level.SEVERE,
-                    "SequenceCreation error in fastaReader with file " + gffFile + "; message=" + e.getMessage());
-            throw new IllegalStateException(e);
+            while (iterator.hasNext()) {
+                addFastaSequence(iterator.next());
+            }
+        } finally {
+            iterator.close();
         }
     }
 
-    private void addFastaSequence(SequenceObject sequenceObject) {
-        //System.out.println("sequenceObject = " + sequenceObject);
-        String name = sequenceObject.getSequenceName();
-        String seqId = name.substring(0, name.indexOf(' '));
+    private void addFastaSequence(Sequence sequence) {
+        //the seqid is the first word of the description line
+        String name = sequence.getSequenceName();
+        int space = name.indexOf(' ');
+        String seqId = space < 0 ? name : name.substring(0, space);
 
-        if (!gffSequenceEntries.containsKey(seqId)) {
-            AnnotatedSequence gffSequenceEntry = new AnnotatedSequence(SequenceObjectType.GFF3_SEQUENCE);
-            gffSequenceEntry.setSequence((Sequence) sequenceObject);
-            gffSequenceEntry.addAnnotation("ID", seqId);
-            this.gffSequenceEntries.put(seqId, gffSequenceEntry);
-        } else {
+        if (fastaSequences.containsKey(seqId)) {
             throw new IllegalStateException("Duplicate sequence ID in GFF collection: " + seqId);
         }
-    }
-
-    private void processFeature(String[] elmnts) {
-        String featureSource = elmnts[SOURCE];
-        String feature = elmnts[FEATURE_TYPE];
-        SequenceElementType type = SequenceElementType.getType(feature);
-
-        double score = (elmnts[SCORE].equals(".") ? 0.0 : Double.parseDouble(elmnts[SCORE]));
-
-        SequenceCoordinates coordinates = extractCoordinates(elmnts);
-
-        short frame = (elmnts[FRAME].equals(".") ? -1 : Short.parseShort(elmnts[FRAME]));
-
-        String attributes = elmnts[ATTRIBUTES];
-        List<AttributeEntry> splitAttributes = splitAttributes(attributes, currentLineNumber);
-
-        String id = extractId(splitAttributes);
-
-        NucleicAcidSequenceElement sequenceElement = new NucleicAcidSequenceElement(id);
-        sequenceElement.addAttribute("featureSource", featureSource);
-        sequenceElement.addCoordinates(coordinates);
-        sequenceElement.setSequenceElementType(type);
-        sequenceElement.setScore(score);
-
-        processGffAttributes(sequenceElement, splitAttributes);
-
-        if (sequenceElement.getParentSequenceElementIds() == null ||
-                sequenceElement.getParentSequenceElementIds().size() == 0) {
-            sequenceElement.addParentSequenceElementId(elmnts[SEQID]);
-        }
-
-        if (elmnts.length == 10) {
-            //supports non-gff3 format comments
-            sequenceElement.addAttribute("comment", elmnts[COMMENTS]);
+        fastaSequences.put(seqId, sequence);
+        AnnotatedSequence gffSequenceEntry = gffSequenceEntries.get(seqId);
+        if (gffSequenceEntry != null) {
+            //the annotations are kept on the sequence, so those of the placeholder are lost
+            gffSequenceEntry.setSequence(sequence);
+            gffSequenceEntry.addAnnotation("ID", seqId);
+        } else if (deliveredSequenceIds.contains(seqId)) {
+            //streaming mode: the features have been delivered already
+            listener.sequenceRead(createEntry(seqId, sequence));
         }
-
-        this.gffSequenceEntries.get(elmnts[SEQID]).addElement(sequenceElement);
     }
 
-    private String extractId(List<AttributeEntry> splitAttributes) {
-        //assume first entry in list is ID, otherwise search it in entire list
-        String id = null;
-        AttributeEntry firstEntry = splitAttributes.get(0);
-        if (firstEntry.getKey().equals("ID")) {
-            id = firstEntry.getValue();
-        } else {
-            for (AttributeEntry entry : splitAttributes) {
-                if (entry.getKey().equals("ID")) {
-                    id = entry.getValue();
+    /**
+     * the starts of the chunks of the file: every chunkSize bytes, moved to the next line start, and the file size.
+     */
+    private long[] findChunkStarts(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> starts = new ArrayList<>();
+        starts.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = chunkSize;
+        while (position < size) {
+            long lineStart = -1;
+            while (lineStart < 0 && position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position - 1);
+                for (int i = 0; i < read && lineStart < 0; i++) {
+                    if (buffer.get(i) == '\n') {
+                        lineStart = position + i;
+                    }
                 }
+                position += Math.max(read, 1);
             }
-            if (id == null) {
-                Logger.getLogger("GffReader").log(Level.WARNING, "line " + currentLineNumber + " seems to have a feature without ID");
-                id = SequenceElement.getNextAutogeneratedId();
+            if (lineStart < 0 || lineStart >= size) {
+                break;
             }
+            starts.add(lineStart);
+            position = lineStart + chunkSize;
         }
-        return id;
+        long[] chunkStarts = new long[starts.size() + 1];
+        for (int i = 0; i < starts.size(); i++) {
+            chunkStarts[i] = starts.get(i);
+        }
+        chunkStarts[starts.size()] = size;
+        return chunkStarts;
     }
 
-    private SequenceCoordinates extractCoordinates(String[] elmnts) {
-        int start = Integer.parseInt(elmnts[START]);
-        int end = Integer.parseInt(elmnts[END]);
-        boolean forwardStrand = true;
-        //defaults to true for other characters such as "."
-        if (elmnts[STRAND].equals("-")) forwardStrand = false;
-        return new SequenceCoordinates(start, end, forwardStrand);
+    private static ByteBuffer mapChunk(FileChannel channel, long[] chunkStarts, int chunk) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, chunkStarts[chunk], chunkStarts[chunk + 1] - chunkStarts[chunk]);
     }
 
-    private void processGffAttributes(NucleicAcidSequenceElement sequenceElement, List<AttributeEntry> splitAttributes) {
-        /* Possible attributes, KEY=VALUE;KEY=VALUE, where multiple values are comma-separated
-         * ID, Name, Alias. Parent, Target, Gap (CIGAR format), Derives_from, Note, Dbxref, Ontology_term
-         * ID=cds2;Parent=gene2;Dbxref=Genbank:WP_058986868.1;Name=WP_058986868.1;gbkey=CDS;inference=COORDINATES: similar to AA sequence:RefSeq:WP_007397838.1;product=transposase;protein_id=WP_058986868.1;transl_table=11
-         */
+    /**
+     * tokenize the chunks one after the other, delivering entries as they are completed in streaming mode.
+     *
+     * @return the file offset of the fasta section, or -1
+     */
+    private long tokenizeSequential(FileChannel channel, long[] chunkStarts) throws IOException, SequenceCreationException {
+        GffTokenizer tokenizer = new GffTokenizer();
+        GffTokenizer.FeatureHandler handler = new GffTokenizer.FeatureHandler() {
+            private String previousSequenceID;
 
-        for (AttributeEntry entry : splitAttributes) {
-            //System.out.print("entry = " + entry);
-            String value = entry.getValue();
-            if (entry.getKey().equals("ID")) {
-                //already dealt with
-                continue;
+            @Override
+            public void feature(String sequenceId, NucleicAcidSequenceElement element) {
+                if (streaming && previousSequenceID != null && !previousSequenceID.equals(sequenceId)) {
+                    deliverEntries();
+                }
+                previousSequenceID = sequenceId;
+                addFeature(sequenceId, element);
             }
-            String[] values = value.split(",");
 
-            //special action on Parent IDs,
-            if (entry.getKey().equals("Parent")) {
-                for (String v : values) {
-                    sequenceElement.addParentSequenceElementId(value);
+            @Override
+            public void featuresComplete() {
+                if (streaming) {
+                    deliverEntries();
                 }
             }
-            //but register the Parent as attribute anyway
-            for (String v : values) {
-                sequenceElement.addAttribute(entry.getKey(), value);
+        };
+        for (int chunk = 0; chunk < chunkStarts.length - 1; chunk++) {
+            int fastaPosition;
+            try {
+                fastaPosition = tokenizer.tokenize(mapChunk(channel, chunkStarts, chunk), handler);
+            } catch (IllegalArgumentException e) {
+                throw new SequenceCreationException(
+                        "Error parsing GFF file at line " + tokenizer.getLineNumber() + ": " + tokenizer.getLine(), e);
+            }
+            if (fastaPosition >= 0) {
+                return chunkStarts[chunk] + fastaPosition;
             }
+            currentLineNumber = tokenizer.getLineNumber();
         }
+        return -1;
     }
 
-    private List<AttributeEntry> splitAttributes(String attributes, int lineNumber) {
-        List<AttributeEntry> attributesList = new ArrayList<>();
-        String[] elmnts = attributes.split(";");
-        for (String elmnt : elmnts) {
-            String[] keyVal = elmnt.split("=");
-            if (keyVal.length != 2) {
-                System.err.println("Ignoring invalid formatted attributes at line " + lineNumber);
-                System.err.println("attributes=" + attributes);
+    /**
+     * tokenize the chunks in parallel, and add their features to the entries in file order.
+     *
+     * @return the file offset of the fasta section, or -1
+     */
+    private long tokenizeParallel(final FileChannel channel, final long[] chunkStarts) throws IOException, SequenceCreationException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<TokenizedChunk>> futures = new ArrayList<>();
+            for (int chunk = 0; chunk < chunkStarts.length - 1; chunk++) {
+                final int number = chunk;
+                futures.add(executor.submit(new Callable<TokenizedChunk>() {
+                    @Override
+                    public TokenizedChunk call() throws IOException {
+                        return new TokenizedChunk(mapChunk(channel, chunkStarts, number));
+                    }
+                }));
             }
-            attributesList.add(new AttributeEntry(keyVal[0], keyVal[1]));
+            for (int chunk = 0; chunk < futures.size(); chunk++) {
+                TokenizedChunk tokenized = futures.get(chunk).get();
+                futures.set(chunk, null);
+                for (int i = 0; i < tokenized.elements.size(); i++) {
+                    addFeature(tokenized.sequenceIds.get(i), tokenized.elements.get(i));
+                }
+                if (tokenized.fastaPosition >= 0) {
+                    //the other chunks are fasta content
+                    return chunkStarts[chunk] + tokenized.fastaPosition;
+                }
+                if (tokenized.error != null) {
+                    throw new SequenceCreationException("Error parsing GFF file at line "
+                            + (currentLineNumber + tokenized.errorLineNumber) + ": " + tokenized.errorLine, tokenized.error);
+                }
+                currentLineNumber += tokenized.lineCount;
+            }
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SequenceCreationException("GFF parsing interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
-        return attributesList;
     }
 
-    private static class AttributeEntry {
-        private final String key;
-        private final String value;
-
-        public AttributeEntry(String key, String value) {
-            this.key = key;
-            this.value = value;
-        }
-
-        public String getKey() {
-            return key;
+    /**
+     * the features of a chunk, in file order. Errors are kept rather than thrown, since chunks after the ##FASTA
+     * directive are not features at all.
+     */
+    private static final class TokenizedChunk implements GffTokenizer.FeatureHandler {
+        private final List<String> sequenceIds = new ArrayList<>();
+        private final List<NucleicAcidSequenceElement> elements = new ArrayList<>();
+        private int fastaPosition = -1;
+        private int lineCount;
+        private IllegalArgumentException error;
+        private int errorLineNumber;
+        private String errorLine;
+
+        private TokenizedChunk(ByteBuffer chunk) {
+            GffTokenizer tokenizer = new GffTokenizer();
+            try {
+                fastaPosition = tokenizer.tokenize(chunk, this);
+            } catch (IllegalArgumentException e) {
+                error = e;
+                errorLineNumber = tokenizer.getLineNumber();
+                errorLine = tokenizer.getLine();
+            }
+            lineCount = tokenizer.getLineNumber();
         }
 
-        public String getValue() {
-            return value;
+        @Override
+        public void feature(String sequenceId, NucleicAcidSequenceElement element) {
+            sequenceIds.add(sequenceId);
+            elements.add(element);
         }
 
         @Override
-        public String toString() {
-            return "AttributeEntry{" +
-                    "key='" + key + '\'' +
-                    ", value='" + value + '\'' +
-                    '}';
+        public void featuresComplete() {
+            //only relevant when streaming
         }
     }
 }
@@ -0,0 +1,289 @@
+package net.cellingo.sequence_tools.io;
+
+import net.cellingo.sequence_tools.annotation.NucleicAcidSequenceElement;
+import net.cellingo.sequence_tools.annotation.SequenceCoordinates;
+import net.cellingo.sequence_tools.annotation.SequenceElementType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Byte-level tokenizer of the feature section of GFF3 files. Lines are copied from the (memory mapped) input into a
+ * reusable buffer and split into columns and attributes by scanning for tabs, semicolons and equal signs; no regular
+ * expressions, no intermediate String arrays. The seqid, source and type columns repeat a lot and are looked up in a
+ * small cache, as are the element types. Only the ID and Parent attributes are extracted, the others are kept in
+ * GffAttributes until they are asked for. Features without an ID are passed on with a null ID, so that the
+ * caller can number them in file order.
+ * <p>
+ * A tokenizer is not thread safe; use one per thread.
+ *
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+final class GffTokenizer {
+    private static final int CACHE_SIZE = 4096;
+    private static final int MINIMUM_COLUMNS = GffReader.ATTRIBUTES + 1;
+    private static final int MAXIMUM_COLUMNS = GffReader.COMMENTS + 1;
+
+    private final byte[][] cachedBytes = new byte[CACHE_SIZE][];
+    private final String[] cachedStrings = new String[CACHE_SIZE];
+    private final Map<String, SequenceElementType> types = new HashMap<>();
+    private final int[] columnStarts = new int[MAXIMUM_COLUMNS + 1];
+    private final List<String> parents = new ArrayList<>();
+    private byte[] line = new byte[1024];
+    private int lineLength;
+    private int lineNumber;
+
+    /**
+     * receives the content of the feature section.
+     */
+    interface FeatureHandler {
+        /**
+         * a feature line has been parsed
+         *
+         * @param sequenceId the seqid column
+         * @param element    the feature; its ID is null when the line has none
+         */
+        void feature(String sequenceId, NucleicAcidSequenceElement element);
+
+        /**
+         * a ### directive: all features read so far are complete
+         */
+        void featuresComplete();
+    }
+
+    /**
+     * tokenize the lines of a chunk of GFF3 content, up to the end of the chunk or the ##FASTA directive. The chunk
+     * should end at a line end (or the end of the file).
+     *
+     * @param chunk   the content, from its position to its limit
+     * @param handler receives the features
+     * @return the position in the chunk of the line after the ##FASTA directive, or -1 if there is none
+     * @throws IllegalArgumentException when a feature line is invalid
+     */
+    int tokenize(ByteBuffer chunk, FeatureHandler handler) {
+        int position = chunk.position();
+        int limit = chunk.limit();
+        while (position < limit) {
+            lineLength = 0;
+            byte b;
+            while (position < limit && (b = chunk.get(position++)) != '\n') {
+                if (lineLength == line.length) {
+                    line = Arrays.copyOf(line, 2 * lineLength);
+                }
+                line[lineLength++] = b;
+            }
+            if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                lineLength--;
+            }
+            lineNumber++;
+            if (lineLength == 0) {
+                continue;
+            }
+            if (line[0] == '#') {
+                if (startsWithIgnoreCase("##FASTA")) {
+                    return position;
+                }
+                if (lineLength >= 3 && line[1] == '#' && line[2] == '#') {
+                    handler.featuresComplete();
+                }
+                /*ignore all other comment lines for now*/
+                continue;
+            }
+            processFeature(handler);
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of lines tokenized
+     */
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return the last line tokenized
+     */
+    String getLine() {
+        return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+    }
+
+    private boolean startsWithIgnoreCase(String prefix) {
+        if (lineLength < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toUpperCase((char) line[i]) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void processFeature(FeatureHandler handler) {
+        int columns = 1;
+        columnStarts[0] = 0;
+        for (int i = 0; i < lineLength && columns < MAXIMUM_COLUMNS; i++) {
+            if (line[i] == '\t') {
+                columnStarts[columns++] = i + 1;
+            }
+        }
+        if (columns < MINIMUM_COLUMNS) {
+            throw new IllegalArgumentException("a feature line should have " + MINIMUM_COLUMNS + " columns");
+        }
+        columnStarts[columns] = lineLength + 1;
+
+        String sequenceId = cachedString(GffReader.SEQID);
+        String featureSource = cachedString(GffReader.SOURCE);
+        String typeName = cachedString(GffReader.FEATURE_TYPE);
+        SequenceElementType type = types.get(typeName);
+        if (type == null) {
+            type = SequenceElementType.getType(typeName);
+            types.put(typeName, type);
+        }
+        int start = parseInt(GffReader.START);
+        int end = parseInt(GffReader.END);
+        //defaults to the forward strand for other characters such as "."
+        boolean forwardStrand = !(columnLength(GffReader.STRAND) == 1 && line[columnStarts[GffReader.STRAND]] == '-');
+        double score = isDot(GffReader.SCORE) ? 0.0 : Double.parseDouble(string(GffReader.SCORE));
+
+        String id = processAttributes();
+        if (id == null) {
+            Logger.getLogger("GffReader").log(Level.WARNING, "line " + lineNumber + " seems to have a feature without ID");
+        }
+        NucleicAcidSequenceElement sequenceElement = new NucleicAcidSequenceElement(id);
+        //supports non-gff3 format comments
+        String comment = columns == MAXIMUM_COLUMNS ? string(GffReader.COMMENTS) : null;
+        String attributes = isDot(GffReader.ATTRIBUTES) ? null : string(GffReader.ATTRIBUTES);
+        sequenceElement.setAttributes(new GffAttributes(featureSource, attributes, comment));
+        sequenceElement.addCoordinates(new SequenceCoordinates(start, end, forwardStrand));
+        sequenceElement.setSequenceElementType(type);
+        sequenceElement.setScore(score);
+        if (parents.isEmpty()) {
+            sequenceElement.addParentSequenceElementId(sequenceId);
+        }
+        for (String parent : parents) {
+            sequenceElement.addParentSequenceElementId(parent);
+        }
+        handler.feature(sequenceId, sequenceElement);
+    }
+
+    /**
+     * scan the KEY=VALUE;KEY=VALUE attributes for the ID, which is returned, and the comma-separated Parent IDs
+     */
+    private String processAttributes() {
+        parents.clear();
+        String id = null;
+        int position = columnStarts[GffReader.ATTRIBUTES];
+        int end = columnStarts[GffReader.ATTRIBUTES + 1] - 1;
+        while (position < end) {
+            int pairEnd = indexOf((byte) ';', position, end);
+            int separator = indexOf((byte) '=', position, pairEnd);
+            if (separator == pairEnd) {
+                if (pairEnd > position && !isDot(GffReader.ATTRIBUTES)) {
+                    Logger.getLogger("GffReader").log(Level.WARNING,
+                            "Ignoring invalid formatted attributes at line " + lineNumber);
+                }
+            } else if (matches("ID", position, separator)) {
+                id = new String(line, separator + 1, pairEnd - separator - 1, StandardCharsets.UTF_8);
+            } else if (matches("Parent", position, separator)) {
+                int valueStart = separator + 1;
+                while (valueStart <= pairEnd) {
+                    int valueEnd = indexOf((byte) ',', valueStart, pairEnd);
+                    parents.add(new String(line, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8));
+                    valueStart = valueEnd + 1;
+                }
+            }
+            position = pairEnd + 1;
+        }
+        return id;
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == b) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private boolean matches(String key, int from, int to) {
+        if (to - from != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (line[from + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int columnLength(int column) {
+        return columnStarts[column + 1] - 1 - columnStarts[column];
+    }
+
+    private boolean isDot(int column) {
+        return columnLength(column) == 0 || (columnLength(column) == 1 && line[columnStarts[column]] == '.');
+    }
+
+    private String string(int column) {
+        return new String(line, columnStarts[column], columnLength(column), StandardCharsets.UTF_8);
+    }
+
+    private int parseInt(int column) {
+        int from = columnStarts[column];
+        int to = from + columnLength(column);
+        if (from == to || to - from > 10) {
+            throw new NumberFormatException("invalid coordinate: " + string(column));
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("invalid coordinate: " + string(column));
+            }
+            value = value * 10 + digit;
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("invalid coordinate: " + string(column));
+        }
+        return (int) value;
+    }
+
+    /**
+     * the column as String, from a direct-mapped cache of recent values.
+     */
+    private String cachedString(int column) {
+        int from = columnStarts[column];
+        int length = columnLength(column);
+        int hash = 0;
+        for (int i = from; i < from + length; i++) {
+            hash = 31 * hash + line[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        byte[] cached = cachedBytes[slot];
+        if (cached != null && cached.length == length) {
+            int i = 0;
+            while (i < length && cached[i] == line[from + i]) {
+                i++;
+            }
+            if (i == length) {
+                return cachedStrings[slot];
+            }
+        }
+        String value = string(column);
+        cachedBytes[slot] = Arrays.copyOfRange(line, from, from + length);
+        cachedStrings[slot] = value;
+        return value;
+    }
+}
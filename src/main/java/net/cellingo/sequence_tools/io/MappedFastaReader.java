@@ -0,0 +1,201 @@
+package net.cellingo.sequence_tools.io;
+
+import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
+import net.cellingo.sequence_tools.sequences.Sequence;
+import net.cellingo.sequence_tools.sequences.SequenceCreationException;
+import net.cellingo.sequence_tools.sequences.SequenceFactory;
+import net.cellingo.sequence_tools.sequences.SequenceType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte-level (multi)fasta reader working on a memory-mapped file. Record boundaries are found by scanning for '&gt;'
+ * at line starts; residues are upper-cased and checked against all sequence alphabets in the same pass, and are
+ * written into a single reusable byte buffer. No String is created per line: the only copy of the residues is the
+ * final String the Sequence object is constructed with.
+ * <p>
+ * Files larger than 2GB are mapped in consecutive windows. Spaces, tabs and carriage returns within sequence lines
+ * are ignored.
+ *
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+class MappedFastaReader implements SequenceReaderDelegate {
+    private static final long MAPPING_WINDOW = 1L << 30;
+    private static final int SCAN_BLOCK = 1 << 16;
+    private static final long MAX_INITIAL_BUFFER = 1L << 26;
+
+    /*upper case of every byte value*/
+    private static final byte[] UPPER_CASE = new byte[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            UPPER_CASE[b] = (byte) (b >= 'a' && b <= 'z' ? b - 32 : b);
+        }
+    }
+
+    private final File inputFile;
+    private SequenceReaderListener listener;
+    private boolean parseFastaHeader;
+    private SequenceType sequenceTypeHint;
+
+    /*parser state, carried across mapping windows*/
+    private byte[] residues = new byte[1 << 16];
+    private int residueCount;
+    private byte[] header = new byte[256];
+    private int headerLength;
+    private int typeMask;
+    private boolean inHeader;
+    private boolean inRecord;
+    private boolean atLineStart;
+
+    public MappedFastaReader(File inputFile) {
+        this.inputFile = inputFile;
+    }
+
+    @Override
+    public void setListener(SequenceReaderListener listener) {
+        this.listener = listener;
+    }
+
+    public void setParseFastaHeader(boolean parseFastaHeader) {
+        this.parseFastaHeader = parseFastaHeader;
+    }
+
+    public void setSequenceTypeHint(SequenceType sequenceTypeHint) {
+        this.sequenceTypeHint = sequenceTypeHint;
+    }
+
+    @Override
+    public void readSequences() throws SequenceCreationException {
+        inHeader = false;
+        inRecord = false;
+        atLineStart = true;
+        try (RandomAccessFile raf = new RandomAccessFile(inputFile, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            //for single-record files the residues then go straight into a buffer of the final size
+            residues = new byte[(int) Math.max(residues.length, Math.min(size, MAX_INITIAL_BUFFER))];
+            for (long offset = 0; offset < size; offset += MAPPING_WINDOW) {
+                long length = Math.min(MAPPING_WINDOW, size - offset);
+                scan(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+            }
+        } catch (IOException e) {
+            throw new SequenceCreationException("ERROR! sequence file could not be read", e);
+        }
+        if (inRecord) {
+            finishRecord();
+        }
+    }
+
+    /**
+     * single pass over a mapped window. The window is transferred to a small scratch array in bulk, which is much
+     * cheaper than fetching individual bytes from the buffer.
+     *
+     * @param buffer the mapped window
+     * @throws SequenceCreationException ex
+     */
+    private void scan(MappedByteBuffer buffer) throws SequenceCreationException {
+        byte[] block = new byte[SCAN_BLOCK];
+        while (buffer.hasRemaining()) {
+            int blockLength = Math.min(SCAN_BLOCK, buffer.remaining());
+            buffer.get(block, 0, blockLength);
+            scan(block, blockLength);
+        }
+    }
+
+    private void scan(byte[] block, int blockLength) throws SequenceCreationException {
+        byte[] res = residues;
+        int count = residueCount;
+        int mask = typeMask;
+        int i = 0;
+        while (i < blockLength) {
+            if (inHeader) {
+                while (i < blockLength && block[i] != '\n') {
+                    appendHeaderByte(block[i++]);
+                }
+                if (i < blockLength) {
+                    inHeader = false;
+                    atLineStart = true;
+                    i++;
+                }
+                continue;
+            }
+            if (atLineStart && block[i] == '>') {
+                if (inRecord) {
+                    residueCount = count;
+                    typeMask = mask;
+                    finishRecord();
+                    res = residues;
+                }
+                inRecord = true;
+                inHeader = true;
+                headerLength = 0;
+                appendHeaderByte((byte) '>');
+                i++;
+                count = 0;
+                mask = SequenceAlphabet.ALL_ALPHABETS_MASK;
+                continue;
+            }
+            //sequence line (or junk before the first header): tight loop up to the end of the line
+            if (count + (blockLength - i) > res.length) {
+                res = Arrays.copyOf(res, Math.max(res.length * 2, count + blockLength));
+                residues = res;
+            }
+            boolean record = inRecord;
+            atLineStart = false;
+            while (i < blockLength) {
+                byte b = block[i++];
+                if (b == '\n') {
+                    atLineStart = true;
+                    break;
+                }
+                byte upper = UPPER_CASE[b & 0xFF];
+                if (record && upper != '\r' && upper != ' ' && upper != '\t') {
+                    mask &= SequenceAlphabet.getAlphabetMask((char) (upper & 0xFF));
+                    res[count++] = upper;
+                }
+            }
+        }
+        residueCount = count;
+        typeMask = mask;
+    }
+
+    private void appendHeaderByte(byte b) {
+        if (b == '\r') {
+            return;
+        }
+        if (headerLength == header.length) {
+            header = Arrays.copyOf(header, header.length * 2);
+        }
+        header[headerLength++] = b;
+    }
+
+    /**
+     * creates the sequence of the current record and passes it to the listener. Records without residues are skipped.
+     *
+     * @throws SequenceCreationException ex
+     */
+    private void finishRecord() throws SequenceCreationException {
+        inRecord = false;
+        if (residueCount == 0) {
+            return;
+        }
+        SequenceType type = sequenceTypeHint != null ? sequenceTypeHint : SequenceAlphabet.getSequenceType(typeMask);
+        if (type == null) {
+            throw new SequenceCreationException(
+                    "ERROR: provided String could not be converted to a valid sequence object");
+        }
+        String sequenceString = new String(residues, 0, residueCount, StandardCharsets.ISO_8859_1);
+        Sequence seq = SequenceFactory.createSequence(sequenceString, type);
+        String description = new String(header, 0, headerLength, StandardCharsets.ISO_8859_1);
+        FastaIterator.applyDescription(seq, description, parseFastaHeader);
+        listener.sequenceRead(seq);
+    }
+}
@@ -2,13 +2,16 @@ package net.cellingo.sequence_tools.io;
 
 import net.cellingo.sequence_tools.annotation.SequenceObject;
 import net.cellingo.sequence_tools.annotation.SequenceObjectType;
+import net.cellingo.sequence_tools.sequences.Sequence;
 import net.cellingo.sequence_tools.sequences.SequenceCreationException;
+import net.cellingo.sequence_tools.sequences.SequenceType;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.stream.Stream;
 
 /**
  * this class is the main point of entry for all sequence IO. It determines the sequence format based on the first line
@@ -24,6 +27,10 @@ public class SequenceReader implements SequenceReaderListener {
     private ArrayList<SequenceObject> sequenceList;
     private ArrayList<SequenceReaderListener> listeners;
     private boolean parseFastaHeader;
+    private boolean memoryMapped;
+    private boolean gffStreaming;
+    private int gffParallelism = 1;
+    private SequenceType sequenceTypeHint;
 
     /**
      * construct with input file containing sequence(s).
@@ -56,6 +63,48 @@ public class SequenceReader implements SequenceReaderListener {
         readSequences();
     }
 
+    /**
+     * Opens the (first) file for pull-based reading: sequences are parsed one at a time, when requested by the
+     * caller, so memory use is bounded by the largest single record. Currently only supported for Fasta.
+     * Listeners registered on this reader are not notified, and {@link #getSequenceList()} is not filled.
+     * The returned iterator should be closed when it is not read to the end.
+     *
+     * @return iterator over the sequences
+     * @throws UnknownSequenceFormatException ex
+     * @throws SequenceCreationException      ex
+     */
+    public FastaIterator iterator() throws UnknownSequenceFormatException, SequenceCreationException {
+        if(this.inputFiles == null || this.inputFiles.length == 0) {
+            throw new SequenceCreationException("No files provided");
+        }
+        if (sequenceObjectType == null) {
+            checkSequenceFormat();
+        }
+        if (sequenceObjectType != SequenceObjectType.SIMPLE_SEQUENCE) {
+            throw new UnsupportedOperationException("streaming is only supported for Fasta");
+        }
+        FastaReader fReader = new FastaReader(inputFiles[0]);
+        fReader.setParseFastaHeader(this.parseFastaHeader);
+        fReader.setSequenceTypeHint(this.sequenceTypeHint);
+        try {
+            return fReader.iterator();
+        } catch (IOException e) {
+            throw new SequenceCreationException("ERROR! sequence file could not be read", e);
+        }
+    }
+
+    /**
+     * Lazy Stream variant of {@link #iterator()}. Use it in a try-with-resources block to make sure the underlying
+     * file is closed.
+     *
+     * @return stream of sequences
+     * @throws UnknownSequenceFormatException ex
+     * @throws SequenceCreationException      ex
+     */
+    public Stream<Sequence> stream() throws UnknownSequenceFormatException, SequenceCreationException {
+        return iterator().stream();
+    }
+
     /**
      * Have a peek for the possible sequence format
      *
@@ -98,20 +147,73 @@ public class SequenceReader implements SequenceReaderListener {
         this.parseFastaHeader = parseFastaHeader;
     }
 
+    /**
+     * Sets the type of all Fasta sequences in the input, so that it does not have to be determined from the
+     * residues of every record. Has no effect on other formats.
+     *
+     * @param sequenceTypeHint the type; null (the default) for automatic detection
+     */
+    public void setSequenceTypeHint(SequenceType sequenceTypeHint) {
+        this.sequenceTypeHint = sequenceTypeHint;
+    }
+
+    /**
+     * When set, Fasta files are read with a byte-level parser on a memory-mapped file instead of line by line.
+     * This is considerably faster for large files. Has no effect on other formats, or on {@link #iterator()}.
+     *
+     * @param memoryMapped use memory mapping
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * When set, each GFF3 sequence is delivered to the listeners as soon as its features are complete (at a ###
+     * directive or when the seqid changes) instead of after reading the whole file. Has no effect on other formats.
+     *
+     * @param gffStreaming deliver GFF3 sequences while reading
+     */
+    public void setGffStreaming(boolean gffStreaming) {
+        this.gffStreaming = gffStreaming;
+    }
+
+    /**
+     * Sets the number of threads that parse the features of GFF3 files. The file is then split in chunks that are
+     * parsed in parallel; the result is the same as with a single thread. Not used in GFF3 streaming mode, and
+     * has no effect on other formats.
+     *
+     * @param gffParallelism the number of threads; 1 (the default) parses on the calling thread
+     */
+    public void setGffParallelism(int gffParallelism) {
+        if (gffParallelism < 1) {
+            throw new IllegalArgumentException("parallelism should be at least 1: " + gffParallelism);
+        }
+        this.gffParallelism = gffParallelism;
+    }
+
     /**
      * read the sequences.
      *
      * @throws SequenceCreationException ex
      */
     private void readSequences() throws SequenceCreationException {
-        if (sequenceObjectType == SequenceObjectType.SIMPLE_SEQUENCE) {
+        if (sequenceObjectType == SequenceObjectType.SIMPLE_SEQUENCE && memoryMapped) {
+            MappedFastaReader mfReader = new MappedFastaReader(inputFiles[0]);
+            mfReader.setParseFastaHeader(this.parseFastaHeader);
+            mfReader.setSequenceTypeHint(this.sequenceTypeHint);
+            this.sequenceReaderDelegate = mfReader;
+        } else if (sequenceObjectType == SequenceObjectType.SIMPLE_SEQUENCE) {
             FastaReader fReader = new FastaReader(inputFiles[0]);
             fReader.setParseFastaHeader(this.parseFastaHeader);
+            fReader.setSequenceTypeHint(this.sequenceTypeHint);
             this.sequenceReaderDelegate = fReader;
         } else if (sequenceObjectType == SequenceObjectType.GENBANK_SEQUENCE) {
             this.sequenceReaderDelegate = new GenbankReader(inputFiles[0]);
         } else if (sequenceObjectType == SequenceObjectType.GFF3_SEQUENCE) {
-            this.sequenceReaderDelegate = new GffReader(inputFiles);
+            GffReader gffReader = new GffReader(inputFiles);
+            gffReader.setStreaming(this.gffStreaming);
+            gffReader.setParallelism(this.gffParallelism);
+            this.sequenceReaderDelegate = gffReader;
         }
         else {
             throw new UnsupportedOperationException("this sequence format is not yet supported");
@@ -477,16 +477,11 @@ public class Primer {
             seqs.add(pFirst);
             seqs.add(pSecond);
             System.out.println("starting alignment of " + pFirst + " to " + pSecond);
-            AlignmentOptions alignmentOptions = new AlignmentOptions(seqs.get(0).getSequenceType(), AlignmentMatrixType.DNA_STRUCTURE_ALIGNMENT);
-            alignmentOptions.getAlignmentPropertiesMinimumValues().setProperty(AlignmentProperty.ALIGNMENT_LENGTH, 3);
-            alignmentOptions.getAlignmentPropertiesMinimumValues().setProperty(AlignmentProperty.SW_SCORE, 1);
-            //alignmentOptions.set
-            alignmentOptions.setAlsoComplement(false);
 
             AlignmentController aligner = new AlignmentController(
                     AlignmentAlgorithm.LOCAL,
                     AlignmentStrategy.INTERMOLECULAR_FIRST_TO_ALL,
-                    alignmentOptions,
+                    SelfComplementarityOptions.OPTIONS,
                     seqs);
             aligner.start();
             ArrayList<Alignment> alignmentList = aligner.getAlignmentList();
@@ -513,6 +508,22 @@ public class Primer {
         return null;
     }
 
+    /**
+     * the alignment options are the same for all primers and only read during alignment,
+     * so they are created once, when first needed
+     */
+    private static final class SelfComplementarityOptions {
+        private static final AlignmentOptions OPTIONS = createOptions();
+
+        private static AlignmentOptions createOptions() {
+            AlignmentOptions alignmentOptions = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.DNA_STRUCTURE_ALIGNMENT);
+            alignmentOptions.getAlignmentPropertiesMinimumValues().setProperty(AlignmentProperty.ALIGNMENT_LENGTH, 3);
+            alignmentOptions.getAlignmentPropertiesMinimumValues().setProperty(AlignmentProperty.SW_SCORE, 1);
+            alignmentOptions.setAlsoComplement(false);
+            return alignmentOptions;
+        }
+    }
+
     private String getPrimerSelfAnnealingTestMessage(int maxContiguousSelfAnnealingBases) {
         Alignment a = getSelfComplementarity();
         System.out.println(a.toString());
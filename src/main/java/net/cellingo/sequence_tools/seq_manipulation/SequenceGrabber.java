@@ -139,6 +139,7 @@ public class SequenceGrabber {
 	/**
 	 * Filter a sequence against all the settings of this filter object. The filter is applied to sequence regions 
 	 * specified in the list of coordinates, including the includeUpstream and includeDownstream number of characters. 
+	 * The returned regions are views on the sequence; use Sequence.detach() to obtain independent copies.
 	 * @param sequence
 	 * @param coordinates list of to scan
 	 * @return sequenceRegions list of that were accepted by this filter
@@ -150,7 +151,7 @@ public class SequenceGrabber {
 		for( SequenceCoordinates coordinate : coordinates ){
 			Sequence region = null;
 			try {
-				region = sequence.getSequence().getSubSequenceArrayBoundsSafe( 
+				region = sequence.getSequence().getViewArrayBoundsSafe( 
 						(coordinate.getStart() - includeUpstream), (coordinate.getStop() + includeDownstream) );
 				if( applySequenceFilters( region ) && applyElementsFilter( sequence, coordinate )){
 					region.setSequenceName( sequence.getSequenceName() + " [region " + (coordinate.getStart() - includeUpstream) + "-" + (coordinate.getStop() + includeDownstream) + "]");
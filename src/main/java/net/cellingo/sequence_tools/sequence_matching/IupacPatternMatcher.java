@@ -0,0 +1,128 @@
+package net.cellingo.sequence_tools.sequence_matching;
+
+import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
+
+/**
+ * bit-parallel (Shift-And) matcher for a set of patterns that may contain ambiguity codes. Each pattern
+ * position is the ambiguity mask of its character (see SequenceAlphabet.getAmbiguityMask), so a position
+ * matches any core character it represents; ambiguous characters in the text match nothing, just as they
+ * would not match any of the concrete queries the pattern stands for.
+ * <p>
+ * All patterns are laid out one after the other in a single bit vector of as many longs as needed, so the
+ * text is scanned once for all of them, whatever their number, length or degeneracy.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+final class IupacPatternMatcher {
+	private static final int TABLE_SIZE = 128;
+	private final int[] patternLengths;
+	private final int words;
+	/*per text character, the pattern positions it matches*/
+	private final long[][] characterBits;
+	/*the first and last position of every pattern*/
+	private final long[] startBits;
+	private final long[] endBits;
+	/*pattern of every bit*/
+	private final int[] bitPatterns;
+
+	/**
+	 * receives the matches of a scan
+	 */
+	interface MatchHandler {
+		/**
+		 * a pattern matches the text
+		 * @param pattern index of the pattern
+		 * @param start position of the first matching character (0-based)
+		 */
+		void match(int pattern, int start);
+	}
+
+	/**
+	 * compile the patterns; they should not be empty
+	 * @param patterns
+	 * @param alphabet the alphabet of the text to scan
+	 */
+	IupacPatternMatcher(String[] patterns, SequenceAlphabet alphabet){
+		patternLengths = new int[patterns.length];
+		int totalLength = 0;
+		for(int p=0; p<patterns.length; p++){
+			if( patterns[p].length() == 0 ){
+				throw new IllegalArgumentException("empty pattern");
+			}
+			patternLengths[p] = patterns[p].length();
+			totalLength += patternLengths[p];
+		}
+		words = (totalLength + 63) >>> 6;
+		characterBits = new long[TABLE_SIZE][words];
+		startBits = new long[words];
+		endBits = new long[words];
+		bitPatterns = new int[totalLength];
+		int[] textMasks = new int[TABLE_SIZE];
+		for(char c=0; c<TABLE_SIZE; c++){
+			textMasks[c] = alphabet.isCoreCharacter(c) ? alphabet.getAmbiguityMask(c) : 0;
+		}
+		int bit = 0;
+		for(int p=0; p<patterns.length; p++){
+			startBits[bit >>> 6] |= 1L << bit;
+			for(int i=0; i<patternLengths[p]; i++, bit++){
+				int positionMask = alphabet.getAmbiguityMask( patterns[p].charAt(i) );
+				for(char c=0; c<TABLE_SIZE; c++){
+					if( (textMasks[c] & positionMask) != 0 ){
+						characterBits[c][bit >>> 6] |= 1L << bit;
+					}
+				}
+				bitPatterns[bit] = p;
+			}
+			endBits[(bit - 1) >>> 6] |= 1L << (bit - 1);
+		}
+	}
+
+	/**
+	 * scan the text once and report every match of every pattern, overlapping ones included, ordered by
+	 * end position and then by pattern
+	 * @param text
+	 * @param handler
+	 */
+	void scan(CharSequence text, MatchHandler handler){
+		if( words == 1 ){
+			scanSingleWord(text, handler);
+			return;
+		}
+		long[] state = new long[words];
+		for(int i=0; i<text.length(); i++){
+			char c = text.charAt(i);
+			long[] bits = c < TABLE_SIZE ? characterBits[c] : null;
+			long carry = 0;
+			for(int w=0; w<words; w++){
+				long shifted = (state[w] << 1) | carry | startBits[w];
+				carry = state[w] >>> 63;
+				state[w] = bits == null ? 0 : shifted & bits[w];
+			}
+			for(int w=0; w<words; w++){
+				long ends = state[w] & endBits[w];
+				while( ends != 0 ){
+					int bit = (w << 6) + Long.numberOfTrailingZeros(ends);
+					int pattern = bitPatterns[bit];
+					handler.match(pattern, i - patternLengths[pattern] + 1);
+					ends &= ends - 1;
+				}
+			}
+		}
+	}
+
+	private void scanSingleWord(CharSequence text, MatchHandler handler){
+		long state = 0;
+		final long start = startBits[0];
+		final long end = endBits[0];
+		for(int i=0; i<text.length(); i++){
+			char c = text.charAt(i);
+			state = c < TABLE_SIZE ? ((state << 1) | start) & characterBits[c][0] : 0;
+			long ends = state & end;
+			while( ends != 0 ){
+				int pattern = bitPatterns[Long.numberOfTrailingZeros(ends)];
+				handler.match(pattern, i - patternLengths[pattern] + 1);
+				ends &= ends - 1;
+			}
+		}
+	}
+}
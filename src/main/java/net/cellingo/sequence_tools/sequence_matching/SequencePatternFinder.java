@@ -3,6 +3,7 @@
  */
 package net.cellingo.sequence_tools.sequence_matching;
 
+import net.cellingo.sequence_tools.alphabets.NucleicAcidSequenceAlphabet;
 import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
 import net.cellingo.sequence_tools.annotation.NucleicAcidSequenceElement;
 import net.cellingo.sequence_tools.annotation.SequenceCoordinates;
@@ -12,17 +13,16 @@ import net.cellingo.sequence_tools.sequences.*;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * This class takes care of all simple sequence pattern finding
- * operations based on the Java regex classes Pattern and Matcher.
- * In the constructor, a search sequence and query sequence (as regexp) 
- * are entered. Subsequently all ambiguous characters 
- * are translated in a set of possible characters and thus, a set 
- * of possible query sequences.
+ * operations. In the constructor, a search sequence and query sequence
+ * are entered. Ambiguous characters in the query match every character
+ * they represent: the query and its reverse complement are matched in
+ * a single scan of the sequence by an IupacPatternMatcher, without
+ * expanding them into all possible query sequences. Matches are reported
+ * as they would be for each of these sequences separately, so a match
+ * overlapping an earlier match of the same sequence is skipped.
  * A match-start-position-ordered ArrayList of matches is returned after invoking the 
  * getMatches() method
  * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
@@ -37,7 +37,6 @@ public class SequencePatternFinder {
 	private ArrayList<SequenceElement> searchMatches;
 	private boolean found;
 	private boolean alsoComplementary;
-	private boolean currentQueryIsForward;
 	
 	/**
 	 * the default constructor takes in a Sequence to search against
@@ -59,185 +58,82 @@ public class SequencePatternFinder {
 	public void findPatterns(){
 		if(primaryQuery == null || primaryQuery.length()==0){
 			returnMessage = SequenceErrorMessage.NO_SEQUENCE;
+			return;
 		}
-		boolean validQuery = true;
-		boolean isCoreAlphabet = true;
 		SequenceAlphabet alphabet = sequence.getAlphabet();
 		for( char character : primaryQuery.toCharArray() ){
 			if(! alphabet.isValidAlphabetCharacter(character) ){
-				validQuery = false;
-				break;
-			}
-			if(! alphabet.isCoreCharacter(character) ){
-				isCoreAlphabet = false;
-				break;
+				//query does not consist of legal alphabet characters
+				returnMessage = SequenceErrorMessage.ILLEGAL_CHARACTER;
+				return;
 			}
 		}
-		if(validQuery){	/*query consists of legal alphabet characters*/
-			/*if also complement search, make a reverse complement copy of the query*/
-			if(alsoComplementary){
-				Sequence primaryQueryBiolSeq;
-				try {
-					primaryQueryBiolSeq = SequenceFactory.createSequence(primaryQuery);
-					if(primaryQueryBiolSeq instanceof DnaSequence){
-						DnaSequence primaryQueryDna = (DnaSequence) primaryQueryBiolSeq;
-						primaryQueryDna.reverseComplement();
-						primaryQueryComplement = primaryQueryDna.getSequenceString();
-					}
-					else if(primaryQueryBiolSeq instanceof RnaSequence){
-						RnaSequence primaryQueryRna = (RnaSequence) primaryQueryBiolSeq;
-						primaryQueryRna.reverseComplement();
-						primaryQueryComplement = primaryQueryRna.getSequenceString();
-					}
-				} catch (SequenceCreationException e) {
-					e.printStackTrace();
-				}
-			}
-			
-			/* check if it is a "core alphabet" sequence*/
-			if(isCoreAlphabet){
-				currentQueryIsForward = true;
-				doSingleQuery(primaryQuery);
-				//also complementary?
-				if(alsoComplementary && primaryQueryComplement != null){
-					currentQueryIsForward = false;
-					doSingleQuery(primaryQueryComplement);
-				}
-		        if(!found){
-		        	returnMessage = SequenceErrorMessage.NO_MATCH_FOUND;
-		        }
-		        else{
-		        	returnMessage = SequenceErrorMessage.MATCHES_FOUND;
-		        }
-			}// end if(sequence.checkSequenceIsCoreAlphabet(primaryQuery))
-			
-			/*query consists of legal alphabet characters with ambiguities; 
-			 * has to be split up in all possible matching queries.*/
-			else{
-				//ArrayList<StringBuilder> queryList = new ArrayList<StringBuilder>();
-				currentQueryIsForward = true;
-				ArrayList<StringBuilder> queryList = buildQueryList(primaryQuery);
-				/*
-				 * now all subqueries have been created and will be matched to the 
-				 * search sequence one by one
-				 */
-				for(StringBuilder query: queryList){
-					doSingleQuery(query.toString());
+		/*if also complement search, make a reverse complement copy of the query*/
+		if(alsoComplementary && alphabet instanceof NucleicAcidSequenceAlphabet){
+			primaryQueryComplement = NucleicAcidSequence.reverseComplementString(primaryQuery, (NucleicAcidSequenceAlphabet)alphabet);
+		}
+		final String[] queries = primaryQueryComplement == null
+				? new String[]{primaryQuery}
+				: new String[]{primaryQuery, primaryQueryComplement};
+		final String searchString = sequence.getSequenceString();
+		/*per query, the starts of the recent matches that the next ones may overlap*/
+		final int[][] recentStarts = new int[queries.length][];
+		final int[] recentFirst = new int[queries.length];
+		final int[] recentCount = new int[queries.length];
+		for(int q=0; q<queries.length; q++){
+			recentStarts[q] = new int[queries[q].length()];
+		}
+		IupacPatternMatcher matcher = new IupacPatternMatcher(queries, alphabet);
+		matcher.scan(searchString, new IupacPatternMatcher.MatchHandler(){
+			public void match(int query, int start){
+				int length = queries[query].length();
+				int[] starts = recentStarts[query];
+				while( recentCount[query] > 0 && starts[recentFirst[query]] <= start - length ){
+					recentFirst[query] = (recentFirst[query] + 1) % length;
+					recentCount[query]--;
 				}
-				
-				//also complementary?
-				if(alsoComplementary && primaryQueryComplement != null){
-					currentQueryIsForward = false;
-					ArrayList<StringBuilder> queryListRev = buildQueryList(primaryQueryComplement);
-//					buildQueryList(primaryQueryComplement);
-					for(StringBuilder query: queryListRev){
-						doSingleQuery(query.toString());
-//						System.out.println("query: " + query.toString());
+				/*a match overlapping an earlier one of the same concrete query is not reported*/
+				for(int r=0; r<recentCount[query]; r++){
+					int recent = starts[(recentFirst[query] + r) % length];
+					if( searchString.regionMatches(recent, searchString, start, length) ){
+						return;
 					}
 				}
-				
-		        if(!found){
-		        	returnMessage = SequenceErrorMessage.NO_MATCH_FOUND;
-		        }
-		        else{
-		        	returnMessage = SequenceErrorMessage.MATCHES_FOUND;
-		        }
-			}// end if(sequence.checkSequenceIsCoreAlphabet(primaryQuery))
-		}//end query consists of legal alphabet characters
+				starts[(recentFirst[query] + recentCount[query]) % length] = start;
+				recentCount[query]++;
+				addMatch(start, length, query == 0);
+			}
+		});
+		if(!found){
+			returnMessage = SequenceErrorMessage.NO_MATCH_FOUND;
+		}
 		else{
-			//query does not consist of legal alphabet characters
-			returnMessage = SequenceErrorMessage.ILLEGAL_CHARACTER;
+			returnMessage = SequenceErrorMessage.MATCHES_FOUND;
 		}
 	}//end findPatterns()
 	
 	/**
-	 * do one query with a search string
-	 * @param query
-	 */
-	private void doSingleQuery(String query){
-		//do the exact pattern matching
-        Pattern pattern = Pattern.compile(query);
-        Matcher matcher = pattern.matcher(sequence.getSequenceString());
-        while (matcher.find()) {
-            matchNumber++;
-//            SequenceGraphicsElement seqHighlight = new SequenceGraphicsElement(matcher.start()+1, query.length(), null, currentQueryIsForward);
-            SequenceElement seqElement;
-
-            if(sequence.getSequenceType() == SequenceType.DNA || sequence.getSequenceType() == SequenceType.RNA){
-            	seqElement = new NucleicAcidSequenceElement(SequenceElement.getNextAutogeneratedId());
-            	//((NucleicAcidSequenceElement)seqElement).setComplement( !currentQueryIsForward );
-            }
-            else{
-                seqElement = new SequenceElement(SequenceElement.getNextAutogeneratedId());
-            }
-			SequenceCoordinates oc = new SequenceCoordinates( ( matcher.start()+1 ), ((matcher.start()+1) + query.length()), (!currentQueryIsForward), true );
-			seqElement.addCoordinates(oc);
-            
-/*            seqElement.setParentStart( matcher.start()+1 );
-            seqElement.setParentStop((matcher.start()+1) + query.length());
-*/            seqElement.setParentSequence(sequence);
-            searchMatches.add(seqElement);
-            found = true;
-        }
-	}
-	
-	/**
-	 * build a querylist from an ambiguous string
-	 * @param ambiguousQuery
+	 * add a match of the query or its complement
+	 * @param start 0-based start of the match
+	 * @param length
+	 * @param forward
 	 */
-	private ArrayList<StringBuilder> buildQueryList(String ambiguousQuery){
-		ArrayList<StringBuilder> queryList = new ArrayList<StringBuilder>();
-		StringBuilder seedBuilder = new StringBuilder();
-		queryList.add(seedBuilder);
-		//the list of queries
-		//make character array of primary query
-		char[] queryArray = ambiguousQuery.toCharArray();
-		//loop the characters and check which one is 
-		for(char i: queryArray){
-			if(sequence.getAlphabet().isCoreCharacter(i)){
-			   /* character is core alphabet; append it to all existing queries
-				* loop the queryList and append this character to all of them
-				*/
-				for(StringBuilder queryBuilder: queryList){
-					queryBuilder.append(i);
-				}
-			}
-			else{
-				/* character is not core alphabet; get all matches 
-				 * to this character and create new sequences for each 
-				 * ambiguous match
-				 */
-				HashSet<Character> ambiguousMatchesSet = sequence.getAlphabet().getAmbiguousMatches(i);
-				//convert to ArrayList for easy looping
-				ArrayList<Character> ambiguousMatches = new ArrayList<Character>(ambiguousMatchesSet);
-				
-				/* for each character after the first one in the list,
-				 * create a new sequence in the queryList, and append the
-				 * character possibilities to the old and the new sequences
-				 */
-				int numberOfAmbiguousMatches = ambiguousMatches.size();
-				//place to hold the new queries temporarily
-				ArrayList<StringBuilder> newQueries = new ArrayList<StringBuilder>();
-				//loop the ambiguous character
-				for(int matchNumber=0; matchNumber<numberOfAmbiguousMatches; matchNumber++){
-					//loop the existing queries
-					for(StringBuilder existingQuery: queryList){
-						if(matchNumber == numberOfAmbiguousMatches-1){//last ambiguous character appended to existing queries
-							existingQuery.append(ambiguousMatches.get(matchNumber));
-						}
-						else{//not last ambiguous character; make new StringBuilder sequence and store in temp array
-							StringBuilder newQuery = new StringBuilder(existingQuery);
-							newQuery.append(ambiguousMatches.get(matchNumber));
-							newQueries.add(newQuery);
-						}
-					}
-					//query.append(ambiguousMatches.get(matchNumber));
-				}
-				queryList.addAll(newQueries);
-			}
+	private void addMatch(int start, int length, boolean forward){
+		matchNumber++;
+		SequenceElement seqElement;
+		if(sequence.getSequenceType() == SequenceType.DNA || sequence.getSequenceType() == SequenceType.RNA){
+			seqElement = new NucleicAcidSequenceElement(SequenceElement.getNextAutogeneratedId());
 		}
-		return queryList;
+		else{
+			seqElement = new SequenceElement(SequenceElement.getNextAutogeneratedId());
+		}
+		SequenceCoordinates oc = new SequenceCoordinates( ( start+1 ), ((start+1) + length), (!forward), true );
+		seqElement.addCoordinates(oc);
+		seqElement.setParentSequence(sequence);
+		searchMatches.add(seqElement);
+		found = true;
 	}
+	
 	/**
 	 * get the return error message of this analysis
 	 * @return returnMessage
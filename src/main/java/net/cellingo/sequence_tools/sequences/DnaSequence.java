@@ -22,11 +22,31 @@ public class DnaSequence extends NucleicAcidSequence implements Serializable {
         init();
     }
 
+    /**
+     * constructor for 2-bit packed storage
+     */
+    public DnaSequence(PackedNucleotides packed) {
+        this((CharSequence) packed);
+    }
+
+    /**
+     * constructor for packed storage or a view on the residues of another sequence
+     */
+    protected DnaSequence(CharSequence residues) {
+        super(residues instanceof PackedNucleotides ? ((PackedNucleotides) residues).convert(false) : residues);
+        init();
+    }
+
     @Override
     protected NucleicAcidSequence getNewInstance(String sequenceString) {
         return new DnaSequence(sequenceString);
     }
 
+    @Override
+    protected NucleicAcidSequence getNewInstance(CharSequence residues) {
+        return new DnaSequence(residues);
+    }
+
     private void init() {
         this.setSequenceType(SequenceType.DNA);
         this.setAlphabet(SequenceAlphabet.ALPHABET_DNA);
@@ -39,6 +59,9 @@ public class DnaSequence extends NucleicAcidSequence implements Serializable {
      * @return RnaSequence
      */
     public RnaSequence toRna() {
+        if (isPacked()) {
+            return new RnaSequence(getPackedNucleotides());
+        }
         RnaSequence rnaSequence = new RnaSequence(getSequenceString().replace('T', 'U'));
         return rnaSequence;
     }
@@ -31,10 +31,52 @@ public abstract class NucleicAcidSequence extends Sequence {
 		super(sequence);
 	}
 
+	/**
+	 * construct with packed residues or a view on the residues of another sequence
+	 * @param sequence
+	 */
+	protected NucleicAcidSequence(CharSequence sequence) {
+		super(sequence);
+	}
+
+	/**
+	 * Returns a copy of this sequence that stores its residues in 2-bit packed form, with the same name and
+	 * attributes. Returns this object if it is already packed.
+	 * @return packed sequence
+	 */
+	public NucleicAcidSequence pack(){
+		if(isPacked()){
+			return this;
+		}
+		PackedNucleotides packed = PackedNucleotides.pack(getSequenceString(), getSequenceType() == SequenceType.RNA);
+		return copyProperties(getNewInstance(packed));
+	}
+
+	/**
+	 * Returns a copy of this sequence that stores its residues as a String, with the same name and
+	 * attributes. Returns this object if it is not packed.
+	 * @return unpacked sequence
+	 */
+	public NucleicAcidSequence unpack(){
+		if(!isPacked()){
+			return this;
+		}
+		return copyProperties(getNewInstance(getSequenceString()));
+	}
+
+	private NucleicAcidSequence copyProperties(NucleicAcidSequence copy){
+		copy.setSequenceName(getSequenceName());
+		copy.setAttributes(getAttributes());
+		return copy;
+	}
+
 	/**
 	 * Complementing this sequence and returns a complemented copy
 	 */
     public NucleicAcidSequence complement(){
+		if(isPacked()){
+			return getNewInstance(getPackedNucleotides().complement());
+		}
 		NucleicAcidSequenceAlphabet alphabet = (NucleicAcidSequenceAlphabet)getAlphabet();
 		String complString = complementString(getSequenceString(), alphabet);
 		return getNewInstance(complString);
@@ -47,6 +89,13 @@ public abstract class NucleicAcidSequence extends Sequence {
      */
 	protected abstract NucleicAcidSequence getNewInstance(String sequenceString);
 
+    /**
+     * Template method element for packed storage and views
+     * @param residues packed residues or a view
+     * @return
+     */
+	protected abstract NucleicAcidSequence getNewInstance(CharSequence residues);
+
     /**
      * creates a complement sequence for the given alphabet
      * @param stringToComplement
@@ -76,14 +125,74 @@ public abstract class NucleicAcidSequence extends Sequence {
         return sb.reverse().toString();
     }
 
+    /**
+     * creates the reverse complement of the given string in a single pass: the residues are read from both ends at
+     * once and complemented through the lookup table of the alphabet
+     * @param stringToComplement
+     * @param alphabet
+     * @return reverseComplement
+     */
+	public static String reverseComplementString(String stringToComplement, NucleicAcidSequenceAlphabet alphabet) {
+		char[] complements = alphabet.getComplementTable();
+		int seqLength = stringToComplement.length();
+		char[] reverseComplement = new char[seqLength];
+		for (int left = 0, right = seqLength - 1; left <= right; left++, right--){
+			char leftNucleotide = stringToComplement.charAt(left);
+			char rightNucleotide = stringToComplement.charAt(right);
+			reverseComplement[left] = rightNucleotide < complements.length ? complements[rightNucleotide] : rightNucleotide;
+			reverseComplement[right] = leftNucleotide < complements.length ? complements[leftNucleotide] : leftNucleotide;
+		}
+		return new String(reverseComplement);
+	}
+
+	/**
+	 * reverse complements the given residues in place, in a single pass from both ends
+	 * @param residues
+	 * @param alphabet
+	 */
+	public static void reverseComplementInPlace(char[] residues, NucleicAcidSequenceAlphabet alphabet) {
+		reverseComplement(residues, 0, residues.length, alphabet.getComplementTable());
+	}
+
+	/**
+	 * the in-place kernel: swaps the residues at both ends of the region while complementing them
+	 * @param residues
+	 * @param from start of the region (inclusive)
+	 * @param to end of the region (exclusive)
+	 * @param complements complement lookup table indexed by character
+	 */
+	static void reverseComplement(char[] residues, int from, int to, char[] complements) {
+		for (int left = from, right = to - 1; left <= right; left++, right--){
+			char leftNucleotide = residues[left];
+			char rightNucleotide = residues[right];
+			residues[left] = rightNucleotide < complements.length ? complements[rightNucleotide] : rightNucleotide;
+			residues[right] = leftNucleotide < complements.length ? complements[leftNucleotide] : leftNucleotide;
+		}
+	}
+
 	/**
 	 * reverse complementing the sequence and returns a modified copy
 	 */
 	public NucleicAcidSequence reverseComplement(){
-	    String rev = reverseString(getSequenceString());
-        NucleicAcidSequenceAlphabet alphabet = (NucleicAcidSequenceAlphabet)getAlphabet();
-        String complString = complementString(rev, alphabet);
-        return getNewInstance(complString);
+		if(isPacked()){
+			return getNewInstance(getPackedNucleotides().reverseComplement());
+		}
+		NucleicAcidSequenceAlphabet alphabet = (NucleicAcidSequenceAlphabet)getAlphabet();
+		if(isView()){
+			return getNewInstance(SequenceView.reverseComplement(getResidues(), alphabet.getComplementTable()).toString());
+		}
+		return getNewInstance(reverseComplementString(getSequenceString(), alphabet));
+	}
+
+	/**
+	 * returns the reverse complement as a view on the residues of this sequence. Nothing is copied: residues are
+	 * complemented when they are read, so this is the cheapest way to scan the complement strand of a long sequence
+	 * once. The reverse complement of a view is again a view on the same residues.
+	 * @return reverse complement view
+	 */
+	public NucleicAcidSequence reverseComplementView(){
+		NucleicAcidSequenceAlphabet alphabet = (NucleicAcidSequenceAlphabet)getAlphabet();
+		return getNewInstance(SequenceView.reverseComplement(getResidues(), alphabet.getComplementTable()));
 	}
 
 
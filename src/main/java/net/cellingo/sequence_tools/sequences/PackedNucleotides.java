@@ -0,0 +1,372 @@
+package net.cellingo.sequence_tools.sequences;
+
+import net.cellingo.sequence_tools.alphabets.NucleicAcidSequenceAlphabet;
+import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, compact storage of a nucleic acid sequence. The core bases A, C, G and T (or U) are packed in a long[]
+ * at two bits per base (32 bases per word); all other characters (IUPAC ambiguity codes, runs of N) are kept in a
+ * sparse side table of runs. This needs about a quarter of the memory of a Latin-1 String for normal genomic data.
+ * <p>
+ * The residues are never decoded as a whole unless asked for through {@link #toString()}; {@link #charAt(int)},
+ * {@link #substring(int, int)} and {@link #indexOf(String, int)} work on the packed data directly. Complementing and
+ * reverse complementing are done word-parallel, on 32 bases at a time.
+ * <p>
+ * Base codes: A=0, C=1, G=2, T/U=3, so the complement of a code is simply code ^ 3.
+ *
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+public final class PackedNucleotides implements CharSequence {
+    private static final int BASES_PER_WORD = 32;
+    private static final long PAIR_MASK = 0x3333333333333333L;
+    private static final long NIBBLE_MASK = 0x0F0F0F0F0F0F0F0FL;
+    private static final byte[] BASE_CODES = new byte[128];
+    private static final char[] DNA_BASES = {'A', 'C', 'G', 'T'};
+    private static final char[] RNA_BASES = {'A', 'C', 'G', 'U'};
+    private static final char[] EXCEPTION_COMPLEMENTS = new char[128];
+
+    static {
+        Arrays.fill(BASE_CODES, (byte) -1);
+        BASE_CODES['A'] = 0;
+        BASE_CODES['C'] = 1;
+        BASE_CODES['G'] = 2;
+        BASE_CODES['T'] = 3;
+        BASE_CODES['U'] = 3;
+        //exceptions are never core bases, so the DNA table serves for RNA too
+        char[] complements = ((NucleicAcidSequenceAlphabet) SequenceAlphabet.ALPHABET_DNA).getComplementTable();
+        System.arraycopy(complements, 0, EXCEPTION_COMPLEMENTS, 0, EXCEPTION_COMPLEMENTS.length);
+    }
+
+    private final long[] words;
+    private final int length;
+    private final boolean rna;
+    /*runs of non-core characters: sorted, non-overlapping [start, end) intervals*/
+    private final int[] exceptionStarts;
+    private final int[] exceptionEnds;
+    private final char[] exceptionCharacters;
+
+    private PackedNucleotides(long[] words, int length, boolean rna,
+                              int[] exceptionStarts, int[] exceptionEnds, char[] exceptionCharacters) {
+        this.words = words;
+        this.length = length;
+        this.rna = rna;
+        this.exceptionStarts = exceptionStarts;
+        this.exceptionEnds = exceptionEnds;
+        this.exceptionCharacters = exceptionCharacters;
+    }
+
+    /**
+     * packs the given (upper case) residues.
+     *
+     * @param residues the residues
+     * @param rna      whether code 3 stands for U instead of T
+     * @return packed residues
+     */
+    public static PackedNucleotides pack(final CharSequence residues, final boolean rna) {
+        final int length = residues.length();
+        final char thymine = rna ? 'U' : 'T';
+        long[] words = new long[(length + BASES_PER_WORD - 1) / BASES_PER_WORD];
+        int[] starts = new int[4];
+        int[] ends = new int[4];
+        char[] characters = new char[4];
+        int runs = 0;
+        for (int i = 0; i < length; i++) {
+            char c = residues.charAt(i);
+            int code = encode(c, thymine);
+            if (code >= 0) {
+                words[i >>> 5] |= ((long) code) << ((i & 31) << 1);
+            } else if (runs > 0 && ends[runs - 1] == i && characters[runs - 1] == c) {
+                ends[runs - 1] = i + 1;
+            } else {
+                if (runs == starts.length) {
+                    starts = Arrays.copyOf(starts, runs * 2);
+                    ends = Arrays.copyOf(ends, runs * 2);
+                    characters = Arrays.copyOf(characters, runs * 2);
+                }
+                starts[runs] = i;
+                ends[runs] = i + 1;
+                characters[runs] = c;
+                runs++;
+            }
+        }
+        return new PackedNucleotides(words, length, rna,
+                Arrays.copyOf(starts, runs), Arrays.copyOf(ends, runs), Arrays.copyOf(characters, runs));
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /**
+     * whether this stores RNA (code 3 decodes as U) or DNA.
+     *
+     * @return isRna
+     */
+    public boolean isRna() {
+        return rna;
+    }
+
+    /**
+     * whether all residues are core bases, i.e. there are no ambiguity codes or other characters.
+     *
+     * @return isCore
+     */
+    public boolean isCoreAlphabet() {
+        return exceptionStarts.length == 0;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + " for length " + length);
+        }
+        int run = findRun(index);
+        if (run >= 0 && exceptionEnds[run] > index) {
+            return exceptionCharacters[run];
+        }
+        return (rna ? RNA_BASES : DNA_BASES)[baseCode(index)];
+    }
+
+    private int baseCode(final int index) {
+        return (int) (words[index >>> 5] >>> ((index & 31) << 1)) & 3;
+    }
+
+    /**
+     * returns the last exception run starting at or before the given index, or -1.
+     */
+    private int findRun(final int index) {
+        int found = Arrays.binarySearch(exceptionStarts, index);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    /**
+     * decodes the given region.
+     *
+     * @param start the start (inclusive)
+     * @param end   the end (exclusive)
+     * @return decoded residues
+     */
+    public String substring(final int start, final int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new StringIndexOutOfBoundsException("region " + start + " to " + end + " for length " + length);
+        }
+        char[] bases = rna ? RNA_BASES : DNA_BASES;
+        char[] decoded = new char[end - start];
+        for (int i = start; i < end; i++) {
+            decoded[i - start] = bases[baseCode(i)];
+        }
+        int run = Math.max(0, findRun(start));
+        for (; run < exceptionStarts.length && exceptionStarts[run] < end; run++) {
+            int from = Math.max(start, exceptionStarts[run]);
+            int to = Math.min(end, exceptionEnds[run]);
+            for (int i = from; i < to; i++) {
+                decoded[i - start] = exceptionCharacters[run];
+            }
+        }
+        return new String(decoded);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length);
+    }
+
+    /**
+     * returns the index of the first occurrence of the pattern at or after fromIndex, or -1. Patterns of up to 32
+     * core bases are matched with a rolling two-bit window over the packed words; other patterns are compared
+     * character by character.
+     *
+     * @param pattern   the (upper case) pattern
+     * @param fromIndex start of the search
+     * @return index
+     */
+    public int indexOf(final String pattern, int fromIndex) {
+        return indexOf(pattern, fromIndex, length);
+    }
+
+    /**
+     * returns the index of the first occurrence of the pattern that lies within [fromIndex, toIndex), or -1. The
+     * search stops at toIndex.
+     *
+     * @param pattern   the (upper case) pattern
+     * @param fromIndex start of the search
+     * @param toIndex   end (exclusive) of the region searched
+     * @return index
+     */
+    int indexOf(final String pattern, int fromIndex, int toIndex) {
+        final int m = pattern.length();
+        if (fromIndex < 0) {
+            fromIndex = 0;
+        }
+        toIndex = Math.min(toIndex, length);
+        if (m == 0) {
+            return fromIndex <= toIndex ? fromIndex : -1;
+        }
+        //a 32-base poly-T pattern encodes as -1 too; it simply takes the character-wise route
+        long patternCode = m > BASES_PER_WORD ? -1L : encodeCorePattern(pattern);
+        if (patternCode == -1L) {
+            return indexOfCharacterWise(pattern, fromIndex, toIndex);
+        }
+        final int topShift = (m - 1) << 1;
+        long window = 0;
+        int run = Math.max(0, findRun(fromIndex));
+        int lastException = -1;
+        for (int i = fromIndex; i < toIndex; i++) {
+            while (run < exceptionStarts.length && exceptionEnds[run] <= i) {
+                run++;
+            }
+            if (run < exceptionStarts.length && exceptionStarts[run] <= i) {
+                lastException = i;
+            }
+            window = (window >>> 2) | (((long) baseCode(i)) << topShift);
+            int start = i - m + 1;
+            if (start >= fromIndex && window == patternCode && lastException < start) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * encodes a pattern of at most 32 core bases with base k at bits 2k.
+     *
+     * @return code, or -1 if the pattern contains other characters
+     */
+    private long encodeCorePattern(final String pattern) {
+        final char thymine = rna ? 'U' : 'T';
+        long code = 0;
+        for (int k = 0; k < pattern.length(); k++) {
+            int baseCode = encode(pattern.charAt(k), thymine);
+            if (baseCode < 0) {
+                return -1L;
+            }
+            code |= ((long) baseCode) << (k << 1);
+        }
+        return code;
+    }
+
+    private static int encode(final char c, final char thymine) {
+        if (c >= 128 || ((c == 'T' || c == 'U') && c != thymine)) {
+            return -1;
+        }
+        return BASE_CODES[c];
+    }
+
+    private int indexOfCharacterWise(final String pattern, final int fromIndex, final int toIndex) {
+        final int m = pattern.length();
+        OUTER:
+        for (int i = fromIndex; i <= toIndex - m; i++) {
+            for (int k = 0; k < m; k++) {
+                if (charAt(i + k) != pattern.charAt(k)) {
+                    continue OUTER;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * returns the complement, computed word-parallel.
+     *
+     * @return complement
+     */
+    public PackedNucleotides complement() {
+        long[] complemented = new long[words.length];
+        for (int w = 0; w < words.length; w++) {
+            complemented[w] = ~words[w];
+        }
+        clearPadding(complemented);
+        char[] characters = new char[exceptionCharacters.length];
+        for (int run = 0; run < characters.length; run++) {
+            characters[run] = complementException(exceptionCharacters[run]);
+        }
+        return new PackedNucleotides(complemented, length, rna, exceptionStarts, exceptionEnds, characters);
+    }
+
+    /**
+     * returns the reverse complement, computed word-parallel: each word is complemented and its 32 two-bit
+     * groups are reversed with a few shift-and-mask steps, after which the words are placed in reverse order and
+     * shifted to drop the padding of the last word.
+     *
+     * @return reverse complement
+     */
+    public PackedNucleotides reverseComplement() {
+        final int n = words.length;
+        long[] reversed = new long[n];
+        for (int w = 0; w < n; w++) {
+            reversed[n - 1 - w] = reversePairs(~words[w]);
+        }
+        final int padding = n * BASES_PER_WORD - length;
+        if (padding > 0) {
+            final int shift = padding << 1;
+            for (int w = 0; w < n; w++) {
+                long high = (w + 1 < n) ? reversed[w + 1] << (64 - shift) : 0L;
+                reversed[w] = (reversed[w] >>> shift) | high;
+            }
+        }
+        clearPadding(reversed);
+        final int runs = exceptionStarts.length;
+        int[] starts = new int[runs];
+        int[] ends = new int[runs];
+        char[] characters = new char[runs];
+        for (int run = 0; run < runs; run++) {
+            int target = runs - 1 - run;
+            starts[target] = length - exceptionEnds[run];
+            ends[target] = length - exceptionStarts[run];
+            characters[target] = complementException(exceptionCharacters[run]);
+        }
+        return new PackedNucleotides(reversed, length, rna, starts, ends, characters);
+    }
+
+    /**
+     * returns the same residues as DNA (code 3 = T) or RNA (code 3 = U), sharing the packed words.
+     *
+     * @param asRna target type
+     * @return converted residues
+     */
+    public PackedNucleotides convert(final boolean asRna) {
+        if (asRna == rna) {
+            return this;
+        }
+        return new PackedNucleotides(words, length, asRna, exceptionStarts, exceptionEnds, exceptionCharacters);
+    }
+
+    /**
+     * reverses the order of the 32 two-bit groups in a word.
+     */
+    private static long reversePairs(long x) {
+        x = ((x >>> 2) & PAIR_MASK) | ((x & PAIR_MASK) << 2);
+        x = ((x >>> 4) & NIBBLE_MASK) | ((x & NIBBLE_MASK) << 4);
+        return Long.reverseBytes(x);
+    }
+
+    private void clearPadding(final long[] packed) {
+        final int used = length & 31;
+        if (used != 0) {
+            packed[packed.length - 1] &= (1L << (used << 1)) - 1;
+        }
+    }
+
+    private static char complementException(final char c) {
+        return c < 128 ? EXCEPTION_COMPLEMENTS[c] : c;
+    }
+
+    /**
+     * approximate number of bytes used for the residue data.
+     *
+     * @return bytes
+     */
+    public long getStorageSize() {
+        return 8L * words.length + 10L * exceptionStarts.length;
+    }
+}
@@ -28,6 +28,19 @@ public class ProteinSequence extends Sequence implements Serializable {
         init();
     }
 
+    /**
+     * constructor for a view on the residues of another sequence
+     */
+    protected ProteinSequence(CharSequence residues) {
+        super(residues);
+        init();
+    }
+
+    @Override
+    protected Sequence getNewInstance(CharSequence residues) {
+        return new ProteinSequence(residues);
+    }
+
     private void init() {
         this.setSequenceType(SequenceType.PROTEIN);
         this.setAlphabet(SequenceAlphabet.ALPHABET_PROTEIN);
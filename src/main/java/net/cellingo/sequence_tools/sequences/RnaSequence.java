@@ -28,11 +28,31 @@ public class RnaSequence extends NucleicAcidSequence implements Serializable {
         init();
     }
 
+    /**
+     * constructor for 2-bit packed storage
+     */
+    public RnaSequence(PackedNucleotides packed) {
+        this((CharSequence) packed);
+    }
+
+    /**
+     * constructor for packed storage or a view on the residues of another sequence
+     */
+    protected RnaSequence(CharSequence residues) {
+        super(residues instanceof PackedNucleotides ? ((PackedNucleotides) residues).convert(true) : residues);
+        init();
+    }
+
     @Override
     protected NucleicAcidSequence getNewInstance(String sequenceString) {
         return new RnaSequence(sequenceString);
     }
 
+    @Override
+    protected NucleicAcidSequence getNewInstance(CharSequence residues) {
+        return new RnaSequence(residues);
+    }
+
     private void init() {
         this.setSequenceType(SequenceType.RNA);
         this.setAlphabet(SequenceAlphabet.ALPHABET_RNA);
@@ -45,6 +65,9 @@ public class RnaSequence extends NucleicAcidSequence implements Serializable {
      * @return DnaSequence
      */
     public DnaSequence toDna() {
+        if (isPacked()) {
+            return new DnaSequence(getPackedNucleotides());
+        }
         DnaSequence dnaSequence = new DnaSequence(getSequenceString().replace('U', 'T'));
         return dnaSequence;
     }
@@ -19,23 +19,93 @@ public abstract class Sequence implements SequenceObject, Comparable<Sequence> {
     private int programSeqID;
     private SequenceType sequenceType;
     private SequenceAlphabet alphabet;
-    private String sequence;
+    /*a String, a PackedNucleotides object for compactly stored nucleic acids, or a SequenceView*/
+    private CharSequence sequence;
     private String sequenceName;
     private Attributes attributes;
     private String accessionNumber;
+    /*indexOf() locates the occurrences through the FM-index up to this count; a scan finds frequent ones faster*/
+    private static final int MAXIMUM_INDEXED_OCCURRENCES = 16;
+    /*optional FM-index of the residues, used for exact search*/
+    private SequenceIndex sequenceIndex;
 
     public Sequence(String sequence) {
         this.sequence = sequence;
     }
 
     /**
-     * returns the index at which this sequence contains the subsequence, or -1 if not found.
+     * construct with packed (2-bit) nucleotide storage or a view on the residues of another sequence.
+     *
+     * @param sequence the residues
+     */
+    protected Sequence(CharSequence sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * whether the residues of this sequence are stored in packed (2-bit) form.
+     *
+     * @return isPacked
+     */
+    public boolean isPacked() {
+        return sequence instanceof PackedNucleotides;
+    }
+
+    /**
+     * returns the packed residues, or null when this sequence is stored as a String.
+     *
+     * @return packed residues
+     */
+    protected PackedNucleotides getPackedNucleotides() {
+        return isPacked() ? (PackedNucleotides) sequence : null;
+    }
+
+    /**
+     * whether this sequence is a view on the residues of another sequence.
+     *
+     * @return isView
+     */
+    public boolean isView() {
+        return sequence instanceof SequenceView;
+    }
+
+    /**
+     * returns the backing residues: a String, a PackedNucleotides object or a SequenceView.
+     *
+     * @return residues
+     */
+    protected CharSequence getResidues() {
+        return sequence;
+    }
+
+    private int indexOf(final String subsequence, final int fromIndex) {
+        if (sequence instanceof String) {
+            return ((String) sequence).indexOf(subsequence, fromIndex);
+        } else if (isPacked()) {
+            return ((PackedNucleotides) sequence).indexOf(subsequence, fromIndex);
+        }
+        return ((SequenceView) sequence).indexOf(subsequence, fromIndex);
+    }
+
+    /**
+     * returns the index at which this sequence contains the subsequence, or -1 if not found. With an FM-index,
+     * absent and rare subsequences are looked up in the index; frequent ones are scanned for, since the scan stops at
+     * the first occurrence.
      *
      * @param subsequence the subsequence to find
      * @return index
      */
     public int indexOf(final String subsequence) {
-        return this.sequence.indexOf(subsequence);
+        if (sequenceIndex != null && subsequence.length() > 0) {
+            int occurrences = sequenceIndex.count(subsequence);
+            if (occurrences == 0) {
+                return -1;
+            }
+            if (occurrences <= MAXIMUM_INDEXED_OCCURRENCES) {
+                return sequenceIndex.locate(subsequence)[0];
+            }
+        }
+        return indexOf(subsequence, 0);
     }
 
     /**
@@ -46,16 +116,53 @@ public abstract class Sequence implements SequenceObject, Comparable<Sequence> {
      * @return occurrences
      */
     public List<Integer> findOccurrences(final String subsequence) {
-        List<Integer> occurrences = new ArrayList<Integer>();
         String ss = subsequence.toUpperCase();
-        int index = this.sequence.indexOf(ss);
+        if (sequenceIndex != null && ss.length() > 0) {
+            return sequenceIndex.findOccurrences(0, ss);
+        }
+        List<Integer> occurrences = new ArrayList<Integer>();
+        int index = indexOf(ss, 0);
         while (index > -1) {
             occurrences.add(index);
-            index = this.sequence.indexOf(ss, index + 1);
+            index = indexOf(ss, index + 1);
         }
         return occurrences;
     }
 
+    /**
+     * builds an FM-index of the residues, which is used by indexOf() and findOccurrences() from then on. Worthwhile
+     * for long sequences that are searched many times.
+     *
+     * @return the index
+     */
+    public SequenceIndex buildIndex() {
+        this.sequenceIndex = SequenceIndex.build(this);
+        return sequenceIndex;
+    }
+
+    /**
+     * sets the FM-index used by indexOf() and findOccurrences(), for instance one loaded with SequenceIndex.load().
+     * It should be built from this sequence alone; null removes the index.
+     *
+     * @param sequenceIndex the index
+     */
+    public void setSequenceIndex(final SequenceIndex sequenceIndex) {
+        if (sequenceIndex != null && (sequenceIndex.getSequenceCount() != 1
+                || sequenceIndex.getSequenceLength(0) != getSequenceLength())) {
+            throw new IllegalArgumentException("the index was not built from this sequence");
+        }
+        this.sequenceIndex = sequenceIndex;
+    }
+
+    /**
+     * returns the FM-index of the residues, or null if there is none.
+     *
+     * @return the index
+     */
+    public SequenceIndex getSequenceIndex() {
+        return sequenceIndex;
+    }
+
     /**
      * get the sequence alphabet.
      *
@@ -75,12 +182,12 @@ public abstract class Sequence implements SequenceObject, Comparable<Sequence> {
     }
 
     /**
-     * get the sequence as a String object.
+     * get the sequence as a String object. For packed sequences and views, the String is created on every call.
      *
      * @return sequenceString
      */
     public String getSequenceString() {
-        return sequence;
+        return sequence.toString();
     }
 
     /**
@@ -209,7 +316,7 @@ public abstract class Sequence implements SequenceObject, Comparable<Sequence> {
      */
     public String getSubString(final int startPosition, final int stopPosition) throws IllegalSequenceOperation {
         try {
-            String subSequence = sequence.substring(startPosition, stopPosition);
+            String subSequence = sequence.subSequence(startPosition, stopPosition).toString();
             return subSequence;
         } catch (Exception e) {
             throw new IllegalSequenceOperation(
@@ -242,7 +349,7 @@ public abstract class Sequence implements SequenceObject, Comparable<Sequence> {
         if (stopPosition > getSequenceLength()) {
             stopPosition = getSequenceLength();
         }
-        return sequence.substring(startPosition, stopPosition);
+        return sequence.subSequence(startPosition, stopPosition).toString();
     }
 
     /**
@@ -288,15 +395,114 @@ public abstract class Sequence implements SequenceObject, Comparable<Sequence> {
         return getSubSequenceArrayBoundsSafe(startPosition, stopPosition);
     }
 
+    /**
+     * returns a view on the region from startPosition (inclusive) to stopPosition (exclusive), the same region
+     * getSubString() returns. The view is a Sequence of the same type that shares the residues of this sequence:
+     * nothing is copied, the residues are not checked again and no name is generated. Use detach() to obtain an
+     * independent copy.
+     *
+     * @param startPosition the start (0-based)
+     * @param stopPosition  the stop (0-based, exclusive)
+     * @return view
+     * @throws IllegalSequenceOperation ex
+     */
+    public Sequence getView(final int startPosition, final int stopPosition) throws IllegalSequenceOperation {
+        try {
+            return getNewInstance(SequenceView.forward(sequence, startPosition, stopPosition));
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalSequenceOperation(
+                    "ERROR: requested subsequence not possible: " + startPosition + " to " + stopPosition);
+        }
+    }
+
+    /**
+     * returns a view on the region given by the coordinates object, see getView(int, int).
+     *
+     * @param coordinates the coordinates
+     * @return view
+     * @throws IllegalSequenceOperation ex
+     */
+    public Sequence getView(final SequenceCoordinates coordinates) throws IllegalSequenceOperation {
+        return getView(coordinates.getStart(), coordinates.getStop());
+    }
+
+    /**
+     * returns a view on the given region, with the same corrections of out-of-range positions as
+     * getSubStringArrayBoundsSafe().
+     *
+     * @param startPosition 0-based
+     * @param stopPosition  0-based
+     * @return view
+     * @throws IllegalSequenceOperation ex
+     */
+    public Sequence getViewArrayBoundsSafe(int startPosition, int stopPosition) throws IllegalSequenceOperation {
+        if ((startPosition < 0 && stopPosition < 1)
+                || (startPosition > getSequenceLength())
+                || (startPosition >= stopPosition)) {
+            throw new IllegalSequenceOperation(
+                    "requested subsequence no possible: " + startPosition + " to " + stopPosition);
+        }
+        return getView(Math.max(0, startPosition), Math.min(stopPosition, getSequenceLength()));
+    }
+
+    /**
+     * returns the view this sequence is backed by, or null if it has its own residues.
+     *
+     * @return view
+     */
+    public SequenceView getSequenceView() {
+        return isView() ? (SequenceView) sequence : null;
+    }
+
+    /**
+     * returns a copy with its own residues, name and attributes if this sequence is a view, or this object otherwise.
+     *
+     * @return detached sequence
+     */
+    public Sequence detach() {
+        if (!isView()) {
+            return this;
+        }
+        Sequence copy = getNewInstance(sequence.toString());
+        copy.setSequenceName(getSequenceName());
+        copy.setAttributes(getAttributes());
+        return copy;
+    }
+
+    /**
+     * copies the residues of the given region into the destination array, like String.getChars(). This is the
+     * cheapest way to get the residues of a view or a packed sequence in a reusable buffer.
+     *
+     * @param startPosition     the start (0-based)
+     * @param stopPosition      the stop (0-based, exclusive)
+     * @param destination       the destination
+     * @param destinationOffset the first index to write in the destination
+     */
+    public void getChars(final int startPosition, final int stopPosition,
+                         final char[] destination, final int destinationOffset) {
+        SequenceView.copyResidues(sequence, startPosition, stopPosition, destination, destinationOffset);
+    }
+
+    /**
+     * Template method element: creates a sequence of the same type with the given residues.
+     *
+     * @param residues a String, packed residues or a view
+     * @return new sequence
+     */
+    protected abstract Sequence getNewInstance(CharSequence residues);
+
     /**
      * check the sequence for being entirely "core alphabet".
      *
      * @return isCoreAlphabet
      */
     public boolean sequenceIsCoreAlphabet() {
-        //SequenceAlphabet alphabet = this.getAlphabet();
-        for (char character : this.sequence.toCharArray()) {
-            if (!this.getAlphabet().isCoreCharacter(character)) {
+        if (isPacked()) {
+            return ((PackedNucleotides) sequence).isCoreAlphabet();
+        }
+        CharSequence residues = this.sequence;
+        for (int i = 0; i < residues.length(); i++) {
+            if (!this.getAlphabet().isCoreCharacter(residues.charAt(i))) {
                 return false;
             }
         }
@@ -1,6 +1,6 @@
 package net.cellingo.sequence_tools.sequences;
 
-import net.cellingo.sequence_tools.alphabets.*;
+import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
 
 /**
  * Factory class to create instances of subclasses of Sequence
@@ -12,7 +12,8 @@ import net.cellingo.sequence_tools.alphabets.*;
 public abstract class SequenceFactory {
 
     /**
-     * factory method: create a new sequence object of given sequence type.
+     * factory method: create a new sequence object of given sequence type. The type is trusted: no type detection
+     * is performed.
      *
      * @param sequence
      * @param type
@@ -35,6 +36,27 @@ public abstract class SequenceFactory {
         }
     }
 
+    /**
+     * factory method: create a new nucleic acid sequence that stores its residues in 2-bit packed form. This uses
+     * about a quarter of the memory of a normal sequence; ambiguity codes are supported.
+     *
+     * @param sequence the sequence to create from
+     * @param type     the type; DNA or RNA
+     * @return seq
+     * @throws SequenceCreationException ex
+     */
+    public static NucleicAcidSequence createPackedSequence(
+            String sequence, final SequenceType type) throws SequenceCreationException {
+        sequence = sequence.toUpperCase();
+        if (type == SequenceType.DNA) {
+            return new DnaSequence(PackedNucleotides.pack(sequence, false));
+        } else if (type == SequenceType.RNA) {
+            return new RnaSequence(PackedNucleotides.pack(sequence, true));
+        } else {
+            throw new SequenceCreationException("ERROR: only nucleic acid sequences can be packed");
+        }
+    }
+
     /**
      * factory method: create a new sequence object of given sequence type.
      *
@@ -50,63 +72,20 @@ public abstract class SequenceFactory {
 
     /**
      * factory method: find out what type of sequence is in the String and return the sequence object.
+     * The type is determined in a single pass over the characters; when the type is known beforehand, use
+     * {@link #createSequence(String, SequenceType)} to skip detection entirely.
      *
      * @param sequence string
      * @return seq
      * @throws SequenceCreationException ex
      */
     public static Sequence createSequence(String sequence) throws SequenceCreationException {
-        sequence = sequence.toUpperCase();
-        boolean dna = true;
-        boolean rna = true;
-        boolean protein = true;
-        boolean structure = true;
-        char[] characterArray = sequence.toCharArray();
-        //check dna alphabet
-        for (char character : characterArray) {
-            if (!SequenceAlphabet.ALPHABET_DNA.isValidAlphabetCharacter(character)) {
-                dna = false;
-                break;
-            }
-        }
-        //check rna alphabet
-        for (char character : characterArray) {
-            if (!SequenceAlphabet.ALPHABET_RNA.isValidAlphabetCharacter(character)) {
-                rna = false;
-                break;
-            }
-        }
-        //check protein alphabet
-        for (char character : characterArray) {
-            if (!SequenceAlphabet.ALPHABET_PROTEIN.isValidAlphabetCharacter(character)) {
-                protein = false;
-                break;
-            }
-        }
-        //check textAlignment alphabet
-        for (char character : characterArray) {
-            if (!SequenceAlphabet.ALPHABET_STRUCTURE.isValidAlphabetCharacter(character)) {
-                structure = false;
-                break;
-            }
-        }
-        //now evaluate and set the sequence type
-        if (dna && protein) {
-            return createSequence(sequence, SequenceType.DNA);
-            //return new DnaSequence(sequence);
-        } else if (protein) {
-            return createSequence(sequence, SequenceType.PROTEIN);
-            //return new ProteinSequence(sequence);
-        } else if (rna) {
-            return createSequence(sequence, SequenceType.RNA);
-            //return new RnaSequence(sequence);
-        } else if (structure) {
-            return createSequence(sequence, SequenceType.STRUCTURE);
-            //return new StructureSequence(sequence);
-        } else {
+        SequenceType type = SequenceAlphabet.getSequenceType(SequenceAlphabet.getAlphabetMask(sequence));
+        if (type == null) {
             throw new SequenceCreationException(
                     "ERROR: provided String could not be converted to a valid sequence object");
         }
+        return createSequence(sequence, type);
     }
 
     /**
@@ -0,0 +1,463 @@
+package net.cellingo.sequence_tools.sequences;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * FM-index for exact search in one sequence or a whole collection of sequences. The residues of the sequences are
+ * concatenated, with a separator between them, and their suffix array is built in linear time with SA-IS. Only the
+ * Burrows-Wheeler transform, occurrence counts every OCCURRENCE_BLOCK rows and every sampleRate-th suffix array
+ * value are kept, so counting the occurrences of a pattern costs O(m) and locating them O(m + occ * sampleRate).
+ * <p>
+ * The index is case sensitive and matches never span two sequences. It can be written to a file once and loaded
+ * again with memory mapping, so that large indices are paged in by the operating system instead of read.
+ * The concatenated residues should not be longer than Integer.MAX_VALUE - 1. Instances are read only and can be
+ * shared between threads.
+ *
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+public final class SequenceIndex {
+    /**
+     * the default distance between sampled suffix array values.
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 32;
+    /*occurrence counts are stored at the start of every block of this many rows*/
+    private static final int OCCURRENCE_BLOCK = 64;
+    private static final int MAGIC = 0x464d4958;
+    private static final int FORMAT_VERSION = 1;
+    /*codes 0 and 1 are the terminator and the separator between sequences*/
+    private static final int FIRST_RESIDUE_CODE = 2;
+    private static final int MAXIMUM_CODES = 256;
+
+    private final int length;
+    private final int sampleRate;
+    /*the residue of every code, and the code of every residue (0 if absent)*/
+    private final char[] residues;
+    private final byte[] codes;
+    /*the number of text characters smaller than each code*/
+    private final int[] smaller;
+    /*the start of every sequence in the text, and the end of the text*/
+    private final int[] sequenceStarts;
+    private final ByteBuffer bwt;
+    private final IntBuffer occurrences;
+    private final LongBuffer sampledRows;
+    private final IntBuffer sampledRowRanks;
+    private final IntBuffer samples;
+
+    private SequenceIndex(int length, int sampleRate, char[] residues, int[] smaller, int[] sequenceStarts,
+                          ByteBuffer bwt, IntBuffer occurrences, LongBuffer sampledRows,
+                          IntBuffer sampledRowRanks, IntBuffer samples) {
+        this.length = length;
+        this.sampleRate = sampleRate;
+        this.residues = residues;
+        this.codes = new byte[Character.MAX_VALUE + 1];
+        for (int c = FIRST_RESIDUE_CODE; c < residues.length; c++) {
+            codes[residues[c]] = (byte) c;
+        }
+        this.smaller = smaller;
+        this.sequenceStarts = sequenceStarts;
+        this.bwt = bwt;
+        this.occurrences = occurrences;
+        this.sampledRows = sampledRows;
+        this.sampledRowRanks = sampledRowRanks;
+        this.samples = samples;
+    }
+
+    /**
+     * build the index of a single sequence.
+     *
+     * @param sequence the sequence
+     * @return index
+     */
+    public static SequenceIndex build(final Sequence sequence) {
+        return build(Collections.singletonList(sequence), DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * build the index of a collection of sequences, for instance all entries of a multi-FASTA file.
+     *
+     * @param sequences the sequences
+     * @return index
+     */
+    public static SequenceIndex build(final List<? extends Sequence> sequences) {
+        return build(sequences, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * build the index of a collection of sequences, keeping every sampleRate-th suffix array value. Smaller sample
+     * rates give faster locating at the cost of memory.
+     *
+     * @param sequences  the sequences
+     * @param sampleRate the distance between sampled suffix array values
+     * @return index
+     */
+    public static SequenceIndex build(final List<? extends Sequence> sequences, final int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sample rate should be positive: " + sampleRate);
+        }
+        long total = 1;
+        for (Sequence sequence : sequences) {
+            total += sequence.getSequenceLength() + 1;
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many residues to index: " + total);
+        }
+        /*the text: the residues of all sequences, each followed by the separator, and the terminator*/
+        int n = (int) total;
+        char[] text = new char[n - 1];
+        int[] sequenceStarts = new int[sequences.size() + 1];
+        int position = 0;
+        for (int s = 0; s < sequences.size(); s++) {
+            Sequence sequence = sequences.get(s);
+            sequenceStarts[s] = position;
+            sequence.getChars(0, sequence.getSequenceLength(), text, position);
+            position += sequence.getSequenceLength() + 1;
+        }
+        sequenceStarts[sequences.size()] = position;
+        /*give every residue a code, in alphabetical order*/
+        boolean[] present = new boolean[Character.MAX_VALUE + 1];
+        for (int s = 0; s < sequences.size(); s++) {
+            for (int i = sequenceStarts[s]; i < sequenceStarts[s + 1] - 1; i++) {
+                present[text[i]] = true;
+            }
+        }
+        char[] residues = new char[FIRST_RESIDUE_CODE];
+        int[] codeOf = new int[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (present[c]) {
+                if (residues.length == MAXIMUM_CODES) {
+                    throw new IllegalArgumentException("too many distinct residues to index");
+                }
+                residues = Arrays.copyOf(residues, residues.length + 1);
+                residues[residues.length - 1] = (char) c;
+                codeOf[c] = residues.length - 1;
+            }
+        }
+        int[] encoded = new int[n];
+        for (int s = 0; s < sequences.size(); s++) {
+            for (int i = sequenceStarts[s]; i < sequenceStarts[s + 1] - 1; i++) {
+                encoded[i] = codeOf[text[i]];
+            }
+            encoded[sequenceStarts[s + 1] - 1] = 1;
+        }
+        text = null;
+        int[] suffixArray = new int[n];
+        SuffixArrays.build(encoded, suffixArray, n, residues.length);
+
+        /*the transform, the counts and the samples*/
+        int sigma = residues.length;
+        int[] smaller = new int[sigma + 1];
+        for (int i = 0; i < n; i++) {
+            smaller[encoded[i] + 1]++;
+        }
+        for (int c = 0; c < sigma; c++) {
+            smaller[c + 1] += smaller[c];
+        }
+        byte[] bwt = new byte[n];
+        int blocks = n / OCCURRENCE_BLOCK + 1;
+        int[] occurrences = new int[blocks * sigma];
+        int[] running = new int[sigma];
+        long[] sampledRows = new long[(n + 63) >>> 6];
+        int sampleCount = 0;
+        for (int row = 0; row < n; row++) {
+            if (row % OCCURRENCE_BLOCK == 0) {
+                System.arraycopy(running, 0, occurrences, (row / OCCURRENCE_BLOCK) * sigma, sigma);
+            }
+            int code = suffixArray[row] == 0 ? 0 : encoded[suffixArray[row] - 1];
+            bwt[row] = (byte) code;
+            running[code]++;
+            if (suffixArray[row] % sampleRate == 0) {
+                sampledRows[row >>> 6] |= 1L << row;
+                sampleCount++;
+            }
+        }
+        if (n % OCCURRENCE_BLOCK == 0) {
+            System.arraycopy(running, 0, occurrences, (n / OCCURRENCE_BLOCK) * sigma, sigma);
+        }
+        int[] sampledRowRanks = new int[sampledRows.length];
+        int[] samples = new int[sampleCount];
+        int rank = 0;
+        for (int row = 0; row < n; row++) {
+            if ((row & 63) == 0) {
+                sampledRowRanks[row >>> 6] = rank;
+            }
+            if (suffixArray[row] % sampleRate == 0) {
+                samples[rank++] = suffixArray[row];
+            }
+        }
+        return new SequenceIndex(n, sampleRate, residues, smaller, sequenceStarts, ByteBuffer.wrap(bwt),
+                IntBuffer.wrap(occurrences), LongBuffer.wrap(sampledRows), IntBuffer.wrap(sampledRowRanks),
+                IntBuffer.wrap(samples));
+    }
+
+    /**
+     * the number of rows before the given row with the given code in the transform.
+     */
+    private int occurrences(final int code, final int row) {
+        int block = row / OCCURRENCE_BLOCK;
+        int count = occurrences.get(block * residues.length + code);
+        for (int r = block * OCCURRENCE_BLOCK; r < row; r++) {
+            if ((bwt.get(r) & 0xff) == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * the range of rows [first, last) of the suffixes starting with the pattern, by backward search.
+     */
+    private long findRows(final CharSequence pattern) {
+        int first = 0;
+        int last = length;
+        for (int i = pattern.length() - 1; i >= 0 && first < last; i--) {
+            int code = codes[pattern.charAt(i)] & 0xff;
+            if (code == 0) {
+                return 0;
+            }
+            first = smaller[code] + occurrences(code, first);
+            last = smaller[code] + occurrences(code, last);
+        }
+        return first < last ? ((long) first << 32) | last : 0;
+    }
+
+    /**
+     * the number of occurrences of the pattern, overlapping ones included.
+     *
+     * @param pattern the pattern
+     * @return count
+     */
+    public int count(final CharSequence pattern) {
+        checkPattern(pattern);
+        long rows = findRows(pattern);
+        return (int) rows - (int) (rows >>> 32);
+    }
+
+    /**
+     * the positions of all occurrences of the pattern in the concatenated sequences, in ascending order. Use
+     * getSequenceNumber() and getSequenceStart() to translate them.
+     *
+     * @param pattern the pattern
+     * @return positions
+     */
+    public int[] locate(final CharSequence pattern) {
+        checkPattern(pattern);
+        long rows = findRows(pattern);
+        int first = (int) (rows >>> 32);
+        int last = (int) rows;
+        int[] positions = new int[last - first];
+        for (int row = first; row < last; row++) {
+            positions[row - first] = locate(row);
+        }
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /**
+     * the text position of the suffix of a row, found by walking back to a sampled row.
+     */
+    private int locate(final int row) {
+        int current = row;
+        int steps = 0;
+        while ((sampledRows.get(current >>> 6) & (1L << current)) == 0) {
+            int code = bwt.get(current) & 0xff;
+            current = smaller[code] + occurrences(code, current);
+            steps++;
+        }
+        long word = sampledRows.get(current >>> 6) & ((1L << current) - 1);
+        return samples.get(sampledRowRanks.get(current >>> 6) + Long.bitCount(word)) + steps;
+    }
+
+    /**
+     * the positions of all occurrences of the pattern in one of the indexed sequences, in ascending order.
+     *
+     * @param sequenceNumber the index of the sequence in the indexed list
+     * @param pattern        the pattern
+     * @return positions in the sequence
+     */
+    public List<Integer> findOccurrences(final int sequenceNumber, final CharSequence pattern) {
+        if (sequenceNumber < 0 || sequenceNumber >= getSequenceCount()) {
+            throw new IllegalArgumentException("no such sequence: " + sequenceNumber);
+        }
+        List<Integer> occurrences = new ArrayList<Integer>();
+        int start = sequenceStarts[sequenceNumber];
+        int end = sequenceStarts[sequenceNumber + 1];
+        for (int position : locate(pattern)) {
+            if (position >= start && position < end) {
+                occurrences.add(position - start);
+            }
+        }
+        return occurrences;
+    }
+
+    private static void checkPattern(final CharSequence pattern) {
+        if (pattern.length() == 0) {
+            throw new IllegalArgumentException("empty pattern");
+        }
+    }
+
+    /**
+     * the number of indexed sequences.
+     *
+     * @return sequence count
+     */
+    public int getSequenceCount() {
+        return sequenceStarts.length - 1;
+    }
+
+    /**
+     * the index of the sequence containing a position of the concatenated sequences.
+     *
+     * @param position the position
+     * @return sequence number
+     */
+    public int getSequenceNumber(final int position) {
+        if (position < 0 || position >= length - 1) {
+            throw new IllegalArgumentException("position outside the index: " + position);
+        }
+        int found = Arrays.binarySearch(sequenceStarts, position);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    /**
+     * the position in the concatenated sequences where a sequence starts.
+     *
+     * @param sequenceNumber the sequence number
+     * @return start
+     */
+    public int getSequenceStart(final int sequenceNumber) {
+        return sequenceStarts[sequenceNumber];
+    }
+
+    /**
+     * the length of an indexed sequence.
+     *
+     * @param sequenceNumber the sequence number
+     * @return length
+     */
+    public int getSequenceLength(final int sequenceNumber) {
+        return sequenceStarts[sequenceNumber + 1] - sequenceStarts[sequenceNumber] - 1;
+    }
+
+    /**
+     * the distance between sampled suffix array values.
+     *
+     * @return sample rate
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * write the index to a file, to be loaded again with load().
+     *
+     * @param file the file
+     * @throws IOException when writing fails
+     */
+    public void write(final File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(length);
+            out.writeInt(sampleRate);
+            out.writeInt(residues.length);
+            for (char residue : residues) {
+                out.writeChar(residue);
+            }
+            for (int count : smaller) {
+                out.writeInt(count);
+            }
+            out.writeInt(sequenceStarts.length);
+            for (int start : sequenceStarts) {
+                out.writeInt(start);
+            }
+            out.writeInt(samples.limit());
+            for (int i = 0; i < length; i++) {
+                out.writeByte(bwt.get(i));
+            }
+            for (int i = 0; i < occurrences.limit(); i++) {
+                out.writeInt(occurrences.get(i));
+            }
+            for (int i = 0; i < sampledRows.limit(); i++) {
+                out.writeLong(sampledRows.get(i));
+            }
+            for (int i = 0; i < sampledRowRanks.limit(); i++) {
+                out.writeInt(sampledRowRanks.get(i));
+            }
+            for (int i = 0; i < samples.limit(); i++) {
+                out.writeInt(samples.get(i));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * load an index written by write(). The transform, counts and samples are memory mapped, not read.
+     *
+     * @param file the file
+     * @return index
+     * @throws IOException when the file cannot be read or is not an index
+     */
+    public static SequenceIndex load(final File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (raf.readInt() != MAGIC || raf.readInt() != FORMAT_VERSION) {
+                throw new IOException("not a sequence index: " + file);
+            }
+            int length = raf.readInt();
+            int sampleRate = raf.readInt();
+            char[] residues = new char[raf.readInt()];
+            for (int c = 0; c < residues.length; c++) {
+                residues[c] = raf.readChar();
+            }
+            int[] smaller = new int[residues.length + 1];
+            for (int c = 0; c < smaller.length; c++) {
+                smaller[c] = raf.readInt();
+            }
+            int[] sequenceStarts = new int[raf.readInt()];
+            for (int s = 0; s < sequenceStarts.length; s++) {
+                sequenceStarts[s] = raf.readInt();
+            }
+            int sampleCount = raf.readInt();
+            long offset = raf.getFilePointer();
+            ByteBuffer bwt = map(channel, offset, length);
+            offset += length;
+            int occurrenceCount = (length / OCCURRENCE_BLOCK + 1) * residues.length;
+            IntBuffer occurrences = map(channel, offset, 4L * occurrenceCount).asIntBuffer();
+            offset += 4L * occurrenceCount;
+            int words = (length + 63) >>> 6;
+            LongBuffer sampledRows = map(channel, offset, 8L * words).asLongBuffer();
+            offset += 8L * words;
+            IntBuffer sampledRowRanks = map(channel, offset, 4L * words).asIntBuffer();
+            offset += 4L * words;
+            IntBuffer samples = map(channel, offset, 4L * sampleCount).asIntBuffer();
+            return new SequenceIndex(length, sampleRate, residues, smaller, sequenceStarts, bwt, occurrences,
+                    sampledRows, sampledRowRanks, samples);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static ByteBuffer map(final FileChannel channel, final long offset, final long size) throws IOException {
+        if (size > Integer.MAX_VALUE || offset + size > channel.size()) {
+            throw new IOException("truncated or corrupt sequence index");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    }
+}
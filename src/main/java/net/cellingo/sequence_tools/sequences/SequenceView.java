@@ -0,0 +1,221 @@
+package net.cellingo.sequence_tools.sequences;
+
+/**
+ * Read-only window on the residues of another sequence, on either strand, described by an offset, a length and a
+ * strand. Nothing is copied: characters are fetched from the backing residues (a String or PackedNucleotides) when
+ * asked for, and on the complement strand they are complemented through a lookup table on the fly. Views of views
+ * refer to the original backing residues directly. Only {@link #toString()} and {@link #subSequence(int, int)} create
+ * a copy.
+ * <p>
+ * Views are not created directly but obtained as the storage of the Sequence objects returned by
+ * {@link Sequence#getView(int, int)} and {@link NucleicAcidSequence#reverseComplementView()}; such sequences support
+ * the complete Sequence API.
+ *
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+public final class SequenceView implements CharSequence {
+    private final CharSequence source;
+    private final int offset;
+    private final int length;
+    /*complement lookup table; null for the forward strand*/
+    private final char[] complements;
+
+    private SequenceView(CharSequence source, int offset, int length, char[] complements) {
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+        this.complements = complements;
+    }
+
+    /**
+     * creates a forward strand view on the given region.
+     *
+     * @param residues the residues
+     * @param start    start (inclusive)
+     * @param end      end (exclusive)
+     * @return view
+     */
+    static SequenceView forward(final CharSequence residues, final int start, final int end) {
+        checkRegion(residues, start, end);
+        if (residues instanceof SequenceView) {
+            return ((SequenceView) residues).region(start, end);
+        }
+        return new SequenceView(residues, start, end - start, null);
+    }
+
+    /**
+     * creates a reverse complement view on all of the given residues.
+     *
+     * @param residues    the residues
+     * @param complements complement lookup table indexed by character
+     * @return view
+     */
+    static SequenceView reverseComplement(final CharSequence residues, final char[] complements) {
+        if (residues instanceof SequenceView) {
+            return ((SequenceView) residues).reverseComplement(complements);
+        }
+        return new SequenceView(residues, 0, residues.length(), complements);
+    }
+
+    private static void checkRegion(final CharSequence residues, final int start, final int end) {
+        if (start < 0 || end > residues.length() || start > end) {
+            throw new StringIndexOutOfBoundsException(
+                    "region " + start + " to " + end + " for length " + residues.length());
+        }
+    }
+
+    private SequenceView region(final int start, final int end) {
+        if (complements == null) {
+            return new SequenceView(source, offset + start, end - start, null);
+        }
+        //on the complement strand, the region counts back from the end of the backing region
+        return new SequenceView(source, offset + length - end, end - start, complements);
+    }
+
+    private SequenceView reverseComplement(final char[] complementTable) {
+        return new SequenceView(source, offset, length, complements == null ? complementTable : null);
+    }
+
+    /**
+     * the start of this view in the backing residues. On the complement strand, this is where the view ends.
+     *
+     * @return offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * the strand this view reads: FORWARD or COMPLEMENT.
+     *
+     * @return strand
+     */
+    public SequenceStrand getStrand() {
+        return complements == null ? SequenceStrand.FORWARD : SequenceStrand.COMPLEMENT;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + " for length " + length);
+        }
+        if (complements == null) {
+            return source.charAt(offset + index);
+        }
+        char c = source.charAt(offset + length - 1 - index);
+        return c < complements.length ? complements[c] : c;
+    }
+
+    /**
+     * copies the residues of the given region into the destination array, like {@link String#getChars}.
+     *
+     * @param start       start (inclusive)
+     * @param end         end (exclusive)
+     * @param destination the destination
+     * @param destinationOffset the first index to write in the destination
+     */
+    public void getChars(final int start, final int end, final char[] destination, final int destinationOffset) {
+        checkRegion(this, start, end);
+        if (complements == null) {
+            copyResidues(source, offset + start, offset + end, destination, destinationOffset);
+            return;
+        }
+        int sourceStart = offset + length - end;
+        copyResidues(source, sourceStart, sourceStart + end - start, destination, destinationOffset);
+        NucleicAcidSequence.reverseComplement(destination, destinationOffset, destinationOffset + end - start,
+                complements);
+    }
+
+    /**
+     * copies a region of any residue storage into the destination array.
+     */
+    static void copyResidues(final CharSequence residues, final int start, final int end,
+                             final char[] destination, final int destinationOffset) {
+        if (residues instanceof String) {
+            ((String) residues).getChars(start, end, destination, destinationOffset);
+        } else if (residues instanceof SequenceView) {
+            ((SequenceView) residues).getChars(start, end, destination, destinationOffset);
+        } else {
+            //packed residues are decoded much faster as a region than one by one
+            residues.subSequence(start, end).toString().getChars(0, end - start, destination, destinationOffset);
+        }
+    }
+
+    /**
+     * returns the index of the first occurrence of the pattern at or after fromIndex, or -1. On the forward strand
+     * the search is delegated to the backing residues; it stops at the end of the view.
+     *
+     * @param pattern   the pattern
+     * @param fromIndex start of the search
+     * @return index
+     */
+    int indexOf(final String pattern, int fromIndex) {
+        final int m = pattern.length();
+        if (fromIndex < 0) {
+            fromIndex = 0;
+        }
+        if (complements == null) {
+            if (source instanceof String) {
+                final String residues = (String) source;
+                final int last = offset + length - m;
+                for (int i = offset + fromIndex; i <= last; i++) {
+                    if (residues.startsWith(pattern, i)) {
+                        return i - offset;
+                    }
+                }
+                return -1;
+            }
+            if (source instanceof PackedNucleotides) {
+                int found = ((PackedNucleotides) source).indexOf(pattern, offset + fromIndex, offset + length);
+                return found >= 0 ? found - offset : -1;
+            }
+            return indexOfCharacterWise(this, pattern, fromIndex);
+        }
+        return indexOfCharacterWise(this, pattern, fromIndex);
+    }
+
+    /**
+     * plain character by character search in any CharSequence.
+     */
+    static int indexOfCharacterWise(final CharSequence residues, final String pattern, final int fromIndex) {
+        final int m = pattern.length();
+        final int n = residues.length();
+        OUTER:
+        for (int i = Math.max(0, fromIndex); i <= n - m; i++) {
+            for (int k = 0; k < m; k++) {
+                if (residues.charAt(i + k) != pattern.charAt(k)) {
+                    continue OUTER;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        checkRegion(this, start, end);
+        return region(start, end).toString();
+    }
+
+    /**
+     * copies the residues of this view.
+     *
+     * @return residues
+     */
+    @Override
+    public String toString() {
+        if (complements == null) {
+            return source.subSequence(offset, offset + length).toString();
+        }
+        char[] residues = new char[length];
+        getChars(0, length, residues, 0);
+        return new String(residues);
+    }
+}
@@ -19,6 +19,19 @@ public class StructureSequence extends Sequence {
         init();
     }
 
+    /**
+     * constructor for a view on the residues of another sequence
+     */
+    protected StructureSequence(CharSequence residues) {
+        super(residues);
+        init();
+    }
+
+    @Override
+    protected Sequence getNewInstance(CharSequence residues) {
+        return new StructureSequence(residues);
+    }
+
 
     private void init() {
         this.setSequenceType(SequenceType.STRUCTURE);
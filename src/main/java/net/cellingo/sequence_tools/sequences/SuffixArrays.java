@@ -0,0 +1,152 @@
+package net.cellingo.sequence_tools.sequences;
+
+import java.util.Arrays;
+
+/**
+ * linear time suffix array construction by induced sorting (SA-IS, Nong, Zhang and Chan 2009). The text is an
+ * array of codes that ends with a unique 0, the smallest code.
+ *
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+final class SuffixArrays {
+
+    private SuffixArrays() {
+    }
+
+    /**
+     * sort the suffixes of the text.
+     *
+     * @param text         the codes; text[n - 1] should be 0 and occur nowhere else
+     * @param suffixArray  receives the start of every suffix in sorted order
+     * @param n            the text length
+     * @param alphabetSize the number of codes
+     */
+    static void build(final int[] text, final int[] suffixArray, final int n, final int alphabetSize) {
+        if (n == 1) {
+            suffixArray[0] = 0;
+            return;
+        }
+        /*S-type suffixes are smaller than the next suffix, L-type ones larger*/
+        boolean[] sType = new boolean[n];
+        sType[n - 1] = true;
+        for (int i = n - 2; i >= 0; i--) {
+            sType[i] = text[i] < text[i + 1] || (text[i] == text[i + 1] && sType[i + 1]);
+        }
+        int[] buckets = new int[alphabetSize];
+
+        /*sort the LMS substrings: put the LMS suffixes at the ends of their buckets and induce*/
+        bucketEnds(text, n, buckets);
+        Arrays.fill(suffixArray, 0, n, -1);
+        for (int i = 1; i < n; i++) {
+            if (isLms(sType, i)) {
+                suffixArray[--buckets[text[i]]] = i;
+            }
+        }
+        induce(text, suffixArray, sType, n, buckets);
+
+        /*name the LMS substrings in sorted order; equal substrings get equal names*/
+        int lmsCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (isLms(sType, suffixArray[i])) {
+                suffixArray[lmsCount++] = suffixArray[i];
+            }
+        }
+        Arrays.fill(suffixArray, lmsCount, n, -1);
+        int names = 0;
+        int previous = -1;
+        for (int i = 0; i < lmsCount; i++) {
+            int position = suffixArray[i];
+            boolean different = false;
+            for (int d = 0; d < n; d++) {
+                if (previous == -1 || text[position + d] != text[previous + d]
+                        || sType[position + d] != sType[previous + d]) {
+                    different = true;
+                    break;
+                } else if (d > 0 && (isLms(sType, position + d) || isLms(sType, previous + d))) {
+                    break;
+                }
+            }
+            if (different) {
+                names++;
+                previous = position;
+            }
+            /*LMS positions are at least two apart, so position / 2 is free*/
+            suffixArray[lmsCount + (position >> 1)] = names - 1;
+        }
+        int[] reduced = new int[lmsCount];
+        for (int i = lmsCount, j = 0; i < n; i++) {
+            if (suffixArray[i] >= 0) {
+                reduced[j++] = suffixArray[i];
+            }
+        }
+
+        /*sort the LMS suffixes, recursively if their names are not unique*/
+        int[] reducedSuffixArray = new int[lmsCount];
+        if (names < lmsCount) {
+            build(reduced, reducedSuffixArray, lmsCount, names);
+        } else {
+            for (int i = 0; i < lmsCount; i++) {
+                reducedSuffixArray[reduced[i]] = i;
+            }
+        }
+        int[] lmsPositions = reduced;
+        for (int i = 1, j = 0; i < n; i++) {
+            if (isLms(sType, i)) {
+                lmsPositions[j++] = i;
+            }
+        }
+
+        /*induce the order of all suffixes from the sorted LMS suffixes*/
+        bucketEnds(text, n, buckets);
+        Arrays.fill(suffixArray, 0, n, -1);
+        for (int i = lmsCount - 1; i >= 0; i--) {
+            int position = lmsPositions[reducedSuffixArray[i]];
+            suffixArray[--buckets[text[position]]] = position;
+        }
+        induce(text, suffixArray, sType, n, buckets);
+    }
+
+    private static boolean isLms(final boolean[] sType, final int i) {
+        return i > 0 && sType[i] && !sType[i - 1];
+    }
+
+    private static void bucketEnds(final int[] text, final int n, final int[] buckets) {
+        Arrays.fill(buckets, 0);
+        for (int i = 0; i < n; i++) {
+            buckets[text[i]]++;
+        }
+        for (int c = 1; c < buckets.length; c++) {
+            buckets[c] += buckets[c - 1];
+        }
+    }
+
+    private static void bucketStarts(final int[] text, final int n, final int[] buckets) {
+        bucketEnds(text, n, buckets);
+        for (int c = buckets.length - 1; c > 0; c--) {
+            buckets[c] = buckets[c - 1];
+        }
+        buckets[0] = 0;
+    }
+
+    /**
+     * induce the L-type suffixes from left to right, then the S-type suffixes from right to left.
+     */
+    private static void induce(final int[] text, final int[] suffixArray, final boolean[] sType, final int n,
+                               final int[] buckets) {
+        bucketStarts(text, n, buckets);
+        for (int i = 0; i < n; i++) {
+            int j = suffixArray[i] - 1;
+            if (j >= 0 && !sType[j]) {
+                suffixArray[buckets[text[j]]++] = j;
+            }
+        }
+        bucketEnds(text, n, buckets);
+        for (int i = n - 1; i >= 0; i--) {
+            int j = suffixArray[i] - 1;
+            if (j >= 0 && sType[j]) {
+                suffixArray[--buckets[text[j]]] = j;
+            }
+        }
+    }
+}
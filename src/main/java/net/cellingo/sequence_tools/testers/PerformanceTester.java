@@ -0,0 +1,370 @@
+/**
+ *
+ */
+package net.cellingo.sequence_tools.testers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import net.cellingo.sequence_tools.alignment.AlignmentAlgorithm;
+import net.cellingo.sequence_tools.alignment.AlignmentController;
+import net.cellingo.sequence_tools.alignment.AlignmentMatrixType;
+import net.cellingo.sequence_tools.alignment.AlignmentOptions;
+import net.cellingo.sequence_tools.alignment.AlignmentStrategy;
+import net.cellingo.sequence_tools.alphabets.NucleicAcidSequenceAlphabet;
+import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
+import net.cellingo.sequence_tools.annotation.OpenReadingFrame;
+import net.cellingo.sequence_tools.annotation.SequenceObject;
+import net.cellingo.sequence_tools.gene_analysis.CodonTable;
+import net.cellingo.sequence_tools.gene_analysis.GeneAnalysisOptions;
+import net.cellingo.sequence_tools.gene_analysis.OrfDefinition;
+import net.cellingo.sequence_tools.gene_analysis.OrfFinder;
+import net.cellingo.sequence_tools.gene_analysis.ParallelOrfFinder;
+import net.cellingo.sequence_tools.io.SequenceReader;
+import net.cellingo.sequence_tools.io.SequenceReaderListener;
+import net.cellingo.sequence_tools.sequences.DnaSequence;
+import net.cellingo.sequence_tools.sequences.NucleicAcidSequence;
+import net.cellingo.sequence_tools.sequences.Sequence;
+import net.cellingo.sequence_tools.sequences.SequenceStrand;
+import net.cellingo.sequence_tools.sequences.SequenceType;
+
+/**
+ * Simple throughput measurements on the sample data. Each test is run a number of times to warm up the JIT before
+ * the timed runs. Run from the project root so the sample_data folder is found.
+ * @author Michiel Noback (www.cellingo.net, michiel@cellingo.net)
+ * @version 1.0
+ */
+public class PerformanceTester {
+	private static final File GENOME_FASTA = new File("sample_data/GCF_001499615.1_Acetobacter_senegalensis_108B_genomic.fna");
+	private static final int WARMUP_RUNS = 30;
+	private static final int TIMED_RUNS = 50;
+
+	private long residueCount;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		PerformanceTester tester = new PerformanceTester();
+		tester.testFastaReading();
+		tester.testTypeDetection();
+		tester.testReverseComplement();
+		tester.testTranslation();
+		tester.testParallelOrfFinding();
+		tester.testStripedAlignment();
+	}
+
+	/**
+	 * compares the line-based Fasta reader with the memory-mapped byte-level one
+	 */
+	public void testFastaReading(){
+		double fileMb = GENOME_FASTA.length() / (1024.0 * 1024.0);
+		for(boolean memoryMapped : new boolean[]{false, true}){
+			for(int i=0; i<WARMUP_RUNS; i++){
+				readFasta(memoryMapped);
+			}
+			long start = System.nanoTime();
+			for(int i=0; i<TIMED_RUNS; i++){
+				readFasta(memoryMapped);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%-20s %8.1f MB/s (%d residues per run)",
+					(memoryMapped ? "memory mapped" : "line based"),
+					fileMb * TIMED_RUNS / seconds,
+					residueCount));
+		}
+	}
+
+	private void readFasta(boolean memoryMapped){
+		residueCount = 0;
+		SequenceReader reader = new SequenceReader( GENOME_FASTA );
+		reader.setMemoryMapped(memoryMapped);
+		reader.addSequenceReaderListener(new SequenceReaderListener() {
+			@Override
+			public void sequenceRead(SequenceObject sequenceObject) {
+				residueCount += sequenceObject.getSequence().getSequenceLength();
+			}
+			@Override
+			public void sequenceReadingFinished() {
+			}
+		});
+		try {
+			reader.read();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * compares the single-pass, table driven sequence type detection with the former approach of one pass per
+	 * alphabet through HashMap lookups
+	 */
+	public void testTypeDetection(){
+		String genome = readGenome();
+		double megaBases = genome.length() / 1e6;
+		SequenceType type = null;
+		for(boolean singlePass : new boolean[]{false, true}){
+			for(int i=0; i<WARMUP_RUNS; i++){
+				type = singlePass ? detectSinglePass(genome) : detectPerAlphabet(genome);
+			}
+			long start = System.nanoTime();
+			for(int i=0; i<TIMED_RUNS; i++){
+				type = singlePass ? detectSinglePass(genome) : detectPerAlphabet(genome);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%-20s %8.1f Mbase/s (type %s)",
+					(singlePass ? "single pass" : "per alphabet"),
+					megaBases * TIMED_RUNS / seconds,
+					type));
+		}
+	}
+
+	private SequenceType detectSinglePass(String residues){
+		return SequenceAlphabet.getSequenceType(SequenceAlphabet.getAlphabetMask(residues));
+	}
+
+	/*the detection as it was done in SequenceFactory before*/
+	private SequenceType detectPerAlphabet(String residues){
+		char[] characters = residues.toUpperCase().toCharArray();
+		boolean dna = isValid(characters, SequenceAlphabet.ALPHABET_DNA);
+		boolean rna = isValid(characters, SequenceAlphabet.ALPHABET_RNA);
+		boolean protein = isValid(characters, SequenceAlphabet.ALPHABET_PROTEIN);
+		boolean structure = isValid(characters, SequenceAlphabet.ALPHABET_STRUCTURE);
+		if(dna && protein) return SequenceType.DNA;
+		else if(protein) return SequenceType.PROTEIN;
+		else if(rna) return SequenceType.RNA;
+		else if(structure) return SequenceType.STRUCTURE;
+		return null;
+	}
+
+	private boolean isValid(char[] characters, SequenceAlphabet alphabet){
+		for(char character : characters){
+			if(!alphabet.isValidAlphabetCharacter(character)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * compares the former reverse-then-complement approach with the single-pass table driven kernel
+	 */
+	public void testReverseComplement(){
+		String genome = readGenome();
+		NucleicAcidSequenceAlphabet alphabet = (NucleicAcidSequenceAlphabet)SequenceAlphabet.ALPHABET_DNA;
+		double megaBases = genome.length() / 1e6;
+		String reverseComplement = null;
+		for(boolean singlePass : new boolean[]{false, true}){
+			for(int i=0; i<WARMUP_RUNS; i++){
+				reverseComplement = singlePass
+						? NucleicAcidSequence.reverseComplementString(genome, alphabet)
+						: NucleicAcidSequence.complementString(NucleicAcidSequence.reverseString(genome), alphabet);
+			}
+			long start = System.nanoTime();
+			for(int i=0; i<TIMED_RUNS; i++){
+				reverseComplement = singlePass
+						? NucleicAcidSequence.reverseComplementString(genome, alphabet)
+						: NucleicAcidSequence.complementString(NucleicAcidSequence.reverseString(genome), alphabet);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%-20s %8.1f Mbase/s (starts with %s)",
+					(singlePass ? "single pass" : "reverse, complement"),
+					megaBases * TIMED_RUNS / seconds,
+					reverseComplement.substring(0, 10)));
+		}
+	}
+
+	/**
+	 * compares three-frame translation through codon Strings and HashMap lookups with translation through the compiled
+	 * codon index table, and reports the six-frame ORF finding throughput
+	 */
+	public void testTranslation(){
+		String genome = readGenome();
+		double megaBases = genome.length() / 1e6;
+		CodonTable codonTable = new CodonTable();
+		int stopCodons = 0;
+		for(boolean codonIndex : new boolean[]{false, true}){
+			for(int i=0; i<WARMUP_RUNS; i++){
+				stopCodons = codonIndex ? translateIndexed(genome, codonTable) : translateStrings(genome, codonTable);
+			}
+			long start = System.nanoTime();
+			for(int i=0; i<TIMED_RUNS; i++){
+				stopCodons = codonIndex ? translateIndexed(genome, codonTable) : translateStrings(genome, codonTable);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%-20s %8.1f Mbase/s (%d stop codons)",
+					(codonIndex ? "codon index" : "codon strings"),
+					megaBases * TIMED_RUNS / seconds,
+					stopCodons));
+		}
+
+		GeneAnalysisOptions options = new GeneAnalysisOptions();
+		options.setStrandSelection(SequenceStrand.BOTH);
+		options.setOrfDefinition(OrfDefinition.START_TO_STOP);
+		DnaSequence sequence = new DnaSequence(genome);
+		int orfs = 0;
+		for(int i=0; i<WARMUP_RUNS / 3; i++){
+			orfs = findOrfs(sequence, options);
+		}
+		long start = System.nanoTime();
+		for(int i=0; i<TIMED_RUNS / 5; i++){
+			orfs = findOrfs(sequence, options);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-20s %8.1f Mbase/s (%d ORFs)",
+				"six-frame ORFs",
+				megaBases * (TIMED_RUNS / 5) / seconds,
+				orfs));
+	}
+
+	/**
+	 * compares the sequential OrfFinder with the ParallelOrfFinder on all contigs of the sample genome
+	 */
+	public void testParallelOrfFinding(){
+		List<NucleicAcidSequence> contigs = new ArrayList<NucleicAcidSequence>();
+		long residues = 0;
+		try {
+			SequenceReader reader = new SequenceReader( GENOME_FASTA );
+			reader.setSequenceTypeHint(SequenceType.DNA);
+			try(Stream<Sequence> sequences = reader.stream()){
+				for(Sequence sequence : (Iterable<Sequence>)sequences::iterator){
+					contigs.add((NucleicAcidSequence)sequence);
+					residues += sequence.getSequenceLength();
+				}
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		double megaBases = residues / 1e6;
+		GeneAnalysisOptions options = new GeneAnalysisOptions();
+		options.setStrandSelection(SequenceStrand.BOTH);
+		options.setOrfDefinition(OrfDefinition.START_TO_STOP);
+		ParallelOrfFinder parallelOrfFinder = new ParallelOrfFinder(options);
+		int runs = TIMED_RUNS / 5;
+		for(boolean parallel : new boolean[]{false, true}){
+			int orfs = 0;
+			for(int i=0; i<runs; i++){
+				orfs = parallel ? findOrfsParallel(parallelOrfFinder, contigs) : findOrfs(contigs, options);
+			}
+			long start = System.nanoTime();
+			for(int i=0; i<runs; i++){
+				orfs = parallel ? findOrfsParallel(parallelOrfFinder, contigs) : findOrfs(contigs, options);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%-20s %8.1f Mbase/s (%d ORFs, %d threads)",
+					(parallel ? "parallel ORFs" : "sequential ORFs"),
+					megaBases * runs / seconds,
+					orfs,
+					(parallel ? ForkJoinPool.commonPool().getParallelism() : 1)));
+		}
+	}
+
+	private int findOrfs(List<NucleicAcidSequence> contigs, GeneAnalysisOptions options){
+		int orfs = 0;
+		for(NucleicAcidSequence contig : contigs){
+			orfs += findOrfs(contig, options);
+		}
+		return orfs;
+	}
+
+	private int findOrfsParallel(ParallelOrfFinder parallelOrfFinder, List<NucleicAcidSequence> contigs){
+		int orfs = 0;
+		for(List<OpenReadingFrame> orfList : parallelOrfFinder.findOrfs(contigs)){
+			orfs += orfList.size();
+		}
+		return orfs;
+	}
+
+	/*translation as OrfFinder did it before*/
+	private int translateStrings(String residues, CodonTable codonTable){
+		int stopCodons = 0;
+		for(int frame=0; frame<3; frame++){
+			for(int position=frame; position<residues.length()-2; position+=3){
+				if(codonTable.getCodonTranslation(residues.substring(position, position + 3)).equals("*")){
+					stopCodons++;
+				}
+			}
+		}
+		return stopCodons;
+	}
+
+	private int translateIndexed(String residues, CodonTable codonTable){
+		byte[] translations = codonTable.getTranslationTable();
+		int stopCodons = 0;
+		int codonIndex = 0;
+		int lastInvalidPosition = -1;
+		for(int position=0; position<residues.length(); position++){
+			int code = CodonTable.getNucleotideCode(residues.charAt(position));
+			if(code < 0){
+				lastInvalidPosition = position;
+				code = 0;
+			}
+			codonIndex = ((codonIndex << 2) | code) & 63;
+			if(position >= 2 && lastInvalidPosition < position - 2 && translations[codonIndex] == '*'){
+				stopCodons++;
+			}
+		}
+		return stopCodons;
+	}
+
+	/**
+	 * aligns a probe against gene sized fragments of the genome with the full matrix and the striped kernel
+	 */
+	public void testStripedAlignment(){
+		String genome = readGenome();
+		final int targetLength = 1500;
+		final int targetCount = 100;
+		List<Sequence> sequences = new ArrayList<Sequence>();
+		sequences.add(new DnaSequence(genome.substring(100000, 100060)));
+		for(int i=0; i<targetCount; i++){
+			int start = 50000 + i * 7919;
+			sequences.add(new DnaSequence(genome.substring(start, start + targetLength)));
+		}
+		for(AlignmentAlgorithm algorithm : new AlignmentAlgorithm[]{AlignmentAlgorithm.LOCAL, AlignmentAlgorithm.LOCAL_STRIPED}){
+			int runs = TIMED_RUNS / 10;
+			int alignments = 0;
+			for(int i=0; i<runs; i++){
+				alignments = align(sequences, algorithm);
+			}
+			long start = System.nanoTime();
+			for(int i=0; i<runs; i++){
+				alignments = align(sequences, algorithm);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%-24s %8.1f targets/s (%d alignments)",
+					algorithm, targetCount * runs / seconds, alignments));
+		}
+	}
+
+	private int align(List<Sequence> sequences, AlignmentAlgorithm algorithm){
+		AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT);
+		options.setAlsoComplement(false);
+		AlignmentController controller = new AlignmentController(algorithm, AlignmentStrategy.INTERMOLECULAR_FIRST_TO_ALL, options, sequences);
+		controller.start();
+		return controller.getAlignmentList().size();
+	}
+
+	private int findOrfs(NucleicAcidSequence sequence, GeneAnalysisOptions options){
+		OrfFinder orfFinder = new OrfFinder(sequence, options);
+		orfFinder.start();
+		return orfFinder.getOrfList().size();
+	}
+
+	/**
+	 * reads the sample genome (the first record) as String
+	 */
+	private String readGenome(){
+		try {
+			SequenceReader reader = new SequenceReader( GENOME_FASTA );
+			reader.setSequenceTypeHint(SequenceType.DNA);
+			try(Stream<Sequence> sequences = reader.stream()){
+				return sequences.findFirst().get().getSequenceString();
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
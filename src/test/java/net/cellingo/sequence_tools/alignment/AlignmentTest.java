@@ -0,0 +1,651 @@
+package net.cellingo.sequence_tools.alignment;
+
+import net.cellingo.sequence_tools.alphabets.NucleicAcidSequenceAlphabet;
+import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
+import net.cellingo.sequence_tools.annotation.SequenceCoordinates;
+import net.cellingo.sequence_tools.sequences.DnaSequence;
+import net.cellingo.sequence_tools.sequences.NucleicAcidSequence;
+import net.cellingo.sequence_tools.sequences.Sequence;
+import net.cellingo.sequence_tools.sequences.SequenceType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creation date: 18-10-2017
+ *
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+public class AlignmentTest {
+    private String geneOne;
+    private String geneTwo;
+
+    @Before
+    public void setUp() throws Exception {
+        geneOne = ("atggatctttctttcactctttcggtcgtgtcggccatcctcgccatcactgctgtgattgctgtatttattgtgat"
+                + "ttttaggtatcacaacactgtgaccaagaccatcgaaacccacacagacaatatcgagacaaacatggatgaaaacc"
+                + "tccgcattcctgtgactgctgaggttggatcaggctacttcaagatgactgatgtgtcctttgacagcgacaccttg"
+                + "ggcaaaatcaagatccgcaatggaaagtctgatgcacagatgaaggaagaagatgcggatcttgtcatcactcccgt"
+                + "ggagggccgagcactcgaagtgactgtggggcagaatctcacctttgagggaacattcaaggtgtggaacaacacat"
+                + "caagaaagatcaacatcactggtatgcagatggtgccaaagattaacccatcaaaggcctttgtcggtagctccaac").toUpperCase();
+        //the middle part of gene one, with substitutions and deletions
+        StringBuilder mutated = new StringBuilder();
+        for (int i = 40; i < geneOne.length() - 30; i++) {
+            if (i % 53 == 0) {
+                continue;
+            }
+            char base = geneOne.charAt(i);
+            mutated.append(i % 17 == 0 ? (base == 'A' ? 'C' : 'A') : base);
+        }
+        geneTwo = "GGTTAACC" + mutated + "TTGACCA";
+    }
+
+    private List<Alignment> align(boolean linearMemory, AlignmentAlgorithm algorithm) {
+        AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT);
+        options.setLinearMemoryAlignment(linearMemory);
+        return align(options, algorithm);
+    }
+
+    private List<Alignment> align(AlignmentOptions options, AlignmentAlgorithm algorithm) {
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        sequences.add(new DnaSequence(geneOne));
+        sequences.add(new DnaSequence(geneTwo));
+        AlignmentController controller = new AlignmentController(
+                algorithm, AlignmentStrategy.INTERMOLECULAR_FIRST_TO_ALL, options, sequences);
+        controller.start();
+        return controller.getAlignmentList();
+    }
+
+    @Test
+    public void linearMemoryAlignment() throws Exception {
+        for (AlignmentAlgorithm algorithm : new AlignmentAlgorithm[]{AlignmentAlgorithm.LOCAL, AlignmentAlgorithm.GLOBAL}) {
+            List<Alignment> full = align(false, algorithm);
+            List<Alignment> linear = align(true, algorithm);
+            assertFalse(full.isEmpty());
+            assertEquals(full.size(), linear.size());
+            for (int i = 0; i < full.size(); i++) {
+                Alignment expected = full.get(i);
+                Alignment actual = linear.get(i);
+                assertEquals(expected.getPropertyValue(AlignmentProperty.SW_SCORE),
+                        actual.getPropertyValue(AlignmentProperty.SW_SCORE), 0);
+                assertEquals(expected.getTopStrand().toString(), actual.getTopStrand().toString());
+                assertEquals(expected.getMiddleLine().toString(), actual.getMiddleLine().toString());
+                assertEquals(expected.getBottomStrand().toString(), actual.getBottomStrand().toString());
+                assertEquals(expected.getTopParent().getSequenceCoordinates().getStart(),
+                        actual.getTopParent().getSequenceCoordinates().getStart());
+                assertEquals(expected.getBottomParent().getSequenceCoordinates().getStop(),
+                        actual.getBottomParent().getSequenceCoordinates().getStop());
+            }
+        }
+    }
+
+    @Test
+    public void bandedAlignment() throws Exception {
+        AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT);
+        options.setAlsoComplement(false);
+        Alignment full = align(options, AlignmentAlgorithm.LOCAL).get(0);
+        options.setBandWidth(20);
+        Alignment banded = align(options, AlignmentAlgorithm.LOCAL).get(0);
+        options.setBandWidth(0);
+        options.setXDrop(30);
+        Alignment xDrop = align(options, AlignmentAlgorithm.LOCAL).get(0);
+        //the alignment stays close to the diagonal, so both find the same one
+        for (Alignment alignment : new Alignment[]{banded, xDrop}) {
+            assertEquals(full.getPropertyValue(AlignmentProperty.SW_SCORE),
+                    alignment.getPropertyValue(AlignmentProperty.SW_SCORE), 0);
+            assertEquals(full.getTopStrand().toString(), alignment.getTopStrand().toString());
+            assertEquals(full.getBottomStrand().toString(), alignment.getBottomStrand().toString());
+        }
+    }
+
+    @Test
+    public void stripedAlignment() throws Exception {
+        String probe = geneOne.substring(100, 140);
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        sequences.add(new DnaSequence(probe));
+        sequences.add(new DnaSequence(geneOne));
+        sequences.add(new DnaSequence(geneTwo));
+        AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT);
+        options.setAlsoComplement(false);
+        AlignmentController controller = new AlignmentController(
+                AlignmentAlgorithm.LOCAL_STRIPED, AlignmentStrategy.INTERMOLECULAR_FIRST_TO_ALL, options, sequences);
+        controller.start();
+        List<Alignment> alignments = controller.getAlignmentList();
+        assertEquals(2, alignments.size());
+
+        Alignment exact = alignments.get(0);
+        assertEquals(probe.length() * 3, exact.getPropertyValue(AlignmentProperty.SW_SCORE), 0);
+        assertEquals(probe, exact.getTopStrand().toString());
+        assertEquals(probe, exact.getBottomStrand().toString());
+        assertEquals(101, exact.getBottomParent().getSequenceCoordinates().getStart());
+        assertEquals(140, exact.getBottomParent().getSequenceCoordinates().getStop());
+
+        //the probe spans a deletion and several substitutions in gene two
+        Alignment mutated = alignments.get(1);
+        int start = mutated.getBottomParent().getSequenceCoordinates().getStart();
+        int stop = mutated.getBottomParent().getSequenceCoordinates().getStop();
+        assertEquals(geneTwo.substring(start - 1, stop), mutated.getBottomStrand().toString().replace("-", ""));
+        assertTrue(mutated.getBottomStrand().toString().contains("-"));
+        assertTrue(mutated.getPropertyValue(AlignmentProperty.SW_SCORE) < probe.length() * 3);
+    }
+
+    @Test
+    public void stripedScoresMatchScalar() throws Exception {
+        Random random = new Random(11);
+        AlignmentScoringMatrix blosum = new AlignmentScoringMatrix(SequenceType.PROTEIN, AlignmentMatrixType.PROTEIN_BLOSUM62);
+        int[][] gaps = {{-6, -3}, {-11, -1}, {-4, -4}};
+        for (int pair = 0; pair < 300; pair++) {
+            int[] gap = gaps[pair % gaps.length];
+            char[] query = randomResidues(random, "ARNDCQEGHILKMFPSTWYV", 1 + random.nextInt(70));
+            //related pairs give gapped alignments, unrelated ones short local hits
+            char[] target = pair % 2 == 0 ? mutate(random, query, "ARNDCQEGHILKMFPSTWYV")
+                    : randomResidues(random, "ARNDCQEGHILKMFPSTWYV", 1 + random.nextInt(70));
+            StripedSmithWaterman striped = new StripedSmithWaterman(blosum, gap[0], gap[1]);
+            int[] expected = gotohScores(blosum, gap[0], gap[1], query, target);
+            assertArrayEquals(expected, striped.calculateScores(query, target));
+            //the query profile is reused for the next target
+            assertArrayEquals(gotohScores(blosum, gap[0], gap[1], query, query), striped.calculateScores(query, query));
+            if (gap[0] == gap[1]) {
+                //with linear gaps the recurrence of the matrix based aligners is the same
+                ScoreOnlySmithWaterman scalar = new ScoreOnlySmithWaterman(blosum, gap[0], gap[1], true);
+                assertEquals(expected[0], scalar.calculateScores(query, query.length + 1, target, target.length + 1)[0]);
+            }
+        }
+
+        //scores beyond the range of the 16-bit lanes are scored again on 32-bit lanes
+        AlignmentScoringMatrix scaled = AlignmentScoringMatrix.readMatrix(SequenceType.DNA, new StringReader(
+                "    A    C    G    T\nA  500 -400 -400 -400\nC -400  500 -400 -400\n"
+                        + "G -400 -400  500 -400\nT -400 -400 -400  500\n"));
+        for (int length : new int[]{97, 131, 200}) {
+            char[] query = randomResidues(random, "ACGT", length);
+            char[] target = mutate(random, query, "ACGT");
+            int[] expected = gotohScores(scaled, -600, -200, query, target);
+            assertTrue(expected[0] > Short.MAX_VALUE);
+            assertArrayEquals(expected, new StripedSmithWaterman(scaled, -600, -200).calculateScores(query, target));
+        }
+    }
+
+    @Test
+    public void parallelAlignment() throws Exception {
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        for (int i = 0; i < 6; i++) {
+            sequences.add(new DnaSequence(geneOne.substring(i * 20, 200 + i * 40)));
+            sequences.add(new DnaSequence(geneTwo.substring(i * 30)));
+        }
+        sequences.add(new DnaSequence(geneOne).reverseComplement());
+        AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT);
+        IntermolecularAligner sequential = new IntermolecularAligner(
+                AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL, AlignmentAlgorithm.LOCAL, options);
+        sequential.setSequences(sequences);
+        sequential.doAlignment();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        ParallelIntermolecularAligner parallel = new ParallelIntermolecularAligner(
+                AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL, AlignmentAlgorithm.LOCAL, options, pool, 50000);
+        parallel.setSequences(sequences);
+        final AtomicInteger reported = new AtomicInteger();
+        parallel.setAlignmentListener(new AlignmentListener() {
+            @Override
+            public void alignmentFound(Alignment alignment) {
+                reported.incrementAndGet();
+            }
+        });
+        parallel.doAlignment();
+        pool.shutdown();
+
+        List<Alignment> expected = sequential.getAlignmentList();
+        List<Alignment> actual = parallel.getAlignmentList();
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.size(), reported.get());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTopParent().getParentSequence(), actual.get(i).getTopParent().getParentSequence());
+            assertEquals(expected.get(i).getBottomParent().getParentSequence(), actual.get(i).getBottomParent().getParentSequence());
+            assertEquals(expected.get(i).getTopStrand().toString(), actual.get(i).getTopStrand().toString());
+            assertEquals(expected.get(i).getBottomStrand().toString(), actual.get(i).getBottomStrand().toString());
+        }
+        //the reverse complement of gene one is found on the complement strand of the first fragment
+        boolean complementFound = false;
+        for (Alignment alignment : actual) {
+            SequenceCoordinates top = alignment.getTopParent().getSequenceCoordinates();
+            if (alignment.getTopParent().getParentSequence() == sequences.get(0)
+                    && alignment.getBottomParent().getParentSequence() == sequences.get(sequences.size() - 1)
+                    && top.isComplement()) {
+                assertTrue(alignment.getPropertyValue(AlignmentProperty.SW_SCORE) > 150 * 3);
+                //forward strand coordinates: fragment position p pairs with position 462 - p + 1 of the reverse complement
+                assertEquals(17, top.getStart());
+                assertEquals(200, top.getStop());
+                assertEquals(263, alignment.getBottomParent().getSequenceCoordinates().getStart());
+                assertEquals(446, alignment.getBottomParent().getSequenceCoordinates().getStop());
+                assertEquals(NucleicAcidSequence.reverseComplementString(geneOne.substring(16, 200),
+                        (NucleicAcidSequenceAlphabet) SequenceAlphabet.ALPHABET_DNA),
+                        alignment.getTopStrand().toString().replace("-", ""));
+                complementFound = true;
+            }
+        }
+        assertTrue(complementFound);
+    }
+
+    @Test
+    public void scoreOnlyAlignment() throws Exception {
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        for (int i = 0; i < 4; i++) {
+            sequences.add(new DnaSequence(geneOne.substring(i * 20, 200 + i * 40)));
+            sequences.add(new DnaSequence(geneTwo.substring(i * 30)));
+        }
+        AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT);
+        AlignmentController full = new AlignmentController(
+                AlignmentAlgorithm.LOCAL, AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL, options, sequences);
+        full.start();
+        int bestScore = 0;
+        for (Alignment alignment : full.getAlignmentList()) {
+            bestScore = Math.max(bestScore, (int) alignment.getPropertyValue(AlignmentProperty.SW_SCORE));
+        }
+
+        options.setScoreOnlyAlignment(true);
+        options.setTopHits(3);
+        AlignmentController scoreOnly = new AlignmentController(
+                AlignmentAlgorithm.LOCAL, AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL, options, sequences);
+        scoreOnly.start();
+        List<AlignmentScore> scores = scoreOnly.getAlignmentScoreList();
+        //the relative score and length minimums are not applied to the scores
+        assertTrue(scores.size() >= full.getAlignmentList().size());
+        int bestOnlyScore = 0;
+        for (AlignmentScore score : scores) {
+            bestOnlyScore = Math.max(bestOnlyScore, score.getScore());
+        }
+        assertEquals(bestScore, bestOnlyScore);
+
+        List<Alignment> top = scoreOnly.getAlignmentList();
+        assertTrue(top.size() <= 3);
+        assertEquals(bestScore, top.get(0).getPropertyValue(AlignmentProperty.SW_SCORE), 0);
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).getPropertyValue(AlignmentProperty.SW_SCORE)
+                    >= top.get(i).getPropertyValue(AlignmentProperty.SW_SCORE));
+        }
+
+        options.setParallelAlignment(true);
+        AlignmentController parallel = new AlignmentController(
+                AlignmentAlgorithm.LOCAL, AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL, options, sequences);
+        parallel.start();
+        assertEquals(scores.size(), parallel.getAlignmentScoreList().size());
+        for (int i = 0; i < scores.size(); i++) {
+            assertEquals(scores.get(i).toString(), parallel.getAlignmentScoreList().get(i).toString());
+        }
+        assertEquals(top.size(), parallel.getAlignmentList().size());
+    }
+
+    @Test
+    public void columnarResults() throws Exception {
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        for (int i = 0; i < 4; i++) {
+            sequences.add(new DnaSequence(geneOne.substring(i * 20, 200 + i * 40)));
+            sequences.add(new DnaSequence(geneTwo.substring(i * 30)));
+        }
+        AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT);
+        AlignmentController objects = new AlignmentController(
+                AlignmentAlgorithm.LOCAL, AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL, options, sequences);
+        objects.start();
+        options.setColumnarResults(true);
+        AlignmentController columnar = new AlignmentController(
+                AlignmentAlgorithm.LOCAL, AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL, options, sequences);
+        columnar.start();
+        assertTrue(columnar.getAlignmentList().isEmpty());
+
+        List<Alignment> expected = objects.getAlignmentList();
+        AlignmentResultSet results = columnar.getAlignmentResultSet();
+        assertEquals(expected.size(), results.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Alignment alignment = results.getAlignment(i);
+            assertEquals(expected.get(i).getTopParent().getParentSequence(), alignment.getTopParent().getParentSequence());
+            assertEquals(expected.get(i).getTopParent().getSequenceCoordinates().getStart(),
+                    alignment.getTopParent().getSequenceCoordinates().getStart());
+            assertEquals(expected.get(i).getBottomParent().getSequenceCoordinates().getStop(),
+                    alignment.getBottomParent().getSequenceCoordinates().getStop());
+            assertEquals(expected.get(i).getTopStrand().toString(), alignment.getTopStrand().toString());
+            assertEquals(expected.get(i).getBottomStrand().toString(), alignment.getBottomStrand().toString());
+            assertEquals(expected.get(i).getMiddleLine().toString(), alignment.getMiddleLine().toString());
+            assertEquals(expected.get(i).getPropertyValue(AlignmentProperty.GAP_NUMBER), results.getGapNumber(i), 0);
+        }
+
+        results.sort(AlignmentProperty.SW_SCORE, true);
+        List<Alignment> sorted = new ArrayList<Alignment>(expected);
+        Collections.sort(sorted, Collections.reverseOrder(Alignment.ScoreComparator));
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i).getPropertyValue(AlignmentProperty.SW_SCORE), results.getScore(i), 0);
+        }
+    }
+
+    @Test
+    public void columnarResultsForAllAlgorithms() throws Exception {
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        sequences.add(new DnaSequence(geneOne.substring(50, 110)));
+        sequences.add(new DnaSequence(geneOne));
+        sequences.add(new DnaSequence(geneTwo));
+        AlignmentAlgorithm[] algorithms = {AlignmentAlgorithm.LOCAL, AlignmentAlgorithm.LOCAL_STRIPED,
+                AlignmentAlgorithm.SEMIGLOBAL, AlignmentAlgorithm.GLOBAL};
+        for (AlignmentAlgorithm algorithm : algorithms) {
+            for (int mode = 0; mode < 3; mode++) {
+                AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT);
+                options.setLinearMemoryAlignment(mode == 1);
+                options.setBandWidth(mode == 2 ? 30 : 0);
+                AlignmentController objects = new AlignmentController(
+                        algorithm, AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL, options, sequences);
+                objects.start();
+                options.setColumnarResults(true);
+                AlignmentController columnar = new AlignmentController(
+                        algorithm, AlignmentStrategy.INTERMOLECULAR_ALL_TO_ALL, options, sequences);
+                columnar.start();
+
+                String message = algorithm + " mode " + mode;
+                List<Alignment> expected = objects.getAlignmentList();
+                AlignmentResultSet results = columnar.getAlignmentResultSet();
+                assertFalse(message, expected.isEmpty());
+                assertEquals(message, expected.size(), results.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    Alignment alignment = results.getAlignment(i);
+                    SequenceCoordinates top = expected.get(i).getTopParent().getSequenceCoordinates();
+                    SequenceCoordinates bottom = expected.get(i).getBottomParent().getSequenceCoordinates();
+                    assertEquals(message, top.toString(), alignment.getTopParent().getSequenceCoordinates().toString());
+                    assertEquals(message, bottom.toString(), alignment.getBottomParent().getSequenceCoordinates().toString());
+                    assertEquals(message, expected.get(i).getTopStrand().toString(), alignment.getTopStrand().toString());
+                    assertEquals(message, expected.get(i).getBottomStrand().toString(), alignment.getBottomStrand().toString());
+                    assertEquals(message, expected.get(i).getMiddleLine().toString(), alignment.getMiddleLine().toString());
+                    //the strands are the residues at the coordinates
+                    String bottomSequence = alignment.getBottomParent().getParentSequence().getSequenceString();
+                    assertEquals(message, bottomSequence.substring(bottom.getStart() - 1, bottom.getStop()),
+                            alignment.getBottomStrand().toString().replace("-", ""));
+                    String topResidues = alignment.getTopParent().getParentSequence().getSequenceString()
+                            .substring(top.getStart() - 1, top.getStop());
+                    if (top.isComplement()) {
+                        topResidues = NucleicAcidSequence.reverseComplementString(topResidues,
+                                (NucleicAcidSequenceAlphabet) SequenceAlphabet.ALPHABET_DNA);
+                    }
+                    assertEquals(message, topResidues, alignment.getTopStrand().toString().replace("-", ""));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cigar() throws Exception {
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        AlignmentResultSet results = new AlignmentResultSet(sequences, null);
+        results.add(0, 1, false, 10, new int[]{1, 9, 1, 8}, "ACG-TTAAC", "ACGGTT--C", '-');
+        assertEquals("3M1I2M2D1M", results.getCigar(0));
+        assertEquals(9, results.getAlignmentLength(0));
+        assertEquals(1, results.getGapNumber(0));
+    }
+
+    @Test
+    public void seededAlignment() throws Exception {
+        StringBuilder unrelated = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < 400; i++) {
+            unrelated.append("ACGT".charAt(random.nextInt(4)));
+        }
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        sequences.add(new DnaSequence(geneOne));
+        sequences.add(new DnaSequence(unrelated.toString()));
+        sequences.add(new DnaSequence("ACGTACGTAA" + geneOne.substring(200) + unrelated));
+        sequences.add(new DnaSequence(geneTwo));
+        AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.SIMPLE_MATCH_ALIGNMENT);
+        options.setAlsoComplement(false);
+        AlignmentController full = new AlignmentController(
+                AlignmentAlgorithm.LOCAL, AlignmentStrategy.INTERMOLECULAR_FIRST_TO_ALL, options, sequences);
+        full.start();
+        options.setSeedLength(11);
+        AlignmentController seeded = new AlignmentController(
+                AlignmentAlgorithm.LOCAL, AlignmentStrategy.INTERMOLECULAR_FIRST_TO_ALL, options, sequences);
+        seeded.start();
+
+        List<Alignment> expected = new ArrayList<Alignment>();
+        for (Alignment alignment : full.getAlignmentList()) {
+            if (alignment.getBottomParent().getParentSequence() != sequences.get(1)) {
+                expected.add(alignment);
+            }
+        }
+        //the unrelated sequence shares no seeds and is not aligned
+        List<Alignment> actual = seeded.getAlignmentList();
+        assertEquals(2, actual.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getBottomParent().getParentSequence(), actual.get(i).getBottomParent().getParentSequence());
+            assertEquals(expected.get(i).getPropertyValue(AlignmentProperty.SW_SCORE),
+                    actual.get(i).getPropertyValue(AlignmentProperty.SW_SCORE), 0);
+            assertEquals(expected.get(i).getTopParent().getSequenceCoordinates().getStart(),
+                    actual.get(i).getTopParent().getSequenceCoordinates().getStart());
+            assertEquals(expected.get(i).getBottomParent().getSequenceCoordinates().getStop(),
+                    actual.get(i).getBottomParent().getSequenceCoordinates().getStop());
+            assertEquals(expected.get(i).getTopStrand().toString(), actual.get(i).getTopStrand().toString());
+            assertEquals(expected.get(i).getBottomStrand().toString(), actual.get(i).getBottomStrand().toString());
+        }
+    }
+
+    @Test
+    public void matrixReuse() throws Exception {
+        SmithWatermanMatrix matrix = SmithWatermanMatrix.rent(30, 30);
+        matrix.setScore(0, 5, 7);
+        matrix.setScore(4, 0, 7);
+        matrix.setPath(4, 3, 2);
+        SmithWatermanMatrix.release(matrix);
+        SmithWatermanMatrix reused = SmithWatermanMatrix.rent(20, 25);
+        assertSame(matrix, reused);
+        assertEquals(0, reused.getScore(0, 5));
+        assertEquals(0, reused.getScore(4, 0));
+        //a matrix that is rented is not handed out again
+        assertTrue(reused != SmithWatermanMatrix.rent(20, 25));
+        SmithWatermanMatrix.release(reused);
+    }
+
+    @Test
+    public void slidingWindowHairpins() throws Exception {
+        String stem = "GGATCCGAATTCAAGCTTGC";
+        String hairpin = stem + "TTTTTTTT" + NucleicAcidSequence.reverseComplementString(stem,
+                (NucleicAcidSequenceAlphabet) SequenceAlphabet.ALPHABET_DNA);
+        String sequence = geneOne.substring(0, 95) + hairpin + geneOne.substring(95, 300);
+        AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.DNA_STRUCTURE_ALIGNMENT);
+        options.setWindowLength(100);
+        options.setWindowStep(10);
+        options.setAlsoComplement(false);
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        sequences.add(new DnaSequence(sequence));
+        AlignmentController controller = new AlignmentController(
+                AlignmentAlgorithm.LOCAL, AlignmentStrategy.INTRAMOLECULAR_SLIDING_WINDOW, options, sequences);
+        controller.start();
+
+        //the hairpin lies in many windows but is reported once, with its complete stem
+        int found = 0;
+        for (Alignment alignment : controller.getAlignmentList()) {
+            String top = alignment.getTopStrand().toString();
+            if (alignment.getTopParent().getSequenceCoordinates().getStart() <= 95
+                    && alignment.getBottomParent().getSequenceCoordinates().getStart() >= 95 + hairpin.length() - 1) {
+                assertTrue(top, top.endsWith(stem));
+                found++;
+            }
+        }
+        assertEquals(1, found);
+    }
+
+    @Test
+    public void substitutionMatrices() throws Exception {
+        AlignmentScoringMatrix blosum = new AlignmentScoringMatrix(SequenceType.PROTEIN, AlignmentMatrixType.PROTEIN_BLOSUM62);
+        assertEquals(11, blosum.getAlignmentScore('W', 'W'));
+        assertEquals(-1, blosum.getAlignmentScore('A', 'R'));
+        assertEquals(4, blosum.getAlignmentScore('B', 'D'));
+        //characters that are not in the matrix get the lowest score
+        assertEquals(-4, blosum.getAlignmentScore('J', 'A'));
+        assertEquals(0, blosum.getResidueIndex('A'));
+        assertEquals(blosum.getAlignmentScore('K', 'R'),
+                blosum.getIndexedScore(blosum.getResidueIndex('K'), blosum.getResidueIndex('R')));
+
+        //NUC.4.4 defines T only; RNA uracil is scored the same
+        AlignmentScoringMatrix nuc = new AlignmentScoringMatrix(SequenceType.RNA, AlignmentMatrixType.NUCLEOTIDE_NUC44);
+        assertEquals(5, nuc.getAlignmentScore('U', 'U'));
+        assertEquals(1, nuc.getAlignmentScore('W', 'U'));
+        assertEquals(-2, nuc.getAlignmentScore('A', 'N'));
+
+        AlignmentScoringMatrix custom = AlignmentScoringMatrix.readMatrix(SequenceType.DNA,
+                new StringReader("# purine/pyrimidine\n   A  G\nA  2  1\nG  1  2\n"));
+        assertEquals(1, custom.getAlignmentScore('G', 'A'));
+        assertEquals(1, custom.getAlignmentScore('T', 'C'));
+
+        AlignmentCharacterMatrix characters = new AlignmentCharacterMatrix(
+                SequenceType.PROTEIN, AlignmentMatrixType.PROTEIN_BLOSUM62, false);
+        assertEquals(characters.getMismatchAlignmentCharacter(), characters.getAlignmentCharacter('W', 'X'));
+    }
+
+    @Test
+    public void allSubstitutionMatricesLoad() throws Exception {
+        String residues = "ARNDCQEGHILKMFPSTWYVBZ";
+        int loaded = 0;
+        for (AlignmentMatrixType type : AlignmentMatrixType.values()) {
+            if (type.getResourceName() == null) {
+                continue;
+            }
+            boolean nucleotide = type == AlignmentMatrixType.NUCLEOTIDE_NUC44;
+            AlignmentScoringMatrix matrix = new AlignmentScoringMatrix(
+                    nucleotide ? SequenceType.DNA : SequenceType.PROTEIN, type);
+            String characters = nucleotide ? "ACGT" : residues;
+            for (char one : characters.toCharArray()) {
+                assertTrue(type + " " + one, matrix.getAlignmentScore(one, one) > 0);
+                for (char other : characters.toCharArray()) {
+                    assertEquals(matrix.getAlignmentScore(one, other), matrix.getAlignmentScore(other, one));
+                }
+            }
+            loaded++;
+        }
+        assertEquals(5, loaded);
+        assertEquals(12, new AlignmentScoringMatrix(SequenceType.PROTEIN, AlignmentMatrixType.PROTEIN_PAM100)
+                .getAlignmentScore('W', 'W'));
+        assertEquals(17, new AlignmentScoringMatrix(SequenceType.PROTEIN, AlignmentMatrixType.PROTEIN_PAM250)
+                .getAlignmentScore('W', 'W'));
+        assertEquals(15, new AlignmentScoringMatrix(SequenceType.PROTEIN, AlignmentMatrixType.PROTEIN_BLOSUM45)
+                .getAlignmentScore('W', 'W'));
+    }
+
+    @Test(expected = IOException.class)
+    public void substitutionMatrixNotFound() throws Exception {
+        AlignmentScoringMatrix.loadMatrix(SequenceType.PROTEIN, "BLOSUM13");
+    }
+
+    @Test
+    public void segmentedHairpinScan() throws Exception {
+        //a stem longer than half a window: the windows at a segment border see only part of it
+        Random random = new Random(14);
+        StringBuilder stem = new StringBuilder();
+        for (int i = 0; i < 45; i++) {
+            stem.append("ACGT".charAt(random.nextInt(4)));
+        }
+        String hairpin = stem + "TTTTTTTT" + NucleicAcidSequence.reverseComplementString(stem.toString(),
+                (NucleicAcidSequenceAlphabet) SequenceAlphabet.ALPHABET_DNA);
+        StringBuilder sequence = new StringBuilder();
+        //hairpins in a segment and across the segment borders at 500, 1000, ...
+        for (int hairpinStart : new int[]{230, 480, 985, 1460, 2490}) {
+            while (sequence.length() < hairpinStart) {
+                sequence.append("ACGT".charAt(random.nextInt(4)));
+            }
+            sequence.append(hairpin);
+        }
+        while (sequence.length() < 3000) {
+            sequence.append("ACGT".charAt(random.nextInt(4)));
+        }
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        sequences.add(new DnaSequence(sequence.toString()));
+
+        List<String> expected = null;
+        for (boolean segmented : new boolean[]{false, true}) {
+            AlignmentOptions options = new AlignmentOptions(SequenceType.DNA, AlignmentMatrixType.DNA_STRUCTURE_ALIGNMENT);
+            options.setWindowLength(100);
+            options.setWindowStep(10);
+            options.setParallelAlignment(segmented);
+            IntramolecularAligner aligner = new IntramolecularAligner(
+                    AlignmentStrategy.INTRAMOLECULAR_SLIDING_WINDOW, AlignmentAlgorithm.LOCAL, options);
+            aligner.setSegmentLength(500);
+            aligner.setSequences(sequences);
+            aligner.doAlignment();
+            List<String> found = new ArrayList<String>();
+            for (Alignment alignment : aligner.getAlignmentList()) {
+                found.add(alignment.getTopParent().getSequenceCoordinates() + " "
+                        + alignment.getBottomParent().getSequenceCoordinates() + " "
+                        + alignment.getTopStrand() + " " + alignment.getBottomStrand());
+            }
+            Collections.sort(found);
+            if (expected == null) {
+                expected = found;
+            } else {
+                assertEquals(expected, found);
+            }
+        }
+        //both strands
+        assertEquals(10, expected.size());
+    }
+
+    private static char[] randomResidues(Random random, String alphabet, int length) {
+        char[] residues = new char[length];
+        for (int i = 0; i < length; i++) {
+            residues[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return residues;
+    }
+
+    /**
+     * a copy with about one in ten residues substituted, and one in twenty deleted and inserted
+     */
+    private static char[] mutate(Random random, char[] residues, String alphabet) {
+        StringBuilder mutated = new StringBuilder();
+        for (char residue : residues) {
+            int dice = random.nextInt(20);
+            if (dice < 2) {
+                mutated.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            } else if (dice == 2) {
+                continue;
+            } else if (dice == 3) {
+                mutated.append(alphabet.charAt(random.nextInt(alphabet.length()))).append(residue);
+            } else {
+                mutated.append(residue);
+            }
+        }
+        return mutated.length() == 0 ? residues.clone() : mutated.toString().toCharArray();
+    }
+
+    /**
+     * plain Gotoh local alignment on full matrices: best score with its (one-based) query and target end, the first
+     * target column and the first query position reaching it
+     */
+    private static int[] gotohScores(AlignmentScoringMatrix matrix, int gapOpen, int gapExtension,
+                                     char[] query, char[] target) {
+        final int minusInfinity = Integer.MIN_VALUE / 2;
+        SmithWatermanMatrix scores = new SmithWatermanMatrix(query.length + 1, target.length + 1);
+        SmithWatermanMatrix horizontalGaps = new SmithWatermanMatrix(query.length + 1, target.length + 1);
+        SmithWatermanMatrix verticalGaps = new SmithWatermanMatrix(query.length + 1, target.length + 1);
+        int[] best = new int[3];
+        for (int y = 1; y <= target.length; y++) {
+            for (int x = 1; x <= query.length; x++) {
+                int horizontal = Math.max(y > 1 ? horizontalGaps.getScore(x, y - 1) + gapExtension : minusInfinity,
+                        scores.getScore(x, y - 1) + gapOpen);
+                int vertical = Math.max(x > 1 ? verticalGaps.getScore(x - 1, y) + gapExtension : minusInfinity,
+                        scores.getScore(x - 1, y) + gapOpen);
+                int score = Math.max(0, scores.getScore(x - 1, y - 1)
+                        + matrix.getAlignmentScore(query[x - 1], target[y - 1]));
+                score = Math.max(score, Math.max(horizontal, vertical));
+                horizontalGaps.setScore(x, y, horizontal);
+                verticalGaps.setScore(x, y, vertical);
+                scores.setScore(x, y, score);
+                if (score > best[0]) {
+                    best = new int[]{score, x, y};
+                }
+            }
+        }
+        return best;
+    }
+}
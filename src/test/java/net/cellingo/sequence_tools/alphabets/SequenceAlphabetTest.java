@@ -0,0 +1,50 @@
+package net.cellingo.sequence_tools.alphabets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+public class SequenceAlphabetTest {
+
+    @Test
+    public void coreAndValidCharacters() {
+        SequenceAlphabet dna = SequenceAlphabet.ALPHABET_DNA;
+        assertTrue(dna.isCoreCharacter('A'));
+        assertFalse(dna.isCoreCharacter('N'));
+        assertTrue(dna.isValidAlphabetCharacter('N'));
+        assertFalse(dna.isValidAlphabetCharacter('U'));
+        assertFalse(dna.isValidAlphabetCharacter('\u00C5'));
+        assertTrue(SequenceAlphabet.ALPHABET_PROTEIN.isCoreCharacter('W'));
+        assertTrue(SequenceAlphabet.ALPHABET_PROTEIN.isValidAlphabetCharacter('X'));
+    }
+
+    @Test
+    public void iupacAmbiguityMasks() throws Exception {
+        SequenceAlphabet dna = SequenceAlphabet.ALPHABET_DNA;
+        assertEquals(1, dna.getAmbiguityMask('A'));
+        assertEquals(8, dna.getAmbiguityMask('T'));
+        assertEquals(1 | 4, dna.getAmbiguityMask('R'));
+        assertEquals(15, dna.getAmbiguityMask('N'));
+        assertEquals(0, dna.getAmbiguityMask('X'));
+        assertEquals(8, SequenceAlphabet.ALPHABET_RNA.getAmbiguityMask('U'));
+        assertTrue(dna.checkAmbiguousCodeMatch('A', 'N'));
+        assertTrue(dna.checkAmbiguousCodeMatch('G', 'R'));
+        assertFalse(dna.checkAmbiguousCodeMatch('A', 'C'));
+        assertEquals(3, dna.getCoreOrdinal('T'));
+        assertEquals('G', dna.getCoreCharacter(2));
+        assertEquals(20, SequenceAlphabet.ALPHABET_PROTEIN.getCoreAlphabetSize());
+    }
+
+    @Test
+    public void complements() {
+        NucleicAcidSequenceAlphabet dna = (NucleicAcidSequenceAlphabet) SequenceAlphabet.ALPHABET_DNA;
+        assertEquals('T', dna.getNucleotideComplement('A'));
+        assertEquals('Y', dna.getNucleotideComplement('R'));
+        assertEquals('-', dna.getNucleotideComplement('-'));
+        assertEquals('A', ((NucleicAcidSequenceAlphabet) SequenceAlphabet.ALPHABET_RNA).getNucleotideComplement('U'));
+    }
+}
@@ -2,7 +2,20 @@ package net.cellingo.sequence_tools.annotation;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -66,4 +79,194 @@ public class AnnotationsTest {
         String line = "Fhit protein [Mus musculus]";
         Attributes.fromFastaDescriptionLine(line);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void intervalTreeQueries() throws Exception {
+        Random random = new Random(24);
+        AnnotatedSequence sequence = new AnnotatedSequence();
+        assertNull(sequence.getNearestElement(SequenceElementType.GENE, new SequenceCoordinates(1, 10)));
+        List<SequenceElement> genes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            SequenceElement gene = new SequenceElement("gene" + i);
+            int start = 1 + random.nextInt(100000);
+            gene.addCoordinates(new SequenceCoordinates(start, start + random.nextInt(i % 10 == 0 ? 20000 : 2000)));
+            gene.setSequenceElementType(SequenceElementType.GENE);
+            sequence.addElement(gene);
+            genes.add(gene);
+            if (i % 100 != 99) {
+                continue;
+            }
+            //the tree is rebuilt after additions
+            assertEquals(i + 1, sequence.getElementList(SequenceElementType.GENE).size());
+            for (int q = 0; q < 200; q++) {
+                int start2 = 1 + random.nextInt(110000);
+                SequenceCoordinates region = new SequenceCoordinates(start2, start2 + random.nextInt(5000));
+                List<SequenceElement> overlapping = new ArrayList<>();
+                List<SequenceElement> contained = new ArrayList<>();
+                int nearestDistance = Integer.MAX_VALUE;
+                for (SequenceElement element : sequence.getElementList(SequenceElementType.GENE)) {
+                    SequenceCoordinates c = element.getSequenceCoordinates();
+                    if (c.overlaps(region)) overlapping.add(element);
+                    if (c.isIncludedWithin(region)) contained.add(element);
+                    nearestDistance = Math.min(nearestDistance,
+                            Math.max(0, Math.max(c.getStart() - region.getStop(), region.getStart() - c.getStop())));
+                }
+                assertEquals(overlapping, sequence.getElementList(SequenceElementType.GENE, region));
+                assertEquals(contained, sequence.getContainedElementList(SequenceElementType.GENE, region));
+                SequenceCoordinates nearest =
+                        sequence.getNearestElement(SequenceElementType.GENE, region).getSequenceCoordinates();
+                assertEquals(nearestDistance,
+                        Math.max(0, Math.max(nearest.getStart() - region.getStop(), region.getStart() - nearest.getStop())));
+            }
+        }
+    }
+
+    @Test
+    public void sweepMatchesBruteForce() throws Exception {
+        Random random = new Random(25);
+        List<SequenceElement> first = randomElements(random, "a", 300);
+        List<SequenceElement> second = randomElements(random, "b", 400);
+        for (ElementSweep.StrandMode mode : ElementSweep.StrandMode.values()) {
+            Map<String, List<SequenceElement>> firstMap = new HashMap<>();
+            firstMap.put("chr1", first);
+            Map<String, List<SequenceElement>> secondMap = new HashMap<>();
+            secondMap.put("chr1", second);
+            List<ElementSweep.ElementPair> intersected = ElementSweep.intersect(firstMap, secondMap, mode, 2).get("chr1");
+            List<ElementSweep.ElementPair> closest = ElementSweep.closest(firstMap, secondMap, mode, 2).get("chr1");
+            List<SequenceElement> parts = ElementSweep.subtract(firstMap, secondMap, mode, 2).get("chr1");
+            assertEquals(first.size(), closest.size());
+            int pair = 0;
+            int part = 0;
+            for (int i = 0; i < first.size(); i++) {
+                SequenceElement a = closest.get(i).getFirst();
+                SequenceCoordinates c = a.getSequenceCoordinates();
+                int nearestDistance = -1;
+                boolean[] covered = new boolean[c.getStop() - c.getStart() + 1];
+                for (SequenceElement b : second) {
+                    SequenceCoordinates d = b.getSequenceCoordinates();
+                    if ((mode == ElementSweep.StrandMode.SAME && c.isComplement() != d.isComplement())
+                            || (mode == ElementSweep.StrandMode.OPPOSITE && c.isComplement() == d.isComplement())) {
+                        continue;
+                    }
+                    int distance = ElementSweep.distance(c, d);
+                    if (nearestDistance < 0 || distance < nearestDistance) {
+                        nearestDistance = distance;
+                    }
+                    if (distance == 0) {
+                        assertSame(a, intersected.get(pair).getFirst());
+                        assertSame(b, intersected.get(pair++).getSecond());
+                        for (int p = Math.max(c.getStart(), d.getStart()); p <= Math.min(c.getStop(), d.getStop()); p++) {
+                            covered[p - c.getStart()] = true;
+                        }
+                    }
+                }
+                assertEquals(nearestDistance, closest.get(i).getDistance());
+                for (int p = 0; p < covered.length; p++) {
+                    if (!covered[p]) {
+                        SequenceCoordinates fragment = parts.get(part).getSequenceCoordinates();
+                        assertEquals(a.getId(), parts.get(part).getId());
+                        assertEquals(c.getStart() + p, fragment.getStart());
+                        while (p + 1 < covered.length && !covered[p + 1]) {
+                            p++;
+                        }
+                        assertEquals(c.getStart() + p, fragment.getStop());
+                        part++;
+                    }
+                }
+            }
+            assertEquals(intersected.size(), pair);
+            assertEquals(parts.size(), part);
+        }
+
+        Map<String, List<SequenceElement>> elements = new HashMap<>();
+        elements.put("chr1", second);
+        List<SequenceCoordinates> merged = ElementSweep.merge(elements, ElementSweep.StrandMode.IGNORE, 0, 1).get("chr1");
+        boolean[] covered = new boolean[120000];
+        for (SequenceElement b : second) {
+            for (int p = b.getSequenceCoordinates().getStart(); p <= b.getSequenceCoordinates().getStop(); p++) {
+                covered[p] = true;
+            }
+        }
+        int regions = 0;
+        for (int p = 1; p < covered.length; p++) {
+            if (covered[p] && !covered[p - 1]) {
+                regions++;
+            }
+        }
+        assertEquals(regions, merged.size());
+        for (SequenceCoordinates region : merged) {
+            assertFalse(covered[region.getStart() - 1]);
+            assertFalse(covered[region.getStop() + 1]);
+        }
+    }
+
+    @Test
+    public void sweepReadsSecondStreamUpToCurrentElement() throws Exception {
+        List<SequenceElement> first = new ArrayList<>();
+        List<SequenceElement> second = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            SequenceElement a = new SequenceElement("a" + i);
+            a.addCoordinates(new SequenceCoordinates(1000 * i + 1, 1000 * i + 100, false));
+            first.add(a);
+            //one forward element per element of the first stream, many reverse ones in between
+            SequenceElement b = new SequenceElement("b" + i);
+            b.addCoordinates(new SequenceCoordinates(1000 * i + 50, 1000 * i + 60, false));
+            second.add(b);
+            for (int j = 0; j < 20; j++) {
+                SequenceElement c = new SequenceElement("c" + i + "_" + j);
+                c.addCoordinates(new SequenceCoordinates(1000 * i + 200 + 10 * j, 1000 * i + 205 + 10 * j, true));
+                second.add(c);
+            }
+        }
+        for (ElementSweep.StrandMode mode : ElementSweep.StrandMode.values()) {
+            final Iterator<SequenceElement> source = second.iterator();
+            final int[] read = new int[1];
+            Iterator<SequenceElement> counting = new Iterator<SequenceElement>() {
+                @Override
+                public boolean hasNext() {
+                    return source.hasNext();
+                }
+
+                @Override
+                public SequenceElement next() {
+                    read[0]++;
+                    return source.next();
+                }
+            };
+            final List<String> pairs = new ArrayList<>();
+            ElementSweep.intersect(first.iterator(), counting, mode, new BiConsumer<SequenceElement, SequenceElement>() {
+                @Override
+                public void accept(SequenceElement a, SequenceElement b) {
+                    int i = Integer.parseInt(a.getId().substring(1));
+                    //the reverse elements after the current one have not been read
+                    assertTrue(read[0] <= 21 * i + 2);
+                    pairs.add(a.getId() + b.getId());
+                }
+            });
+            assertEquals(mode == ElementSweep.StrandMode.OPPOSITE ? 0 : 100, pairs.size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sweepRejectsUnsortedInput() throws Exception {
+        List<SequenceElement> elements = randomElements(new Random(1), "a", 10);
+        Collections.reverse(elements);
+        ElementSweep.merge(elements.iterator(), ElementSweep.StrandMode.IGNORE, 0, new Consumer<SequenceCoordinates>() {
+            @Override
+            public void accept(SequenceCoordinates coordinates) {
+            }
+        });
+    }
+
+    private static List<SequenceElement> randomElements(Random random, String prefix, int count) {
+        List<SequenceElement> elements = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SequenceElement element = new SequenceElement(prefix + i);
+            int start = 1 + random.nextInt(100000);
+            element.addCoordinates(new SequenceCoordinates(start, start + random.nextInt(1500), random.nextBoolean()));
+            elements.add(element);
+        }
+        Collections.sort(elements);
+        return elements;
+    }
+}
@@ -6,7 +6,9 @@ import net.cellingo.sequence_tools.sequences.SequenceStrand;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -116,4 +118,71 @@ public class OrfFinderTest {
         System.out.println("translation = " + translation);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void codonIndexTranslation() throws Exception {
+        CodonTable codonTable = new CodonTable();
+        assertEquals(CodonTable.ATG_CODON_INDEX, CodonTable.getCodonIndex('A', 'T', 'G'));
+        assertEquals(CodonTable.NO_CODON_INDEX, CodonTable.getCodonIndex('A', 'N', 'G'));
+        assertEquals('M', codonTable.getCodonTranslation(CodonTable.ATG_CODON_INDEX));
+        assertEquals('*', codonTable.getCodonTranslation(CodonTable.getCodonIndex('T', 'G', 'A')));
+        assertEquals('*', codonTable.getCodonTranslation(CodonTable.getCodonIndex('U', 'A', 'G')));
+        assertEquals('X', codonTable.getCodonTranslation(CodonTable.NO_CODON_INDEX));
+        assertTrue(codonTable.isInitiationCodon(CodonTable.getCodonIndex('G', 'T', 'G')));
+        assertFalse(codonTable.isInitiationCodon(CodonTable.getCodonIndex('G', 'T', 'T')));
+        for (String codon : codonTable.getCodonTable().keySet()) {
+            int codonIndex = CodonTable.getCodonIndex(codon.charAt(0), codon.charAt(1), codon.charAt(2));
+            assertEquals(codonTable.getCodonTranslation(codon).charAt(0), codonTable.getCodonTranslation(codonIndex));
+        }
+
+        //changes to the table are picked up by the compiled table
+        CodonTable mitochondrial = new CodonTable(2);
+        assertEquals('W', mitochondrial.getCodonTranslation(CodonTable.getCodonIndex('T', 'G', 'A')));
+        mitochondrial.setCodonTranslation("TGA", "*");
+        assertEquals('*', mitochondrial.getCodonTranslation(CodonTable.getCodonIndex('T', 'G', 'A')));
+    }
+
+    @Test
+    public void doOrfFindingAmbiguousResidues() throws Exception {
+        //an N within a codon makes it untranslatable, but does not stop the ORF
+        GeneAnalysisOptions geneAnalysisOptions = new GeneAnalysisOptions();
+        geneAnalysisOptions.setMinimumOrfSize(3);
+        geneAnalysisOptions.setStrandSelection(SequenceStrand.FORWARD);
+        geneAnalysisOptions.setOrfDefinition(OrfDefinition.ATG_TO_STOP);
+        OrfFinder orfFinder = new OrfFinder(new DnaSequence("CCATGAAANGGTTTTAACC"), geneAnalysisOptions);
+        orfFinder.start();
+        List<OpenReadingFrame> orfs = orfFinder.getOrfList();
+        assertEquals(1, orfs.size());
+        assertEquals("MKXF", orfs.get(0).getProteinSequence().getSequenceString());
+    }
+
+    @Test
+    public void doParallelOrfFinding() throws Exception {
+        //small chunks force many ORFs across chunk boundaries
+        for (OrfDefinition orfDefinition : new OrfDefinition[]{
+                OrfDefinition.ATG_TO_STOP, OrfDefinition.STOP_TO_STOP, OrfDefinition.START_TO_STOP}) {
+            GeneAnalysisOptions geneAnalysisOptions = new GeneAnalysisOptions();
+            geneAnalysisOptions.setMinimumOrfSize(5);
+            geneAnalysisOptions.setStrandSelection(SequenceStrand.BOTH);
+            geneAnalysisOptions.setOrfDefinition(orfDefinition);
+            OrfFinder orfFinder = new OrfFinder(dnaTwo, geneAnalysisOptions);
+            orfFinder.start();
+            List<OpenReadingFrame> expected = orfFinder.getOrfList();
+            for (int chunkSize : new int[]{7, 100, ParallelOrfFinder.DEFAULT_CHUNK_SIZE}) {
+                ParallelOrfFinder parallelOrfFinder =
+                        new ParallelOrfFinder(geneAnalysisOptions, new ForkJoinPool(3), chunkSize);
+                List<List<OpenReadingFrame>> found = parallelOrfFinder.findOrfs(Arrays.asList(dnaOne, dnaTwo));
+                assertEquals(2, found.size());
+                List<OpenReadingFrame> orfs = found.get(1);
+                assertEquals(expected.size(), orfs.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getProteinSequence().getSequenceString(),
+                            orfs.get(i).getProteinSequence().getSequenceString());
+                    assertEquals(expected.get(i).getSequenceCoordinates().toString(),
+                            orfs.get(i).getSequenceCoordinates().toString());
+                    assertEquals(expected.get(i).getReadFrame(), orfs.get(i).getReadFrame());
+                }
+            }
+        }
+    }
+
+}
@@ -8,9 +8,16 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -72,6 +79,57 @@ public class SequenceReaderTest {
 
     }
 
+    @Test
+    public void readMultiFastaDnaPullBased() throws Exception {
+        File fastaFile = new File("sample_data/dna_sequences_4.fa");
+        SequenceReader reader = new SequenceReader(fastaFile);
+        FastaIterator iterator = reader.iterator();
+        assertTrue(iterator.hasNext());
+        Sequence first = iterator.next();
+        assertEquals(DnaSequence.class, first.getClass());
+        assertEquals(114, first.getSequenceLength());
+        int count = 1;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(4, count);
+        assertNull(reader.getSequenceList());
+    }
+
+    @Test
+    public void readMultiFastaProteinAsStream() throws Exception {
+        File fastaFile = new File("sample_data/fhit_sample.faa");
+        SequenceReader reader = new SequenceReader(fastaFile);
+        reader.setParseFastaHeader(true);
+        try (Stream<Sequence> sequences = reader.stream()) {
+            List<String> names = sequences.map(Sequence::getSequenceName).collect(Collectors.toList());
+            assertEquals(5, names.size());
+            assertEquals("FHIT protein(fragment)", names.get(0));
+        }
+    }
+
+    @Test
+    public void readMultiFastaMemoryMapped() throws Exception {
+        File fastaFile = new File("sample_data/fhit_sample.faa");
+        SequenceReader lineReader = new SequenceReader(fastaFile);
+        lineReader.setParseFastaHeader(true);
+        lineReader.read();
+        SequenceReader mappedReader = new SequenceReader(fastaFile);
+        mappedReader.setParseFastaHeader(true);
+        mappedReader.setMemoryMapped(true);
+        mappedReader.read();
+        final ArrayList<SequenceObject> expected = lineReader.getSequenceList();
+        final ArrayList<SequenceObject> sequenceObjects = mappedReader.getSequenceList();
+        assertEquals(expected.size(), sequenceObjects.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getClass(), sequenceObjects.get(i).getClass());
+            assertEquals(expected.get(i).getSequenceName(), sequenceObjects.get(i).getSequenceName());
+            assertEquals(((Sequence)expected.get(i)).getSequenceString(),
+                    ((Sequence)sequenceObjects.get(i)).getSequenceString());
+        }
+    }
+
     @Test
     @Ignore
     public void readGenBankSimple() throws Exception {
@@ -206,4 +264,120 @@ public class SequenceReaderTest {
 
     }
 
+    @Test
+    public void readGff3SinglePass() throws Exception {
+        File gffFile = new File("sample_data/acetobacter_fragment_with_fasta.gff");
+        SequenceReader reader = new SequenceReader(SequenceObjectType.GFF3_SEQUENCE, gffFile);
+        reader.read();
+        List<SequenceObject> entries = reader.getSequenceList();
+        assertEquals(1, entries.size());
+        AnnotatedSequence seq = (AnnotatedSequence) entries.get(0);
+        assertTrue(seq.getSequenceLength() > 0);
+        assertTrue(seq.getElementList(SequenceElementType.CDS).size() > 0);
+    }
+
+    @Test
+    public void readGff3Streaming() throws Exception {
+        File gffFile = File.createTempFile("streaming", ".gff");
+        gffFile.deleteOnExit();
+        PrintWriter writer = new PrintWriter(gffFile);
+        writer.println("##gff-version 3");
+        writer.println("ctg1\t.\tgene\t1\t10\t.\t+\t.\tID=gene1");
+        writer.println("ctg1\t.\tgene\t12\t20\t.\t-\t.\tID=gene2");
+        writer.println("ctg2\t.\tgene\t1\t10\t.\t+\t.\tID=gene3");
+        writer.println("###");
+        writer.println("##FASTA");
+        writer.println(">ctg1 first contig");
+        writer.println("ACGTACGTACGTACGTACGT");
+        writer.close();
+
+        final List<String> delivered = new ArrayList<>();
+        SequenceReader reader = new SequenceReader(SequenceObjectType.GFF3_SEQUENCE, gffFile);
+        reader.setGffStreaming(true);
+        reader.addSequenceReaderListener(new SequenceReaderListener() {
+            @Override
+            public void sequenceRead(SequenceObject sequenceObject) {
+                AnnotatedSequence seq = (AnnotatedSequence) sequenceObject;
+                int genes = seq.containsElementType(SequenceElementType.GENE)
+                        ? seq.getElementList(SequenceElementType.GENE).size() : 0;
+                delivered.add(seq.getAttributes().getFirstAttributeOfType("ID") + ":" + genes + ":" + seq.getSequenceLength());
+            }
+
+            @Override
+            public void sequenceReadingFinished() {
+                delivered.add("finished");
+            }
+        });
+        reader.read();
+        assertEquals("[ctg1:2:0, ctg2:1:0, ctg1:0:20, finished]", delivered.toString());
+    }
+
+    @Test
+    public void readGff3Parallel() throws Exception {
+        File gffFile = new File("sample_data/acetobacter_fragment_with_fasta.gff");
+        List<String> sequential = describeGff(gffFile, 1);
+        assertEquals(sequential, describeGff(gffFile, 4));
+        assertTrue(sequential.contains("CDS cds2 [gene2] Genbank:WP_058986868.1"));
+        assertEquals("NZ_LN606600.1 6720", sequential.get(0));
+    }
+
+    @Test
+    public void readGff3ParallelWithoutIds() throws Exception {
+        File gffFile = File.createTempFile("without_ids", ".gff");
+        gffFile.deleteOnExit();
+        PrintWriter writer = new PrintWriter(gffFile);
+        writer.println("##gff-version 3");
+        for (int i = 0; i < 5000; i++) {
+            writer.println("ctg1\t.\texon\t" + (10 * i + 1) + "\t" + (10 * i + 5) + "\t.\t+\t.\tParent=mrna" + (i / 10));
+        }
+        writer.close();
+
+        Logger logger = Logger.getLogger("GffReader");
+        Level level = logger.getLevel();
+        logger.setLevel(Level.OFF);
+        try {
+            List<String> sequential = describeGff(gffFile, 1);
+            List<String> parallel = describeGff(gffFile, 8);
+            assertEquals(5001, sequential.size());
+            assertEquals(sequential.size(), parallel.size());
+            //the generated IDs are numbered in file order
+            int previous = -1;
+            for (String line : parallel.subList(1, parallel.size())) {
+                String id = line.split(" ")[1];
+                assertTrue(id.startsWith("AutoGeneratedID="));
+                int number = Integer.parseInt(id.substring("AutoGeneratedID=".length()));
+                assertTrue(number > previous);
+                previous = number;
+            }
+        } finally {
+            logger.setLevel(level);
+        }
+    }
+
+    private static List<String> describeGff(File gffFile, int parallelism) throws Exception {
+        final List<String> lines = new ArrayList<>();
+        GffReader reader = new GffReader(new File[]{gffFile});
+        reader.setParallelism(parallelism);
+        reader.setChunkSize(512);
+        reader.setListener(new SequenceReaderListener() {
+            @Override
+            public void sequenceRead(SequenceObject sequenceObject) {
+                AnnotatedSequence seq = (AnnotatedSequence) sequenceObject;
+                lines.add(seq.getAttributes().getFirstAttributeOfType("ID") + " " + seq.getSequenceLength());
+                for (SequenceElementType type : seq.getSequenceElementTypesList()) {
+                    for (SequenceElement element : seq.getElementList(type)) {
+                        lines.add(type + " " + element.getId() + " " + element.getParentSequenceElementIds()
+                                + " " + element.getAttributes().getFirstAttributeOfType("Dbxref"));
+                    }
+                }
+            }
+
+            @Override
+            public void sequenceReadingFinished() {
+            }
+        });
+        reader.readSequences();
+        return lines;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package net.cellingo.sequence_tools.sequence_matching;
+
+import net.cellingo.sequence_tools.alphabets.SequenceAlphabet;
+import net.cellingo.sequence_tools.annotation.SequenceElement;
+import net.cellingo.sequence_tools.io.SequenceErrorMessage;
+import net.cellingo.sequence_tools.sequences.DnaSequence;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Creation date: 18-10-2017
+ *
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+public class SequencePatternFinderTest {
+
+    private List<String> findMatches(DnaSequence sequence, String query, boolean alsoComplementary) {
+        SequencePatternFinder finder = new SequencePatternFinder(sequence, query, alsoComplementary);
+        finder.findPatterns();
+        List<String> matches = new ArrayList<String>();
+        for (SequenceElement element : finder.getMatches()) {
+            matches.add(element.getSequenceCoordinates().getStart()
+                    + (element.getSequenceCoordinates().isComplement() ? "c" : ""));
+        }
+        return matches;
+    }
+
+    @Test
+    public void ambiguousQuery() {
+        DnaSequence sequence = new DnaSequence("GGAATTCCNGAGTTCAAGCTTG");
+        //R = A/G, K = G/T; starts are 1-based
+        assertEquals("[10]", findMatches(sequence, "RAKTTC", false).toString());
+        //an N in the sequence matches nothing
+        assertTrue(findMatches(sequence, "CNGAG", false).isEmpty());
+        //GAATTC is its own reverse complement
+        assertEquals("[2, 2c]", findMatches(sequence, "GAATTC", true).toString());
+        //overlapping matches of the same concrete query are skipped, as in a regex search
+        assertEquals("[1, 3]", findMatches(new DnaSequence("AAAAA"), "AN", false).toString());
+    }
+
+    @Test
+    public void complementStrand() {
+        DnaSequence sequence = new DnaSequence("TTTTGGCACGTTTT");
+        assertEquals("[5c]", findMatches(sequence, "CGTGCC", true).toString());
+        assertTrue(findMatches(sequence, "CGTGCC", false).isEmpty());
+    }
+
+    @Test
+    public void longDegenerateQuery() {
+        Random random = new Random(11);
+        StringBuilder residues = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            residues.append("AACGT".charAt(random.nextInt(5)));
+        }
+        DnaSequence sequence = new DnaSequence(residues.toString());
+        //longer than a single 64 bit word, and 4^70 concrete queries
+        StringBuilder query = new StringBuilder("AAC");
+        for (int i = 0; i < 70; i++) {
+            query.append('N');
+        }
+        query.append("TA");
+        List<String> expected = new ArrayList<String>();
+        SequenceAlphabet alphabet = sequence.getAlphabet();
+        for (int start = 0; start + query.length() <= residues.length(); start++) {
+            boolean matches = true;
+            for (int i = 0; i < query.length() && matches; i++) {
+                matches = alphabet.isAmbiguousMatch(residues.charAt(start + i), query.charAt(i));
+            }
+            if (matches) {
+                expected.add(String.valueOf(start + 1));
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, findMatches(sequence, query.toString(), false));
+    }
+
+    @Test
+    public void illegalQuery() {
+        SequencePatternFinder finder = new SequencePatternFinder(new DnaSequence("ACGT"), "ACXT", true);
+        finder.findPatterns();
+        assertEquals(SequenceErrorMessage.ILLEGAL_CHARACTER, finder.getReturnMessage());
+    }
+}
@@ -1,9 +1,14 @@
 package net.cellingo.sequence_tools.sequences;
 
+import net.cellingo.sequence_tools.alphabets.NucleicAcidSequenceAlphabet;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Creation date: 8-7-2017
@@ -50,4 +55,59 @@ public class NucleicAcideSequenceTest {
         assertEquals("NTAGCRWYT", ambRevCompl.getSequenceString());
     }
 
+    @Test
+    public void testPackedStorage() throws Exception {
+        String raw = "ATGGATCTTTCTTAAANNNNNNNNNNRYATGGATCTTTCTTAAAGGGGCCCCATATATATAT";
+        NucleicAcidSequence packed = SequenceFactory.createPackedSequence(raw, SequenceType.DNA);
+        assertTrue(packed.isPacked());
+        assertEquals(raw.length(), packed.getSequenceLength());
+        assertEquals(raw, packed.getSequenceString());
+        assertEquals(raw.substring(10, 30), packed.getSubString(10, 30));
+        assertEquals(Arrays.asList(0, 28), packed.findOccurrences("atggatc"));
+        assertEquals(Arrays.asList(16), packed.findOccurrences("NNNNNNNNNNRY"));
+        assertFalse(packed.sequenceIsCoreAlphabet());
+    }
+
+    @Test
+    public void testReverseComplementingPackedDna() {
+        DnaSequence ambiguousDna = new DnaSequence("ARWYGCTANNNNACGTTTGCAAAGCTAGCATCGATCGATTTACG");
+        NucleicAcidSequence packed = ambiguousDna.pack();
+        assertEquals(ambiguousDna.reverseComplement().getSequenceString(),
+                packed.reverseComplement().getSequenceString());
+        assertEquals(ambiguousDna.complement().getSequenceString(), packed.complement().getSequenceString());
+        assertTrue(packed.reverseComplement().isPacked());
+        assertEquals("AUGCAU", ((DnaSequence) new DnaSequence("ATGCAT").pack()).toRna().getSequenceString());
+    }
+
+    @Test
+    public void testReverseComplementInPlace() {
+        char[] residues = "ARWYGCTAN".toCharArray();
+        NucleicAcidSequence.reverseComplementInPlace(residues, (NucleicAcidSequenceAlphabet) dnaSeq.getAlphabet());
+        assertEquals("NTAGCRWYT", new String(residues));
+        char[] even = "AACG".toCharArray();
+        NucleicAcidSequence.reverseComplementInPlace(even, (NucleicAcidSequenceAlphabet) dnaSeq.getAlphabet());
+        assertEquals("CGTT", new String(even));
+        assertEquals("", NucleicAcidSequence.reverseComplementString("",
+                (NucleicAcidSequenceAlphabet) dnaSeq.getAlphabet()));
+    }
+
+    @Test
+    public void testReverseComplementView() throws Exception {
+        NucleicAcidSequence view = dnaSeq.reverseComplementView();
+        assertTrue(view.isView());
+        assertEquals("TTTAAGAAAGATCCAT", view.getSequenceString());
+        assertEquals(16, view.getSequenceLength());
+        assertEquals("AAGA", view.getSubString(3, 7));
+        assertEquals(Arrays.asList(5), view.findOccurrences("gaa"));
+        assertTrue(view.sequenceIsCoreAlphabet());
+        //the view of a view reads the original strand again
+        assertEquals(dnaSeq.getSequenceString(), view.reverseComplementView().getSequenceString());
+        assertEquals(dnaSeq.getSequenceString(), view.reverseComplement().getSequenceString());
+
+        NucleicAcidSequence rnaView = rnaSeq.reverseComplementView();
+        assertEquals(rnaSeq.reverseComplement().getSequenceString(), rnaView.getSequenceString());
+        NucleicAcidSequence packedView = rnaSeq.pack().reverseComplementView();
+        assertEquals(rnaSeq.reverseComplement().getSequenceString(), packedView.getSequenceString());
+    }
+
 }
@@ -64,6 +64,19 @@ public class SequenceCreationTest {
         assertEquals(SequenceType.DNA, sequence.getSequenceType());
     }
 
+    @Test
+    public void createSequenceTypeDetection() throws Exception {
+        assertEquals(SequenceType.RNA, SequenceFactory.createSequence("auggaucuuucuu").getSequenceType());
+        assertEquals(SequenceType.PROTEIN, SequenceFactory.createSequence("MSFRFGQHLIKPSVVF").getSequenceType());
+        assertEquals(SequenceType.DNA, SequenceFactory.createSequence("acgtnnRYkm").getSequenceType());
+        assertEquals("ACGTNNRYKM", SequenceFactory.createSequence("acgtnnRYkm").getSequenceString());
+    }
+
+    @Test(expected = SequenceCreationException.class)
+    public void createSequenceIllegalCharacters() throws Exception {
+        SequenceFactory.createSequence("ACGT#ACGT");
+    }
+
     @Test
     public void createSubSequence1() throws Exception {
         Sequence sequence = SequenceFactory.createSequence(testSeqDNAone);
@@ -87,4 +100,59 @@ public class SequenceCreationTest {
         assertEquals(expected, subSeq.getSequenceString());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void createSubSequenceView() throws Exception {
+        Sequence sequence = SequenceFactory.createSequence(testSeqDNAone);
+        Sequence view = sequence.getView(0, 10);
+        assertTrue(view.isView());
+        assertTrue(view instanceof DnaSequence);
+        assertEquals(sequence.getSubSequence(0, 10).getSequenceString(), view.getSequenceString());
+        assertEquals(0, view.getSequenceView().getOffset());
+        assertEquals(SequenceStrand.FORWARD, view.getSequenceView().getStrand());
+
+        //views of views, on both strands, share the original residues
+        Sequence nested = view.getView(2, 8);
+        assertEquals(2, nested.getSequenceView().getOffset());
+        assertEquals("GGATCT", nested.getSequenceString());
+        NucleicAcidSequence reverse = ((NucleicAcidSequence) nested).reverseComplementView();
+        assertEquals(SequenceStrand.COMPLEMENT, reverse.getSequenceView().getStrand());
+        assertEquals("AGATCC", reverse.getSequenceString());
+        assertEquals("GATC", reverse.getView(1, 5).getSequenceString());
+        char[] buffer = new char[6];
+        reverse.getChars(1, 5, buffer, 2);
+        assertEquals("GATC", new String(buffer, 2, 4));
+
+        Sequence detached = reverse.detach();
+        assertFalse(detached.isView());
+        assertEquals("AGATCC", detached.getSequenceString());
+        assertEquals(ProteinSequence.class,
+                SequenceFactory.createSequence("MKLVWYP", SequenceType.PROTEIN).getViewArrayBoundsSafe(-1, 3).getClass());
+    }
+
+    @Test
+    public void searchSubSequenceView() throws Exception {
+        StringBuilder residues = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            residues.append("ACGT");
+        }
+        residues.insert(97, "GGGGCC").insert(300, "GGGGCC");
+        for (Sequence sequence : new Sequence[]{SequenceFactory.createSequence(residues.toString()),
+                SequenceFactory.createPackedSequence(residues.toString(), SequenceType.DNA)}) {
+            assertEquals(97, sequence.indexOf("GGGGCC"));
+            //the view misses the hits of its parent, also the one crossing its end
+            assertEquals(-1, sequence.getView(0, 100).indexOf("GGGGCC"));
+            assertEquals(-1, sequence.getView(110, 200).indexOf("GGGGCC"));
+            assertEquals(97, sequence.getView(0, 103).indexOf("GGGGCC"));
+            assertEquals(200, sequence.getView(100, 400).indexOf("GGGGCC"));
+        }
+        PackedNucleotides packed = PackedNucleotides.pack(residues, false);
+        assertEquals(-1, packed.indexOf("GGGGCC", 110, 200));
+        assertEquals(300, packed.indexOf("GGGGCC", 110));
+    }
+
+    @Test(expected = IllegalSequenceOperation.class)
+    public void createSubSequenceViewOutOfRange() throws Exception {
+        SequenceFactory.createSequence(testSeqDNAone).getView(10, testSeqDNAone.length() + 1);
+    }
+
+}
@@ -0,0 +1,97 @@
+package net.cellingo.sequence_tools.sequences;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Creation date: 18-10-2017
+ *
+ * @author Michiel Noback (&copy; 2017)
+ * @version 0.01
+ */
+public class SequenceIndexTest {
+
+    private static List<Integer> scan(String text, String pattern) {
+        List<Integer> positions = new ArrayList<Integer>();
+        for (int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + 1)) {
+            positions.add(i);
+        }
+        return positions;
+    }
+
+    @Test
+    public void findOccurrences() {
+        String residues = "GATTACAGATTACATTAAAAAAGATTA";
+        DnaSequence sequence = new DnaSequence(residues);
+        List<Integer> expected = sequence.findOccurrences("atta");
+        sequence.buildIndex();
+        assertEquals(expected, sequence.findOccurrences("atta"));
+        assertEquals(scan(residues, "AAAA"), sequence.findOccurrences("AAAA"));
+        assertEquals(0, sequence.findOccurrences("GATTAG").size());
+        assertEquals(scan(residues, "TACA").get(0).intValue(), sequence.indexOf("TACA"));
+        assertEquals(-1, sequence.indexOf("TACAX"));
+    }
+
+    @Test
+    public void indexOfFrequentAndRarePatterns() {
+        Random random = new Random(5);
+        char[] residues = new char[5000];
+        for (int i = 0; i < residues.length; i++) {
+            residues[i] = "ACGT".charAt(random.nextInt(4));
+        }
+        String text = new String(residues);
+        DnaSequence sequence = new DnaSequence(text);
+        sequence.buildIndex();
+        //frequent patterns take the scan, rare and absent ones the index
+        for (String pattern : Arrays.asList("A", "GC", "TTA", text.substring(4000, 4012), text.substring(17, 30),
+                "ACGTACGTACGTACGT")) {
+            assertEquals(text.indexOf(pattern), sequence.indexOf(pattern));
+        }
+    }
+
+    @Test
+    public void multipleSequences() throws Exception {
+        Random random = new Random(21);
+        List<Sequence> sequences = new ArrayList<Sequence>();
+        for (int s = 0; s < 5; s++) {
+            char[] residues = new char[200 + random.nextInt(300)];
+            for (int i = 0; i < residues.length; i++) {
+                residues[i] = "ACGT".charAt(random.nextInt(random.nextBoolean() ? 2 : 4));
+            }
+            sequences.add(new DnaSequence(new String(residues)));
+        }
+        SequenceIndex built = SequenceIndex.build(sequences, 4);
+        File file = File.createTempFile("sequence", ".fmi");
+        file.deleteOnExit();
+        built.write(file);
+        SequenceIndex loaded = SequenceIndex.load(file);
+        for (SequenceIndex index : Arrays.asList(built, loaded)) {
+            assertEquals(5, index.getSequenceCount());
+            for (int p = 0; p < 200; p++) {
+                int s = random.nextInt(5);
+                String text = sequences.get(s).getSequenceString();
+                int start = random.nextInt(text.length() - 8);
+                String pattern = text.substring(start, start + 1 + random.nextInt(8));
+                assertEquals(scan(text, pattern), index.findOccurrences(s, pattern));
+                int total = 0;
+                for (int t = 0; t < 5; t++) {
+                    total += scan(sequences.get(t).getSequenceString(), pattern).size();
+                }
+                assertEquals(total, index.count(pattern));
+                for (int position : index.locate(pattern)) {
+                    int number = index.getSequenceNumber(position);
+                    int offset = position - index.getSequenceStart(number);
+                    assertEquals(pattern, sequences.get(number).getSequenceString()
+                            .substring(offset, offset + pattern.length()));
+                }
+            }
+        }
+    }
+}